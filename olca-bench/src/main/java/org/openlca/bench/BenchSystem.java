@@ -0,0 +1,70 @@
+package org.openlca.bench;
+
+import org.openlca.core.database.DatabaseContent;
+import org.openlca.core.database.derby.DerbyDatabase;
+import org.openlca.core.math.CalculationSetup;
+import org.openlca.core.model.ImpactMethod;
+import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.descriptors.Descriptors;
+import org.openlca.core.model.descriptors.ImpactMethodDescriptor;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A synthetic product system in an in-memory database that is shared by the
+ * benchmarks. The size and structure of the system can be changed via the JMH
+ * parameters, e.g.: -p processes=5000 -p providers=10 -p loops=0.2
+ */
+@State(Scope.Benchmark)
+public class BenchSystem {
+
+	@Param({ "100", "1000" })
+	public int processes;
+
+	/** The number of product inputs per process. */
+	@Param({ "5" })
+	public int providers;
+
+	/** The share of links that create loops in the system. */
+	@Param({ "0.1" })
+	public double loops;
+
+	/** The share of elementary flow exchanges with formulas. */
+	@Param({ "0.2" })
+	public double formulas;
+
+	DerbyDatabase database;
+	ProductSystem system;
+	ImpactMethodDescriptor impactMethod;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		database = DerbyDatabase.createInMemory(DatabaseContent.EMPTY);
+		SystemGenerator generator = new SystemGenerator();
+		generator.setProcessCount(processes);
+		generator.setProvidersPerProcess(providers);
+		generator.setLoopShare(loops);
+		generator.setElementaryFlowCount(Math.max(100, processes / 5));
+		generator.setFormulaShare(formulas);
+		generator.setWithUncertainties(true);
+		system = generator.generate(database);
+		ImpactMethod method = generator.getImpactMethod();
+		impactMethod = Descriptors.toDescriptor(method);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		database.close();
+	}
+
+	CalculationSetup createSetup() {
+		CalculationSetup setup = new CalculationSetup(system);
+		setup.setImpactMethod(impactMethod);
+		return setup;
+	}
+
+}
@@ -0,0 +1,85 @@
+package org.openlca.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openlca.core.math.CalculationSetup;
+import org.openlca.core.math.DataStructures;
+import org.openlca.core.math.IMatrixSolver;
+import org.openlca.core.math.LcaCalculator;
+import org.openlca.core.matrix.ImpactMatrix;
+import org.openlca.core.matrix.ImpactTable;
+import org.openlca.core.matrix.Inventory;
+import org.openlca.core.matrix.InventoryMatrix;
+import org.openlca.core.matrix.ParameterTable;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.results.SimpleResult;
+import org.openlca.expressions.FormulaInterpreter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The calculation of the different result types with the LCA calculator from
+ * prepared inventory and impact matrices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CalculatorBenchmark {
+
+	@Param({ Solvers.JAVA, Solvers.SPARSE })
+	public String solver;
+
+	@Param({ "simple", "contributions", "full", "lazy" })
+	public String mode;
+
+	private IMatrixSolver matrixSolver;
+	private InventoryMatrix inventoryMatrix;
+	private ImpactMatrix impactMatrix;
+
+	@Setup(Level.Trial)
+	public void setUp(BenchSystem bench) {
+		matrixSolver = Solvers.get(solver);
+		MatrixCache cache = MatrixCache.createEager(bench.database);
+		CalculationSetup setup = bench.createSetup();
+		Inventory inventory = DataStructures.createInventory(setup, cache);
+		ParameterTable parameters = DataStructures.createParameterTable(
+				bench.database, setup, inventory);
+		FormulaInterpreter interpreter = parameters.createInterpreter();
+		inventoryMatrix = inventory.createMatrix(
+				matrixSolver.getMatrixFactory(), interpreter);
+		ImpactTable impactTable = ImpactTable.build(cache, setup
+				.getImpactMethod().getId(), inventory.getFlowIndex());
+		impactMatrix = impactTable.createMatrix(
+				matrixSolver.getMatrixFactory(), interpreter);
+	}
+
+	@Benchmark
+	public SimpleResult calculate() {
+		LcaCalculator calculator = new LcaCalculator(matrixSolver);
+		switch (mode) {
+		case "contributions":
+			return calculator.calculateContributions(inventoryMatrix,
+					impactMatrix);
+		case "full":
+			return calculator.calculateFull(inventoryMatrix, impactMatrix);
+		case "lazy":
+			return calculator.calculateLazy(inventoryMatrix, impactMatrix);
+		default:
+			return calculator.calculateSimple(inventoryMatrix, impactMatrix);
+		}
+	}
+
+}
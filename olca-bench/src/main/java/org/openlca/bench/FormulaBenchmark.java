@@ -0,0 +1,72 @@
+package org.openlca.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openlca.core.math.CalculationSetup;
+import org.openlca.core.math.DataStructures;
+import org.openlca.core.math.IMatrixFactory;
+import org.openlca.core.math.JavaSolver;
+import org.openlca.core.matrix.Inventory;
+import org.openlca.core.matrix.InventoryMatrix;
+import org.openlca.core.matrix.ParameterTable;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.expressions.FormulaInterpreter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The evaluation of the parameters and exchange formulas of the synthetic
+ * system (the share of exchanges with formulas can be set with the
+ * `formulas` parameter of the system).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FormulaBenchmark {
+
+	private Inventory inventory;
+	private ParameterTable parameters;
+	private InventoryMatrix matrix;
+	private IMatrixFactory<?> factory = new JavaSolver().getMatrixFactory();
+
+	@Setup(Level.Trial)
+	public void setUp(BenchSystem bench) {
+		MatrixCache cache = MatrixCache.createEager(bench.database);
+		CalculationSetup setup = bench.createSetup();
+		inventory = DataStructures.createInventory(setup, cache);
+		parameters = DataStructures.createParameterTable(bench.database,
+				setup, inventory);
+		matrix = inventory.createMatrix(factory);
+	}
+
+	/** Evaluates all parameters and formulas of the inventory. */
+	@Benchmark
+	public InventoryMatrix evalInventory() {
+		FormulaInterpreter interpreter = parameters.createInterpreter();
+		return inventory.createMatrix(factory, interpreter);
+	}
+
+	/**
+	 * Generates new values for the uncertain parameters and exchanges and
+	 * evaluates the dependent formulas.
+	 */
+	@Benchmark
+	public InventoryMatrix simulate() {
+		FormulaInterpreter interpreter = parameters.simulate();
+		inventory.simulate(matrix, interpreter);
+		return matrix;
+	}
+
+}
@@ -0,0 +1,62 @@
+package org.openlca.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openlca.core.math.DataStructures;
+import org.openlca.core.math.JavaSolver;
+import org.openlca.core.matrix.Inventory;
+import org.openlca.core.matrix.InventoryMatrix;
+import org.openlca.core.matrix.ProductIndex;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.AllocationMethod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the product index, the inventory, and the inventory matrices from
+ * a filled matrix cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InventoryBenchmark {
+
+	private MatrixCache cache;
+	private ProductIndex productIndex;
+	private Inventory inventory;
+
+	@Setup(Level.Trial)
+	public void setUp(BenchSystem bench) {
+		cache = MatrixCache.createEager(bench.database);
+		productIndex = DataStructures.createProductIndex(bench.system);
+		inventory = Inventory.build(cache, productIndex, AllocationMethod.NONE);
+	}
+
+	@Benchmark
+	public ProductIndex productIndex(BenchSystem bench) {
+		return DataStructures.createProductIndex(bench.system);
+	}
+
+	@Benchmark
+	public Inventory buildInventory() {
+		return Inventory.build(cache, productIndex, AllocationMethod.NONE);
+	}
+
+	@Benchmark
+	public InventoryMatrix createMatrix() {
+		return inventory.createMatrix(new JavaSolver().getMatrixFactory());
+	}
+
+}
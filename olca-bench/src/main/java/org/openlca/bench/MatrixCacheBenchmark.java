@@ -0,0 +1,39 @@
+package org.openlca.bench;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openlca.core.matrix.CalcExchange;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading the data of the synthetic system into the matrix cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MatrixCacheBenchmark {
+
+	@Benchmark
+	public MatrixCache createEager(BenchSystem bench) {
+		return MatrixCache.createEager(bench.database);
+	}
+
+	@Benchmark
+	public Map<Long, List<CalcExchange>> loadExchanges(BenchSystem bench)
+			throws Exception {
+		MatrixCache cache = MatrixCache.createLazy(bench.database);
+		return cache.getExchangeCache().getAll(bench.system.getProcesses());
+	}
+
+}
@@ -0,0 +1,58 @@
+package org.openlca.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openlca.core.math.Simulator;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single Monte Carlo simulation runs. The simulator is created for each
+ * iteration so that the collected results do not grow over the whole
+ * benchmark; the first run of an iteration includes the set-up of the
+ * simulator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SimulationBenchmark {
+
+	@Param({ Solvers.JAVA, Solvers.SPARSE })
+	public String solver;
+
+	/** The number of runs for which the random values are generated at once. */
+	@Param({ "1", "32" })
+	public int blockSize;
+
+	private MatrixCache cache;
+	private Simulator simulator;
+
+	@Setup(Level.Iteration)
+	public void setUp(BenchSystem bench) {
+		if (cache == null)
+			cache = MatrixCache.createEager(bench.database);
+		simulator = new Simulator(bench.createSetup(), cache,
+				Solvers.get(solver));
+		simulator.setBlockSize(blockSize);
+	}
+
+	@Benchmark
+	public boolean nextRun() {
+		return simulator.nextRun();
+	}
+
+}
@@ -0,0 +1,89 @@
+package org.openlca.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openlca.core.math.DataStructures;
+import org.openlca.core.math.IFactorization;
+import org.openlca.core.math.IMatrix;
+import org.openlca.core.math.IMatrixSolver;
+import org.openlca.core.matrix.Inventory;
+import org.openlca.core.matrix.InventoryMatrix;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.AllocationMethod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The basic operations of the matrix solvers on the matrices of the synthetic
+ * system. The Eigen based solvers can be selected with
+ * -p solver=eigen-dense,eigen-balanced when the native library is available.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SolverBenchmark {
+
+	@Param({ Solvers.JAVA, Solvers.SPARSE })
+	public String solver;
+
+	private IMatrixSolver matrixSolver;
+	private IMatrix techMatrix;
+	private IMatrix enviMatrix;
+	private IFactorization factorization;
+	private double[] demand;
+
+	@Setup(Level.Trial)
+	public void setUp(BenchSystem bench) {
+		matrixSolver = Solvers.get(solver);
+		MatrixCache cache = MatrixCache.createEager(bench.database);
+		Inventory inventory = DataStructures.createInventory(bench.system,
+				AllocationMethod.NONE, cache);
+		InventoryMatrix matrix = inventory.createMatrix(matrixSolver
+				.getMatrixFactory());
+		techMatrix = matrix.getTechnologyMatrix();
+		enviMatrix = matrix.getInterventionMatrix();
+		factorization = matrixSolver.factorize(techMatrix);
+		demand = new double[techMatrix.getRowDimension()];
+		demand[0] = 1;
+	}
+
+	@Benchmark
+	public IFactorization factorize() {
+		return matrixSolver.factorize(techMatrix);
+	}
+
+	@Benchmark
+	public double[] solve() {
+		return matrixSolver.solve(techMatrix, 0, 1);
+	}
+
+	@Benchmark
+	public double[] solveFactorized() {
+		return factorization.solve(demand);
+	}
+
+	@Benchmark
+	public double[] multiply() {
+		double[] s = factorization.solve(demand);
+		return matrixSolver.multiply(enviMatrix, s);
+	}
+
+	@Benchmark
+	public IMatrix invert() {
+		return matrixSolver.invert(techMatrix);
+	}
+
+}
@@ -0,0 +1,55 @@
+package org.openlca.bench;
+
+import java.io.File;
+
+import org.openlca.core.math.IMatrixSolver;
+import org.openlca.core.math.JavaSolver;
+import org.openlca.core.math.SparseSolver;
+import org.openlca.eigen.NativeLibrary;
+import org.openlca.eigen.solvers.BalancedSolver;
+import org.openlca.eigen.solvers.DenseSolver;
+
+/**
+ * Creates the matrix solvers that can be selected in the benchmarks via the
+ * `solver` parameter. The Eigen solvers need the native library which is
+ * loaded from the folder that is given in the system property
+ * `olca.eigen.dir` (the temp folder by default).
+ */
+final class Solvers {
+
+	static final String JAVA = "java";
+	static final String SPARSE = "sparse";
+	static final String EIGEN_DENSE = "eigen-dense";
+	static final String EIGEN_BALANCED = "eigen-balanced";
+
+	private Solvers() {
+	}
+
+	static IMatrixSolver get(String name) {
+		if (name == null)
+			throw new IllegalArgumentException("no solver given");
+		switch (name) {
+		case JAVA:
+			return new JavaSolver();
+		case SPARSE:
+			return new SparseSolver();
+		case EIGEN_DENSE:
+			loadNativeLibrary();
+			return new DenseSolver();
+		case EIGEN_BALANCED:
+			loadNativeLibrary();
+			return new BalancedSolver();
+		default:
+			throw new IllegalArgumentException("unknown solver: " + name);
+		}
+	}
+
+	private static void loadNativeLibrary() {
+		if (NativeLibrary.isLoaded())
+			return;
+		String dir = System.getProperty("olca.eigen.dir",
+				System.getProperty("java.io.tmpdir"));
+		NativeLibrary.loadFromDir(new File(dir));
+	}
+
+}
@@ -0,0 +1,349 @@
+package org.openlca.bench;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import org.openlca.core.database.BaseDao;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowProperty;
+import org.openlca.core.model.FlowPropertyFactor;
+import org.openlca.core.model.FlowPropertyType;
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.ImpactCategory;
+import org.openlca.core.model.ImpactFactor;
+import org.openlca.core.model.ImpactMethod;
+import org.openlca.core.model.Parameter;
+import org.openlca.core.model.ParameterScope;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.ProcessLink;
+import org.openlca.core.model.ProcessType;
+import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.Uncertainty;
+import org.openlca.core.model.Unit;
+import org.openlca.core.model.UnitGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a synthetic product system with an LCIA method into a database. Each
+ * process has exactly one product output and the process with the index 0 is
+ * the reference process of the system. The processes are connected by a
+ * spanning tree so that every process is in the supply chain of the reference
+ * process; additional links are added until each process has the configured
+ * number of providers. With the loop share, these additional links point back
+ * to processes with a lower index which creates loops in the system. The input
+ * amounts of a process sum up to less than its output amount so that the
+ * technology matrix is always non-singular.
+ *
+ * The generator is deterministic: the same configuration and seed always
+ * produce the same system.
+ */
+public class SystemGenerator {
+
+	private Logger log = LoggerFactory.getLogger(getClass());
+
+	private int processCount = 100;
+	private int providersPerProcess = 3;
+	private double loopShare = 0;
+	private int elementaryFlowCount = 200;
+	private int elementaryFlowsPerProcess = 10;
+	private int impactCategoryCount = 5;
+	private double formulaShare = 0;
+	private boolean withUncertainties = false;
+	private long seed = 42;
+
+	private ImpactMethod impactMethod;
+
+	/** The number of processes in the generated system. */
+	public void setProcessCount(int processCount) {
+		this.processCount = processCount < 1 ? 1 : processCount;
+	}
+
+	/**
+	 * The number of product inputs of each process. This defines the number of
+	 * non-zero entries in the columns of the technology matrix.
+	 */
+	public void setProvidersPerProcess(int providersPerProcess) {
+		this.providersPerProcess = providersPerProcess;
+	}
+
+	/**
+	 * The share (0..1) of the additional links that point to a process with a
+	 * lower index (and thus typically create a loop).
+	 */
+	public void setLoopShare(double loopShare) {
+		this.loopShare = loopShare;
+	}
+
+	public void setElementaryFlowCount(int elementaryFlowCount) {
+		this.elementaryFlowCount = elementaryFlowCount;
+	}
+
+	/**
+	 * The number of elementary flows of each process; i.e. the number of
+	 * non-zero entries in the columns of the intervention matrix.
+	 */
+	public void setElementaryFlowsPerProcess(int elementaryFlowsPerProcess) {
+		this.elementaryFlowsPerProcess = elementaryFlowsPerProcess;
+	}
+
+	public void setImpactCategoryCount(int impactCategoryCount) {
+		this.impactCategoryCount = impactCategoryCount;
+	}
+
+	/**
+	 * The share (0..1) of the elementary flow exchanges that have a formula.
+	 * These formulas use a process parameter that depends on a global
+	 * parameter.
+	 */
+	public void setFormulaShare(double formulaShare) {
+		this.formulaShare = formulaShare;
+	}
+
+	/**
+	 * If true, the elementary flow exchanges and the global parameter get an
+	 * uncertainty distribution (for Monte Carlo simulations).
+	 */
+	public void setWithUncertainties(boolean withUncertainties) {
+		this.withUncertainties = withUncertainties;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the LCIA method of the last generated system.
+	 */
+	public ImpactMethod getImpactMethod() {
+		return impactMethod;
+	}
+
+	/**
+	 * Generates a new product system and LCIA method in the given database.
+	 */
+	public ProductSystem generate(IDatabase database) {
+		log.trace("generate system with {} processes", processCount);
+		Random random = new Random(seed);
+		FlowProperty property = createFlowProperty(database);
+		List<Flow> products = createFlows(database, property, processCount,
+				FlowType.PRODUCT_FLOW);
+		List<Flow> elemFlows = createFlows(database, property,
+				elementaryFlowCount, FlowType.ELEMENTARY_FLOW);
+		createGlobalParameter(database);
+		List<List<Integer>> providers = createProviders(random);
+		List<Process> processes = new ArrayList<>();
+		BaseDao<Process> processDao = database.createDao(Process.class);
+		for (int i = 0; i < processCount; i++) {
+			Process process = createProcess(i, products, elemFlows, random);
+			processes.add(processDao.insert(process));
+		}
+		for (int i = 0; i < processCount; i++) {
+			Process process = processes.get(i);
+			List<Integer> list = providers.get(i);
+			for (int provider : list) {
+				// the inputs sum up to less than 0.9
+				double amount = (0.1 + 0.8 * random.nextDouble())
+						/ list.size();
+				Exchange input = createExchange(products.get(provider),
+						amount, true);
+				input.setDefaultProviderId(processes.get(provider).getId());
+				process.getExchanges().add(input);
+			}
+			processes.set(i, processDao.update(process));
+		}
+		impactMethod = createImpactMethod(database, elemFlows, random);
+		return createSystem(database, processes, products, providers);
+	}
+
+	private FlowProperty createFlowProperty(IDatabase database) {
+		Unit unit = new Unit();
+		unit.setName("kg");
+		unit.setConversionFactor(1);
+		unit.setRefId(UUID.randomUUID().toString());
+		UnitGroup group = new UnitGroup();
+		group.setName("Units of mass");
+		group.setRefId(UUID.randomUUID().toString());
+		group.getUnits().add(unit);
+		group.setReferenceUnit(unit);
+		group = database.createDao(UnitGroup.class).insert(group);
+		FlowProperty property = new FlowProperty();
+		property.setName("Mass");
+		property.setRefId(UUID.randomUUID().toString());
+		property.setFlowPropertyType(FlowPropertyType.PHYSICAL);
+		property.setUnitGroup(group);
+		return database.createDao(FlowProperty.class).insert(property);
+	}
+
+	private List<Flow> createFlows(IDatabase database, FlowProperty property,
+			int count, FlowType type) {
+		BaseDao<Flow> dao = database.createDao(Flow.class);
+		List<Flow> flows = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Flow flow = new Flow();
+			flow.setName(type + " " + i);
+			flow.setRefId(UUID.randomUUID().toString());
+			flow.setFlowType(type);
+			flow.setReferenceFlowProperty(property);
+			FlowPropertyFactor factor = new FlowPropertyFactor();
+			factor.setFlowProperty(property);
+			factor.setConversionFactor(1);
+			flow.getFlowPropertyFactors().add(factor);
+			flows.add(dao.insert(flow));
+		}
+		return flows;
+	}
+
+	private void createGlobalParameter(IDatabase database) {
+		Parameter param = new Parameter();
+		param.setName("g");
+		param.setScope(ParameterScope.GLOBAL);
+		param.setInputParameter(true);
+		param.setValue(1);
+		if (withUncertainties)
+			param.setUncertainty(Uncertainty.normal(1, 0.1));
+		database.createDao(Parameter.class).insert(param);
+	}
+
+	/**
+	 * Returns for each process the indices of its providers.
+	 */
+	private List<List<Integer>> createProviders(Random random) {
+		List<List<Integer>> providers = new ArrayList<>();
+		for (int i = 0; i < processCount; i++)
+			providers.add(new ArrayList<Integer>());
+		// a spanning tree: each process is used by a process with a lower index
+		for (int i = 1; i < processCount; i++)
+			providers.get(random.nextInt(i)).add(i);
+		for (int i = 0; i < processCount; i++) {
+			List<Integer> list = providers.get(i);
+			Set<Integer> used = new HashSet<>(list);
+			used.add(i);
+			int attempts = 0;
+			while (list.size() < providersPerProcess
+					&& attempts < 4 * providersPerProcess) {
+				attempts++;
+				boolean loop = random.nextDouble() < loopShare;
+				int provider;
+				if (loop && i > 0)
+					provider = random.nextInt(i);
+				else if (i < processCount - 1)
+					provider = i + 1 + random.nextInt(processCount - i - 1);
+				else
+					continue;
+				if (used.add(provider))
+					list.add(provider);
+			}
+		}
+		return providers;
+	}
+
+	private Process createProcess(int index, List<Flow> products,
+			List<Flow> elemFlows, Random random) {
+		Process process = new Process();
+		process.setName("process " + index);
+		process.setRefId(UUID.randomUUID().toString());
+		process.setProcessType(ProcessType.UNIT_PROCESS);
+		Exchange output = createExchange(products.get(index), 1, false);
+		process.getExchanges().add(output);
+		process.setQuantitativeReference(output);
+		boolean hasFormulas = false;
+		Set<Integer> used = new HashSet<>();
+		int count = Math.min(elementaryFlowsPerProcess, elemFlows.size());
+		while (used.size() < count) {
+			int i = random.nextInt(elemFlows.size());
+			if (!used.add(i))
+				continue;
+			double amount = 0.1 + random.nextDouble();
+			Exchange exchange = createExchange(elemFlows.get(i), amount,
+					random.nextDouble() < 0.2);
+			if (random.nextDouble() < formulaShare) {
+				exchange.setAmountFormula("a * " + amount);
+				hasFormulas = true;
+			}
+			if (withUncertainties)
+				exchange.setUncertainty(Uncertainty.logNormal(amount, 1.2));
+			process.getExchanges().add(exchange);
+		}
+		if (hasFormulas) {
+			Parameter param = new Parameter();
+			param.setName("a");
+			param.setScope(ParameterScope.PROCESS);
+			param.setInputParameter(false);
+			param.setFormula("g * " + (0.5 + random.nextDouble()));
+			process.getParameters().add(param);
+		}
+		return process;
+	}
+
+	private Exchange createExchange(Flow flow, double amount, boolean input) {
+		Exchange exchange = new Exchange();
+		FlowPropertyFactor factor = flow.getReferenceFactor();
+		exchange.setFlow(flow);
+		exchange.setFlowPropertyFactor(factor);
+		exchange.setUnit(factor.getFlowProperty().getUnitGroup()
+				.getReferenceUnit());
+		exchange.setAmountValue(amount);
+		exchange.setInput(input);
+		return exchange;
+	}
+
+	private ImpactMethod createImpactMethod(IDatabase database,
+			List<Flow> elemFlows, Random random) {
+		ImpactMethod method = new ImpactMethod();
+		method.setName("LCIA method");
+		method.setRefId(UUID.randomUUID().toString());
+		for (int i = 0; i < impactCategoryCount; i++) {
+			ImpactCategory category = new ImpactCategory();
+			category.setName("impact category " + i);
+			category.setRefId(UUID.randomUUID().toString());
+			category.setReferenceUnit("kg eq.");
+			for (Flow flow : elemFlows) {
+				if (random.nextBoolean())
+					continue;
+				ImpactFactor factor = new ImpactFactor();
+				factor.setFlow(flow);
+				factor.setFlowPropertyFactor(flow.getReferenceFactor());
+				factor.setUnit(flow.getReferenceFactor().getFlowProperty()
+						.getUnitGroup().getReferenceUnit());
+				factor.setValue(random.nextDouble() * 10);
+				category.getImpactFactors().add(factor);
+			}
+			method.getImpactCategories().add(category);
+		}
+		return database.createDao(ImpactMethod.class).insert(method);
+	}
+
+	private ProductSystem createSystem(IDatabase database,
+			List<Process> processes, List<Flow> products,
+			List<List<Integer>> providers) {
+		ProductSystem system = new ProductSystem();
+		system.setName("synthetic system");
+		system.setRefId(UUID.randomUUID().toString());
+		Process refProcess = processes.get(0);
+		Exchange refExchange = refProcess.getQuantitativeReference();
+		system.setReferenceProcess(refProcess);
+		system.setReferenceExchange(refExchange);
+		system.setTargetAmount(1);
+		system.setTargetFlowPropertyFactor(refExchange.getFlowPropertyFactor());
+		system.setTargetUnit(refExchange.getUnit());
+		for (Process process : processes)
+			system.getProcesses().add(process.getId());
+		for (int i = 0; i < processCount; i++) {
+			for (int provider : providers.get(i)) {
+				ProcessLink link = new ProcessLink();
+				link.setProviderId(processes.get(provider).getId());
+				link.setRecipientId(processes.get(i).getId());
+				link.setFlowId(products.get(provider).getId());
+				system.getProcessLinks().add(link);
+			}
+		}
+		return database.createDao(ProductSystem.class).insert(system);
+	}
+}
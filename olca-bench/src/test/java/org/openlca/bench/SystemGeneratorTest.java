@@ -0,0 +1,49 @@
+package org.openlca.bench;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openlca.core.database.DatabaseContent;
+import org.openlca.core.database.derby.DerbyDatabase;
+import org.openlca.core.math.CalculationSetup;
+import org.openlca.core.math.DataStructures;
+import org.openlca.core.math.JavaSolver;
+import org.openlca.core.math.Simulator;
+import org.openlca.core.math.SystemCalculator;
+import org.openlca.core.matrix.ProductIndex;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.descriptors.Descriptors;
+import org.openlca.core.results.SimpleResult;
+
+public class SystemGeneratorTest {
+
+	@Test
+	public void testGenerate() throws Exception {
+		DerbyDatabase db = DerbyDatabase
+				.createInMemory(DatabaseContent.EMPTY);
+		SystemGenerator generator = new SystemGenerator();
+		generator.setProcessCount(50);
+		generator.setProvidersPerProcess(4);
+		generator.setLoopShare(0.5);
+		generator.setFormulaShare(0.5);
+		generator.setWithUncertainties(true);
+		ProductSystem system = generator.generate(db);
+		ProductIndex index = DataStructures.createProductIndex(system);
+		Assert.assertEquals(50, index.size());
+
+		CalculationSetup setup = new CalculationSetup(system);
+		setup.setImpactMethod(Descriptors.toDescriptor(generator
+				.getImpactMethod()));
+		MatrixCache cache = MatrixCache.createEager(db);
+		SimpleResult result = new SystemCalculator(cache, new JavaSolver())
+				.calculateSimple(setup);
+		Assert.assertEquals(5, result.getTotalImpactResults().length);
+		for (double r : result.getTotalImpactResults())
+			Assert.assertTrue(r > 0);
+
+		Simulator simulator = new Simulator(setup, cache, new JavaSolver());
+		Assert.assertTrue(simulator.nextRun());
+		db.close();
+	}
+
+}
@@ -15,15 +15,25 @@ import java.util.Set;
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 
+import org.openlca.core.database.usage.UsageIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class BaseDao<T> implements IDao<T> {
 
 	/**
-	 * A database dependent field for the maximum size of lists in JPQL queries.
+	 * A database dependent field for the maximum size of lists in JPQL and SQL
+	 * queries.
 	 */
-	static final int MAX_LIST_SIZE = 1000;
+	public static final int MAX_LIST_SIZE = 1000;
+
+	/**
+	 * The number of entities that are written in one transaction in the bulk
+	 * operations {@link #insertAll(Collection)} and
+	 * {@link #updateAll(Collection)}. The persistence context is cleared after
+	 * each transaction so that it does not grow with the number of entities.
+	 */
+	static final int WRITE_CHUNK_SIZE = 100;
 
 	protected Class<T> entityType;
 	protected Logger log = LoggerFactory.getLogger(this.getClass());
@@ -56,6 +66,7 @@ public class BaseDao<T> implements IDao<T> {
 			em.getTransaction().begin();
 			em.remove(em.merge(entity));
 			em.getTransaction().commit();
+			afterDelete(entity);
 		} catch (Exception e) {
 			DatabaseException.logAndThrow(log, "Error while deleting "
 					+ entityType.getSimpleName(), e);
@@ -76,6 +87,8 @@ public class BaseDao<T> implements IDao<T> {
 				em.remove(em.merge(entity));
 			}
 			em.getTransaction().commit();
+			for (T entity : entities)
+				afterDelete(entity);
 		} catch (Exception e) {
 			DatabaseException.logAndThrow(log, "Error while deleting "
 					+ entityType.getSimpleName(), e);
@@ -93,6 +106,7 @@ public class BaseDao<T> implements IDao<T> {
 			em.getTransaction().begin();
 			T retval = em.merge(entity);
 			em.getTransaction().commit();
+			afterWrite(retval);
 			return retval;
 		} catch (Exception e) {
 			DatabaseException.logAndThrow(log, "Error while updating "
@@ -112,6 +126,7 @@ public class BaseDao<T> implements IDao<T> {
 			em.getTransaction().begin();
 			em.persist(entity);
 			em.getTransaction().commit();
+			afterWrite(entity);
 			return entity;
 		} catch (Exception e) {
 			DatabaseException.logAndThrow(log, "Error while inserting "
@@ -122,6 +137,117 @@ public class BaseDao<T> implements IDao<T> {
 		}
 	}
 
+	@Override
+	public List<T> insertAll(Collection<T> entities) {
+		if (entities == null)
+			return Collections.emptyList();
+		List<T> inserted = new ArrayList<>(entities.size());
+		EntityManager em = createManager();
+		try {
+			int count = 0;
+			for (T entity : entities) {
+				if (entity == null)
+					continue;
+				if (count == 0)
+					em.getTransaction().begin();
+				em.persist(entity);
+				inserted.add(entity);
+				count++;
+				if (count == WRITE_CHUNK_SIZE) {
+					commitChunk(em);
+					count = 0;
+				}
+			}
+			if (count > 0)
+				commitChunk(em);
+			for (T entity : inserted)
+				afterWrite(entity);
+			return inserted;
+		} catch (Exception e) {
+			rollback(em);
+			invalidateIndices();
+			DatabaseException.logAndThrow(log, "Error while inserting "
+					+ entityType.getSimpleName() + "s", e);
+			return inserted;
+		} finally {
+			em.close();
+		}
+	}
+
+	@Override
+	public List<T> updateAll(Collection<T> entities) {
+		if (entities == null)
+			return Collections.emptyList();
+		List<T> updated = new ArrayList<>(entities.size());
+		EntityManager em = createManager();
+		try {
+			int count = 0;
+			for (T entity : entities) {
+				if (entity == null)
+					continue;
+				if (count == 0)
+					em.getTransaction().begin();
+				updated.add(em.merge(entity));
+				count++;
+				if (count == WRITE_CHUNK_SIZE) {
+					commitChunk(em);
+					count = 0;
+				}
+			}
+			if (count > 0)
+				commitChunk(em);
+			for (T entity : updated)
+				afterWrite(entity);
+			return updated;
+		} catch (Exception e) {
+			rollback(em);
+			invalidateIndices();
+			DatabaseException.logAndThrow(log, "Error while updating "
+					+ entityType.getSimpleName() + "s", e);
+			return updated;
+		} finally {
+			em.close();
+		}
+	}
+
+	/**
+	 * Commits the current transaction (which writes the changes in JDBC
+	 * batches) and detaches the written entities.
+	 */
+	private void commitChunk(EntityManager em) {
+		em.getTransaction().commit();
+		em.clear();
+	}
+
+	/**
+	 * Updates the in-memory indices of the database after the given entity was
+	 * inserted or updated.
+	 */
+	private void afterWrite(T entity) {
+		UsageIndex.written(database, entity);
+		DescriptorIndex.written(database, entity);
+	}
+
+	private void afterDelete(T entity) {
+		UsageIndex.deleted(database, entity);
+		DescriptorIndex.deleted(database, entity);
+	}
+
+	/**
+	 * Invalidates the in-memory indices of the database when it is not clear
+	 * which entities were written, e.g. when a bulk operation failed after
+	 * some chunks were committed.
+	 */
+	private void invalidateIndices() {
+		UsageIndex.invalidate(database);
+		DescriptorIndex.invalidate(database);
+	}
+
+	private void rollback(EntityManager em) {
+		if (em.getTransaction().isActive())
+			em.getTransaction().rollback();
+	}
+
 	@Override
 	public T getForId(long id) {
 		log.trace("get {} for id={}", entityType, id);
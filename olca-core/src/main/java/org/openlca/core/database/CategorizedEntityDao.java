@@ -48,6 +48,8 @@ public class CategorizedEntityDao<T extends CategorizedEntity, V extends Categor
 			em.getTransaction().begin();
 			query.executeUpdate();
 			em.getTransaction().commit();
+			DescriptorIndex.categoryChanged(getDatabase(), model,
+					category.isPresent() ? category.get().getId() : 0);
 		} catch (Exception e) {
 			DatabaseException.logAndThrow(log, "failed to update category for "
 					+ entityType.getSimpleName(), e);
@@ -0,0 +1,418 @@
+package org.openlca.core.database;
+
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.persistence.Table;
+
+import org.openlca.core.model.CategorizedEntity;
+import org.openlca.core.model.Category;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.RootEntity;
+import org.openlca.core.model.descriptors.BaseDescriptor;
+import org.openlca.core.model.descriptors.Descriptors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory index of the descriptors of a database for navigation trees and
+ * selection dialogs. It provides the descriptors of a model type, searches by
+ * name (exact, substring, or prefix), and lookups by category or category
+ * path without querying the database.
+ *
+ * There is one index per database which is created via {@link #on(IDatabase)}.
+ * The descriptors of a model type are loaded when they are requested the first
+ * time. After this, the DAOs keep the index up to date: every entity that is
+ * inserted, updated, or deleted via a DAO is passed to
+ * {@link #written(IDatabase, Object)} or {@link #deleted(IDatabase, Object)}.
+ * Code that changes entities via native SQL should call
+ * {@link #invalidate(IDatabase)} so that the data are reloaded with the next
+ * request.
+ *
+ * The category paths are the names of the categories from the root category
+ * down to the respective category separated by slashes, e.g.
+ * "Elementary flows/Emission to air".
+ */
+public class DescriptorIndex {
+
+	private static final Map<IDatabase, DescriptorIndex> indices = new WeakHashMap<>();
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final WeakReference<IDatabase> database;
+	private final Map<ModelType, DescriptorSegment> segments = new EnumMap<>(
+			ModelType.class);
+
+	private TLongObjectHashMap<String> categoryNames;
+	private TLongLongHashMap categoryParents;
+	private TLongObjectHashMap<ModelType> categoryTypes;
+	private Map<ModelType, Map<String, Long>> categoryPaths;
+
+	private DescriptorIndex(IDatabase database) {
+		this.database = new WeakReference<>(database);
+	}
+
+	/** Returns the descriptor index of the given database. */
+	public static DescriptorIndex on(IDatabase database) {
+		synchronized (indices) {
+			DescriptorIndex index = indices.get(database);
+			if (index == null) {
+				index = new DescriptorIndex(database);
+				indices.put(database, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Updates the descriptor of the given entity if the descriptors of its type
+	 * are loaded in the index of the given database.
+	 */
+	public static void written(IDatabase database, Object entity) {
+		DescriptorIndex index = existing(database);
+		if (index != null)
+			index.entityWritten(entity);
+	}
+
+	/**
+	 * Removes the descriptor of the given entity if the descriptors of its type
+	 * are loaded in the index of the given database.
+	 */
+	public static void deleted(IDatabase database, Object entity) {
+		DescriptorIndex index = existing(database);
+		if (index != null)
+			index.entityDeleted(entity);
+	}
+
+	/**
+	 * Clears the index of the given database so that the descriptors are
+	 * reloaded with the next request.
+	 */
+	public static void invalidate(IDatabase database) {
+		DescriptorIndex index = existing(database);
+		if (index == null)
+			return;
+		synchronized (index) {
+			index.segments.clear();
+			index.categoryNames = null;
+		}
+	}
+
+	/** Called from the DAO when the category was changed via a JPQL update. */
+	static void categoryChanged(IDatabase database, BaseDescriptor descriptor,
+			long category) {
+		DescriptorIndex index = existing(database);
+		if (index == null || descriptor == null)
+			return;
+		synchronized (index) {
+			DescriptorSegment segment = index.segments.get(descriptor
+					.getModelType());
+			if (segment != null)
+				segment.setCategory(descriptor.getId(), category);
+		}
+	}
+
+	/**
+	 * Removes the index of the given database. This is called when the
+	 * database is closed so that the descriptors of the database are released
+	 * immediately.
+	 */
+	public static void remove(IDatabase database) {
+		if (database == null)
+			return;
+		synchronized (indices) {
+			indices.remove(database);
+		}
+	}
+
+	private static DescriptorIndex existing(IDatabase database) {
+		if (database == null)
+			return null;
+		synchronized (indices) {
+			return indices.get(database);
+		}
+	}
+
+	/**
+	 * The index keeps only a weak reference to its database: a strong
+	 * reference from this value would keep the weak key in the map of
+	 * indices reachable.
+	 */
+	private IDatabase db() {
+		return database.get();
+	}
+
+	/** Returns all descriptors of the given type. */
+	public synchronized List<BaseDescriptor> getAll(ModelType type) {
+		DescriptorSegment segment = segment(type);
+		if (segment == null)
+			return Collections.emptyList();
+		return segment.getAll();
+	}
+
+	public synchronized BaseDescriptor get(ModelType type, long id) {
+		DescriptorSegment segment = segment(type);
+		if (segment == null)
+			return null;
+		return segment.get(id);
+	}
+
+	/**
+	 * Returns the descriptors of the given type with exactly the given name
+	 * (like {@link RootEntityDao#getForName(String)}).
+	 */
+	public synchronized List<BaseDescriptor> getForName(ModelType type,
+			String name) {
+		DescriptorSegment segment = segment(type);
+		if (segment == null)
+			return Collections.emptyList();
+		return segment.getForName(name);
+	}
+
+	/**
+	 * Returns the descriptors of the given type which names contain the given
+	 * text, ignoring the case.
+	 */
+	public synchronized List<BaseDescriptor> search(ModelType type,
+			String text) {
+		DescriptorSegment segment = segment(type);
+		if (segment == null)
+			return Collections.emptyList();
+		return segment.search(text, false);
+	}
+
+	/**
+	 * Returns the descriptors of the given type which names start with the
+	 * given text, ignoring the case.
+	 */
+	public synchronized List<BaseDescriptor> searchPrefix(ModelType type,
+			String prefix) {
+		DescriptorSegment segment = segment(type);
+		if (segment == null)
+			return Collections.emptyList();
+		return segment.search(prefix, true);
+	}
+
+	/**
+	 * Returns the descriptors of the given type in the category with the given
+	 * ID. If the category ID is null the descriptors that are not in a
+	 * category are returned.
+	 */
+	public synchronized List<BaseDescriptor> getForCategory(ModelType type,
+			Long categoryId) {
+		DescriptorSegment segment = segment(type);
+		if (segment == null)
+			return Collections.emptyList();
+		return segment.getForCategory(categoryId == null ? 0 : categoryId);
+	}
+
+	/**
+	 * Returns the descriptors of the given type in the category with the given
+	 * path. An empty path returns the descriptors that are not in a category.
+	 */
+	public synchronized List<BaseDescriptor> getForCategoryPath(ModelType type,
+			String path) {
+		if (path == null || path.isEmpty())
+			return getForCategory(type, null);
+		loadCategories();
+		Map<String, Long> paths = categoryPaths.get(type);
+		Long categoryId = paths == null ? null : paths.get(path);
+		if (categoryId == null)
+			return Collections.emptyList();
+		return getForCategory(type, categoryId);
+	}
+
+	/**
+	 * Returns the path of the category with the given ID or null if there is
+	 * no such category.
+	 */
+	public synchronized String getCategoryPath(long categoryId) {
+		loadCategories();
+		return path(categoryId);
+	}
+
+	/** Returns the path of the category of the given entity. */
+	public synchronized String getCategoryPath(ModelType type, long id) {
+		DescriptorSegment segment = segment(type);
+		if (segment == null)
+			return null;
+		long categoryId = segment.getCategory(id);
+		if (categoryId == 0)
+			return null;
+		return getCategoryPath(categoryId);
+	}
+
+	private DescriptorSegment segment(ModelType type) {
+		if (type == null)
+			return null;
+		DescriptorSegment segment = segments.get(type);
+		if (segment != null)
+			return segment;
+		RootEntityDao<?, ?> dao = createDao(type);
+		if (dao == null)
+			return null;
+		log.trace("load descriptors of {} into index", type);
+		segment = new DescriptorSegment(type);
+		try {
+			TLongLongHashMap categories = loadCategoryIds(type);
+			for (BaseDescriptor d : dao.getDescriptors()) {
+				segment.put(d, categories.get(d.getId()));
+			}
+			segments.put(type, segment);
+		} catch (Exception e) {
+			log.error("failed to load descriptors of " + type, e);
+		}
+		return segment;
+	}
+
+	private TLongLongHashMap loadCategoryIds(ModelType type) throws Exception {
+		final TLongLongHashMap map = new TLongLongHashMap();
+		Class<?> clazz = type.getModelClass();
+		if (!CategorizedEntity.class.isAssignableFrom(clazz))
+			return map;
+		String table = clazz.getAnnotation(Table.class).name();
+		String sql = "select id, f_category from " + table;
+		NativeSql.on(db()).query(sql, new NativeSql.QueryResultHandler() {
+			@Override
+			public boolean nextResult(ResultSet result) throws SQLException {
+				map.put(result.getLong(1), result.getLong(2));
+				return true;
+			}
+		});
+		return map;
+	}
+
+	private RootEntityDao<?, ?> createDao(ModelType type) {
+		switch (type) {
+		case ACTOR:
+			return new ActorDao(db());
+		case FLOW:
+			return new FlowDao(db());
+		case FLOW_PROPERTY:
+			return new FlowPropertyDao(db());
+		case IMPACT_METHOD:
+			return new ImpactMethodDao(db());
+		case LOCATION:
+			return new LocationDao(db());
+		case PROCESS:
+			return new ProcessDao(db());
+		case PRODUCT_SYSTEM:
+			return new ProductSystemDao(db());
+		case PROJECT:
+			return new ProjectDao(db());
+		case SOURCE:
+			return new SourceDao(db());
+		case UNIT_GROUP:
+			return new UnitGroupDao(db());
+		default:
+			return null;
+		}
+	}
+
+	private void loadCategories() {
+		if (categoryNames != null)
+			return;
+		categoryNames = new TLongObjectHashMap<>();
+		categoryParents = new TLongLongHashMap();
+		categoryTypes = new TLongObjectHashMap<>();
+		categoryPaths = null;
+		String sql = "select id, name, f_parent_category, model_type "
+				+ "from tbl_categories";
+		try {
+			NativeSql.on(db()).query(sql,
+					new NativeSql.QueryResultHandler() {
+						@Override
+						public boolean nextResult(ResultSet result)
+								throws SQLException {
+							long id = result.getLong(1);
+							categoryNames.put(id, result.getString(2));
+							categoryParents.put(id, result.getLong(3));
+							String type = result.getString(4);
+							if (type != null)
+								categoryTypes.put(id, ModelType.valueOf(type));
+							return true;
+						}
+					});
+		} catch (Exception e) {
+			log.error("failed to load categories", e);
+		}
+		indexCategoryPaths();
+	}
+
+	private void indexCategoryPaths() {
+		categoryPaths = new EnumMap<>(ModelType.class);
+		for (long id : categoryNames.keys()) {
+			ModelType type = categoryTypes.get(id);
+			if (type == null)
+				continue;
+			Map<String, Long> paths = categoryPaths.get(type);
+			if (paths == null) {
+				paths = new HashMap<>();
+				categoryPaths.put(type, paths);
+			}
+			paths.put(path(id), id);
+		}
+	}
+
+	private String path(long categoryId) {
+		String name = categoryNames.get(categoryId);
+		if (name == null)
+			return null;
+		StringBuilder path = new StringBuilder(name);
+		long parent = categoryParents.get(categoryId);
+		int depth = 0;
+		while (parent != 0 && depth++ < 100) {
+			String parentName = categoryNames.get(parent);
+			if (parentName == null)
+				break;
+			path.insert(0, '/').insert(0, parentName);
+			parent = categoryParents.get(parent);
+		}
+		return path.toString();
+	}
+
+	private synchronized void entityWritten(Object entity) {
+		if (entity instanceof Category) {
+			categoryNames = null;
+			return;
+		}
+		if (!(entity instanceof RootEntity))
+			return;
+		RootEntity rootEntity = (RootEntity) entity;
+		ModelType type = ModelType.forModelClass(entity.getClass());
+		DescriptorSegment segment = segments.get(type);
+		if (segment == null)
+			return;
+		BaseDescriptor descriptor = Descriptors.toDescriptor(rootEntity);
+		descriptor.setType(type);
+		long category = 0;
+		if (entity instanceof CategorizedEntity) {
+			Category c = ((CategorizedEntity) entity).getCategory();
+			category = c == null ? 0 : c.getId();
+		}
+		segment.put(descriptor, category);
+	}
+
+	private synchronized void entityDeleted(Object entity) {
+		if (entity instanceof Category) {
+			categoryNames = null;
+			return;
+		}
+		if (!(entity instanceof RootEntity))
+			return;
+		ModelType type = ModelType.forModelClass(entity.getClass());
+		DescriptorSegment segment = segments.get(type);
+		if (segment != null)
+			segment.remove(((RootEntity) entity).getId());
+	}
+
+}
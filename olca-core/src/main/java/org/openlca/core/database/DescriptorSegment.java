@@ -0,0 +1,317 @@
+package org.openlca.core.database;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.ProcessType;
+import org.openlca.core.model.descriptors.BaseDescriptor;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
+import org.openlca.core.model.descriptors.FlowDescriptor;
+import org.openlca.core.model.descriptors.ProcessDescriptor;
+
+/**
+ * The descriptors of one model type in the {@link DescriptorIndex}. The fields
+ * of the descriptors are stored in columns where a row is identified by its
+ * position: the common fields (ID, reference ID, name, description, category)
+ * and the fields of flow and process descriptors (location, flow or process
+ * type, reference flow property or quantitative reference, infrastructure
+ * flag). A new descriptor is created from a row for each request so that
+ * clients cannot change the data of the index. The lower case names are
+ * indexed by their trigrams (three consecutive characters) so that a
+ * substring search only needs to check the rows of the rarest trigram of the
+ * search term. Deleted rows are only marked as deleted (with an ID of 0); the
+ * segment is compacted when more than half of the rows are deleted.
+ */
+class DescriptorSegment {
+
+	private final ModelType type;
+	private Class<? extends BaseDescriptor> descriptorClass;
+
+	private int size;
+	private int deleted;
+	private long[] ids = new long[16];
+	private String[] refIds = new String[16];
+	private String[] names = new String[16];
+	private String[] keys = new String[16];
+	private String[] descriptions = new String[16];
+	private long[] categories = new long[16];
+	private long[] locations = new long[16];
+	private long[] refs = new long[16];
+	private byte[] kinds = new byte[16];
+	private boolean[] flags = new boolean[16];
+
+	private final TLongIntHashMap rows = new TLongIntHashMap();
+	private final TLongObjectHashMap<TIntArrayList> trigrams = new TLongObjectHashMap<>();
+
+	DescriptorSegment(ModelType type) {
+		this.type = type;
+	}
+
+	int getCount() {
+		return size - deleted;
+	}
+
+	/**
+	 * Adds or replaces the data of the given descriptor. A category ID of 0
+	 * means that the descriptor is not in a category.
+	 */
+	void put(BaseDescriptor descriptor, long category) {
+		if (descriptor == null)
+			return;
+		remove(descriptor.getId());
+		if (descriptorClass == null)
+			descriptorClass = descriptor.getClass();
+		if (size == ids.length)
+			grow();
+		int row = size++;
+		ids[row] = descriptor.getId();
+		refIds[row] = descriptor.getRefId();
+		names[row] = descriptor.getName();
+		keys[row] = lowerCase(descriptor.getName());
+		descriptions[row] = descriptor.getDescription();
+		categories[row] = category;
+		putFields(row, descriptor);
+		rows.put(descriptor.getId(), row);
+		for (long trigram : trigrams(keys[row]).toArray()) {
+			TIntArrayList list = trigrams.get(trigram);
+			if (list == null) {
+				list = new TIntArrayList();
+				trigrams.put(trigram, list);
+			}
+			list.add(row);
+		}
+	}
+
+	private void putFields(int row, BaseDescriptor descriptor) {
+		locations[row] = 0;
+		refs[row] = 0;
+		kinds[row] = -1;
+		flags[row] = false;
+		if (descriptor instanceof FlowDescriptor) {
+			FlowDescriptor flow = (FlowDescriptor) descriptor;
+			locations[row] = id(flow.getLocation());
+			refs[row] = flow.getRefFlowPropertyId();
+			if (flow.getFlowType() != null)
+				kinds[row] = (byte) flow.getFlowType().ordinal();
+		} else if (descriptor instanceof ProcessDescriptor) {
+			ProcessDescriptor process = (ProcessDescriptor) descriptor;
+			locations[row] = id(process.getLocation());
+			refs[row] = id(process.getQuantitativeReference());
+			if (process.getProcessType() != null)
+				kinds[row] = (byte) process.getProcessType().ordinal();
+			flags[row] = process.isInfrastructureProcess();
+		}
+	}
+
+	/** Creates a new descriptor from the data in the given row. */
+	private BaseDescriptor descriptor(int row) {
+		BaseDescriptor d = newDescriptor();
+		d.setId(ids[row]);
+		d.setRefId(refIds[row]);
+		d.setName(names[row]);
+		d.setDescription(descriptions[row]);
+		if (type != null)
+			d.setType(type);
+		if (d instanceof CategorizedDescriptor)
+			((CategorizedDescriptor) d).setCategory(ref(categories[row]));
+		if (d instanceof FlowDescriptor) {
+			FlowDescriptor flow = (FlowDescriptor) d;
+			flow.setLocation(ref(locations[row]));
+			flow.setRefFlowPropertyId(refs[row]);
+			if (kinds[row] >= 0)
+				flow.setFlowType(FlowType.values()[kinds[row]]);
+		} else if (d instanceof ProcessDescriptor) {
+			ProcessDescriptor process = (ProcessDescriptor) d;
+			process.setLocation(ref(locations[row]));
+			process.setQuantitativeReference(ref(refs[row]));
+			if (kinds[row] >= 0)
+				process.setProcessType(ProcessType.values()[kinds[row]]);
+			process.setInfrastructureProcess(flags[row]);
+		}
+		return d;
+	}
+
+	private BaseDescriptor newDescriptor() {
+		if (descriptorClass == null)
+			return new BaseDescriptor();
+		try {
+			return descriptorClass.newInstance();
+		} catch (Exception e) {
+			return new BaseDescriptor();
+		}
+	}
+
+	private long id(Long ref) {
+		return ref == null ? 0 : ref;
+	}
+
+	private Long ref(long id) {
+		return id == 0 ? null : id;
+	}
+
+	void remove(long id) {
+		if (!rows.containsKey(id))
+			return;
+		int row = rows.remove(id);
+		ids[row] = 0;
+		refIds[row] = null;
+		names[row] = null;
+		keys[row] = null;
+		descriptions[row] = null;
+		deleted++;
+		if (deleted > 64 && deleted > size / 2)
+			compact();
+	}
+
+	BaseDescriptor get(long id) {
+		if (!rows.containsKey(id))
+			return null;
+		return descriptor(rows.get(id));
+	}
+
+	long getCategory(long id) {
+		if (!rows.containsKey(id))
+			return 0;
+		return categories[rows.get(id)];
+	}
+
+	void setCategory(long id, long category) {
+		if (!rows.containsKey(id))
+			return;
+		categories[rows.get(id)] = category;
+	}
+
+	List<BaseDescriptor> getAll() {
+		List<BaseDescriptor> list = new ArrayList<>(getCount());
+		for (int row = 0; row < size; row++) {
+			if (ids[row] != 0)
+				list.add(descriptor(row));
+		}
+		return list;
+	}
+
+	List<BaseDescriptor> getForCategory(long category) {
+		List<BaseDescriptor> list = new ArrayList<>();
+		for (int row = 0; row < size; row++) {
+			if (categories[row] == category && ids[row] != 0)
+				list.add(descriptor(row));
+		}
+		return list;
+	}
+
+	/** Returns the descriptors with exactly the given name (case sensitive). */
+	List<BaseDescriptor> getForName(String name) {
+		List<BaseDescriptor> list = new ArrayList<>();
+		if (name == null)
+			return list;
+		for (int row : candidates(lowerCase(name))) {
+			if (ids[row] != 0 && name.equals(names[row]))
+				list.add(descriptor(row));
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the descriptors which names contain (or start with if the prefix
+	 * flag is set) the given text, ignoring the case.
+	 */
+	List<BaseDescriptor> search(String text, boolean prefix) {
+		List<BaseDescriptor> list = new ArrayList<>();
+		if (text == null)
+			return list;
+		String term = lowerCase(text);
+		for (int row : candidates(term)) {
+			String key = keys[row];
+			if (key == null)
+				continue;
+			boolean match = prefix ? key.startsWith(term) : key.contains(term);
+			if (match)
+				list.add(descriptor(row));
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the rows that can contain the given lower case term: these are
+	 * all rows for terms with less than three characters and the rows of the
+	 * rarest trigram of the term otherwise.
+	 */
+	private int[] candidates(String term) {
+		if (term.length() < 3) {
+			int[] all = new int[size];
+			for (int row = 0; row < size; row++)
+				all[row] = row;
+			return all;
+		}
+		TIntArrayList rarest = null;
+		for (long trigram : trigrams(term).toArray()) {
+			TIntArrayList list = trigrams.get(trigram);
+			if (list == null)
+				return new int[0];
+			if (rarest == null || list.size() < rarest.size())
+				rarest = list;
+		}
+		return rarest == null ? new int[0] : rarest.toArray();
+	}
+
+	private TLongHashSet trigrams(String name) {
+		TLongHashSet set = new TLongHashSet();
+		for (int i = 0; i + 3 <= name.length(); i++) {
+			long trigram = ((long) name.charAt(i) << 32)
+					| ((long) name.charAt(i + 1) << 16) | name.charAt(i + 2);
+			set.add(trigram);
+		}
+		return set;
+	}
+
+	private String lowerCase(String name) {
+		return name == null ? "" : name.toLowerCase(Locale.ENGLISH);
+	}
+
+	private void grow() {
+		int capacity = ids.length * 2;
+		ids = Arrays.copyOf(ids, capacity);
+		refIds = Arrays.copyOf(refIds, capacity);
+		names = Arrays.copyOf(names, capacity);
+		keys = Arrays.copyOf(keys, capacity);
+		descriptions = Arrays.copyOf(descriptions, capacity);
+		categories = Arrays.copyOf(categories, capacity);
+		locations = Arrays.copyOf(locations, capacity);
+		refs = Arrays.copyOf(refs, capacity);
+		kinds = Arrays.copyOf(kinds, capacity);
+		flags = Arrays.copyOf(flags, capacity);
+	}
+
+	private void compact() {
+		List<BaseDescriptor> descriptors = getAll();
+		long[] oldCategories = new long[descriptors.size()];
+		for (int i = 0; i < descriptors.size(); i++)
+			oldCategories[i] = categories[rows.get(descriptors.get(i).getId())];
+		int capacity = Math.max(16, descriptors.size() * 2);
+		size = 0;
+		deleted = 0;
+		ids = new long[capacity];
+		refIds = new String[capacity];
+		names = new String[capacity];
+		keys = new String[capacity];
+		descriptions = new String[capacity];
+		categories = new long[capacity];
+		locations = new long[capacity];
+		refs = new long[capacity];
+		kinds = new byte[capacity];
+		flags = new boolean[capacity];
+		rows.clear();
+		trigrams.clear();
+		for (int i = 0; i < descriptors.size(); i++)
+			put(descriptors.get(i), oldCategories[i]);
+	}
+}
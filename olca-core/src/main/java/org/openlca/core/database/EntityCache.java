@@ -1,14 +1,20 @@
 package org.openlca.core.database;
 
-import java.util.ArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openlca.core.model.AbstractEntity;
 import org.openlca.core.model.descriptors.ActorDescriptor;
@@ -25,118 +31,390 @@ import org.openlca.core.model.descriptors.UnitGroupDescriptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Optional;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.cache.CacheStats;
 
 /**
  * A loading cache for entities and descriptors. This cache is intended to be
  * used for caching entities that are used very often (like unit groups or flow
  * properties) and descriptors.
+ *
+ * The cache has a segment for each class which maps the IDs directly to the
+ * cached values so that a lookup does not allocate key objects. Each segment
+ * holds at most the configured maximum number of values; when it is full the
+ * least recently used value is removed. Multiple values should be requested
+ * via {@link #getAll(Class, long[])} or {@link #prefetch(Class, long[])} which
+ * load the missing values with one query per chunk of IDs.
  */
 public class EntityCache {
 
+	/** The default maximum number of cached values per class. */
+	public static final int DEFAULT_MAX_SIZE = 50_000;
+
+	/** Marks an ID for which no value exists in the database. */
+	private static final Object ABSENT = new Object();
+
 	private Logger log = LoggerFactory.getLogger(getClass());
-	private LoadingCache<Key, Object> cache;
+	private final Loader loader;
+	private final int maxSize;
+	private final ConcurrentMap<Class<?>, Segment> segments = new ConcurrentHashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong loadSuccesses = new AtomicLong();
+	private final AtomicLong loadFailures = new AtomicLong();
+	private final AtomicLong loadTime = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
 
 	public static EntityCache create(IDatabase database) {
-		return new EntityCache(database);
+		return new EntityCache(database, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Creates a cache that holds at most the given number of values per class.
+	 */
+	public static EntityCache create(IDatabase database, int maxSize) {
+		return new EntityCache(database, maxSize);
 	}
 
-	private EntityCache(IDatabase database) {
-		cache = CacheBuilder.newBuilder().build(new Loader(database));
+	private EntityCache(IDatabase database, int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("invalid cache size " + maxSize);
+		this.loader = new Loader(database);
+		this.maxSize = maxSize;
 	}
 
 	public <T> T get(Class<T> clazz, long id) {
+		Segment segment = segment(clazz);
+		Object obj;
+		synchronized (segment) {
+			obj = segment.get(id);
+		}
+		if (obj != null) {
+			hits.incrementAndGet();
+			return obj == ABSENT ? null : clazz.cast(obj);
+		}
+		misses.incrementAndGet();
+		long start = System.nanoTime();
 		try {
-			Object obj = cache.get(Key.get(clazz, id));
-			if (obj instanceof Optional)
-				return null;
-			return clazz.cast(obj);
+			obj = loader.load(clazz, id);
+			loadSuccesses.incrementAndGet();
 		} catch (Exception e) {
+			loadFailures.incrementAndGet();
 			log.error("failed to get from cache " + clazz + " with id " + id, e);
 			return null;
+		} finally {
+			loadTime.addAndGet(System.nanoTime() - start);
 		}
+		put(segment, id, obj);
+		return obj == null ? null : clazz.cast(obj);
 	}
 
 	public <T> Map<Long, T> getAll(Class<T> clazz, Collection<Long> ids) {
-		List<Key> keys = new ArrayList<>(ids.size());
-		for (long id : ids) {
-			keys.add(Key.get(clazz, id));
+		if (ids == null || ids.isEmpty())
+			return Collections.emptyMap();
+		TLongArrayList list = new TLongArrayList(ids.size());
+		for (Long id : ids) {
+			if (id != null)
+				list.add(id);
 		}
-		try {
-			Map<Key, Object> values = cache.getAll(keys);
-			Map<Long, T> result = new HashMap<>(values.size());
-			for (Key key : values.keySet()) {
-				Object obj = values.get(key);
-				if (obj instanceof Optional)
-					continue;
-				result.put(key.id, clazz.cast(obj));
+		return getAll(clazz, list.toArray());
+	}
+
+	/**
+	 * Returns the values for the given IDs. IDs for which no value exists are
+	 * not contained in the returned map. The missing values are loaded in bulk.
+	 */
+	public <T> Map<Long, T> getAll(Class<T> clazz, long[] ids) {
+		if (ids == null || ids.length == 0)
+			return Collections.emptyMap();
+		Map<Long, T> result = new HashMap<>(ids.length * 2);
+		Segment segment = segment(clazz);
+		TLongArrayList missing = new TLongArrayList();
+		synchronized (segment) {
+			for (long id : ids) {
+				Object obj = segment.get(id);
+				if (obj == null)
+					missing.add(id);
+				else if (obj != ABSENT)
+					result.put(id, clazz.cast(obj));
 			}
+		}
+		hits.addAndGet(ids.length - missing.size());
+		misses.addAndGet(missing.size());
+		if (missing.isEmpty())
 			return result;
-		} catch (Exception e) {
-			log.error("failed to get entities from cache: " + clazz, e);
-			return Collections.emptyMap();
+		TLongObjectHashMap<Object> loaded = loadAll(clazz, segment,
+				missing.toArray());
+		for (long id : loaded.keys()) {
+			Object obj = loaded.get(id);
+			if (obj != ABSENT)
+				result.put(id, clazz.cast(obj));
+		}
+		return result;
+	}
+
+	/**
+	 * Loads the values for the given IDs that are not yet cached, e.g. the
+	 * descriptors of all flows of a flow index before a result table is
+	 * rendered.
+	 */
+	public void prefetch(Class<?> clazz, long[] ids) {
+		if (ids == null || ids.length == 0)
+			return;
+		Segment segment = segment(clazz);
+		TLongArrayList missing = new TLongArrayList();
+		synchronized (segment) {
+			for (long id : ids) {
+				if (!segment.contains(id))
+					missing.add(id);
+			}
+		}
+		if (!missing.isEmpty())
+			loadAll(clazz, segment, missing.toArray());
+	}
+
+	public void prefetch(Class<?> clazz, Collection<Long> ids) {
+		if (ids == null || ids.isEmpty())
+			return;
+		TLongArrayList list = new TLongArrayList(ids.size());
+		for (Long id : ids) {
+			if (id != null)
+				list.add(id);
 		}
+		prefetch(clazz, list.toArray());
 	}
 
 	public void invalidate(Class<?> clazz, long id) {
-		cache.invalidate(Key.get(clazz, id));
+		Segment segment = segments.get(clazz);
+		if (segment == null)
+			return;
+		synchronized (segment) {
+			segment.remove(id);
+		}
 	}
 
 	public void refresh(Class<?> clazz, long id) {
-		cache.refresh(Key.get(clazz, id));
+		invalidate(clazz, id);
+		get(clazz, id);
 	}
 
 	public void invalidateAll() {
-		cache.invalidateAll();
+		for (Segment segment : segments.values()) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
 	}
 
 	public void invalidateAll(Class<?> clazz, Collection<Long> ids) {
-		List<Key> keys = new ArrayList<>(ids.size());
-		for (long id : ids) {
-			keys.add(Key.get(clazz, id));
+		Segment segment = segments.get(clazz);
+		if (segment == null || ids == null)
+			return;
+		synchronized (segment) {
+			for (Long id : ids) {
+				if (id != null)
+					segment.remove(id);
+			}
+		}
+	}
+
+	/** Returns the number of values that are currently in the cache. */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments.values()) {
+			synchronized (segment) {
+				size += segment.size;
+			}
 		}
-		cache.invalidateAll(keys);
+		return size;
 	}
 
-	private static class Key {
+	/** Returns the statistics of this cache since its creation. */
+	public CacheStats getStats() {
+		return new CacheStats(hits.get(), misses.get(), loadSuccesses.get(),
+				loadFailures.get(), loadTime.get(), evictions.get());
+	}
 
-		private final Class<?> clazz;
-		private final long id;
+	private Segment segment(Class<?> clazz) {
+		Segment segment = segments.get(clazz);
+		if (segment != null)
+			return segment;
+		segment = new Segment(maxSize);
+		Segment other = segments.putIfAbsent(clazz, segment);
+		return other != null ? other : segment;
+	}
 
-		private static Key get(Class<?> clazz, long id) {
-			return new Key(clazz, id);
+	private void put(Segment segment, long id, Object obj) {
+		synchronized (segment) {
+			if (segment.put(id, obj == null ? ABSENT : obj))
+				evictions.incrementAndGet();
 		}
+	}
 
-		private Key(Class<?> clazz, long id) {
-			this.clazz = clazz;
-			this.id = id;
+	private TLongObjectHashMap<Object> loadAll(Class<?> clazz,
+			Segment segment, long[] ids) {
+		long start = System.nanoTime();
+		TLongObjectHashMap<Object> loaded = new TLongObjectHashMap<>();
+		try {
+			for (int from = 0; from < ids.length; from += BaseDao.MAX_LIST_SIZE) {
+				int to = Math.min(ids.length, from + BaseDao.MAX_LIST_SIZE);
+				loader.loadAll(clazz, Arrays.copyOfRange(ids, from, to), loaded);
+			}
+			loadSuccesses.incrementAndGet();
+		} catch (Exception e) {
+			loadFailures.incrementAndGet();
+			log.error("failed to get entities from cache: " + clazz, e);
+			return loaded;
+		} finally {
+			loadTime.addAndGet(System.nanoTime() - start);
 		}
+		synchronized (segment) {
+			for (long id : ids) {
+				Object obj = loaded.get(id);
+				if (obj == null) {
+					obj = ABSENT;
+					loaded.put(id, obj);
+				}
+				if (segment.put(id, obj))
+					evictions.incrementAndGet();
+			}
+		}
+		return loaded;
+	}
 
-		@Override
-		public boolean equals(Object obj) {
-			if (obj == this)
-				return true;
-			if (obj == null)
-				return false;
-			if (!(obj instanceof Key))
+	/**
+	 * The cached values of a class. The values are stored in slots which are
+	 * linked in the order of their last access (most recently used first).
+	 * Removed slots are linked in a free list and reused. The segment is not
+	 * thread safe; the cache synchronizes the access on the segment.
+	 */
+	private static class Segment {
+
+		private final int maxSize;
+		private final TLongIntHashMap slots = new TLongIntHashMap(16, 0.5f,
+				-1L, -1);
+
+		private long[] keys = new long[16];
+		private Object[] values = new Object[16];
+		private int[] prev = new int[16];
+		private int[] next = new int[16];
+
+		private int size;
+		private int used;
+		private int head = -1;
+		private int tail = -1;
+		private int free = -1;
+
+		Segment(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		boolean contains(long id) {
+			return slots.containsKey(id);
+		}
+
+		/** Returns the value of the given ID or null if it is not cached. */
+		Object get(long id) {
+			int slot = slots.get(id);
+			if (slot < 0)
+				return null;
+			if (slot != head) {
+				unlink(slot);
+				linkFirst(slot);
+			}
+			return values[slot];
+		}
+
+		/**
+		 * Adds or replaces the value of the given ID. Returns true if another
+		 * value was removed from the segment to make room for the value.
+		 */
+		boolean put(long id, Object value) {
+			int slot = slots.get(id);
+			if (slot >= 0) {
+				values[slot] = value;
+				if (slot != head) {
+					unlink(slot);
+					linkFirst(slot);
+				}
 				return false;
-			Key other = (Key) obj;
-			return this.id == other.id
-					&& Objects.equals(this.clazz, other.clazz);
+			}
+			boolean evicted = false;
+			if (size >= maxSize) {
+				remove(keys[tail]);
+				evicted = true;
+			}
+			slot = newSlot();
+			keys[slot] = id;
+			values[slot] = value;
+			slots.put(id, slot);
+			linkFirst(slot);
+			size++;
+			return evicted;
 		}
 
-		@Override
-		public int hashCode() {
-			return Objects.hash(id, clazz);
+		void remove(long id) {
+			int slot = slots.remove(id);
+			if (slot < 0)
+				return;
+			unlink(slot);
+			values[slot] = null;
+			next[slot] = free;
+			free = slot;
+			size--;
+		}
+
+		void clear() {
+			slots.clear();
+			Arrays.fill(values, null);
+			size = 0;
+			used = 0;
+			head = -1;
+			tail = -1;
+			free = -1;
+		}
+
+		private int newSlot() {
+			if (free >= 0) {
+				int slot = free;
+				free = next[slot];
+				return slot;
+			}
+			if (used == keys.length) {
+				int capacity = Math.min(Math.max(16, maxSize), keys.length * 2);
+				keys = Arrays.copyOf(keys, capacity);
+				values = Arrays.copyOf(values, capacity);
+				prev = Arrays.copyOf(prev, capacity);
+				next = Arrays.copyOf(next, capacity);
+			}
+			return used++;
+		}
+
+		private void linkFirst(int slot) {
+			prev[slot] = -1;
+			next[slot] = head;
+			if (head >= 0)
+				prev[head] = slot;
+			head = slot;
+			if (tail < 0)
+				tail = slot;
+		}
+
+		private void unlink(int slot) {
+			int p = prev[slot];
+			int n = next[slot];
+			if (p >= 0)
+				next[p] = n;
+			else
+				head = n;
+			if (n >= 0)
+				prev[n] = p;
+			else
+				tail = p;
 		}
 	}
 
-	private static class Loader extends CacheLoader<Key, Object> {
+	private static class Loader {
 
 		private Logger log = LoggerFactory.getLogger(getClass());
 		private final IDatabase database;
@@ -170,81 +448,59 @@ public class EntityCache {
 					new ImpactCategoryDao(database));
 		}
 
-		@Override
-		public Map<Key, Object> loadAll(Iterable<? extends Key> keys)
-				throws Exception {
-			Multimap<Class<?>, Long> idMap = ArrayListMultimap.create();
-			for (Key key : keys)
-				idMap.put(key.clazz, key.id);
-			Set<Class<?>> classes = idMap.keySet();
-			HashMap<Key, Object> result = new HashMap<>();
-			for (Class<?> clazz : classes) {
-				Collection<Long> ids = idMap.get(clazz);
-				if (ids.isEmpty())
-					continue;
-				if (BaseDescriptor.class.isAssignableFrom(clazz))
-					loadDescriptors(clazz, ids, result);
-				else
-					loadFullEntities(clazz, ids, result);
-			}
-			for (Key key : keys) {
-				if (!result.containsKey(key))
-					result.put(key, Optional.absent());
-			}
-			return result;
+		void loadAll(Class<?> clazz, long[] ids,
+				TLongObjectHashMap<Object> result) {
+			Set<Long> idSet = new HashSet<>(ids.length * 2);
+			for (long id : ids)
+				idSet.add(id);
+			if (BaseDescriptor.class.isAssignableFrom(clazz))
+				loadDescriptors(clazz, idSet, result);
+			else
+				loadFullEntities(clazz, idSet, result);
 		}
 
-		private void loadFullEntities(Class<?> clazz, Collection<Long> ids,
-				HashMap<Key, Object> result) {
+		private void loadFullEntities(Class<?> clazz, Set<Long> ids,
+				TLongObjectHashMap<Object> result) {
 			BaseDao<?> dao = getDao(clazz);
-			List<?> entities = dao.getForIds(new HashSet<>(ids));
+			List<?> entities = dao.getForIds(ids);
 			for (Object obj : entities) {
 				AbstractEntity entity = (AbstractEntity) obj;
-				result.put(Key.get(clazz, entity.getId()), entity);
+				result.put(entity.getId(), entity);
 			}
 		}
 
-		private void loadDescriptors(Class<?> clazz, Collection<Long> ids,
-				HashMap<Key, Object> result) {
+		private void loadDescriptors(Class<?> clazz, Set<Long> ids,
+				TLongObjectHashMap<Object> result) {
 			RootEntityDao<?, ?> dao = descriptorDaos.get(clazz);
 			if (dao == null) {
 				log.error("unknown descriptor class {}, returning null", clazz);
 				return;
 			}
 			List<? extends BaseDescriptor> descriptors = dao
-					.getDescriptors(new HashSet<>(ids));
+					.getDescriptors(ids);
 			for (BaseDescriptor descriptor : descriptors)
-				result.put(Key.get(clazz, descriptor.getId()), descriptor);
+				result.put(descriptor.getId(), descriptor);
 		}
 
-		@Override
-		public Object load(Key key) throws Exception {
-			if (key == null || key.clazz == null)
+		Object load(Class<?> clazz, long id) {
+			if (clazz == null)
 				return null;
-			Object obj = null;
-			if (BaseDescriptor.class.isAssignableFrom(key.clazz))
-				obj = loadDescriptor(key);
+			if (BaseDescriptor.class.isAssignableFrom(clazz))
+				return loadDescriptor(clazz, id);
 			else
-				obj = loadFull(key);
-			return obj != null ? obj : Optional.absent();
+				return getDao(clazz).getForId(id);
 		}
 
-		private Object loadDescriptor(Key key) {
-			RootEntityDao<?, ?> dao = descriptorDaos.get(key.clazz);
+		private Object loadDescriptor(Class<?> clazz, long id) {
+			RootEntityDao<?, ?> dao = descriptorDaos.get(clazz);
 			if (dao == null) {
-				log.error("unknown descriptor class {}, returning null",
-						key.clazz);
+				log.error("unknown descriptor class {}, returning null", clazz);
 				return null;
 			}
-			return dao.getDescriptor(key.id);
-		}
-
-		private Object loadFull(Key key) {
-			BaseDao<?> dao = getDao(key.clazz);
-			return dao.getForId(key.id);
+			return dao.getDescriptor(id);
 		}
 
-		private BaseDao<?> getDao(Class<?> clazz) {
+		private synchronized BaseDao<?> getDao(Class<?> clazz) {
 			BaseDao<?> dao = daos.get(clazz);
 			if (dao == null) {
 				log.trace("register class {}", clazz);
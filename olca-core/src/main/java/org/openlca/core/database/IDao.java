@@ -17,6 +17,18 @@ public interface IDao<T> {
 
 	T insert(T entity);
 
+	/**
+	 * Inserts the given entities in chunked transactions. This is much faster
+	 * than inserting the entities one by one.
+	 */
+	List<T> insertAll(Collection<T> entities);
+
+	/**
+	 * Updates the given entities in chunked transactions and returns the
+	 * updated (and detached) entities in the same order.
+	 */
+	List<T> updateAll(Collection<T> entities);
+
 	T getForId(long id);
 
 	List<T> getForIds(Set<Long> ids);
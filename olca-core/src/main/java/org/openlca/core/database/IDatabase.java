@@ -23,6 +23,13 @@ public interface IDatabase extends Closeable {
 	 */
 	Connection createConnection();
 
+	/**
+	 * Returns true if the connections of this database are taken from a
+	 * connection pool. In this case, clients can run queries in parallel on
+	 * multiple connections without the costs of opening new connections.
+	 */
+	boolean isConnectionPooled();
+
 	/**
 	 * Returns the entity manager factory from the database.
 	 */
@@ -16,9 +16,11 @@ import org.openlca.core.database.BaseDao;
 import org.openlca.core.database.DatabaseContent;
 import org.openlca.core.database.DatabaseException;
 import org.openlca.core.database.DbUtils;
+import org.openlca.core.database.DescriptorIndex;
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.internal.Resource;
 import org.openlca.core.database.internal.ScriptRunner;
+import org.openlca.core.database.usage.UsageIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -166,6 +168,8 @@ public class DerbyDatabase implements IDatabase {
 		if (closed)
 			return;
 		log.trace("close database: {}", url);
+		UsageIndex.remove(this);
+		DescriptorIndex.remove(this);
 		if (entityFactory != null && entityFactory.isOpen())
 			entityFactory.close();
 		if (connectionPool != null)
@@ -194,6 +198,11 @@ public class DerbyDatabase implements IDatabase {
 		}
 	}
 
+	@Override
+	public boolean isConnectionPooled() {
+		return connectionPool != null;
+	}
+
 	@Override
 	public Connection createConnection() {
 		log.trace("create connection: {}", url);
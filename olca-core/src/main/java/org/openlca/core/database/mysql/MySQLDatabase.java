@@ -12,7 +12,9 @@ import org.eclipse.persistence.jpa.PersistenceProvider;
 import org.openlca.core.database.BaseDao;
 import org.openlca.core.database.DatabaseException;
 import org.openlca.core.database.DbUtils;
+import org.openlca.core.database.DescriptorIndex;
 import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.usage.UsageIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -95,6 +97,11 @@ public class MySQLDatabase implements IDatabase {
 		return entityFactory;
 	}
 
+	@Override
+	public boolean isConnectionPooled() {
+		return connectionPool != null;
+	}
+
 	@Override
 	public Connection createConnection() {
 		log.trace("create connection mysql: {} @ {}", user, url);
@@ -116,6 +123,8 @@ public class MySQLDatabase implements IDatabase {
 	@Override
 	public void close() {
 		log.trace("close database mysql: {} @ {}", user, url);
+		UsageIndex.remove(this);
+		DescriptorIndex.remove(this);
 		try {
 			if (entityFactory != null && entityFactory.isOpen())
 				entityFactory.close();
@@ -9,6 +9,7 @@ import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.ProcessDao;
 import org.openlca.core.database.Query;
 import org.openlca.core.model.Actor;
+import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.ActorDescriptor;
 import org.openlca.core.model.descriptors.BaseDescriptor;
 import org.openlca.core.model.descriptors.Descriptors;
@@ -37,6 +38,12 @@ public class ActorUseSearch implements IUseSearch<ActorDescriptor> {
 	public List<BaseDescriptor> findUses(ActorDescriptor actor) {
 		if (actor == null)
 			return Collections.emptyList();
+		List<BaseDescriptor> uses = UsageIndex.on(database).find(
+				ModelType.ACTOR, actor);
+		return uses != null ? uses : search(actor);
+	}
+
+	private List<BaseDescriptor> search(ActorDescriptor actor) {
 		List<? extends BaseDescriptor> processDescriptors = findInProcesses(actor);
 		List<BaseDescriptor> projectDescriptors = findInProjects(actor);
 		List<BaseDescriptor> results = new ArrayList<>(
@@ -13,6 +13,7 @@ import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.NativeSql;
 import org.openlca.core.database.Query;
 import org.openlca.core.model.FlowProperty;
+import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.BaseDescriptor;
 import org.openlca.core.model.descriptors.Descriptors;
 import org.openlca.core.model.descriptors.FlowDescriptor;
@@ -44,6 +45,12 @@ public class FlowPropertyUseSearch implements
 	public List<BaseDescriptor> findUses(FlowPropertyDescriptor prop) {
 		if (prop == null)
 			return Collections.emptyList();
+		List<BaseDescriptor> uses = UsageIndex.on(database).find(
+				ModelType.FLOW_PROPERTY, prop);
+		return uses != null ? uses : search(prop);
+	}
+
+	private List<BaseDescriptor> search(FlowPropertyDescriptor prop) {
 		List<FlowDescriptor> flows = findInFlows(prop);
 		List<BaseDescriptor> unitGroups = findInUnitGroups(prop);
 		List<BaseDescriptor> results = new ArrayList<>(flows.size()
@@ -14,6 +14,7 @@ import org.openlca.core.database.ImpactMethodDao;
 import org.openlca.core.database.NativeSql;
 import org.openlca.core.database.ProcessDao;
 import org.openlca.core.model.Flow;
+import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.BaseDescriptor;
 import org.openlca.core.model.descriptors.Descriptors;
 import org.openlca.core.model.descriptors.FlowDescriptor;
@@ -43,6 +44,12 @@ public class FlowUseSearch implements IUseSearch<FlowDescriptor> {
 	public List<BaseDescriptor> findUses(FlowDescriptor flow) {
 		if (flow == null)
 			return Collections.emptyList();
+		List<BaseDescriptor> uses = UsageIndex.on(database).find(
+				ModelType.FLOW, flow);
+		return uses != null ? uses : search(flow);
+	}
+
+	private List<BaseDescriptor> search(FlowDescriptor flow) {
 		List<ProcessDescriptor> processes = findInProcesses(flow);
 		List<ImpactMethodDescriptor> methods = findInMethods(flow);
 		List<BaseDescriptor> descriptors = new ArrayList<>(processes.size()
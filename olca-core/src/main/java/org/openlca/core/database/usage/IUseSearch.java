@@ -6,7 +6,11 @@ import org.openlca.core.database.IDatabase;
 import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.BaseDescriptor;
 
-/** Search of entities where another entity is used. */
+/**
+ * Search of entities where another entity is used. The implementations look
+ * up the uses in the {@link UsageIndex} of the database and only run their own
+ * queries when this index could not be built.
+ */
 public interface IUseSearch<T> {
 
 	/**
@@ -9,6 +9,7 @@ import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.ProjectDao;
 import org.openlca.core.database.Query;
 import org.openlca.core.model.ImpactMethod;
+import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.BaseDescriptor;
 import org.openlca.core.model.descriptors.Descriptors;
 import org.openlca.core.model.descriptors.ImpactMethodDescriptor;
@@ -35,6 +36,12 @@ public class ImpactMethodUseSearch implements
 	public List<BaseDescriptor> findUses(ImpactMethodDescriptor method) {
 		if (method == null)
 			return Collections.emptyList();
+		List<BaseDescriptor> uses = UsageIndex.on(database).find(
+				ModelType.IMPACT_METHOD, method);
+		return uses != null ? uses : search(method);
+	}
+
+	private List<BaseDescriptor> search(ImpactMethodDescriptor method) {
 		String jpql = "select p.id from Project p where p.impactMethodId = :methodId";
 		List<Long> idList = Query.on(database).getAll(Long.class, jpql,
 				Collections.singletonMap("methodId", method.getId()));
@@ -8,6 +8,7 @@ import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.Query;
 import org.openlca.core.model.FlowType;
 import org.openlca.core.model.Location;
+import org.openlca.core.model.ModelType;
 import org.openlca.core.model.ProcessType;
 import org.openlca.core.model.descriptors.BaseDescriptor;
 import org.openlca.core.model.descriptors.Descriptors;
@@ -37,6 +38,12 @@ public class LocationUseSearch implements IUseSearch<BaseDescriptor> {
 	public List<BaseDescriptor> findUses(BaseDescriptor location) {
 		if (location == null)
 			return Collections.emptyList();
+		List<BaseDescriptor> uses = UsageIndex.on(database).find(
+				ModelType.LOCATION, location);
+		return uses != null ? uses : search(location);
+	}
+
+	private List<BaseDescriptor> search(BaseDescriptor location) {
 		List<BaseDescriptor> locations = findInFlows(location);
 		List<BaseDescriptor> processes = findInProcesses(location);
 		List<BaseDescriptor> descriptors = new ArrayList<>(locations.size()
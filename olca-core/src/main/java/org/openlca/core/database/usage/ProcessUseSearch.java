@@ -6,6 +6,7 @@ import java.util.List;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.Query;
+import org.openlca.core.model.ModelType;
 import org.openlca.core.model.Process;
 import org.openlca.core.model.descriptors.BaseDescriptor;
 import org.openlca.core.model.descriptors.Descriptors;
@@ -35,6 +36,12 @@ public class ProcessUseSearch implements IUseSearch<ProcessDescriptor> {
 	public List<BaseDescriptor> findUses(ProcessDescriptor process) {
 		if (process == null)
 			return Collections.emptyList();
+		List<BaseDescriptor> uses = UsageIndex.on(database).find(
+				ModelType.PROCESS, process);
+		return uses != null ? uses : search(process);
+	}
+
+	private List<BaseDescriptor> search(ProcessDescriptor process) {
 		String jpql = "select s.id, s.name, s.description from ProductSystem s "
 				+ "where :processId MEMBER OF s.processes";
 		try {
@@ -9,6 +9,7 @@ import java.util.List;
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.NativeSql;
 import org.openlca.core.database.ProjectDao;
+import org.openlca.core.model.ModelType;
 import org.openlca.core.model.ProductSystem;
 import org.openlca.core.model.descriptors.BaseDescriptor;
 import org.openlca.core.model.descriptors.Descriptors;
@@ -34,6 +35,12 @@ public class ProductSystemUseSearch implements
 	public List<BaseDescriptor> findUses(ProductSystemDescriptor system) {
 		if (system == null)
 			return Collections.emptyList();
+		List<BaseDescriptor> uses = UsageIndex.on(db).find(
+				ModelType.PRODUCT_SYSTEM, system);
+		return uses != null ? uses : search(system);
+	}
+
+	private List<BaseDescriptor> search(ProductSystemDescriptor system) {
 		String sql = "select f_project from tbl_project_variants where " +
 				"f_product_system = " + system.getId();
 		try {
@@ -0,0 +1,298 @@
+package org.openlca.core.database.usage;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.model.Actor;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowProperty;
+import org.openlca.core.model.FlowPropertyFactor;
+import org.openlca.core.model.ImpactCategory;
+import org.openlca.core.model.ImpactFactor;
+import org.openlca.core.model.ImpactMethod;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.ProcessDocumentation;
+import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.Project;
+import org.openlca.core.model.ProjectVariant;
+import org.openlca.core.model.RootEntity;
+import org.openlca.core.model.Source;
+import org.openlca.core.model.UnitGroup;
+
+/**
+ * A reference relation between two model types of the {@link UsageIndex}: an
+ * owner (e.g. a process) uses a set of targets (e.g. flows). The relation
+ * stores these references in both directions so that the owners of a target
+ * can be found directly. The references are loaded with the SQL queries of the
+ * relation where the first column contains the owner ID and all further
+ * columns the target IDs; for updates they are collected from the owner
+ * entities via {@link #collect(RootEntity, TLongHashSet)}.
+ */
+abstract class Relation {
+
+	final ModelType owner;
+	final ModelType target;
+	private final String[] queries;
+
+	private final TLongObjectHashMap<TLongHashSet> targets = new TLongObjectHashMap<>();
+	private final TLongObjectHashMap<TLongHashSet> owners = new TLongObjectHashMap<>();
+
+	Relation(ModelType owner, ModelType target, String... queries) {
+		this.owner = owner;
+		this.target = target;
+		this.queries = queries;
+	}
+
+	/**
+	 * Adds the IDs of the targets that are used in the given entity of the
+	 * owner type to the given set.
+	 */
+	abstract void collect(RootEntity entity, TLongHashSet targets);
+
+	void build(IDatabase database) throws SQLException {
+		targets.clear();
+		owners.clear();
+		for (String query : queries) {
+			NativeSql.on(database).query(query,
+					new NativeSql.QueryResultHandler() {
+						@Override
+						public boolean nextResult(ResultSet result)
+								throws SQLException {
+							long ownerId = result.getLong(1);
+							int columns = result.getMetaData().getColumnCount();
+							for (int col = 2; col <= columns; col++)
+								put(ownerId, result.getLong(col));
+							return true;
+						}
+					});
+		}
+	}
+
+	/** Replaces the targets of the given owner with the given targets. */
+	void update(long ownerId, TLongHashSet newTargets) {
+		remove(ownerId);
+		TLongIterator it = newTargets.iterator();
+		while (it.hasNext())
+			put(ownerId, it.next());
+	}
+
+	/** Removes all references of the given owner. */
+	void remove(long ownerId) {
+		TLongHashSet old = targets.remove(ownerId);
+		if (old == null)
+			return;
+		TLongIterator it = old.iterator();
+		while (it.hasNext()) {
+			long targetId = it.next();
+			TLongHashSet set = owners.get(targetId);
+			if (set == null)
+				continue;
+			set.remove(ownerId);
+			if (set.isEmpty())
+				owners.remove(targetId);
+		}
+	}
+
+	/** Removes all references to the given target. */
+	void removeTarget(long targetId) {
+		TLongHashSet old = owners.remove(targetId);
+		if (old == null)
+			return;
+		TLongIterator it = old.iterator();
+		while (it.hasNext()) {
+			TLongHashSet set = targets.get(it.next());
+			if (set != null)
+				set.remove(targetId);
+		}
+	}
+
+	/** Adds the IDs of the owners that use the given target to the given set. */
+	void collectOwners(long targetId, TLongHashSet result) {
+		TLongHashSet set = owners.get(targetId);
+		if (set != null)
+			result.addAll(set);
+	}
+
+	private void put(long ownerId, long targetId) {
+		if (ownerId == 0 || targetId == 0)
+			return;
+		TLongHashSet set = targets.get(ownerId);
+		if (set == null) {
+			set = new TLongHashSet();
+			targets.put(ownerId, set);
+		}
+		set.add(targetId);
+		set = owners.get(targetId);
+		if (set == null) {
+			set = new TLongHashSet();
+			owners.put(targetId, set);
+		}
+		set.add(ownerId);
+	}
+
+	private static void add(RootEntity entity, TLongHashSet ids) {
+		if (entity != null)
+			ids.add(entity.getId());
+	}
+
+	/**
+	 * Returns true if the given entity is a part of an owner entity so that a
+	 * change of it may change the references of the owner (e.g. an exchange of
+	 * a process).
+	 */
+	static boolean isOwnerPart(Object entity) {
+		return entity instanceof Exchange
+				|| entity instanceof FlowPropertyFactor
+				|| entity instanceof ImpactCategory
+				|| entity instanceof ImpactFactor
+				|| entity instanceof ProcessDocumentation
+				|| entity instanceof ProjectVariant;
+	}
+
+	/**
+	 * Creates the relations that are also checked in the respective
+	 * {@link IUseSearch} implementations.
+	 */
+	static List<Relation> createAll() {
+		List<Relation> list = new ArrayList<>();
+		list.add(new Relation(ModelType.PROCESS, ModelType.FLOW,
+				"select f_owner, f_flow from tbl_exchanges") {
+			@Override
+			void collect(RootEntity entity, TLongHashSet ids) {
+				for (Exchange exchange : ((Process) entity).getExchanges())
+					add(exchange.getFlow(), ids);
+			}
+		});
+		list.add(new Relation(ModelType.IMPACT_METHOD, ModelType.FLOW,
+				"select c.f_impact_method, f.f_flow from tbl_impact_factors f "
+						+ "inner join tbl_impact_categories c on "
+						+ "f.f_impact_category = c.id") {
+			@Override
+			void collect(RootEntity entity, TLongHashSet ids) {
+				ImpactMethod method = (ImpactMethod) entity;
+				for (ImpactCategory category : method.getImpactCategories()) {
+					for (ImpactFactor factor : category.getImpactFactors())
+						add(factor.getFlow(), ids);
+				}
+			}
+		});
+		list.add(new Relation(ModelType.FLOW, ModelType.FLOW_PROPERTY,
+				"select f_flow, f_flow_property from tbl_flow_property_factors") {
+			@Override
+			void collect(RootEntity entity, TLongHashSet ids) {
+				for (FlowPropertyFactor factor : ((Flow) entity)
+						.getFlowPropertyFactors())
+					add(factor.getFlowProperty(), ids);
+			}
+		});
+		list.add(new Relation(ModelType.UNIT_GROUP, ModelType.FLOW_PROPERTY,
+				"select id, f_default_flow_property from tbl_unit_groups") {
+			@Override
+			void collect(RootEntity entity, TLongHashSet ids) {
+				add(((UnitGroup) entity).getDefaultFlowProperty(), ids);
+			}
+		});
+		list.add(new Relation(ModelType.FLOW_PROPERTY, ModelType.UNIT_GROUP,
+				"select id, f_unit_group from tbl_flow_properties") {
+			@Override
+			void collect(RootEntity entity, TLongHashSet ids) {
+				add(((FlowProperty) entity).getUnitGroup(), ids);
+			}
+		});
+		list.add(new Relation(ModelType.FLOW, ModelType.LOCATION,
+				"select id, f_location from tbl_flows") {
+			@Override
+			void collect(RootEntity entity, TLongHashSet ids) {
+				add(((Flow) entity).getLocation(), ids);
+			}
+		});
+		list.add(new Relation(ModelType.PROCESS, ModelType.LOCATION,
+				"select id, f_location from tbl_processes") {
+			@Override
+			void collect(RootEntity entity, TLongHashSet ids) {
+				add(((Process) entity).getLocation(), ids);
+			}
+		});
+		list.add(new Relation(ModelType.PROCESS, ModelType.ACTOR,
+				"select p.id, d.f_reviewer, d.f_data_generator, "
+						+ "d.f_dataset_owner, d.f_data_documentor from "
+						+ "tbl_processes p inner join tbl_process_docs d on "
+						+ "p.f_process_doc = d.id") {
+			@Override
+			void collect(RootEntity entity, TLongHashSet ids) {
+				ProcessDocumentation doc = ((Process) entity)
+						.getDocumentation();
+				if (doc == null)
+					return;
+				for (Actor actor : new Actor[] { doc.getReviewer(),
+						doc.getDataGenerator(), doc.getDataSetOwner(),
+						doc.getDataDocumentor() })
+					add(actor, ids);
+			}
+		});
+		list.add(new Relation(ModelType.PROJECT, ModelType.ACTOR,
+				"select id, f_author from tbl_projects") {
+			@Override
+			void collect(RootEntity entity, TLongHashSet ids) {
+				add(((Project) entity).getAuthor(), ids);
+			}
+		});
+		list.add(new Relation(ModelType.PROCESS, ModelType.SOURCE,
+				"select p.id, d.f_publication from tbl_processes p "
+						+ "inner join tbl_process_docs d on "
+						+ "p.f_process_doc = d.id",
+				"select p.id, s.f_source from tbl_processes p "
+						+ "inner join tbl_process_sources s on "
+						+ "p.f_process_doc = s.f_process_doc") {
+			@Override
+			void collect(RootEntity entity, TLongHashSet ids) {
+				ProcessDocumentation doc = ((Process) entity)
+						.getDocumentation();
+				if (doc == null)
+					return;
+				add(doc.getPublication(), ids);
+				for (Source source : doc.getSources())
+					add(source, ids);
+			}
+		});
+		list.add(new Relation(ModelType.PRODUCT_SYSTEM, ModelType.PROCESS,
+				"select f_product_system, f_process from "
+						+ "tbl_product_system_processes") {
+			@Override
+			void collect(RootEntity entity, TLongHashSet ids) {
+				for (Long processId : ((ProductSystem) entity).getProcesses()) {
+					if (processId != null)
+						ids.add(processId);
+				}
+			}
+		});
+		list.add(new Relation(ModelType.PROJECT, ModelType.PRODUCT_SYSTEM,
+				"select f_project, f_product_system from tbl_project_variants") {
+			@Override
+			void collect(RootEntity entity, TLongHashSet ids) {
+				for (ProjectVariant variant : ((Project) entity).getVariants())
+					add(variant.getProductSystem(), ids);
+			}
+		});
+		list.add(new Relation(ModelType.PROJECT, ModelType.IMPACT_METHOD,
+				"select id, f_impact_method from tbl_projects") {
+			@Override
+			void collect(RootEntity entity, TLongHashSet ids) {
+				Long methodId = ((Project) entity).getImpactMethodId();
+				if (methodId != null)
+					ids.add(methodId);
+			}
+		});
+		return list;
+	}
+}
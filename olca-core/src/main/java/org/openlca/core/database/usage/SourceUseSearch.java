@@ -8,6 +8,7 @@ import java.util.List;
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.ProcessDao;
 import org.openlca.core.database.Query;
+import org.openlca.core.model.ModelType;
 import org.openlca.core.model.Source;
 import org.openlca.core.model.descriptors.BaseDescriptor;
 import org.openlca.core.model.descriptors.Descriptors;
@@ -37,6 +38,12 @@ public class SourceUseSearch implements IUseSearch<SourceDescriptor> {
 	public List<BaseDescriptor> findUses(SourceDescriptor source) {
 		if (source == null)
 			return Collections.emptyList();
+		List<BaseDescriptor> uses = UsageIndex.on(database).find(
+				ModelType.SOURCE, source);
+		return uses != null ? uses : search(source);
+	}
+
+	private List<BaseDescriptor> search(SourceDescriptor source) {
 		String jpql = "select p.id from Process p "
 				+ " left join p.documentation.sources s"
 				+ " where p.documentation.publication.id = :sourceId "
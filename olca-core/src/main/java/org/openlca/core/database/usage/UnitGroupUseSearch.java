@@ -6,6 +6,7 @@ import java.util.List;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.Query;
+import org.openlca.core.model.ModelType;
 import org.openlca.core.model.UnitGroup;
 import org.openlca.core.model.descriptors.BaseDescriptor;
 import org.openlca.core.model.descriptors.Descriptors;
@@ -35,6 +36,12 @@ public class UnitGroupUseSearch implements IUseSearch<UnitGroupDescriptor> {
 	public List<BaseDescriptor> findUses(UnitGroupDescriptor group) {
 		if (group == null)
 			return Collections.emptyList();
+		List<BaseDescriptor> uses = UsageIndex.on(database).find(
+				ModelType.UNIT_GROUP, group);
+		return uses != null ? uses : search(group);
+	}
+
+	private List<BaseDescriptor> search(UnitGroupDescriptor group) {
 		String jpql = "select fp.id, fp.name, fp.description from FlowProperty fp "
 				+ "where fp.unitGroup.id = :unitGroupId";
 		try {
@@ -0,0 +1,343 @@
+package org.openlca.core.database.usage;
+
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.openlca.core.database.BaseDao;
+import org.openlca.core.database.FlowDao;
+import org.openlca.core.database.FlowPropertyDao;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.ImpactMethodDao;
+import org.openlca.core.database.ProcessDao;
+import org.openlca.core.database.ProductSystemDao;
+import org.openlca.core.database.ProjectDao;
+import org.openlca.core.database.RootEntityDao;
+import org.openlca.core.database.UnitGroupDao;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.RootEntity;
+import org.openlca.core.model.descriptors.BaseDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A reverse reference index of a database that maps an entity to the entities
+ * where it is used. The {@link IUseSearch} implementations answer their
+ * queries with this index so that the database is not scanned for each query.
+ * It can also search the uses of multiple entities in one call.
+ *
+ * There is one index per database which is created via {@link #on(IDatabase)}.
+ * It is built with one scan of the reference tables when it is queried the
+ * first time. After this, the DAOs keep it up to date: every entity that is
+ * inserted, updated, or deleted via a DAO is passed to
+ * {@link #written(IDatabase, Object)} or {@link #deleted(IDatabase, Object)}.
+ * Code that changes references via native SQL should call
+ * {@link #invalidate(IDatabase)} so that the index is rebuilt with the next
+ * query.
+ */
+public class UsageIndex {
+
+	private static final Map<IDatabase, UsageIndex> indices = new WeakHashMap<>();
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final WeakReference<IDatabase> database;
+	private final List<Relation> relations = Relation.createAll();
+	private boolean valid;
+
+	private UsageIndex(IDatabase database) {
+		this.database = new WeakReference<>(database);
+	}
+
+	/** Returns the usage index of the given database. */
+	public static UsageIndex on(IDatabase database) {
+		synchronized (indices) {
+			UsageIndex index = indices.get(database);
+			if (index == null) {
+				index = new UsageIndex(database);
+				indices.put(database, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Updates the references of the given entity if an index was built for the
+	 * given database.
+	 */
+	public static void written(IDatabase database, Object entity) {
+		UsageIndex index = existing(database);
+		if (index != null)
+			index.entityWritten(entity);
+	}
+
+	/**
+	 * Removes the references from and to the given entity if an index was built
+	 * for the given database.
+	 */
+	public static void deleted(IDatabase database, Object entity) {
+		UsageIndex index = existing(database);
+		if (index != null)
+			index.entityDeleted(entity);
+	}
+
+	/**
+	 * Marks the index of the given database as invalid so that it is rebuilt
+	 * with the next query.
+	 */
+	public static void invalidate(IDatabase database) {
+		UsageIndex index = existing(database);
+		if (index == null)
+			return;
+		synchronized (index) {
+			index.valid = false;
+		}
+	}
+
+	/**
+	 * Removes the index of the given database. This is called when the
+	 * database is closed so that the references of the database are released
+	 * immediately.
+	 */
+	public static void remove(IDatabase database) {
+		if (database == null)
+			return;
+		synchronized (indices) {
+			indices.remove(database);
+		}
+	}
+
+	private static UsageIndex existing(IDatabase database) {
+		if (database == null)
+			return null;
+		synchronized (indices) {
+			return indices.get(database);
+		}
+	}
+
+	/**
+	 * The index keeps only a weak reference to its database: a strong
+	 * reference from this value would keep the weak key in the map of
+	 * indices reachable.
+	 */
+	private IDatabase db() {
+		return database.get();
+	}
+
+	/**
+	 * Returns the descriptors of the entities where the entity with the given
+	 * descriptor is used.
+	 */
+	public List<BaseDescriptor> findUses(BaseDescriptor descriptor) {
+		if (descriptor == null)
+			return Collections.emptyList();
+		List<BaseDescriptor> uses = findUses(
+				Collections.singletonList(descriptor)).get(descriptor);
+		return uses == null ? Collections.<BaseDescriptor> emptyList() : uses;
+	}
+
+	/**
+	 * Searches the uses of all given entities in one call. The descriptors of
+	 * the using entities are loaded with one query per model type. The returned
+	 * map contains an entry for each of the given descriptors.
+	 */
+	public Map<BaseDescriptor, List<BaseDescriptor>> findUses(
+			Collection<? extends BaseDescriptor> descriptors) {
+		return findUses(null, descriptors);
+	}
+
+	/**
+	 * Same as {@link #findUses(Collection)} but the given descriptors are
+	 * handled as descriptors of the given type. This is required for entities
+	 * like locations which descriptors do not have a model type.
+	 */
+	public Map<BaseDescriptor, List<BaseDescriptor>> findUses(ModelType type,
+			Collection<? extends BaseDescriptor> descriptors) {
+		if (descriptors == null || descriptors.isEmpty())
+			return Collections.emptyMap();
+		Map<BaseDescriptor, List<BaseDescriptor>> result = search(type,
+				descriptors);
+		if (result != null)
+			return result;
+		result = new LinkedHashMap<>();
+		for (BaseDescriptor d : descriptors) {
+			if (d != null)
+				result.put(d, new ArrayList<BaseDescriptor>());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the uses of the given entity of the given type or null if the
+	 * index could not be built. This is used by the {@link IUseSearch}
+	 * implementations which run their own queries in this case.
+	 */
+	List<BaseDescriptor> find(ModelType type, BaseDescriptor descriptor) {
+		Map<BaseDescriptor, List<BaseDescriptor>> result = search(type,
+				Collections.singletonList(descriptor));
+		return result == null ? null : result.get(descriptor);
+	}
+
+	private Map<BaseDescriptor, List<BaseDescriptor>> search(ModelType type,
+			Collection<? extends BaseDescriptor> descriptors) {
+		Map<BaseDescriptor, Map<ModelType, TLongHashSet>> owners = new LinkedHashMap<>();
+		Map<ModelType, TLongHashSet> allOwners = new EnumMap<>(ModelType.class);
+		synchronized (this) {
+			if (!valid)
+				build();
+			if (!valid)
+				return null;
+			for (BaseDescriptor d : descriptors) {
+				if (d == null)
+					continue;
+				Map<ModelType, TLongHashSet> map = new EnumMap<>(
+						ModelType.class);
+				ModelType targetType = type != null ? type : d.getModelType();
+				for (Relation relation : relations) {
+					if (relation.target != targetType)
+						continue;
+					TLongHashSet ids = get(map, relation.owner);
+					relation.collectOwners(d.getId(), ids);
+					get(allOwners, relation.owner).addAll(ids);
+				}
+				owners.put(d, map);
+			}
+		}
+		Map<ModelType, Map<Long, BaseDescriptor>> loaded = loadDescriptors(allOwners);
+		Map<BaseDescriptor, List<BaseDescriptor>> result = new LinkedHashMap<>();
+		for (BaseDescriptor d : owners.keySet()) {
+			List<BaseDescriptor> uses = new ArrayList<>();
+			for (Map.Entry<ModelType, TLongHashSet> e : owners.get(d)
+					.entrySet()) {
+				Map<Long, BaseDescriptor> typeDescriptors = loaded.get(e
+						.getKey());
+				for (long id : e.getValue().toArray()) {
+					BaseDescriptor use = typeDescriptors.get(id);
+					if (use != null)
+						uses.add(use);
+				}
+			}
+			result.put(d, uses);
+		}
+		return result;
+	}
+
+	private TLongHashSet get(Map<ModelType, TLongHashSet> map, ModelType type) {
+		TLongHashSet set = map.get(type);
+		if (set == null) {
+			set = new TLongHashSet();
+			map.put(type, set);
+		}
+		return set;
+	}
+
+	private Map<ModelType, Map<Long, BaseDescriptor>> loadDescriptors(
+			Map<ModelType, TLongHashSet> ids) {
+		Map<ModelType, Map<Long, BaseDescriptor>> map = new EnumMap<>(
+				ModelType.class);
+		for (ModelType type : ids.keySet()) {
+			Map<Long, BaseDescriptor> descriptors = new HashMap<>();
+			map.put(type, descriptors);
+			RootEntityDao<?, ?> dao = createDao(type);
+			if (dao == null)
+				continue;
+			List<Long> rest = new ArrayList<>();
+			for (long id : ids.get(type).toArray())
+				rest.add(id);
+			while (!rest.isEmpty()) {
+				int toPos = Math.min(rest.size(), BaseDao.MAX_LIST_SIZE);
+				List<Long> chunk = rest.subList(0, toPos);
+				Set<Long> chunkIds = new HashSet<>(chunk);
+				for (BaseDescriptor d : dao.getDescriptors(chunkIds))
+					descriptors.put(d.getId(), d);
+				chunk.clear();
+			}
+		}
+		return map;
+	}
+
+	private RootEntityDao<?, ?> createDao(ModelType type) {
+		switch (type) {
+		case FLOW:
+			return new FlowDao(db());
+		case FLOW_PROPERTY:
+			return new FlowPropertyDao(db());
+		case IMPACT_METHOD:
+			return new ImpactMethodDao(db());
+		case PROCESS:
+			return new ProcessDao(db());
+		case PRODUCT_SYSTEM:
+			return new ProductSystemDao(db());
+		case PROJECT:
+			return new ProjectDao(db());
+		case UNIT_GROUP:
+			return new UnitGroupDao(db());
+		default:
+			return null;
+		}
+	}
+
+	private void build() {
+		log.trace("build usage index of database {}", db().getName());
+		try {
+			for (Relation relation : relations)
+				relation.build(db());
+			valid = true;
+		} catch (Exception e) {
+			log.error("failed to build usage index", e);
+		}
+	}
+
+	private synchronized void entityWritten(Object entity) {
+		if (!valid || entity == null)
+			return;
+		if (Relation.isOwnerPart(entity)) {
+			valid = false;
+			return;
+		}
+		if (!(entity instanceof RootEntity))
+			return;
+		RootEntity rootEntity = (RootEntity) entity;
+		for (Relation relation : relations) {
+			if (!isOfType(entity, relation.owner))
+				continue;
+			TLongHashSet targets = new TLongHashSet();
+			relation.collect(rootEntity, targets);
+			relation.update(rootEntity.getId(), targets);
+		}
+	}
+
+	private synchronized void entityDeleted(Object entity) {
+		if (!valid || entity == null)
+			return;
+		if (Relation.isOwnerPart(entity)) {
+			valid = false;
+			return;
+		}
+		if (!(entity instanceof RootEntity))
+			return;
+		long id = ((RootEntity) entity).getId();
+		for (Relation relation : relations) {
+			if (isOfType(entity, relation.owner))
+				relation.remove(id);
+			if (isOfType(entity, relation.target))
+				relation.removeTarget(id);
+		}
+	}
+
+	private boolean isOfType(Object entity, ModelType type) {
+		Class<?> clazz = type.getModelClass();
+		return clazz != null && clazz.isInstance(entity);
+	}
+
+}
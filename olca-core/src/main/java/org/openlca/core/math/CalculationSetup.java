@@ -3,6 +3,7 @@ package org.openlca.core.math;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.openlca.core.matrix.LongPair;
 import org.openlca.core.model.AllocationMethod;
 import org.openlca.core.model.FlowPropertyFactor;
 import org.openlca.core.model.ParameterRedef;
@@ -12,11 +13,17 @@ import org.openlca.core.model.descriptors.ImpactMethodDescriptor;
 import org.openlca.core.model.descriptors.NwSetDescriptor;
 
 /**
- * A setup for a product system calculation.
+ * A setup for a product system calculation. A setup can be created for a
+ * loaded product system or only for the ID and reference product of a product
+ * system; in the latter case, the process links of the system are read
+ * directly from the database when the product index is created and the
+ * product system is never loaded as JPA entity.
  */
 public class CalculationSetup {
 
 	private final ProductSystem productSystem;
+	private final long productSystemId;
+	private final LongPair refProduct;
 	private Unit unit;
 	private FlowPropertyFactor flowPropertyFactor;
 	private Double amount;
@@ -28,12 +35,52 @@ public class CalculationSetup {
 
 	public CalculationSetup(ProductSystem productSystem) {
 		this.productSystem = productSystem;
+		this.productSystemId = productSystem == null ? 0 : productSystem
+				.getId();
+		this.refProduct = null;
 	}
 
+	/**
+	 * Creates a setup for the product system with the given ID and the given
+	 * reference product (process ID and flow ID). The calculation amount is
+	 * given in the reference unit of the reference flow and is 1 if not set
+	 * otherwise.
+	 */
+	public CalculationSetup(long productSystemId, long refProcessId,
+			long refFlowId) {
+		this.productSystem = null;
+		this.productSystemId = productSystemId;
+		this.refProduct = new LongPair(refProcessId, refFlowId);
+	}
+
+	/**
+	 * Returns the product system of this setup or null if the setup was
+	 * created only with the ID of the product system.
+	 */
 	public ProductSystem getProductSystem() {
 		return productSystem;
 	}
 
+	public long getProductSystemId() {
+		return productSystemId;
+	}
+
+	/**
+	 * Returns the reference product (process ID and flow ID) of the product
+	 * system.
+	 */
+	public LongPair getReferenceProduct() {
+		if (refProduct != null)
+			return refProduct;
+		if (productSystem == null
+				|| productSystem.getReferenceProcess() == null
+				|| productSystem.getReferenceExchange() == null
+				|| productSystem.getReferenceExchange().getFlow() == null)
+			return null;
+		return new LongPair(productSystem.getReferenceProcess().getId(),
+				productSystem.getReferenceExchange().getFlow().getId());
+	}
+
 	public void setImpactMethod(ImpactMethodDescriptor impactMethod) {
 		this.impactMethod = impactMethod;
 	}
@@ -87,7 +134,7 @@ public class CalculationSetup {
 	}
 
 	public Unit getUnit() {
-		if (unit != null)
+		if (unit != null || productSystem == null)
 			return unit;
 		else
 			return productSystem.getTargetUnit();
@@ -102,7 +149,7 @@ public class CalculationSetup {
 	}
 
 	public FlowPropertyFactor getFlowPropertyFactor() {
-		if (flowPropertyFactor != null)
+		if (flowPropertyFactor != null || productSystem == null)
 			return flowPropertyFactor;
 		else
 			return productSystem.getTargetFlowPropertyFactor();
@@ -119,6 +166,8 @@ public class CalculationSetup {
 	public double getAmount() {
 		if (amount != null)
 			return amount;
+		else if (productSystem == null)
+			return 1;
 		else
 			return productSystem.getTargetAmount();
 	}
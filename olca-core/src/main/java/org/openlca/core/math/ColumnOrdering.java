@@ -0,0 +1,175 @@
+package org.openlca.core.math;
+
+import java.util.Arrays;
+
+/**
+ * Calculates a fill-reducing column ordering for the sparse LU factorization
+ * of a square matrix A. Technology matrices are often nearly triangular: a
+ * large part of the supply chains is acyclic and the loops are concentrated in
+ * a few strongly connected blocks. Thus, the matrix is first permuted into a
+ * block upper triangular form (the strongly connected components of the
+ * matrix graph in topological order). The off-diagonal blocks of this form do
+ * not produce any fill-in. The columns within each diagonal block are then
+ * ordered so that the block is as triangular as possible: only the entries
+ * that close a loop are located below the diagonal. This assumes that the
+ * pivots are mostly taken from the diagonal which is typically the case as
+ * technology matrices have a (more or less) dominant diagonal. For such
+ * matrices, this ordering produces less fill-in than a minimum degree ordering
+ * on the graph of A + A<sup>T</sup>.
+ */
+class ColumnOrdering {
+
+	private ColumnOrdering() {
+	}
+
+	/**
+	 * Returns the column ordering q for the given square matrix, where q[k] is
+	 * the index of the column of A that should be the k-th column of the
+	 * permuted matrix.
+	 */
+	public static int[] of(CompressedColumnMatrix a) {
+		int n = a.getColumnDimension();
+		int[] q = new int[n];
+		int[] blocks = new int[n + 1];
+		int blockCount = stronglyConnectedComponents(a, q, blocks);
+		int[] local = new int[n];
+		Arrays.fill(local, -1);
+		for (int b = 0; b < blockCount; b++) {
+			int start = blocks[b];
+			int size = blocks[b + 1] - start;
+			if (size < 3)
+				continue;
+			int[] nodes = Arrays.copyOfRange(q, start, start + size);
+			for (int i = 0; i < size; i++)
+				local[nodes[i]] = i;
+			int[] order = postOrder(a, nodes, local);
+			for (int i = 0; i < size; i++) {
+				q[start + i] = nodes[order[i]];
+				local[nodes[i]] = -1;
+			}
+		}
+		return q;
+	}
+
+	/**
+	 * Calculates the strongly connected components of the graph of A with
+	 * Tarjan's algorithm (non-recursive), where there is an edge j -> i for
+	 * each entry A(i, j). The nodes of the components are written to q so that
+	 * the nodes of a component are stored in q[blocks[b]..blocks[b + 1] - 1].
+	 * Tarjan's algorithm emits the components in reverse topological order of
+	 * the edges which is exactly the order of a block upper triangular form.
+	 * Returns the number of components.
+	 */
+	private static int stronglyConnectedComponents(CompressedColumnMatrix a,
+			int[] q, int[] blocks) {
+		int n = a.getColumnDimension();
+		int[] index = new int[n];
+		int[] low = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int[] callStack = new int[n];
+		int[] positions = new int[n];
+		Arrays.fill(index, -1);
+		int counter = 0;
+		int stackTop = 0;
+		int blockCount = 0;
+		int emitted = 0;
+		for (int root = 0; root < n; root++) {
+			if (index[root] != -1)
+				continue;
+			int head = 0;
+			callStack[0] = root;
+			index[root] = low[root] = counter++;
+			positions[root] = a.columnPointers[root];
+			stack[stackTop++] = root;
+			onStack[root] = true;
+			while (head >= 0) {
+				int j = callStack[head];
+				int end = a.columnPointers[j + 1];
+				boolean descended = false;
+				while (positions[j] < end) {
+					int i = a.rowIndices[positions[j]++];
+					if (index[i] == -1) {
+						index[i] = low[i] = counter++;
+						positions[i] = a.columnPointers[i];
+						stack[stackTop++] = i;
+						onStack[i] = true;
+						callStack[++head] = i;
+						descended = true;
+						break;
+					}
+					if (onStack[i] && index[i] < low[j])
+						low[j] = index[i];
+				}
+				if (descended)
+					continue;
+				if (low[j] == index[j]) {
+					// j is the root of a component
+					blocks[blockCount++] = emitted;
+					int node;
+					do {
+						node = stack[--stackTop];
+						onStack[node] = false;
+						q[emitted++] = node;
+					} while (node != j);
+				}
+				head--;
+				if (head >= 0) {
+					int parent = callStack[head];
+					if (low[j] < low[parent])
+						low[parent] = low[j];
+				}
+			}
+		}
+		blocks[blockCount] = n;
+		return blockCount;
+	}
+
+	/**
+	 * Calculates the post-order of a depth-first search in the graph of the
+	 * diagonal block with the given nodes (again with an edge j -> i for each
+	 * entry B(i, j)). In this order, each node is placed after the nodes it
+	 * reaches via tree, forward, and cross edges so that only the back edges
+	 * of the search are located below the diagonal of the permuted block. The
+	 * given array local maps the indices of A to the indices of the block (and
+	 * to -1 for nodes outside of the block).
+	 */
+	private static int[] postOrder(CompressedColumnMatrix a, int[] nodes,
+			int[] local) {
+		int n = nodes.length;
+		int[] order = new int[n];
+		boolean[] visited = new boolean[n];
+		int[] stack = new int[n];
+		int[] positions = new int[n];
+		int k = 0;
+		for (int root = 0; root < n; root++) {
+			if (visited[root])
+				continue;
+			int head = 0;
+			stack[0] = root;
+			visited[root] = true;
+			positions[root] = a.columnPointers[nodes[root]];
+			while (head >= 0) {
+				int j = stack[head];
+				int end = a.columnPointers[nodes[j] + 1];
+				boolean descended = false;
+				while (positions[j] < end) {
+					int i = local[a.rowIndices[positions[j]++]];
+					if (i < 0 || visited[i])
+						continue;
+					visited[i] = true;
+					positions[i] = a.columnPointers[nodes[i]];
+					stack[++head] = i;
+					descended = true;
+					break;
+				}
+				if (descended)
+					continue;
+				order[k++] = j;
+				head--;
+			}
+		}
+		return order;
+	}
+
+}
@@ -0,0 +1,206 @@
+package org.openlca.core.math;
+
+import org.openlca.util.MatrixUtils;
+
+/**
+ * A sparse matrix in the compressed column format (CSC). The row indices and
+ * values of column j are stored in the positions columnPointers[j] until
+ * columnPointers[j + 1] - 1 of the respective arrays where the row indices of
+ * each column are sorted in ascending order. Setting values of existing
+ * entries is cheap but inserting new entries requires to copy the arrays; thus,
+ * you should fill a {@link SparseMatrix} and compress it instead.
+ */
+public class CompressedColumnMatrix implements IMatrix {
+
+	final int rows;
+	final int columns;
+	final int[] columnPointers;
+	int[] rowIndices;
+	double[] values;
+
+	public CompressedColumnMatrix(int rows, int columns) {
+		this(rows, columns, 0);
+	}
+
+	CompressedColumnMatrix(int rows, int columns, int entries) {
+		this.rows = rows;
+		this.columns = columns;
+		columnPointers = new int[columns + 1];
+		rowIndices = new int[entries];
+		values = new double[entries];
+	}
+
+	/**
+	 * Converts the given matrix into the compressed column format. If the
+	 * given matrix is already a compressed column matrix, it is directly
+	 * returned.
+	 */
+	public static CompressedColumnMatrix of(IMatrix m) {
+		if (m instanceof CompressedColumnMatrix)
+			return (CompressedColumnMatrix) m;
+		if (m instanceof SparseMatrix)
+			return ((SparseMatrix) m).compress();
+		SparseMatrix s = new SparseMatrix(m.getRowDimension(),
+				m.getColumnDimension());
+		for (int col = 0; col < m.getColumnDimension(); col++) {
+			for (int row = 0; row < m.getRowDimension(); row++) {
+				double val = m.getEntry(row, col);
+				if (val != 0)
+					s.setEntry(row, col, val);
+			}
+		}
+		return s.compress();
+	}
+
+	@Override
+	public int getRowDimension() {
+		return rows;
+	}
+
+	@Override
+	public int getColumnDimension() {
+		return columns;
+	}
+
+	/**
+	 * Returns the number of stored entries of this matrix.
+	 */
+	public int getNumberOfEntries() {
+		return columnPointers[columns];
+	}
+
+	@Override
+	public void setEntry(int row, int col, double val) {
+		int pos = findIndex(row, col);
+		if (pos >= 0) {
+			values[pos] = val;
+			return;
+		}
+		if (val == 0)
+			return;
+		int insert = -(pos + 1);
+		rowIndices = insert(insert, row, rowIndices);
+		values = insert(insert, val, values);
+		for (int next = col + 1; next <= columns; next++)
+			columnPointers[next] += 1;
+	}
+
+	@Override
+	public double getEntry(int row, int col) {
+		int pos = findIndex(row, col);
+		return pos < 0 ? 0 : values[pos];
+	}
+
+	@Override
+	public double[] getColumn(int i) {
+		double[] column = new double[rows];
+		for (int idx = columnPointers[i]; idx < columnPointers[i + 1]; idx++)
+			column[rowIndices[idx]] = values[idx];
+		return column;
+	}
+
+	@Override
+	public double[] getRow(int i) {
+		double[] row = new double[columns];
+		for (int col = 0; col < columns; col++)
+			row[col] = getEntry(i, col);
+		return row;
+	}
+
+	@Override
+	public CompressedColumnMatrix copy() {
+		int n = getNumberOfEntries();
+		CompressedColumnMatrix copy = new CompressedColumnMatrix(rows, columns,
+				n);
+		System.arraycopy(columnPointers, 0, copy.columnPointers, 0,
+				columnPointers.length);
+		System.arraycopy(rowIndices, 0, copy.rowIndices, 0, n);
+		System.arraycopy(values, 0, copy.values, 0, n);
+		return copy;
+	}
+
+	@Override
+	public void iterate(MatrixIterator it) {
+		for (int col = 0; col < columns; col++) {
+			for (int p = columnPointers[col]; p < columnPointers[col + 1]; p++) {
+				if (values[p] != 0)
+					it.next(rowIndices[p], col, values[p]);
+			}
+		}
+	}
+
+	@Override
+	public void scaleColumns(double[] v) {
+		for (int col = 0; col < columns; col++) {
+			double factor = v[col];
+			for (int p = columnPointers[col]; p < columnPointers[col + 1]; p++)
+				values[p] *= factor;
+		}
+	}
+
+	@Override
+	public double[] getRowSums() {
+		double[] sums = new double[rows];
+		int n = getNumberOfEntries();
+		for (int p = 0; p < n; p++)
+			sums[rowIndices[p]] += values[p];
+		return sums;
+	}
+
+	@Override
+	public double[] getColumnSums() {
+		double[] sums = new double[columns];
+		for (int col = 0; col < columns; col++) {
+			double sum = 0;
+			for (int p = columnPointers[col]; p < columnPointers[col + 1]; p++)
+				sum += values[p];
+			sums[col] = sum;
+		}
+		return sums;
+	}
+
+	@Override
+	public void addScaled(double factor, IMatrix m) {
+		MatrixUtils.addScaled(this, factor, m);
+	}
+
+	/**
+	 * Returns the position of the given entry in the data arrays. If there is
+	 * no such entry, (-(insertion point) - 1) is returned, analogous to
+	 * {@link java.util.Arrays#binarySearch(int[], int)}.
+	 */
+	private int findIndex(int row, int col) {
+		int low = columnPointers[col];
+		int high = columnPointers[col + 1] - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midRow = rowIndices[mid];
+			if (midRow < row)
+				low = mid + 1;
+			else if (midRow > row)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -(low + 1);
+	}
+
+	private int[] insert(int idx, int val, int[] vals) {
+		int n = getNumberOfEntries();
+		int[] newVals = new int[n + 1];
+		System.arraycopy(vals, 0, newVals, 0, idx);
+		newVals[idx] = val;
+		System.arraycopy(vals, idx, newVals, idx + 1, n - idx);
+		return newVals;
+	}
+
+	private double[] insert(int idx, double val, double[] vals) {
+		int n = getNumberOfEntries();
+		double[] newVals = new double[n + 1];
+		System.arraycopy(vals, 0, newVals, 0, idx);
+		newVals[idx] = val;
+		System.arraycopy(vals, idx, newVals, idx + 1, n - idx);
+		return newVals;
+	}
+
+}
@@ -54,13 +54,7 @@ public class CostCalculator {
 	private void calculateFixCosts(CostMatrix matrix, double[] s,
 			CostResult result) {
 		IMatrix fixCosts = matrix.getFixCostMatrix();
-		double[] fixResult = new double[fixCosts.getRowDimension()];
-		for (int row = 0; row < fixCosts.getRowDimension(); row++) {
-			for (int col = 0; col < fixCosts.getColumnDimension(); col++) {
-				double val = fixCosts.getEntry(row, col);
-				fixResult[row] += val;
-			}
-		}
+		double[] fixResult = fixCosts.getRowSums();
 		result.setFixCostCategoryIndex(matrix.getFixCostCategoryIndex());
 		result.setFixCostResults(fixResult);
 	}
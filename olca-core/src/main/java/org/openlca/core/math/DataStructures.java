@@ -1,9 +1,13 @@
 package org.openlca.core.math;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.openlca.core.database.DatabaseException;
 import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
 import org.openlca.core.matrix.Inventory;
 import org.openlca.core.matrix.LongPair;
 import org.openlca.core.matrix.ParameterTable;
@@ -50,6 +54,92 @@ public class DataStructures {
 		return index;
 	}
 
+	/**
+	 * Creates a product index for the product system with the given ID. The
+	 * process links are read directly from the database without loading the
+	 * product system or its links as JPA entities. The links are sorted so
+	 * that the products get the same matrix positions in each calculation,
+	 * independent from the order in which the database returns the rows.
+	 */
+	public static ProductIndex createProductIndex(IDatabase database,
+			long productSystemId, LongPair refProduct) {
+		final ProductIndex index = new ProductIndex(refProduct);
+		String query = "select f_provider, f_recipient, f_flow from "
+				+ "tbl_process_links where f_product_system = "
+				+ productSystemId
+				+ " order by f_recipient, f_provider, f_flow";
+		try {
+			NativeSql.on(database).query(query,
+					new NativeSql.QueryResultHandler() {
+						@Override
+						public boolean nextResult(ResultSet result)
+								throws SQLException {
+							long provider = result.getLong(1);
+							long recipient = result.getLong(2);
+							long flow = result.getLong(3);
+							index.putLink(recipient, flow, provider, flow);
+							return true;
+						}
+					});
+		} catch (SQLException e) {
+			throw new DatabaseException("failed to load the process links "
+					+ "of product system " + productSystemId, e);
+		}
+		return index;
+	}
+
+	/**
+	 * Creates a calculation setup for the product system with the given ID
+	 * where the reference product and amount are read directly from the
+	 * database (see {@link CalculationSetup#CalculationSetup(long, long,
+	 * long)}). Returns null if there is no such product system.
+	 */
+	public static CalculationSetup createSetup(IDatabase database,
+			long productSystemId) {
+		String query = "select s.f_reference_process, e.f_flow, "
+				+ "s.target_amount, u.conversion_factor, f.conversion_factor "
+				+ "from tbl_product_systems s "
+				+ "left join tbl_exchanges e on s.f_reference_exchange = e.id "
+				+ "left join tbl_units u on s.f_target_unit = u.id "
+				+ "left join tbl_flow_property_factors f "
+				+ "on s.f_target_flow_property_factor = f.id "
+				+ "where s.id = " + productSystemId;
+		final CalculationSetup[] setup = new CalculationSetup[1];
+		final long systemId = productSystemId;
+		try {
+			NativeSql.on(database).query(query,
+					new NativeSql.QueryResultHandler() {
+						@Override
+						public boolean nextResult(ResultSet result)
+								throws SQLException {
+							setup[0] = new CalculationSetup(systemId,
+									result.getLong(1), result.getLong(2));
+							setup[0].setAmount(refAmount(result));
+							return false;
+						}
+					});
+		} catch (SQLException e) {
+			throw new DatabaseException("failed to load the reference data "
+					+ "of product system " + productSystemId, e);
+		}
+		return setup[0];
+	}
+
+	/**
+	 * The target amount in the reference unit of the reference flow; see
+	 * {@link ReferenceAmount}.
+	 */
+	private static double refAmount(ResultSet result) throws SQLException {
+		double amount = result.getDouble(3);
+		double unitFactor = result.getDouble(4);
+		if (!result.wasNull())
+			amount *= unitFactor;
+		double propertyFactor = result.getDouble(5);
+		if (!result.wasNull())
+			amount /= propertyFactor;
+		return amount;
+	}
+
 	public static Inventory createInventory(ProductSystem system,
 			MatrixCache matrixCache) {
 		ProductIndex index = createProductIndex(system);
@@ -63,13 +153,21 @@ public class DataStructures {
 		return Inventory.build(matrixCache, index, allocationMethod);
 	}
 
+	/**
+	 * Creates the inventory for the given setup. If the setup was created
+	 * without a product system entity, the product index is created directly
+	 * from the database.
+	 */
 	public static Inventory createInventory(CalculationSetup setup,
 			MatrixCache cache) {
 		ProductSystem system = setup.getProductSystem();
 		AllocationMethod method = setup.getAllocationMethod();
 		if (method == null)
 			method = AllocationMethod.NONE;
-		ProductIndex productIndex = createProductIndex(system);
+		ProductIndex productIndex = system != null ? createProductIndex(system)
+				: createProductIndex(cache.getDatabase(),
+						setup.getProductSystemId(),
+						setup.getReferenceProduct());
 		productIndex.setDemand(ReferenceAmount.get(setup));
 		return Inventory.build(cache, productIndex, method);
 	}
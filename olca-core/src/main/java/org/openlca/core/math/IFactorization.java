@@ -0,0 +1,29 @@
+package org.openlca.core.math;
+
+/**
+ * The factorization of a square matrix A (typically an LU decomposition of the
+ * technology matrix). A factorization is calculated once via
+ * {@link IMatrixSolver#factorize(IMatrix)} and can then be used to solve the
+ * systems of linear equations with A for many different right hand sides
+ * without factorizing A again. Note that a factorization is a snapshot of the
+ * matrix: if the matrix is changed afterwards (e.g. in a Monte-Carlo
+ * simulation), a new factorization has to be calculated.
+ */
+public interface IFactorization {
+
+	/** Returns the dimension n of the factorized n x n matrix A. */
+	int size();
+
+	/**
+	 * Solves the system of linear equations A * x = b and returns x. The given
+	 * vector b is not modified.
+	 */
+	double[] solve(double[] b);
+
+	/**
+	 * Solves the system of linear equations A<sup>T</sup> * x = b and returns
+	 * x. The given vector b is not modified.
+	 */
+	double[] solveTranspose(double[] b);
+
+}
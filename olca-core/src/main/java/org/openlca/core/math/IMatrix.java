@@ -26,4 +26,31 @@ public interface IMatrix {
 	/** Creates a copy of this matrix and returns it */
 	IMatrix copy();
 
+	/**
+	 * Calls the given function for each non-zero entry of this matrix. The
+	 * order in which the entries are visited depends on the implementation.
+	 * For sparse matrices, this only visits the stored entries; thus, generic
+	 * code should use this method instead of looping over all rows and
+	 * columns. The function must not change the matrix.
+	 */
+	void iterate(MatrixIterator it);
+
+	/**
+	 * Scales the columns of this matrix with the factors in v. This is
+	 * equivalent to m * diag(v).
+	 */
+	void scaleColumns(double[] v);
+
+	/** Returns the sums of the rows of this matrix. */
+	double[] getRowSums();
+
+	/** Returns the sums of the columns of this matrix. */
+	double[] getColumnSums();
+
+	/**
+	 * Adds the given matrix multiplied with the given factor to this matrix:
+	 * this = this + factor * m. Both matrices must have the same dimensions.
+	 */
+	void addScaled(double factor, IMatrix m);
+
 }
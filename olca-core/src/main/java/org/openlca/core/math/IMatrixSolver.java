@@ -25,6 +25,19 @@ public interface IMatrixSolver {
 	 */
 	double[] solve(IMatrix a, int idx, double d);
 
+	/**
+	 * Calculates a factorization of the given matrix A that can be used to
+	 * solve A * x = b for many vectors b. This is much faster than calling
+	 * {@link #solve(IMatrix, int, double)} for each vector b as the matrix is
+	 * factorized only once.
+	 * 
+	 * @param a
+	 *            the technology matrix A
+	 * 
+	 * @return the factorization of A
+	 */
+	IFactorization factorize(IMatrix a);
+
 	/**
 	 * Calculates the inverse of the given matrix.
 	 */
@@ -52,4 +65,11 @@ public interface IMatrixSolver {
 	 */
 	IMatrixFactory<?> getMatrixFactory();
 
+	/**
+	 * Returns a factory for dense matrices that work with this solver. This is
+	 * used for results where (nearly) all cells have a value, like the
+	 * upstream results of a full calculation.
+	 */
+	IMatrixFactory<?> getDenseMatrixFactory();
+
 }
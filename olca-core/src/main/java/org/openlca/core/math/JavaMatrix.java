@@ -1,8 +1,11 @@
 package org.openlca.core.math;
 
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.DefaultRealMatrixChangingVisitor;
+import org.apache.commons.math3.linear.DefaultRealMatrixPreservingVisitor;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
+import org.openlca.util.MatrixUtils;
 
 class JavaMatrix implements IMatrix {
 
@@ -60,4 +63,65 @@ class JavaMatrix implements IMatrix {
 		return new JavaMatrix(matrix.copy());
 	}
 
+	@Override
+	public void iterate(final MatrixIterator it) {
+		matrix.walkInOptimizedOrder(new DefaultRealMatrixPreservingVisitor() {
+			@Override
+			public void visit(int row, int column, double value) {
+				if (value != 0)
+					it.next(row, column, value);
+			}
+		});
+	}
+
+	@Override
+	public void scaleColumns(final double[] v) {
+		matrix.walkInOptimizedOrder(new DefaultRealMatrixChangingVisitor() {
+			@Override
+			public double visit(int row, int column, double value) {
+				return value * v[column];
+			}
+		});
+	}
+
+	@Override
+	public double[] getRowSums() {
+		final double[] sums = new double[matrix.getRowDimension()];
+		matrix.walkInOptimizedOrder(new DefaultRealMatrixPreservingVisitor() {
+			@Override
+			public void visit(int row, int column, double value) {
+				sums[row] += value;
+			}
+		});
+		return sums;
+	}
+
+	@Override
+	public double[] getColumnSums() {
+		final double[] sums = new double[matrix.getColumnDimension()];
+		matrix.walkInOptimizedOrder(new DefaultRealMatrixPreservingVisitor() {
+			@Override
+			public void visit(int row, int column, double value) {
+				sums[column] += value;
+			}
+		});
+		return sums;
+	}
+
+	@Override
+	public void addScaled(final double factor, IMatrix m) {
+		if (!(m instanceof JavaMatrix)) {
+			MatrixUtils.addScaled(this, factor, m);
+			return;
+		}
+		MatrixUtils.checkSameSize(this, m);
+		final RealMatrix other = ((JavaMatrix) m).matrix;
+		matrix.walkInOptimizedOrder(new DefaultRealMatrixChangingVisitor() {
+			@Override
+			public double visit(int row, int column, double value) {
+				return value + factor * other.getEntry(row, column);
+			}
+		});
+	}
+
 }
@@ -2,6 +2,7 @@ package org.openlca.core.math;
 
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.DecompositionSolver;
 import org.apache.commons.math3.linear.LUDecomposition;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
@@ -17,6 +18,11 @@ public class JavaSolver implements IMatrixSolver {
 		return x.toArray();
 	}
 
+	@Override
+	public IFactorization factorize(IMatrix a) {
+		return new Factorization(unwrap(a));
+	}
+
 	@Override
 	public double[] multiply(IMatrix m, double[] v) {
 		RealMatrix A = unwrap(m);
@@ -53,12 +59,47 @@ public class JavaSolver implements IMatrixSolver {
 		return new JavaMatrixFactory();
 	}
 
+	@Override
+	public IMatrixFactory<?> getDenseMatrixFactory() {
+		return new JavaMatrixFactory();
+	}
+
 	@Override
 	public void scaleColumns(IMatrix m, double[] v) {
-		for (int row = 0; row < m.getRowDimension(); row++) {
-			for (int col = 0; col < m.getColumnDimension(); col++) {
-				m.setEntry(row, col, v[col] * m.getEntry(row, col));
-			}
+		m.scaleColumns(v);
+	}
+
+	private static class Factorization implements IFactorization {
+
+		private final RealMatrix matrix;
+		private final DecompositionSolver solver;
+		private DecompositionSolver transposeSolver;
+
+		Factorization(RealMatrix matrix) {
+			this.matrix = matrix.copy();
+			this.solver = new LUDecomposition(this.matrix).getSolver();
+		}
+
+		@Override
+		public int size() {
+			return matrix.getRowDimension();
+		}
+
+		@Override
+		public double[] solve(double[] b) {
+			return solver.solve(new ArrayRealVector(b)).toArray();
+		}
+
+		@Override
+		public double[] solveTranspose(double[] b) {
+			return getTransposeSolver().solve(new ArrayRealVector(b)).toArray();
+		}
+
+		private synchronized DecompositionSolver getTransposeSolver() {
+			if (transposeSolver == null)
+				transposeSolver = new LUDecomposition(matrix.transpose())
+						.getSolver();
+			return transposeSolver;
 		}
 	}
 
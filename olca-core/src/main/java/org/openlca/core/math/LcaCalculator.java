@@ -2,19 +2,32 @@ package org.openlca.core.math;
 
 import org.openlca.core.matrix.ImpactMatrix;
 import org.openlca.core.matrix.InventoryMatrix;
-import org.openlca.core.matrix.LongPair;
 import org.openlca.core.matrix.ProductIndex;
 import org.openlca.core.results.ContributionResult;
 import org.openlca.core.results.FullResult;
+import org.openlca.core.results.LazyFullResult;
 import org.openlca.core.results.LinkContributions;
 import org.openlca.core.results.SimpleResult;
 
 public class LcaCalculator {
 
 	private final IMatrixSolver solver;
+	private final IFactorization factorization;
 
 	public LcaCalculator(IMatrixSolver solver) {
+		this(solver, null);
+	}
+
+	/**
+	 * Creates a calculator that uses the given factorization of the technology
+	 * matrix instead of solving the matrix again. This is useful when the same
+	 * matrix is calculated for different demand vectors. The factorization
+	 * must belong to the technology matrix of the inventory matrices that are
+	 * passed into the calculation methods.
+	 */
+	public LcaCalculator(IMatrixSolver solver, IFactorization factorization) {
 		this.solver = solver;
+		this.factorization = factorization;
 	}
 
 	public SimpleResult calculateSimple(InventoryMatrix matrix) {
@@ -30,8 +43,7 @@ public class LcaCalculator {
 
 		IMatrix techMatrix = matrix.getTechnologyMatrix();
 		ProductIndex productIndex = matrix.getProductIndex();
-		int idx = productIndex.getIndex(productIndex.getRefProduct());
-		double[] s = solver.solve(techMatrix, idx, productIndex.getDemand());
+		double[] s = solve(techMatrix, productIndex);
 		IMatrix enviMatrix = matrix.getInterventionMatrix();
 
 		double[] g = solver.multiply(enviMatrix, s);
@@ -59,8 +71,7 @@ public class LcaCalculator {
 
 		IMatrix techMatrix = matrix.getTechnologyMatrix();
 		ProductIndex productIndex = matrix.getProductIndex();
-		int idx = productIndex.getIndex(productIndex.getRefProduct());
-		double[] s = solver.solve(techMatrix, idx, productIndex.getDemand());
+		double[] s = solve(techMatrix, productIndex);
 		result.setScalingFactors(s);
 
 		IMatrix enviMatrix = matrix.getInterventionMatrix();
@@ -95,18 +106,78 @@ public class LcaCalculator {
 		return calculateFull(matrix, null);
 	}
 
+	/**
+	 * Calculates the full result. The upstream results are calculated row by
+	 * row from a factorization of the technology matrix A: a row b of the
+	 * intervention matrix B is multiplied with the inverse of A by solving
+	 * A<sup>T</sup> * x = b<sup>T</sup>. Thus, neither the inverse nor any
+	 * other matrix of the size of A is created. The upstream LCIA results are
+	 * calculated in the same way from the rows of the matrix M * B where M is
+	 * the matrix with the characterization factors.
+	 */
 	public FullResult calculateFull(InventoryMatrix matrix,
 	                                ImpactMatrix impactMatrix) {
-
 		FullResult result = new FullResult();
+		IFactorization lu = factorization != null ? factorization : solver
+				.factorize(matrix.getTechnologyMatrix());
+		double[] demands = calculateFull(result, lu, matrix, impactMatrix);
+		IMatrix enviMatrix = matrix.getInterventionMatrix();
+		result.setUpstreamFlowResults(calculateUpstream(lu, enviMatrix,
+				demands));
+		if (impactMatrix != null) {
+			IMatrix impactFlows = solver.multiply(
+					impactMatrix.getFactorMatrix(), enviMatrix);
+			result.setUpstreamImpactResults(calculateUpstream(lu, impactFlows,
+					demands));
+		}
+		return result;
+	}
+
+	public LazyFullResult calculateLazy(InventoryMatrix matrix) {
+		return calculateLazy(matrix, null);
+	}
+
+	/**
+	 * Calculates a full result where the upstream results are calculated on
+	 * demand (see {@link LazyFullResult}). The result keeps the factorization
+	 * of the technology matrix.
+	 */
+	public LazyFullResult calculateLazy(InventoryMatrix matrix,
+	                                    ImpactMatrix impactMatrix) {
+		LazyFullResult result = new LazyFullResult();
+		IFactorization lu = factorization != null ? factorization : solver
+				.factorize(matrix.getTechnologyMatrix());
+		double[] demands = calculateFull(result, lu, matrix, impactMatrix);
+		IMatrix enviMatrix = matrix.getInterventionMatrix();
+		result.setFactorization(lu);
+		result.setDemands(demands);
+		result.setInterventionMatrix(enviMatrix);
+		if (impactMatrix != null) {
+			IMatrix impactFlows = solver.multiply(
+					impactMatrix.getFactorMatrix(), enviMatrix);
+			result.setImpactFlowMatrix(impactFlows);
+		}
+		return result;
+	}
+
+	/**
+	 * Calculates all parts of a full result except the upstream results and
+	 * returns the demands of the process-products with which the upstream
+	 * results are scaled.
+	 */
+	private double[] calculateFull(FullResult result, IFactorization lu,
+			InventoryMatrix matrix, ImpactMatrix impactMatrix) {
+
 		result.setFlowIndex(matrix.getFlowIndex());
 		result.setProductIndex(matrix.getProductIndex());
 
 		ProductIndex productIndex = matrix.getProductIndex();
 		IMatrix techMatrix = matrix.getTechnologyMatrix();
 		IMatrix enviMatrix = matrix.getInterventionMatrix();
-		IMatrix inverse = solver.invert(techMatrix);
-		double[] scalingVector = getScalingVector(inverse, productIndex);
+		int refIdx = productIndex.getIndex(productIndex.getRefProduct());
+		double[] refDemand = new double[productIndex.size()];
+		refDemand[refIdx] = productIndex.getDemand();
+		double[] scalingVector = lu.solve(refDemand);
 		result.setScalingFactors(scalingVector);
 
 		// single results
@@ -114,22 +185,18 @@ public class LcaCalculator {
 		solver.scaleColumns(singleResult, scalingVector);
 		result.setSingleFlowResults(singleResult);
 
-		// total results
+		// total results = upstream results of the reference product
 		double[] demands = new double[productIndex.size()];
 		for (int i = 0; i < productIndex.size(); i++) {
 			double entry = techMatrix.getEntry(i, i);
 			double s = scalingVector[i];
 			demands[i] = s * entry;
 		}
-		IMatrix totalResult = solver.multiply(enviMatrix, inverse);
-
-		// allow GC
-		inverse = null;
-
-		solver.scaleColumns(totalResult, demands);
-		result.setUpstreamFlowResults(totalResult);
-		int refIdx = productIndex.getIndex(productIndex.getRefProduct());
-		double[] g = totalResult.getColumn(refIdx);
+		double[] g = solver.multiply(enviMatrix, scalingVector);
+		double refFactor = productIndex.getDemand() == 0 ? 0 : demands[refIdx]
+				/ productIndex.getDemand();
+		for (int i = 0; i < g.length; i++)
+			g[i] *= refFactor;
 		result.setTotalFlowResults(g);
 
 		LinkContributions linkContributions = LinkContributions.calculate(
@@ -146,22 +213,47 @@ public class LcaCalculator {
 			solver.scaleColumns(singleFlowImpacts, g);
 			result.setSingleFlowImpacts(singleFlowImpacts);
 
-			IMatrix totalImpactResult = solver.multiply(factors, totalResult);
-			result.setUpstreamImpactResults(totalImpactResult);
-			result.setTotalImpactResults(totalImpactResult.getColumn(refIdx));
+			result.setTotalImpactResults(solver.multiply(factors, g));
+		}
+		return demands;
+	}
+
+	/**
+	 * Calculates m * A<sup>-1</sup> * diag(demands) row by row via the
+	 * transposed system of the given factorization of A. The result is a
+	 * dense matrix as (nearly) all cells have a value.
+	 */
+	private IMatrix calculateUpstream(IFactorization lu, IMatrix m,
+			double[] demands) {
+		int rows = m.getRowDimension();
+		int cols = lu.size();
+		IMatrix result = solver.getDenseMatrixFactory().create(rows, cols);
+		for (int row = 0; row < rows; row++) {
+			double[] b = m.getRow(row);
+			if (isZero(b))
+				continue;
+			double[] x = lu.solveTranspose(b);
+			for (int col = 0; col < cols; col++)
+				result.setEntry(row, col, x[col] * demands[col]);
 		}
 		return result;
+	}
 
+	private boolean isZero(double[] vector) {
+		for (double val : vector) {
+			if (val != 0)
+				return false;
+		}
+		return true;
 	}
 
-	private double[] getScalingVector(IMatrix inverse, ProductIndex productIndex) {
-		LongPair refProduct = productIndex.getRefProduct();
-		int idx = productIndex.getIndex(refProduct);
-		double[] s = inverse.getColumn(idx);
-		double demand = productIndex.getDemand();
-		for (int i = 0; i < s.length; i++)
-			s[i] *= demand;
-		return s;
+	private double[] solve(IMatrix techMatrix, ProductIndex productIndex) {
+		int idx = productIndex.getIndex(productIndex.getRefProduct());
+		if (factorization == null)
+			return solver.solve(techMatrix, idx, productIndex.getDemand());
+		double[] demand = new double[productIndex.size()];
+		demand[idx] = productIndex.getDemand();
+		return factorization.solve(demand);
 	}
 
 }
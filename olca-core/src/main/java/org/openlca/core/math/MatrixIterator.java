@@ -0,0 +1,11 @@
+package org.openlca.core.math;
+
+/**
+ * A function that is called for the non-zero entries of a matrix (see
+ * {@link IMatrix#iterate(MatrixIterator)}).
+ */
+public interface MatrixIterator {
+
+	void next(int row, int col, double val);
+
+}
@@ -7,40 +7,70 @@ public abstract class NumberGenerator {
 	public abstract double next();
 
 	public static NumberGenerator normal(double mean, double standardDeviation) {
-		return new Normal(mean, standardDeviation);
+		return normal(mean, standardDeviation, null);
 	}
 
 	public static NumberGenerator logNormal(double geometricMean,
 			double geometricStandardDeviation) {
-		return new LogNormal(geometricMean, geometricStandardDeviation);
+		return logNormal(geometricMean, geometricStandardDeviation, null);
 	}
 
 	public static NumberGenerator uniform(double min, double max) {
-		if (min == max)
-			return new Discrete(max);
-		if (max < min)
-			return new Uniform(max, min);
-		return new Uniform(min, max);
+		return uniform(min, max, null);
 	}
 
 	public static NumberGenerator triangular(double min, double mode, double max) {
-		return new Triangular(min, mode, max);
+		return triangular(min, mode, max, null);
 	}
 
 	public static NumberGenerator discrete(double val) {
 		return new Discrete(val);
 	}
 
+	/**
+	 * Creates a generator for a normal distribution that takes its random
+	 * numbers from the given source. If the given source is null, a new source
+	 * is created for the generator. The same applies for the other generator
+	 * methods with a random source parameter. Sharing a seeded source between
+	 * generators makes a simulation reproducible.
+	 */
+	public static NumberGenerator normal(double mean, double standardDeviation,
+			Random random) {
+		return new Normal(mean, standardDeviation, random);
+	}
+
+	public static NumberGenerator logNormal(double geometricMean,
+			double geometricStandardDeviation, Random random) {
+		return new LogNormal(geometricMean, geometricStandardDeviation, random);
+	}
+
+	public static NumberGenerator uniform(double min, double max, Random random) {
+		if (min == max)
+			return new Discrete(max);
+		if (max < min)
+			return new Uniform(max, min, random);
+		return new Uniform(min, max, random);
+	}
+
+	public static NumberGenerator triangular(double min, double mode,
+			double max, Random random) {
+		return new Triangular(min, mode, max, random);
+	}
+
+	private static Random source(Random random) {
+		return random != null ? random : new Random();
+	}
+
 	private static class Normal extends NumberGenerator {
 
 		private final Random rand;
 		private final double mean;
 		private final double std;
 
-		Normal(double mean, double std) {
+		Normal(double mean, double std, Random random) {
 			this.mean = mean;
 			this.std = std;
-			this.rand = new Random();
+			this.rand = source(random);
 		}
 
 		@Override
@@ -53,13 +83,13 @@ public abstract class NumberGenerator {
 
 		private final Normal normal;
 
-		LogNormal(double geoMean, double geoStd) {
+		LogNormal(double geoMean, double geoStd, Random random) {
 			// the mean and the standard deviation of the *underlying*
 			// distribution is the natural logarithm of the geometric mean and
 			// geometric standard deviation
 			double mean = Math.log(Math.abs(geoMean));
 			double std = Math.log(Math.abs(geoStd));
-			normal = new Normal(mean, std);
+			normal = new Normal(mean, std, random);
 		}
 
 		@Override
@@ -74,10 +104,10 @@ public abstract class NumberGenerator {
 		private final double min;
 		private final double range;
 
-		Uniform(double min, double max) {
+		Uniform(double min, double max, Random random) {
 			this.min = min;
 			this.range = max - min;
-			this.rand = new Random();
+			this.rand = source(random);
 		}
 
 		@Override
@@ -88,14 +118,16 @@ public abstract class NumberGenerator {
 
 	private static class Triangular extends NumberGenerator {
 
+		private final Random rand;
 		private double min;
 		private double max;
 		private double mode;
 
-		Triangular(double min, double mode, double max) {
+		Triangular(double min, double mode, double max, Random random) {
 			this.min = min;
 			this.mode = mode;
 			this.max = max;
+			this.rand = source(random);
 		}
 
 		/**
@@ -105,7 +137,7 @@ public abstract class NumberGenerator {
 		public double next() {
 			if (max == min)
 				return mode;
-			double u = Math.random();
+			double u = rand.nextDouble();
 			double fMode = (mode - min) / (max - min);
 			if (u <= fMode)
 				return min + Math.sqrt(u * (max - min) * (mode - min));
@@ -0,0 +1,268 @@
+package org.openlca.core.math;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openlca.core.matrix.ImpactMatrix;
+import org.openlca.core.matrix.ImpactTable;
+import org.openlca.core.matrix.Inventory;
+import org.openlca.core.matrix.InventoryMatrix;
+import org.openlca.core.matrix.ParameterTable;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.descriptors.ImpactMethodDescriptor;
+import org.openlca.core.results.SimpleResult;
+import org.openlca.core.results.SimulationResult;
+import org.openlca.core.results.StreamingStatistics;
+import org.openlca.expressions.FormulaInterpreter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A calculator for Monte-Carlo-Simulations that runs the iterations in
+ * parallel. Each worker thread has its own copies of the inventory, parameter,
+ * and impact tables (with their own number generators and formula
+ * interpreter) and of the matrices. In each iteration only the simple result
+ * is calculated as the simulation result contains only the total results.
+ *
+ * If a seed is set, the random numbers of an iteration only depend on the seed
+ * and the number of the iteration. Thus, the simulation result is the same for
+ * the same seed, independent from the number of threads. The results of the
+ * iterations are always added in the order of the iterations to the
+ * simulation result. As in the sequential {@link Simulator}, iterations that
+ * fail (e.g. because of a singular matrix) are skipped.
+ *
+ * The statistics of the results are calculated by the workers and merged into
+ * the simulation result when all iterations are finished. As the values of the
+ * quantile sketches depend on the order in which the values are added, the
+ * estimated percentiles can slightly differ between runs with the same seed.
+ */
+public class ParallelSimulator {
+
+	private Logger log = LoggerFactory.getLogger(getClass());
+
+	private final CalculationSetup setup;
+	private final MatrixCache cache;
+	private final IMatrixSolver solver;
+
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+	private Long seed;
+
+	private volatile boolean canceled;
+	private final AtomicInteger nextIteration = new AtomicInteger();
+	private final AtomicInteger finishedIterations = new AtomicInteger();
+
+	public ParallelSimulator(CalculationSetup setup, MatrixCache cache,
+			IMatrixSolver solver) {
+		this.setup = setup;
+		this.cache = cache;
+		this.solver = solver;
+	}
+
+	/**
+	 * Set the number of threads that are used for the simulation. The default
+	 * value is the number of available processors.
+	 */
+	public void setThreadCount(int threadCount) {
+		this.threadCount = threadCount < 1 ? 1 : threadCount;
+	}
+
+	/**
+	 * Set the seed of the random numbers to make the simulation reproducible.
+	 * By default, no seed is used.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Cancels a running simulation. The iterations that are currently
+	 * calculated are finished but no new iterations are started.
+	 */
+	public void cancel() {
+		canceled = true;
+	}
+
+	public boolean isCanceled() {
+		return canceled;
+	}
+
+	/**
+	 * Returns the number of finished (successful or failed) iterations. This
+	 * can be used to display the progress of a running simulation.
+	 */
+	public int getFinishedIterations() {
+		return finishedIterations.get();
+	}
+
+	/**
+	 * Runs the given number of iterations and returns the result. This method
+	 * blocks until all iterations are finished or the simulation was canceled.
+	 * In the latter case, the result contains the iterations that were
+	 * finished before the cancellation.
+	 */
+	public SimulationResult run(int iterations) {
+		canceled = false;
+		nextIteration.set(0);
+		finishedIterations.set(0);
+		log.trace("set up inventory");
+		Inventory inventory = DataStructures.createInventory(setup, cache);
+		ParameterTable parameterTable = DataStructures.createParameterTable(
+				cache.getDatabase(), setup, inventory);
+		ImpactTable impactTable = createImpactTable(inventory);
+		SimulationResult result = new SimulationResult();
+		result.setProductIndex(inventory.getProductIndex());
+		result.setFlowIndex(inventory.getFlowIndex());
+		if (impactTable != null)
+			result.setImpactIndex(impactTable.getCategoryIndex());
+		ResultCollector collector = new ResultCollector(result);
+		log.trace("run {} iterations in {} threads", iterations, threadCount);
+		ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+		List<Worker> workers = new ArrayList<>();
+		for (int i = 0; i < threadCount; i++) {
+			Worker worker = new Worker(inventory.copy(),
+					parameterTable.copy(), impactTable == null ? null
+							: impactTable.copy(), iterations, collector);
+			workers.add(worker);
+			pool.execute(worker);
+		}
+		pool.shutdown();
+		awaitTermination(pool);
+		for (Worker worker : workers) {
+			result.mergeFlowStatistics(worker.flowStatistics);
+			if (result.hasImpactResults())
+				result.mergeImpactStatistics(worker.impactStatistics);
+		}
+		return result;
+	}
+
+	/**
+	 * Waits until the workers are finished. If the current thread is
+	 * interrupted, the simulation is canceled but we still wait for the
+	 * iterations that are currently calculated so that the statistics of the
+	 * workers are complete.
+	 */
+	private void awaitTermination(ExecutorService pool) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (pool.awaitTermination(1, TimeUnit.SECONDS))
+					break;
+				log.trace("{} iterations finished", getFinishedIterations());
+			} catch (InterruptedException e) {
+				log.warn("simulation was interrupted", e);
+				interrupted = true;
+				cancel();
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	private ImpactTable createImpactTable(Inventory inventory) {
+		ImpactMethodDescriptor method = setup.getImpactMethod();
+		if (method == null)
+			return null;
+		ImpactTable table = ImpactTable.build(cache, method.getId(),
+				inventory.getFlowIndex());
+		return table.isEmpty() ? null : table;
+	}
+
+	private class Worker implements Runnable {
+
+		private final Inventory inventory;
+		private final ParameterTable parameterTable;
+		private final ImpactTable impactTable;
+		private final int iterations;
+		private final ResultCollector collector;
+		private final Random random = new Random();
+		private StreamingStatistics[] flowStatistics;
+		private StreamingStatistics[] impactStatistics;
+
+		Worker(Inventory inventory, ParameterTable parameterTable,
+				ImpactTable impactTable, int iterations,
+				ResultCollector collector) {
+			this.inventory = inventory;
+			this.parameterTable = parameterTable;
+			this.impactTable = impactTable;
+			this.iterations = iterations;
+			this.collector = collector;
+		}
+
+		@Override
+		public void run() {
+			IMatrixFactory<?> factory = solver.getMatrixFactory();
+			InventoryMatrix inventoryMatrix = inventory.createMatrix(factory);
+			ImpactMatrix impactMatrix = impactTable == null ? null
+					: impactTable.createMatrix(factory);
+			LcaCalculator calculator = new LcaCalculator(solver);
+			flowStatistics = SimulationResult.createStatistics(inventory
+					.getFlowIndex().size());
+			if (impactTable != null)
+				impactStatistics = SimulationResult.createStatistics(impactTable
+						.getCategoryIndex().size());
+			while (!canceled) {
+				int iteration = nextIteration.getAndIncrement();
+				if (iteration >= iterations)
+					break;
+				if (seed != null)
+					random.setSeed(seed + iteration * 0x9E3779B97F4A7C15L);
+				SimpleResult result = null;
+				try {
+					FormulaInterpreter interpreter = parameterTable
+							.simulate(random);
+					inventory.simulate(inventoryMatrix, interpreter, random);
+					if (impactMatrix != null)
+						impactTable.simulate(impactMatrix, interpreter, random);
+					result = calculator.calculateSimple(inventoryMatrix,
+							impactMatrix);
+					SimulationResult.addValues(flowStatistics,
+							result.getTotalFlowResults());
+					if (impactStatistics != null)
+						SimulationResult.addValues(impactStatistics,
+								result.getTotalImpactResults());
+				} catch (Throwable e) {
+					log.trace("simulation run failed", e);
+				}
+				collector.add(iteration, result);
+				finishedIterations.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Adds the results of the iterations in the order of the iterations to the
+	 * simulation result. Results of iterations that finished before a
+	 * previous iteration are kept until the previous iterations are finished.
+	 */
+	private class ResultCollector {
+
+		private final SimulationResult result;
+		private final Map<Integer, SimpleResult> pending = new HashMap<>();
+		private int next = 0;
+
+		ResultCollector(SimulationResult result) {
+			this.result = result;
+		}
+
+		synchronized void add(int iteration, SimpleResult iterationResult) {
+			pending.put(iteration, iterationResult);
+			while (pending.containsKey(next)) {
+				SimpleResult r = pending.remove(next);
+				next++;
+				if (r == null)
+					continue;
+				result.appendFlowValues(r.getTotalFlowResults());
+				if (result.hasImpactResults())
+					result.appendImpactValues(r.getTotalImpactResults());
+			}
+		}
+	}
+
+}
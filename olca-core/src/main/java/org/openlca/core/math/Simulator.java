@@ -14,7 +14,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A calculator for Monte-Carlo-Simulations.
+ * A calculator for Monte-Carlo-Simulations. The runs are calculated one after
+ * another; see {@link ParallelSimulator} for a calculator that runs a given
+ * number of iterations in parallel.
+ *
+ * By default, the random values of the parameters and exchanges are
+ * generated for each run separately. Block sampling can be enabled via
+ * {@link #setBlockSize(int)}: the formulas are then evaluated once for the
+ * sampled parameter values of all runs in a block instead of once per run.
+ * Note that this changes the order in which the random numbers are drawn and
+ * thus the results of a simulation with a fixed seed.
  */
 public class Simulator {
 
@@ -33,6 +42,11 @@ public class Simulator {
 	private ImpactMatrix impactMatrix;
 	private CalculationSetup setup;
 
+	private int blockSize = 1;
+
+	/** The index of the next run in the current block; -1 if there is none. */
+	private int blockRun = -1;
+
 	public Simulator(CalculationSetup setup, MatrixCache database,
 			IMatrixSolver solver) {
 		this.impactMethod = setup.getImpactMethod();
@@ -42,6 +56,16 @@ public class Simulator {
 		this.matrixSolver = solver;
 	}
 
+	/**
+	 * Sets the number of runs for which the random values are generated in
+	 * one pass. A block size of 1 (the default) means that the values are
+	 * generated for each run separately.
+	 */
+	public void setBlockSize(int blockSize) {
+		this.blockSize = blockSize < 1 ? 1 : blockSize;
+		this.blockRun = -1;
+	}
+
 	public SimulationResult getResult() {
 		return result;
 	}
@@ -56,12 +80,16 @@ public class Simulator {
 			setUp();
 		try {
 			log.trace("next simulation run");
-			FormulaInterpreter interpreter = parameterTable.simulate();
-			inventory.simulate(inventoryMatrix, interpreter);
-			if (impactMatrix != null)
-				impactTable.simulate(impactMatrix, interpreter);
+			if (blockSize > 1)
+				nextBlockRun();
+			else {
+				FormulaInterpreter interpreter = parameterTable.simulate();
+				inventory.simulate(inventoryMatrix, interpreter);
+				if (impactMatrix != null)
+					impactTable.simulate(impactMatrix, interpreter);
+			}
 			LcaCalculator solver = new LcaCalculator(matrixSolver);
-			SimpleResult inventoryResult = solver.calculateFull(
+			SimpleResult inventoryResult = solver.calculateSimple(
 					inventoryMatrix, impactMatrix);
 			appendResults(inventoryResult);
 			return true;
@@ -71,6 +99,25 @@ public class Simulator {
 		}
 	}
 
+	/**
+	 * Sets the values of the next run in the current block to the matrices.
+	 * If there is no such run, the values of a new block are generated.
+	 */
+	private void nextBlockRun() {
+		if (blockRun < 0 || blockRun >= blockSize) {
+			FormulaInterpreter interpreter = parameterTable.simulate(
+					blockSize, null);
+			inventory.simulateBlock(interpreter, blockSize, null);
+			if (impactMatrix != null)
+				impactTable.simulateBlock(interpreter, blockSize, null);
+			blockRun = 0;
+		}
+		inventory.applyBlock(inventoryMatrix, blockRun);
+		if (impactMatrix != null)
+			impactTable.applyBlock(impactMatrix, blockRun);
+		blockRun++;
+	}
+
 	private void appendResults(SimpleResult result) {
 		this.result.appendFlowResults(result.getTotalFlowResults());
 		if (this.result.hasImpactResults())
@@ -0,0 +1,286 @@
+package org.openlca.core.math;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.linear.SingularMatrixException;
+
+/**
+ * A sparse LU factorization P * A * Q = L * U of a square matrix A with partial
+ * pivoting. The column permutation Q is a fill-reducing ordering (see
+ * {@link ColumnOrdering}) and the row permutation P is determined during
+ * the factorization. The factorization is calculated column by column with the
+ * left-looking algorithm of Gilbert and Peierls so that the work is
+ * proportional to the number of floating point operations. A diagonal entry is
+ * preferred as pivot if its absolute value is not smaller than
+ * {@link #PIVOT_TOLERANCE} times the largest absolute value in the column.
+ */
+class SparseLu implements IFactorization {
+
+	static final double PIVOT_TOLERANCE = 0.1;
+
+	private final int n;
+
+	/** The column permutation: column k of L*U is column q[k] of A. */
+	private final int[] q;
+
+	/** The inverse row permutation: row i of A is row pinv[i] of L*U. */
+	private final int[] pinv;
+
+	// L in compressed column format; the unit diagonal is the first entry of
+	// each column
+	private int[] lp;
+	private int[] li;
+	private double[] lx;
+
+	// U in compressed column format; the diagonal is the last entry of each
+	// column
+	private int[] up;
+	private int[] ui;
+	private double[] ux;
+
+	private SparseLu(int n, int[] q) {
+		this.n = n;
+		this.q = q;
+		this.pinv = new int[n];
+	}
+
+	/**
+	 * Calculates the LU factorization of the given square matrix. Throws a
+	 * {@link SingularMatrixException} if the matrix is singular.
+	 */
+	public static SparseLu factorize(CompressedColumnMatrix a) {
+		if (a.getRowDimension() != a.getColumnDimension())
+			throw new IllegalArgumentException("the matrix is not square: "
+					+ a.getRowDimension() + "x" + a.getColumnDimension());
+		int[] q = ColumnOrdering.of(a);
+		SparseLu lu = new SparseLu(a.getColumnDimension(), q);
+		lu.run(a);
+		return lu;
+	}
+
+	/** Returns the dimension of the factorized matrix. */
+	@Override
+	public int size() {
+		return n;
+	}
+
+	/** Returns the number of non-zero entries in L and U. */
+	public int getNumberOfEntries() {
+		return lp[n] + up[n];
+	}
+
+	private void run(CompressedColumnMatrix a) {
+		int capacity = 4 * a.getNumberOfEntries() + n;
+		lp = new int[n + 1];
+		li = new int[capacity];
+		lx = new double[capacity];
+		up = new int[n + 1];
+		ui = new int[capacity];
+		ux = new double[capacity];
+		Arrays.fill(pinv, -1);
+
+		double[] x = new double[n];
+		int[] xi = new int[n];
+		int[] stack = new int[n];
+		int[] positions = new int[n];
+		int[] marks = new int[n];
+		Arrays.fill(marks, -1);
+
+		int lnz = 0;
+		int unz = 0;
+		for (int k = 0; k < n; k++) {
+
+			lp[k] = lnz;
+			up[k] = unz;
+			if (lnz + n > li.length)
+				growL(2 * li.length + n);
+			if (unz + n > ui.length)
+				growU(2 * ui.length + n);
+
+			// x = L \ A(:, col) where the pattern of x is in xi[top..n-1] in
+			// topological order
+			int col = q[k];
+			int top = reach(a, col, k, xi, stack, positions, marks);
+			for (int p = top; p < n; p++)
+				x[xi[p]] = 0;
+			for (int p = a.columnPointers[col]; p < a.columnPointers[col + 1]; p++)
+				x[a.rowIndices[p]] = a.values[p];
+			for (int p = top; p < n; p++) {
+				int j = xi[p];
+				int J = pinv[j];
+				if (J < 0)
+					continue;
+				double xj = x[j];
+				for (int pl = lp[J] + 1; pl < lp[J + 1]; pl++)
+					x[li[pl]] -= lx[pl] * xj;
+			}
+
+			// find the pivot and store the column of U
+			int ipiv = -1;
+			double amax = -1;
+			for (int p = top; p < n; p++) {
+				int i = xi[p];
+				if (pinv[i] < 0) {
+					double t = Math.abs(x[i]);
+					if (t > amax) {
+						amax = t;
+						ipiv = i;
+					}
+				} else {
+					ui[unz] = pinv[i];
+					ux[unz] = x[i];
+					unz++;
+				}
+			}
+			if (ipiv == -1 || amax <= 0)
+				throw new SingularMatrixException();
+			if (pinv[col] < 0 && Math.abs(x[col]) >= amax * PIVOT_TOLERANCE)
+				ipiv = col;
+			double pivot = x[ipiv];
+			ui[unz] = k;
+			ux[unz] = pivot;
+			unz++;
+			pinv[ipiv] = k;
+
+			// store the column of L
+			li[lnz] = ipiv;
+			lx[lnz] = 1;
+			lnz++;
+			for (int p = top; p < n; p++) {
+				int i = xi[p];
+				if (pinv[i] < 0) {
+					li[lnz] = i;
+					lx[lnz] = x[i] / pivot;
+					lnz++;
+				}
+				x[i] = 0;
+			}
+		}
+		lp[n] = lnz;
+		up[n] = unz;
+
+		// map the row indices of L to the pivoted rows
+		for (int p = 0; p < lnz; p++)
+			li[p] = pinv[li[p]];
+		li = Arrays.copyOf(li, lnz);
+		lx = Arrays.copyOf(lx, lnz);
+		ui = Arrays.copyOf(ui, unz);
+		ux = Arrays.copyOf(ux, unz);
+	}
+
+	/**
+	 * Calculates the non-zero pattern of the solution of L * x = A(:, col)
+	 * via a depth-first search in the graph of L. The pattern is stored in
+	 * xi[top..n-1] in topological order and top is returned. The node indices
+	 * are the (not yet permuted) row indices of A.
+	 */
+	private int reach(CompressedColumnMatrix a, int col, int k, int[] xi,
+			int[] stack, int[] positions, int[] marks) {
+		int top = n;
+		for (int p = a.columnPointers[col]; p < a.columnPointers[col + 1]; p++) {
+			int start = a.rowIndices[p];
+			if (marks[start] == k)
+				continue;
+			// non-recursive depth-first search starting at node `start`
+			int head = 0;
+			stack[0] = start;
+			while (head >= 0) {
+				int j = stack[head];
+				int J = pinv[j];
+				if (marks[j] != k) {
+					marks[j] = k;
+					positions[head] = J < 0 ? 0 : lp[J] + 1;
+				}
+				boolean done = true;
+				int end = J < 0 ? 0 : lp[J + 1];
+				for (int pl = positions[head]; pl < end; pl++) {
+					int i = li[pl];
+					if (marks[i] == k)
+						continue;
+					positions[head] = pl + 1;
+					stack[++head] = i;
+					done = false;
+					break;
+				}
+				if (done) {
+					head--;
+					xi[--top] = j;
+				}
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * Solves A * x = b and returns x. The given vector b is not modified.
+	 */
+	@Override
+	public double[] solve(double[] b) {
+		double[] c = new double[n];
+		for (int i = 0; i < n; i++)
+			c[pinv[i]] = b[i];
+		// L \ c
+		for (int j = 0; j < n; j++) {
+			double cj = c[j];
+			if (cj == 0)
+				continue;
+			for (int p = lp[j] + 1; p < lp[j + 1]; p++)
+				c[li[p]] -= lx[p] * cj;
+		}
+		// U \ c
+		for (int j = n - 1; j >= 0; j--) {
+			int diag = up[j + 1] - 1;
+			c[j] /= ux[diag];
+			double cj = c[j];
+			if (cj == 0)
+				continue;
+			for (int p = up[j]; p < diag; p++)
+				c[ui[p]] -= ux[p] * cj;
+		}
+		double[] x = new double[n];
+		for (int k = 0; k < n; k++)
+			x[q[k]] = c[k];
+		return x;
+	}
+
+	/**
+	 * Solves A<sup>T</sup> * x = b and returns x. The given vector b is not
+	 * modified.
+	 */
+	@Override
+	public double[] solveTranspose(double[] b) {
+		double[] c = new double[n];
+		for (int k = 0; k < n; k++)
+			c[k] = b[q[k]];
+		// U' \ c
+		for (int j = 0; j < n; j++) {
+			int diag = up[j + 1] - 1;
+			double cj = c[j];
+			for (int p = up[j]; p < diag; p++)
+				cj -= ux[p] * c[ui[p]];
+			c[j] = cj / ux[diag];
+		}
+		// L' \ c
+		for (int j = n - 1; j >= 0; j--) {
+			double cj = c[j];
+			for (int p = lp[j] + 1; p < lp[j + 1]; p++)
+				cj -= lx[p] * c[li[p]];
+			c[j] = cj;
+		}
+		double[] x = new double[n];
+		for (int i = 0; i < n; i++)
+			x[i] = c[pinv[i]];
+		return x;
+	}
+
+	private void growL(int capacity) {
+		li = Arrays.copyOf(li, capacity);
+		lx = Arrays.copyOf(lx, capacity);
+	}
+
+	private void growU(int capacity) {
+		ui = Arrays.copyOf(ui, capacity);
+		ux = Arrays.copyOf(ux, capacity);
+	}
+
+}
@@ -0,0 +1,205 @@
+package org.openlca.core.math;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.iterator.TIntDoubleIterator;
+import gnu.trove.map.hash.TIntDoubleHashMap;
+
+import java.util.Arrays;
+
+import org.openlca.util.MatrixUtils;
+
+/**
+ * A sparse matrix that stores the non-zero values of each column in a
+ * primitive hash map. Filling this matrix in an arbitrary order is fast and
+ * it can be converted into the compressed column format via
+ * {@link #compress()} which is used by the {@link SparseSolver}.
+ */
+public class SparseMatrix implements IMatrix {
+
+	private final int rows;
+	private final int cols;
+
+	private final TIntDoubleHashMap[] data;
+
+	public SparseMatrix(int rows, int cols) {
+		this.rows = rows;
+		this.cols = cols;
+		data = new TIntDoubleHashMap[cols];
+	}
+
+	@Override
+	public int getRowDimension() {
+		return rows;
+	}
+
+	@Override
+	public int getColumnDimension() {
+		return cols;
+	}
+
+	@Override
+	public void setEntry(int row, int col, double val) {
+		TIntDoubleHashMap column = data[col];
+		if (val == 0) {
+			if (column != null)
+				column.remove(row);
+			return;
+		}
+		if (column == null) {
+			column = new TIntDoubleHashMap(Constants.DEFAULT_CAPACITY,
+					Constants.DEFAULT_LOAD_FACTOR, -1, 0);
+			data[col] = column;
+		}
+		column.put(row, val);
+	}
+
+	@Override
+	public double getEntry(int row, int col) {
+		TIntDoubleHashMap column = data[col];
+		if (column == null)
+			return 0;
+		return column.get(row);
+	}
+
+	@Override
+	public double[] getColumn(int i) {
+		double[] column = new double[rows];
+		TIntDoubleHashMap map = data[i];
+		if (map == null)
+			return column;
+		TIntDoubleIterator it = map.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			column[it.key()] = it.value();
+		}
+		return column;
+	}
+
+	@Override
+	public double[] getRow(int i) {
+		double[] row = new double[cols];
+		for (int col = 0; col < cols; col++) {
+			row[col] = getEntry(i, col);
+		}
+		return row;
+	}
+
+	@Override
+	public SparseMatrix copy() {
+		SparseMatrix copy = new SparseMatrix(rows, cols);
+		for (int col = 0; col < cols; col++) {
+			TIntDoubleHashMap column = data[col];
+			if (column == null)
+				continue;
+			copy.data[col] = new TIntDoubleHashMap(column);
+		}
+		return copy;
+	}
+
+	@Override
+	public void iterate(MatrixIterator it) {
+		for (int col = 0; col < cols; col++) {
+			TIntDoubleHashMap column = data[col];
+			if (column == null)
+				continue;
+			TIntDoubleIterator entries = column.iterator();
+			while (entries.hasNext()) {
+				entries.advance();
+				it.next(entries.key(), col, entries.value());
+			}
+		}
+	}
+
+	@Override
+	public double[] getRowSums() {
+		double[] sums = new double[rows];
+		for (int col = 0; col < cols; col++) {
+			TIntDoubleHashMap column = data[col];
+			if (column == null)
+				continue;
+			TIntDoubleIterator it = column.iterator();
+			while (it.hasNext()) {
+				it.advance();
+				sums[it.key()] += it.value();
+			}
+		}
+		return sums;
+	}
+
+	@Override
+	public double[] getColumnSums() {
+		double[] sums = new double[cols];
+		for (int col = 0; col < cols; col++) {
+			TIntDoubleHashMap column = data[col];
+			if (column == null)
+				continue;
+			double sum = 0;
+			for (double val : column.values())
+				sum += val;
+			sums[col] = sum;
+		}
+		return sums;
+	}
+
+	@Override
+	public void addScaled(double factor, IMatrix m) {
+		MatrixUtils.addScaled(this, factor, m);
+	}
+
+	@Override
+	public void scaleColumns(double[] v) {
+		for (int col = 0; col < cols; col++) {
+			TIntDoubleHashMap column = data[col];
+			if (column == null)
+				continue;
+			double factor = v[col];
+			if (factor == 0) {
+				data[col] = null;
+				continue;
+			}
+			TIntDoubleIterator it = column.iterator();
+			while (it.hasNext()) {
+				it.advance();
+				it.setValue(it.value() * factor);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of non-zero entries in this matrix.
+	 */
+	public int getNumberOfEntries() {
+		int count = 0;
+		for (TIntDoubleHashMap column : data) {
+			if (column != null)
+				count += column.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Converts this matrix into the compressed column format. The row indices
+	 * of each column are sorted in ascending order.
+	 */
+	public CompressedColumnMatrix compress() {
+		CompressedColumnMatrix c = new CompressedColumnMatrix(rows, cols,
+				getNumberOfEntries());
+		int idx = 0;
+		for (int col = 0; col < cols; col++) {
+			c.columnPointers[col] = idx;
+			TIntDoubleHashMap column = data[col];
+			if (column == null)
+				continue;
+			int[] rowIndices = column.keys();
+			Arrays.sort(rowIndices);
+			for (int row : rowIndices) {
+				c.rowIndices[idx] = row;
+				c.values[idx] = column.get(row);
+				idx++;
+			}
+		}
+		c.columnPointers[cols] = idx;
+		return c;
+	}
+
+}
@@ -0,0 +1,9 @@
+package org.openlca.core.math;
+
+public class SparseMatrixFactory implements IMatrixFactory<SparseMatrix> {
+
+	@Override
+	public SparseMatrix create(int rows, int columns) {
+		return new SparseMatrix(rows, columns);
+	}
+}
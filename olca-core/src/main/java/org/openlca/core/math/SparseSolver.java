@@ -0,0 +1,141 @@
+package org.openlca.core.math;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * A pure Java solver for sparse matrices. The systems of linear equations are
+ * solved with a sparse LU factorization (see {@link SparseLu}) so that the
+ * memory and time needed for a calculation scale with the number of non-zero
+ * entries of the technology matrix and not with its dimension. This solver can
+ * be used for large product systems when the native libraries are not
+ * available. Note that the results of {@link #invert(IMatrix)} and of
+ * multiplications with dense matrices are dense matrices.
+ */
+public class SparseSolver implements IMatrixSolver {
+
+	private final JavaSolver denseSolver = new JavaSolver();
+
+	@Override
+	public double[] solve(IMatrix a, int idx, double d) {
+		SparseLu lu = SparseLu.factorize(CompressedColumnMatrix.of(a));
+		double[] b = new double[a.getRowDimension()];
+		b[idx] = d;
+		return lu.solve(b);
+	}
+
+	@Override
+	public IFactorization factorize(IMatrix a) {
+		return SparseLu.factorize(CompressedColumnMatrix.of(a));
+	}
+
+	@Override
+	public IMatrix invert(IMatrix a) {
+		SparseLu lu = SparseLu.factorize(CompressedColumnMatrix.of(a));
+		int n = lu.size();
+		RealMatrix inverse = new Array2DRowRealMatrix(n, n);
+		double[] e = new double[n];
+		for (int col = 0; col < n; col++) {
+			e[col] = 1;
+			inverse.setColumn(col, lu.solve(e));
+			e[col] = 0;
+		}
+		return new JavaMatrix(inverse);
+	}
+
+	@Override
+	public IMatrix multiply(IMatrix a, IMatrix b) {
+		if (!isSparse(a))
+			return denseSolver.multiply(dense(a), dense(b));
+		CompressedColumnMatrix _a = CompressedColumnMatrix.of(a);
+		if (isSparse(b))
+			return multiplySparse(_a, CompressedColumnMatrix.of(b));
+		int rows = a.getRowDimension();
+		int cols = b.getColumnDimension();
+		RealMatrix c = new Array2DRowRealMatrix(rows, cols);
+		for (int col = 0; col < cols; col++) {
+			double[] y = multiply(_a, b.getColumn(col));
+			c.setColumn(col, y);
+		}
+		return new JavaMatrix(c);
+	}
+
+	private SparseMatrix multiplySparse(CompressedColumnMatrix a,
+			CompressedColumnMatrix b) {
+		SparseMatrix c = new SparseMatrix(a.rows, b.columns);
+		double[] x = new double[a.rows];
+		boolean[] used = new boolean[a.rows];
+		int[] pattern = new int[a.rows];
+		for (int col = 0; col < b.columns; col++) {
+			int count = 0;
+			for (int pb = b.columnPointers[col]; pb < b.columnPointers[col + 1]; pb++) {
+				int k = b.rowIndices[pb];
+				double bkj = b.values[pb];
+				for (int pa = a.columnPointers[k]; pa < a.columnPointers[k + 1]; pa++) {
+					int row = a.rowIndices[pa];
+					if (!used[row]) {
+						used[row] = true;
+						pattern[count++] = row;
+					}
+					x[row] += a.values[pa] * bkj;
+				}
+			}
+			for (int i = 0; i < count; i++) {
+				int row = pattern[i];
+				c.setEntry(row, col, x[row]);
+				x[row] = 0;
+				used[row] = false;
+			}
+		}
+		return c;
+	}
+
+	@Override
+	public double[] multiply(IMatrix m, double[] v) {
+		if (!isSparse(m))
+			return denseSolver.multiply(dense(m), v);
+		return multiply(CompressedColumnMatrix.of(m), v);
+	}
+
+	private double[] multiply(CompressedColumnMatrix m, double[] v) {
+		double[] y = new double[m.rows];
+		for (int col = 0; col < m.columns; col++) {
+			double vj = v[col];
+			if (vj == 0)
+				continue;
+			for (int p = m.columnPointers[col]; p < m.columnPointers[col + 1]; p++)
+				y[m.rowIndices[p]] += m.values[p] * vj;
+		}
+		return y;
+	}
+
+	@Override
+	public void scaleColumns(IMatrix m, double[] v) {
+		m.scaleColumns(v);
+	}
+
+	@Override
+	public IMatrixFactory<?> getMatrixFactory() {
+		return new SparseMatrixFactory();
+	}
+
+	@Override
+	public IMatrixFactory<?> getDenseMatrixFactory() {
+		return new JavaMatrixFactory();
+	}
+
+	private boolean isSparse(IMatrix m) {
+		return m instanceof SparseMatrix || m instanceof CompressedColumnMatrix;
+	}
+
+	private JavaMatrix dense(IMatrix m) {
+		if (m instanceof JavaMatrix)
+			return (JavaMatrix) m;
+		RealMatrix r = new Array2DRowRealMatrix(m.getRowDimension(),
+				m.getColumnDimension());
+		for (int col = 0; col < m.getColumnDimension(); col++)
+			r.setColumn(col, m.getColumn(col));
+		return new JavaMatrix(r);
+	}
+
+}
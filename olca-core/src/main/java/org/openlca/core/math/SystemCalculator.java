@@ -1,27 +1,64 @@
 package org.openlca.core.math;
 
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.matrix.ImpactMatrix;
 import org.openlca.core.matrix.ImpactTable;
 import org.openlca.core.matrix.Inventory;
 import org.openlca.core.matrix.InventoryMatrix;
+import org.openlca.core.matrix.InventoryUpdate;
+import org.openlca.core.matrix.LongPair;
 import org.openlca.core.matrix.ParameterTable;
+import org.openlca.core.matrix.ProductIndex;
 import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.AllocationMethod;
+import org.openlca.core.model.ParameterRedef;
+import org.openlca.core.model.ProductSystem;
 import org.openlca.core.results.ContributionResult;
 import org.openlca.core.results.FullResult;
+import org.openlca.core.results.LazyFullResult;
 import org.openlca.core.results.SimpleResult;
 import org.openlca.expressions.FormulaInterpreter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Calculates the results of product system setups. The matrices and the
+ * factorization of the technology matrix of the last setup are kept in the
+ * calculator. If the next setup differs only in the demanded amount (e.g. the
+ * variants of a project with the same product system and parameters), they are
+ * reused so that the technology matrix is not factorized again. The product
+ * systems of the setups are compared by identity; thus, a new calculator
+ * should be used when a product system was modified.
+ *
+ * When processes of the last setup were evicted from the matrix cache in the
+ * meantime (because they were modified), only the columns of these processes
+ * are updated in the matrices (see {@link InventoryUpdate}) and the
+ * factorization of the technology matrix is updated with a low-rank update
+ * (see {@link UpdatedFactorization}) if possible. Any other eviction that
+ * could change the matrices causes a complete rebuild. As parameters are not
+ * cached, the parameter table is read again for each calculation and the
+ * matrices are rebuilt when parameters other than the parameters of the
+ * evicted processes were changed.
+ */
 public class SystemCalculator {
 
 	private Logger log = LoggerFactory.getLogger(getClass());
 	private final MatrixCache matrixCache;
 	private final IMatrixSolver solver;
 
+	private Inventory inventory;
 	private InventoryMatrix inventoryMatrix;
 	private ImpactMatrix impactMatrix;
+	private IFactorization factorization;
+	private ParameterTable parameterTable;
+	private SetupKey setupKey;
+	private long cacheVersion;
 
 	public SystemCalculator(MatrixCache cache, IMatrixSolver solver) {
 		this.matrixCache = cache;
@@ -31,30 +68,54 @@ public class SystemCalculator {
 	public SimpleResult calculateSimple(CalculationSetup setup) {
 		log.trace("calculate product system - simple result");
 		doSetUp(setup);
-		LcaCalculator calculator = new LcaCalculator(solver);
+		LcaCalculator calculator = new LcaCalculator(solver, factorization);
 		return calculator.calculateSimple(inventoryMatrix, impactMatrix);
 	}
 
 	public ContributionResult calculateContributions(CalculationSetup setup) {
 		log.trace("calculate product system - contribution result");
 		doSetUp(setup);
-		LcaCalculator calculator = new LcaCalculator(solver);
+		LcaCalculator calculator = new LcaCalculator(solver, factorization);
 		return calculator.calculateContributions(inventoryMatrix, impactMatrix);
 	}
 
 	public FullResult calculateFull(CalculationSetup setup) {
 		log.trace("calculate product system - full result");
 		doSetUp(setup);
-		LcaCalculator calculator = new LcaCalculator(solver);
+		LcaCalculator calculator = new LcaCalculator(solver, factorization);
 		return calculator.calculateFull(inventoryMatrix, impactMatrix);
 	}
 
+	/**
+	 * Calculates a full result where the upstream results are calculated on
+	 * demand from the factorization of the technology matrix.
+	 */
+	public LazyFullResult calculateLazy(CalculationSetup setup) {
+		log.trace("calculate product system - lazy full result");
+		doSetUp(setup);
+		LcaCalculator calculator = new LcaCalculator(solver, factorization);
+		return calculator.calculateLazy(inventoryMatrix, impactMatrix);
+	}
+
 	private void doSetUp(CalculationSetup setup) {
+		SetupKey key = new SetupKey(setup);
+		if (key.equals(setupKey) && update(setup)) {
+			log.trace("reuse matrices and factorization of last setup");
+			// the results of the last setup keep their product index
+			ProductIndex productIndex = inventoryMatrix.getProductIndex()
+					.copy();
+			productIndex.setDemand(ReferenceAmount.get(setup));
+			inventoryMatrix.setProductIndex(productIndex);
+			return;
+		}
+		setupKey = null;
+		cacheVersion = matrixCache.getVersion();
 		IDatabase db = matrixCache.getDatabase();
-		Inventory inventory = DataStructures.createInventory(setup, matrixCache);
+		inventory = DataStructures.createInventory(setup, matrixCache);
 		ParameterTable parameterTable = DataStructures.createParameterTable(db,
 				setup, inventory);
 		FormulaInterpreter interpreter = parameterTable.createInterpreter();
+		this.parameterTable = parameterTable;
 		this.inventoryMatrix = inventory.createMatrix(
 				solver.getMatrixFactory(), interpreter);
 		if (setup.getImpactMethod() != null) {
@@ -62,6 +123,126 @@ public class SystemCalculator {
 					.getImpactMethod().getId(), inventory.getFlowIndex());
 			this.impactMatrix = impactTable.createMatrix(
 					solver.getMatrixFactory(), interpreter);
+		} else
+			this.impactMatrix = null;
+		this.factorization = solver.factorize(inventoryMatrix
+				.getTechnologyMatrix());
+		this.setupKey = key;
+	}
+
+	/**
+	 * Updates the matrices and factorization of the last setup with the
+	 * processes that were evicted from the matrix cache since they were
+	 * created. Returns false if this is not possible and the matrices need to
+	 * be rebuilt.
+	 */
+	private boolean update(CalculationSetup setup) {
+		long version = matrixCache.getVersion();
+		long[] processIds = matrixCache.getEvictedProcesses(cacheVersion);
+		if (processIds == null)
+			return false;
+		InventoryUpdate update = InventoryUpdate.create(matrixCache,
+				inventory, processIds);
+		if (update == null)
+			return false;
+		ParameterTable parameterTable = DataStructures.createParameterTable(
+				matrixCache.getDatabase(), setup, update.getInventory());
+		TLongHashSet changedScopes = parameterTable
+				.getChangedScopes(this.parameterTable);
+		changedScopes.removeAll(processIds);
+		if (!changedScopes.isEmpty()) {
+			log.trace("parameters were changed; rebuild the matrices");
+			return false;
+		}
+		cacheVersion = version;
+		this.parameterTable = parameterTable;
+		if (update.isEmpty())
+			return true;
+		log.trace("update {} columns of the last setup",
+				update.getColumns().length);
+		FormulaInterpreter interpreter = parameterTable.createInterpreter();
+		// the matrices are copied as they may be shared with results
+		InventoryMatrix matrix = new InventoryMatrix();
+		matrix.setFlowIndex(inventoryMatrix.getFlowIndex());
+		matrix.setProductIndex(inventoryMatrix.getProductIndex());
+		IMatrix techMatrix = inventoryMatrix.getTechnologyMatrix().copy();
+		matrix.setTechnologyMatrix(techMatrix);
+		matrix.setInterventionMatrix(inventoryMatrix.getInterventionMatrix()
+				.copy());
+		int[] columns = update.getColumns();
+		double[][] deltas = new double[columns.length][];
+		for (int j = 0; j < columns.length; j++)
+			deltas[j] = techMatrix.getColumn(columns[j]);
+		update.apply(matrix, interpreter);
+		for (int j = 0; j < columns.length; j++) {
+			double[] column = techMatrix.getColumn(columns[j]);
+			for (int i = 0; i < column.length; i++)
+				deltas[j][i] = column[i] - deltas[j][i];
+		}
+		IFactorization f = UpdatedFactorization.create(factorization, columns,
+				deltas);
+		if (f == null) {
+			log.trace("factorize the updated technology matrix");
+			f = solver.factorize(techMatrix);
+		}
+		this.inventory = update.getInventory();
+		this.inventoryMatrix = matrix;
+		this.factorization = f;
+		return true;
+	}
+
+	/**
+	 * Contains the values of a calculation setup that are relevant for the
+	 * matrices of the calculation. The amount, unit, and flow property of the
+	 * setup only change the demand value and are thus not part of the key.
+	 */
+	private static class SetupKey {
+
+		private final ProductSystem system;
+		private final long systemId;
+		private final Long refExchangeId;
+		private final LongPair refProduct;
+		private final AllocationMethod allocationMethod;
+		private final Long impactMethodId;
+		private final List<Object> redefs = new ArrayList<>();
+
+		SetupKey(CalculationSetup setup) {
+			system = setup.getProductSystem();
+			systemId = setup.getProductSystemId();
+			refExchangeId = system == null
+					|| system.getReferenceExchange() == null ? null : system
+					.getReferenceExchange().getId();
+			refProduct = setup.getReferenceProduct();
+			allocationMethod = setup.getAllocationMethod();
+			impactMethodId = setup.getImpactMethod() == null ? null : setup
+					.getImpactMethod().getId();
+			for (ParameterRedef redef : setup.getParameterRedefs()) {
+				redefs.add(redef.getName());
+				redefs.add(redef.getContextId());
+				redefs.add(redef.getValue());
+			}
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof SetupKey))
+				return false;
+			SetupKey other = (SetupKey) obj;
+			return system == other.system
+					&& systemId == other.systemId
+					&& Objects.equals(refExchangeId, other.refExchangeId)
+					&& Objects.equals(refProduct, other.refProduct)
+					&& Objects.equals(allocationMethod, other.allocationMethod)
+					&& Objects.equals(impactMethodId, other.impactMethodId)
+					&& redefs.equals(other.redefs);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(systemId, refExchangeId, allocationMethod,
+					impactMethodId, redefs);
 		}
 	}
 }
@@ -0,0 +1,231 @@
+package org.openlca.core.math;
+
+/**
+ * The factorization of a matrix A' that differs from a factorized matrix A
+ * only in k columns. The systems of linear equations with A' are solved with
+ * the factorization of A and the Sherman-Morrison-Woodbury formula: with A' =
+ * A + D * E<sup>T</sup>, where D contains the k column differences and E the
+ * respective unit vectors, it is
+ *
+ * <pre>
+ * A'^-1 * b = A^-1 * b - Z * S^-1 * E^T * A^-1 * b
+ * </pre>
+ *
+ * with Z = A<sup>-1</sup> * D and the k x k matrix S = I + E<sup>T</sup> * Z.
+ * Thus, k solutions with the factorization of A and a dense factorization of
+ * S are calculated when the update is created and each solution costs one
+ * solution with A and a k x k solution. For the transposed systems, the same
+ * is done with W = A<sup>-T</sup> * E and S<sup>T</sup> (which is calculated
+ * on the first call).
+ */
+class UpdatedFactorization implements IFactorization {
+
+	/**
+	 * The maximum rank of an update (including the ranks of updates of the
+	 * base factorization). For larger updates, the matrix should be factorized
+	 * again.
+	 */
+	static final int MAX_RANK = 32;
+
+	private final IFactorization base;
+	private final int rank;
+	private final int[] columns;
+	private final double[][] deltas;
+	private final double[][] z;
+	private final DenseLu s;
+
+	private double[][] w;
+	private DenseLu sTranspose;
+
+	private UpdatedFactorization(IFactorization base, int rank, int[] columns,
+			double[][] deltas, double[][] z, DenseLu s) {
+		this.base = base;
+		this.rank = rank;
+		this.columns = columns;
+		this.deltas = deltas;
+		this.z = z;
+		this.s = s;
+	}
+
+	/**
+	 * Creates the factorization of the matrix that is created when the given
+	 * differences are added to the given columns of the factorized matrix.
+	 * Returns null when the rank of the update is too large or when the
+	 * updated matrix is singular; the matrix should be factorized again in
+	 * this case.
+	 *
+	 * @param base
+	 *            the factorization of the original matrix
+	 * @param columns
+	 *            the indices of the changed columns
+	 * @param deltas
+	 *            the differences of the changed columns: new column - old
+	 *            column
+	 */
+	static UpdatedFactorization create(IFactorization base, int[] columns,
+			double[][] deltas) {
+		if (base == null || columns.length == 0)
+			return null;
+		int rank = columns.length;
+		if (base instanceof UpdatedFactorization)
+			rank += ((UpdatedFactorization) base).rank;
+		if (rank > MAX_RANK)
+			return null;
+		int k = columns.length;
+		double[][] z = new double[k][];
+		for (int j = 0; j < k; j++)
+			z[j] = base.solve(deltas[j]);
+		double[][] s = new double[k][k];
+		for (int i = 0; i < k; i++) {
+			for (int j = 0; j < k; j++)
+				s[i][j] = (i == j ? 1 : 0) + z[j][columns[i]];
+		}
+		DenseLu lu = DenseLu.factorize(s);
+		if (lu == null)
+			return null;
+		return new UpdatedFactorization(base, rank, columns, deltas, z, lu);
+	}
+
+	@Override
+	public int size() {
+		return base.size();
+	}
+
+	@Override
+	public double[] solve(double[] b) {
+		double[] x = base.solve(b);
+		double[] r = new double[columns.length];
+		for (int i = 0; i < columns.length; i++)
+			r[i] = x[columns[i]];
+		double[] y = s.solve(r);
+		for (int j = 0; j < columns.length; j++) {
+			double yj = y[j];
+			if (yj == 0)
+				continue;
+			double[] zj = z[j];
+			for (int i = 0; i < x.length; i++)
+				x[i] -= zj[i] * yj;
+		}
+		return x;
+	}
+
+	@Override
+	public double[] solveTranspose(double[] b) {
+		initTranspose();
+		double[] x = base.solveTranspose(b);
+		double[] r = new double[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			double[] delta = deltas[i];
+			double sum = 0;
+			for (int row = 0; row < x.length; row++)
+				sum += delta[row] * x[row];
+			r[i] = sum;
+		}
+		double[] y = sTranspose.solve(r);
+		for (int j = 0; j < columns.length; j++) {
+			double yj = y[j];
+			if (yj == 0)
+				continue;
+			double[] wj = w[j];
+			for (int i = 0; i < x.length; i++)
+				x[i] -= wj[i] * yj;
+		}
+		return x;
+	}
+
+	private synchronized void initTranspose() {
+		if (sTranspose != null)
+			return;
+		int k = columns.length;
+		double[][] w = new double[k][];
+		for (int j = 0; j < k; j++) {
+			double[] e = new double[size()];
+			e[columns[j]] = 1;
+			w[j] = base.solveTranspose(e);
+		}
+		double[][] t = new double[k][k];
+		for (int i = 0; i < k; i++) {
+			for (int j = 0; j < k; j++)
+				t[i][j] = (i == j ? 1 : 0) + z[i][columns[j]];
+		}
+		this.w = w;
+		// S^T is not singular when S is not singular
+		this.sTranspose = DenseLu.factorize(t);
+	}
+
+	/**
+	 * A LU decomposition with partial pivoting of a small dense matrix.
+	 */
+	private static class DenseLu {
+
+		private final double[][] lu;
+		private final int[] pivot;
+
+		private DenseLu(double[][] lu, int[] pivot) {
+			this.lu = lu;
+			this.pivot = pivot;
+		}
+
+		/**
+		 * Factorizes the given matrix in place. Returns null if the matrix is
+		 * singular.
+		 */
+		static DenseLu factorize(double[][] a) {
+			int n = a.length;
+			int[] pivot = new int[n];
+			double max = 0;
+			for (double[] row : a) {
+				for (double v : row)
+					max = Math.max(max, Math.abs(v));
+			}
+			double tolerance = max * n * 1e-14;
+			for (int k = 0; k < n; k++) {
+				int p = k;
+				for (int i = k + 1; i < n; i++) {
+					if (Math.abs(a[i][k]) > Math.abs(a[p][k]))
+						p = i;
+				}
+				if (Math.abs(a[p][k]) <= tolerance)
+					return null;
+				pivot[k] = p;
+				if (p != k) {
+					double[] row = a[p];
+					a[p] = a[k];
+					a[k] = row;
+				}
+				for (int i = k + 1; i < n; i++) {
+					double f = a[i][k] / a[k][k];
+					a[i][k] = f;
+					if (f == 0)
+						continue;
+					for (int j = k + 1; j < n; j++)
+						a[i][j] -= f * a[k][j];
+				}
+			}
+			return new DenseLu(a, pivot);
+		}
+
+		double[] solve(double[] b) {
+			int n = lu.length;
+			double[] x = b.clone();
+			for (int k = 0; k < n; k++) {
+				int p = pivot[k];
+				if (p != k) {
+					double t = x[p];
+					x[p] = x[k];
+					x[k] = t;
+				}
+			}
+			for (int i = 1; i < n; i++) {
+				for (int j = 0; j < i; j++)
+					x[i] -= lu[i][j] * x[j];
+			}
+			for (int i = n - 1; i >= 0; i--) {
+				for (int j = i + 1; j < n; j++)
+					x[i] -= lu[i][j] * x[j];
+				x[i] /= lu[i][i];
+			}
+			return x;
+		}
+	}
+}
@@ -160,4 +160,29 @@ public class CalcExchange {
 		this.avoidedProduct = avoidedProduct;
 	}
 
+	/**
+	 * Creates a copy of this exchange with the same values.
+	 */
+	public CalcExchange copy() {
+		CalcExchange copy = new CalcExchange();
+		copy.processId = processId;
+		copy.flowId = flowId;
+		copy.exchangeId = exchangeId;
+		copy.input = input;
+		copy.conversionFactor = conversionFactor;
+		copy.amount = amount;
+		copy.amountFormula = amountFormula;
+		copy.uncertaintyType = uncertaintyType;
+		copy.parameter1 = parameter1;
+		copy.parameter2 = parameter2;
+		copy.parameter3 = parameter3;
+		copy.parameter1Formula = parameter1Formula;
+		copy.parameter2Formula = parameter2Formula;
+		copy.parameter3Formula = parameter3Formula;
+		copy.flowType = flowType;
+		copy.defaultProviderId = defaultProviderId;
+		copy.avoidedProduct = avoidedProduct;
+		return copy;
+	}
+
 }
@@ -112,4 +112,25 @@ public class CalcImpactFactor {
 	public void setParameter3Formula(String parameter3Formula) {
 		this.parameter3Formula = parameter3Formula;
 	}
+
+	/**
+	 * Creates a copy of this impact factor with the same values.
+	 */
+	public CalcImpactFactor copy() {
+		CalcImpactFactor copy = new CalcImpactFactor();
+		copy.imactCategoryId = imactCategoryId;
+		copy.flowId = flowId;
+		copy.conversionFactor = conversionFactor;
+		copy.amount = amount;
+		copy.amountFormula = amountFormula;
+		copy.uncertaintyType = uncertaintyType;
+		copy.parameter1 = parameter1;
+		copy.parameter2 = parameter2;
+		copy.parameter3 = parameter3;
+		copy.parameter1Formula = parameter1Formula;
+		copy.parameter2Formula = parameter2Formula;
+		copy.parameter3Formula = parameter3Formula;
+		return copy;
+	}
+
 }
@@ -124,4 +124,25 @@ class CalcParameter {
 		this.parameter3Formula = parameter3Formula;
 	}
 
+	/**
+	 * Creates a copy of this parameter with the same values.
+	 */
+	CalcParameter copy() {
+		CalcParameter copy = new CalcParameter();
+		copy.name = name;
+		copy.inputParameter = inputParameter;
+		copy.owner = owner;
+		copy.scope = scope;
+		copy.value = value;
+		copy.formula = formula;
+		copy.uncertaintyType = uncertaintyType;
+		copy.parameter1 = parameter1;
+		copy.parameter2 = parameter2;
+		copy.parameter3 = parameter3;
+		copy.parameter1Formula = parameter1Formula;
+		copy.parameter2Formula = parameter2Formula;
+		copy.parameter3Formula = parameter3Formula;
+		return copy;
+	}
+
 }
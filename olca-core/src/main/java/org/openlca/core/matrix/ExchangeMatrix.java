@@ -1,28 +1,49 @@
 package org.openlca.core.matrix;
 
-import gnu.trove.impl.Constants;
-import gnu.trove.iterator.TIntObjectIterator;
-import gnu.trove.map.hash.TIntObjectHashMap;
+import java.util.Random;
 
 import org.openlca.core.math.IMatrix;
 import org.openlca.core.math.IMatrixFactory;
+import org.openlca.core.matrix.MatrixCells.CellFormulas;
 import org.openlca.expressions.FormulaInterpreter;
 
+/**
+ * A matrix with the exchanges of an inventory. The exchanges are stored in
+ * parallel primitive arrays (see {@link MatrixCells}): for each cell, the
+ * amount, the product of the conversion and allocation factor, and the
+ * uncertainty values are stored; the formulas are only stored for the cells
+ * that have formulas.
+ */
 public class ExchangeMatrix {
 
-	private int columns;
-	private int rows;
-	private final TIntObjectHashMap<TIntObjectHashMap<ExchangeCell>> cells;
+	private final int columns;
+	private final int rows;
+	private final MatrixCells cells;
 
 	ExchangeMatrix(int rows, int columns) {
+		this(rows, columns, new MatrixCells("exchange"));
+	}
+
+	private ExchangeMatrix(int rows, int columns, MatrixCells cells) {
 		this.columns = columns;
 		this.rows = rows;
-		cells = new TIntObjectHashMap<>(Constants.DEFAULT_CAPACITY,
-				Constants.DEFAULT_LOAD_FACTOR, -1);
+		this.cells = cells;
+	}
+
+	int getRows() {
+		return rows;
+	}
+
+	int getColumns() {
+		return columns;
+	}
+
+	MatrixCells getCells() {
+		return cells;
 	}
 
 	public boolean isEmpty() {
-		return cells.isEmpty();
+		return cells.size() == 0;
 	}
 
 	/**
@@ -30,105 +51,121 @@ public class ExchangeMatrix {
 	 * occupation of the matrix.
 	 */
 	public double getLoadFactor() {
-		TIntObjectIterator<TIntObjectHashMap<ExchangeCell>> it = cells
-				.iterator();
-		double size = 0;
-		while (it.hasNext()) {
-			it.advance();
-			TIntObjectHashMap<?> map = it.value();
-			if (map == null)
-				continue;
-			size += map.size();
-		}
-		return size / (rows * columns);
-	}
-
-	void setEntry(int row, int col, ExchangeCell cell) {
-		TIntObjectHashMap<ExchangeCell> rowMap = cells.get(row);
-		if (rowMap == null) {
-			rowMap = new TIntObjectHashMap<>(Constants.DEFAULT_CAPACITY,
-					Constants.DEFAULT_LOAD_FACTOR, -1);
-			cells.put(row, rowMap);
-		}
-		rowMap.put(col, cell);
-	}
-
-	ExchangeCell getEntry(int row, int col) {
-		TIntObjectHashMap<ExchangeCell> rowMap = cells.get(row);
-		if (rowMap == null)
-			return null;
-		return rowMap.get(col);
+		return (double) cells.size() / (rows * columns);
+	}
+
+	/**
+	 * Sets the given exchange with the given allocation factor to the cell
+	 * with the given row and column. An existing cell is replaced.
+	 */
+	void setEntry(int row, int col, CalcExchange e, double allocationFactor) {
+		double factor = allocationFactor * e.getConversionFactor();
+		if (e.isInput() && !e.isAvoidedProduct())
+			factor = -factor;
+		int i = cells.put(row, col, e.getAmount(), factor);
+		cells.setUncertainty(i, e.getUncertaintyType(), e.getParameter1(),
+				e.getParameter2(), e.getParameter3());
+		cells.setFormulas(i, new CellFormulas(e.getProcessId(),
+				e.getExchangeId(), e.getAmountFormula(),
+				e.getParameter1Formula(), e.getParameter2Formula(),
+				e.getParameter3Formula()));
+	}
+
+	boolean hasEntry(int row, int col) {
+		return cells.indexOf(row, col) >= 0;
 	}
 
 	public double getValue(int row, int col) {
-		ExchangeCell cell = getEntry(row, col);
-		if (cell == null)
+		int i = cells.indexOf(row, col);
+		if (i < 0)
 			return 0;
-		else
-			return cell.getMatrixValue();
+		return cells.getMatrixValue(i);
 	}
 
 	public <M extends IMatrix> M createRealMatrix(IMatrixFactory<M> factory) {
-		final M matrix = factory.create(rows, columns);
-		iterate(new Fn() {
-			@Override
-			public void apply(int row, int col, ExchangeCell cell) {
-				matrix.setEntry(row, col, cell.getMatrixValue());
-			}
-		});
+		M matrix = factory.create(rows, columns);
+		cells.fill(matrix);
 		return matrix;
 	}
 
-	void eval(final FormulaInterpreter interpreter) {
-		iterate(new Fn() {
-			@Override
-			public void apply(int row, int col, ExchangeCell cell) {
-				cell.eval(interpreter);
-			}
-		});
-	}
-
-	void apply(final IMatrix matrix) {
-		iterate(new Fn() {
-			@Override
-			public void apply(int row, int col, ExchangeCell cell) {
-				matrix.setEntry(row, col, cell.getMatrixValue());
-			}
-		});
-	}
-
-	void simulate(final IMatrix matrix) {
-		iterate(new Fn() {
-			@Override
-			public void apply(int row, int col, ExchangeCell cell) {
-				matrix.setEntry(row, col, cell.getNextSimulationValue());
-			}
-		});
-	}
-
-	private void iterate(Fn fn) {
-		TIntObjectIterator<TIntObjectHashMap<ExchangeCell>> rowIterator = cells
-				.iterator();
-		while (rowIterator.hasNext()) {
-			rowIterator.advance();
-			int row = rowIterator.key();
-			TIntObjectHashMap<ExchangeCell> rowMap = rowIterator.value();
-			if (rowMap == null)
-				continue;
-			TIntObjectIterator<ExchangeCell> colIterator = rowMap.iterator();
-			while (colIterator.hasNext()) {
-				colIterator.advance();
-				int col = colIterator.key();
-				ExchangeCell cell = colIterator.value();
-				if (cell == null)
-					continue;
-				fn.apply(row, col, cell);
-			}
-		}
-	}
-
-	private interface Fn {
-		void apply(int row, int col, ExchangeCell cell);
+	void eval(FormulaInterpreter interpreter) {
+		cells.eval(interpreter);
+	}
+
+	void apply(IMatrix matrix) {
+		cells.fill(matrix);
+	}
+
+	void simulate(IMatrix matrix, Random random) {
+		cells.simulate(matrix, random);
+	}
+
+	/**
+	 * Generates the simulation values of the cells for the next block of runs
+	 * (see {@link #applyBlock(IMatrix, int)}).
+	 */
+	void simulateBlock(FormulaInterpreter interpreter, int runs, Random random) {
+		cells.simulateBlock(interpreter, runs, random);
+	}
+
+	/**
+	 * Sets the simulation values of the given run in the current block of runs
+	 * to the given matrix.
+	 */
+	void applyBlock(IMatrix matrix, int run) {
+		cells.applyBlock(matrix, run);
+	}
+
+	/**
+	 * Evaluates the formulas of the cells in the given columns (where
+	 * <code>columns[col]</code> is true).
+	 */
+	void eval(FormulaInterpreter interpreter, boolean[] columns) {
+		cells.eval(interpreter, columns);
+	}
+
+	/**
+	 * Sets the values of the cells in the given columns to the given matrix.
+	 */
+	void apply(IMatrix matrix, boolean[] columns) {
+		cells.fill(matrix, columns);
+	}
+
+	/**
+	 * Sets the entries of the cells in the given columns to 0 in the given
+	 * matrix.
+	 */
+	void clear(IMatrix matrix, boolean[] columns) {
+		cells.clear(matrix, columns);
+	}
+
+	/**
+	 * Returns true if there is at least one cell in each row of this matrix.
+	 */
+	boolean hasEntriesInAllRows() {
+		return cells.coversRows(rows);
+	}
+
+	/**
+	 * Creates a copy of this matrix without the cells in the given columns.
+	 */
+	ExchangeMatrix copyWithout(boolean[] columns) {
+		return new ExchangeMatrix(rows, this.columns, cells.copyWithout(columns));
+	}
+
+	/**
+	 * Creates a copy of this matrix with copies of the cells so that the copy
+	 * can be evaluated and simulated independently from this matrix.
+	 */
+	ExchangeMatrix copy() {
+		return new ExchangeMatrix(rows, columns, cells.copy());
+	}
+
+	/**
+	 * Creates a matrix with the given cells (e.g. from a snapshot).
+	 */
+	static ExchangeMatrix of(int rows, int columns, MatrixCells cells) {
+		return new ExchangeMatrix(rows, columns, cells);
 	}
 
 }
@@ -38,23 +38,29 @@ class FlowIndexBuilder {
 			for (CalcExchange e : exchanges) {
 				if (index.contains(e.getFlowId()))
 					continue; // already indexed as flow
-				LongPair productCandidate = new LongPair(e.getProcessId(),
-						e.getFlowId());
-				if (productIndex.contains(productCandidate))
-					continue; // the exchange is an output product
-				if (productIndex.isLinkedInput(productCandidate))
-					continue; // the exchange is a linked input
-				if (e.isInput() || e.getFlowType() == FlowType.ELEMENTARY_FLOW)
+				if (isFlow(e))
 					indexFlow(e, index);
-				else if (allocationMethod == null
-						|| allocationMethod == AllocationMethod.NONE)
-					indexFlow(e, index); // non-allocated co-product -> handle
-											// like elementary flow
 			}
 		}
 		return index;
 	}
 
+	/**
+	 * Returns true if the given exchange is mapped to a flow in the flow index
+	 * and not to a product in the product index.
+	 */
+	boolean isFlow(CalcExchange e) {
+		if (productIndex.contains(e.getProcessId(), e.getFlowId()))
+			return false; // the exchange is an output product
+		if (productIndex.isLinkedInput(e.getProcessId(), e.getFlowId()))
+			return false; // the exchange is a linked input
+		if (e.isInput() || e.getFlowType() == FlowType.ELEMENTARY_FLOW)
+			return true;
+		// non-allocated co-product -> handle like elementary flow
+		return allocationMethod == null
+				|| allocationMethod == AllocationMethod.NONE;
+	}
+
 	private Map<Long, List<CalcExchange>> loadExchanges() {
 		try {
 			Map<Long, List<CalcExchange>> map = cache.getExchangeCache()
@@ -1,109 +1,113 @@
 package org.openlca.core.matrix;
 
-import gnu.trove.impl.Constants;
-import gnu.trove.map.hash.TIntObjectHashMap;
+import java.util.Random;
 
 import org.openlca.core.math.IMatrix;
 import org.openlca.core.math.IMatrixFactory;
+import org.openlca.core.matrix.MatrixCells.CellFormulas;
 import org.openlca.expressions.FormulaInterpreter;
 
 /**
  * A matrix with impact assessment factors where the flows are mapped to the
  * columns and the impact categories are mapped to the rows. The factors should
- * be negative in this matrix if the corresponding flow is an input flow.
+ * be negative in this matrix if the corresponding flow is an input flow. The
+ * factors are stored in parallel primitive arrays (see {@link MatrixCells}).
  */
 public class ImpactFactorMatrix {
 
 	private final int columns;
 	private final int rows;
-	private final TIntObjectHashMap<TIntObjectHashMap<ImpactFactorCell>> cells;
+	private final MatrixCells cells;
 
 	public ImpactFactorMatrix(int rows, int columns) {
+		this(rows, columns, new MatrixCells("impact factor"));
+	}
+
+	private ImpactFactorMatrix(int rows, int columns, MatrixCells cells) {
 		this.rows = rows;
 		this.columns = columns;
-		cells = new TIntObjectHashMap<>(Constants.DEFAULT_CAPACITY,
-				Constants.DEFAULT_LOAD_FACTOR, -1);
+		this.cells = cells;
 	}
 
 	public boolean isEmpty() {
-		return cells.isEmpty();
+		return cells.size() == 0;
 	}
 
-	public void setEntry(int row, int col, ImpactFactorCell cell) {
-		TIntObjectHashMap<ImpactFactorCell> rowMap = cells.get(row);
-		if (rowMap == null) {
-			rowMap = new TIntObjectHashMap<>(Constants.DEFAULT_CAPACITY,
-					Constants.DEFAULT_LOAD_FACTOR, -1);
-			cells.put(row, rowMap);
-		}
-		rowMap.put(col, cell);
+	/**
+	 * Sets the given factor to the cell with the given row and column. The
+	 * formulas of the factor are evaluated in the scope of the given LCIA
+	 * method. The value in the matrix is negative if the flow of the factor is
+	 * an input flow.
+	 */
+	void setEntry(int row, int col, CalcImpactFactor f, long methodId,
+			boolean inputFlow) {
+		double factor = inputFlow ? -f.getConversionFactor() : f
+				.getConversionFactor();
+		int i = cells.put(row, col, f.getAmount(), factor);
+		cells.setUncertainty(i, f.getUncertaintyType(), f.getParameter1(),
+				f.getParameter2(), f.getParameter3());
+		cells.setFormulas(i, new CellFormulas(methodId, f.getFlowId(),
+				f.getAmountFormula(), f.getParameter1Formula(),
+				f.getParameter2Formula(), f.getParameter3Formula()));
 	}
 
-	public ImpactFactorCell getEntry(int row, int col) {
-		TIntObjectHashMap<ImpactFactorCell> rowMap = cells.get(row);
-		if (rowMap == null)
-			return null;
-		return rowMap.get(col);
+	public double getValue(int row, int col) {
+		int i = cells.indexOf(row, col);
+		if (i < 0)
+			return 0;
+		return cells.getMatrixValue(i);
 	}
 
 	public <M extends IMatrix> M createRealMatrix(IMatrixFactory<M> factory) {
-		final M matrix = factory.create(rows, columns);
-		iterate(new Fn() {
-			@Override
-			public void apply(int row, int col, ImpactFactorCell cell) {
-				matrix.setEntry(row, col, cell.getMatrixValue());
-			}
-		});
+		M matrix = factory.create(rows, columns);
+		cells.fill(matrix);
 		return matrix;
 	}
 
-	void eval(final FormulaInterpreter interpreter) {
-		iterate(new Fn() {
-			@Override
-			public void apply(int row, int col, ImpactFactorCell cell) {
-				cell.eval(interpreter);
-			}
-		});
+	void eval(FormulaInterpreter interpreter) {
+		cells.eval(interpreter);
+	}
+
+	public void apply(IMatrix matrix) {
+		cells.fill(matrix);
+	}
+
+	public void simulate(IMatrix matrix) {
+		simulate(matrix, null);
 	}
 
-	public void apply(final IMatrix matrix) {
-		iterate(new Fn() {
-			@Override
-			public void apply(int row, int col, ImpactFactorCell cell) {
-				matrix.setEntry(row, col, cell.getMatrixValue());
-			}
-		});
+	/**
+	 * Generates new values for the factors with an uncertainty distribution.
+	 * The given random source is used for the creation of the number
+	 * generators; it can be null.
+	 */
+	public void simulate(IMatrix matrix, Random random) {
+		cells.simulate(matrix, random);
 	}
 
-	public void simulate(final IMatrix matrix) {
-		iterate(new Fn() {
-			@Override
-			public void apply(int row, int col, ImpactFactorCell cell) {
-				matrix.setEntry(row, col, cell.getNextSimulationValue());
-			}
-		});
+	/**
+	 * Generates the simulation values of the cells for the next block of runs
+	 * (see {@link #applyBlock(IMatrix, int)}).
+	 */
+	public void simulateBlock(FormulaInterpreter interpreter, int runs,
+			Random random) {
+		cells.simulateBlock(interpreter, runs, random);
 	}
 
-	private void iterate(Fn fn) {
-		for (int row : cells.keys()) {
-			if (row == -1)
-				continue;
-			TIntObjectHashMap<ImpactFactorCell> rowMap = cells.get(row);
-			if (rowMap == null)
-				continue;
-			for (int col : rowMap.keys()) {
-				if (col == -1)
-					continue;
-				ImpactFactorCell cell = rowMap.get(col);
-				if (cell == null)
-					continue;
-				fn.apply(row, col, cell);
-			}
-		}
+	/**
+	 * Sets the simulation values of the given run in the current block of runs
+	 * to the given matrix.
+	 */
+	public void applyBlock(IMatrix matrix, int run) {
+		cells.applyBlock(matrix, run);
 	}
 
-	private interface Fn {
-		void apply(int row, int col, ImpactFactorCell cell);
+	/**
+	 * Creates a copy of this matrix with copies of the cells so that the copy
+	 * can be evaluated and simulated independently from this matrix.
+	 */
+	public ImpactFactorMatrix copy() {
+		return new ImpactFactorMatrix(rows, columns, cells.copy());
 	}
 
 }
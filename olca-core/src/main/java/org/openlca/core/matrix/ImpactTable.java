@@ -1,5 +1,7 @@
 package org.openlca.core.matrix;
 
+import java.util.Random;
+
 import org.openlca.core.math.IMatrixFactory;
 import org.openlca.core.matrix.cache.MatrixCache;
 import org.openlca.expressions.FormulaInterpreter;
@@ -73,9 +75,56 @@ public class ImpactTable {
 	 * simulate).
 	 */
 	public void simulate(ImpactMatrix matrix, FormulaInterpreter interpreter) {
+		simulate(matrix, interpreter, null);
+	}
+
+	/**
+	 * Same as {@link #simulate(ImpactMatrix, FormulaInterpreter)} but the
+	 * number generators of the uncertainty distributions take their random
+	 * numbers from the given source (which can be null).
+	 */
+	public void simulate(ImpactMatrix matrix, FormulaInterpreter interpreter,
+			Random random) {
 		evalFormulas(interpreter);
 		if (factorMatrix != null)
-			factorMatrix.simulate(matrix.getFactorMatrix());
+			factorMatrix.simulate(matrix.getFactorMatrix(), random);
+	}
+
+	/**
+	 * Generates the simulation values of the impact factors for a block of
+	 * runs in one pass. The formulas of the factors are evaluated for the
+	 * sampled parameter values of all runs in the given interpreter (see
+	 * {@link ParameterTable#simulate(int, Random)}). The values of a single
+	 * run are then set to a matrix via {@link #applyBlock(ImpactMatrix, int)}.
+	 */
+	public void simulateBlock(FormulaInterpreter interpreter, int runs,
+			Random random) {
+		if (factorMatrix != null)
+			factorMatrix.simulateBlock(interpreter, runs, random);
+	}
+
+	/**
+	 * Sets the values of the given run of the current block of runs to the
+	 * given matrix (see {@link #simulateBlock(FormulaInterpreter, int, Random)}
+	 * ).
+	 */
+	public void applyBlock(ImpactMatrix matrix, int run) {
+		if (factorMatrix != null)
+			factorMatrix.applyBlock(matrix.getFactorMatrix(), run);
+	}
+
+	/**
+	 * Creates a copy of this table that can be evaluated and simulated
+	 * independently from this table (e.g. in another thread). The category
+	 * and flow index are shared with the copy and must not be modified.
+	 */
+	public ImpactTable copy() {
+		ImpactTable copy = new ImpactTable();
+		copy.categoryIndex = categoryIndex;
+		copy.flowIndex = flowIndex;
+		if (factorMatrix != null)
+			copy.factorMatrix = factorMatrix.copy();
+		return copy;
 	}
 
 	private void evalFormulas(FormulaInterpreter interpreter) {
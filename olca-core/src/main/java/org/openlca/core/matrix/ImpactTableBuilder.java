@@ -73,9 +73,7 @@ class ImpactTableBuilder {
 				if (col < 0)
 					continue;
 				boolean input = flowIndex.isInput(flowId);
-				ImpactFactorCell cell = new ImpactFactorCell(factor, methodId,
-						input);
-				matrix.setEntry(row, col, cell);
+				matrix.setEntry(row, col, factor, methodId, input);
 			}
 		}
 	}
@@ -1,5 +1,7 @@
 package org.openlca.core.matrix;
 
+import java.util.Random;
+
 import org.openlca.core.math.IMatrix;
 import org.openlca.core.math.IMatrixFactory;
 import org.openlca.core.matrix.cache.MatrixCache;
@@ -17,10 +19,27 @@ public class Inventory {
 	private ExchangeMatrix interventionMatrix;
 	private AllocationMethod allocationMethod;
 
+	/**
+	 * Builds the inventory for the given product index. If the given matrix
+	 * cache has a snapshot store, the inventory is loaded from its snapshot
+	 * when possible; otherwise a snapshot of the built inventory is stored.
+	 */
 	public static Inventory build(MatrixCache matrixCache,
 			ProductIndex productIndex, AllocationMethod allocationMethod) {
-		return new InventoryBuilder(matrixCache, productIndex, allocationMethod)
-				.build();
+		InventorySnapshotStore snapshots = matrixCache.getSnapshotStore();
+		if (snapshots == null)
+			return new InventoryBuilder(matrixCache, productIndex,
+					allocationMethod).build();
+		long invalidations = snapshots.getInvalidations();
+		long stamp = snapshots.readStamp(productIndex);
+		Inventory inventory = snapshots.load(productIndex, allocationMethod,
+				stamp);
+		if (inventory != null)
+			return inventory;
+		inventory = new InventoryBuilder(matrixCache, productIndex,
+				allocationMethod).build();
+		snapshots.save(inventory, invalidations, stamp);
+		return inventory;
 	}
 
 	public boolean isEmpty() {
@@ -95,11 +114,66 @@ public class Inventory {
 	 * (so normally you first call createMatrix and than simulate).
 	 */
 	public void simulate(InventoryMatrix matrix, FormulaInterpreter interpreter) {
+		simulate(matrix, interpreter, null);
+	}
+
+	/**
+	 * Same as {@link #simulate(InventoryMatrix, FormulaInterpreter)} but the
+	 * number generators of the uncertainty distributions take their random
+	 * numbers from the given source (which can be null).
+	 */
+	public void simulate(InventoryMatrix matrix,
+			FormulaInterpreter interpreter, Random random) {
 		evalFormulas(interpreter);
 		if (technologyMatrix != null)
-			technologyMatrix.simulate(matrix.getTechnologyMatrix());
+			technologyMatrix.simulate(matrix.getTechnologyMatrix(), random);
+		if (interventionMatrix != null)
+			interventionMatrix.simulate(matrix.getInterventionMatrix(), random);
+	}
+
+	/**
+	 * Generates the simulation values of the exchanges for a block of runs in
+	 * one pass. The formulas of the exchanges are evaluated for the sampled
+	 * parameter values of all runs in the given interpreter (see
+	 * {@link ParameterTable#simulate(int, Random)}). The values of a single
+	 * run are then set to a matrix via
+	 * {@link #applyBlock(InventoryMatrix, int)}.
+	 */
+	public void simulateBlock(FormulaInterpreter interpreter, int runs,
+			Random random) {
+		if (technologyMatrix != null)
+			technologyMatrix.simulateBlock(interpreter, runs, random);
+		if (interventionMatrix != null)
+			interventionMatrix.simulateBlock(interpreter, runs, random);
+	}
+
+	/**
+	 * Sets the values of the given run of the current block of runs to the
+	 * given matrix (see {@link #simulateBlock(FormulaInterpreter, int, Random)}
+	 * ).
+	 */
+	public void applyBlock(InventoryMatrix matrix, int run) {
+		if (technologyMatrix != null)
+			technologyMatrix.applyBlock(matrix.getTechnologyMatrix(), run);
+		if (interventionMatrix != null)
+			interventionMatrix.applyBlock(matrix.getInterventionMatrix(), run);
+	}
+
+	/**
+	 * Creates a copy of this inventory that can be evaluated and simulated
+	 * independently from this inventory (e.g. in another thread). The product
+	 * and flow index are shared with the copy and must not be modified.
+	 */
+	public Inventory copy() {
+		Inventory copy = new Inventory();
+		copy.productIndex = productIndex;
+		copy.flowIndex = flowIndex;
+		copy.allocationMethod = allocationMethod;
+		if (technologyMatrix != null)
+			copy.technologyMatrix = technologyMatrix.copy();
 		if (interventionMatrix != null)
-			interventionMatrix.simulate(matrix.getInterventionMatrix());
+			copy.interventionMatrix = interventionMatrix.copy();
+		return copy;
 	}
 
 	private void evalFormulas(FormulaInterpreter interpreter) {
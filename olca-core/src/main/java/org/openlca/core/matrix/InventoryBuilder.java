@@ -2,6 +2,7 @@ package org.openlca.core.matrix;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.openlca.core.matrix.cache.MatrixCache;
 import org.openlca.core.model.AllocationMethod;
@@ -37,6 +38,55 @@ class InventoryBuilder {
 				productIndex.size());
 		interventionMatrix = new ExchangeMatrix(flowIndex.size(),
 				productIndex.size());
+		fillMatrices();
+		return createInventory();
+	}
+
+	/**
+	 * Creates a new inventory from the given inventory where the given
+	 * columns, which are the product columns of the given processes, are
+	 * rebuilt from the current data in the cache. The product and flow index
+	 * of the given inventory are kept. Returns null if the flow index does not
+	 * match the exchanges of the processes anymore (a flow was added, removed,
+	 * or changed its direction); the inventory needs to be rebuilt completely
+	 * in this case.
+	 */
+	Inventory update(Inventory base, boolean[] columns, Set<Long> processIds) {
+		if (allocationMethod != null
+				&& allocationMethod != AllocationMethod.NONE)
+			allocationTable = AllocationIndex.create(productIndex,
+					allocationMethod, cache);
+		flowIndex = base.getFlowIndex();
+		technologyMatrix = base.getTechnologyMatrix().copyWithout(columns);
+		interventionMatrix = base.getInterventionMatrix()
+				.copyWithout(columns);
+		FlowIndexBuilder flows = new FlowIndexBuilder(cache, productIndex,
+				allocationMethod);
+		try {
+			Map<Long, List<CalcExchange>> map = cache.getExchangeCache()
+					.getAll(processIds);
+			for (Long processId : processIds) {
+				List<CalcExchange> exchanges = map.get(processId);
+				for (CalcExchange e : exchanges) {
+					if (!flows.isFlow(e))
+						continue;
+					if (!flowIndex.contains(e.getFlowId())
+							|| flowIndex.isInput(e.getFlowId()) != e.isInput())
+						return null;
+				}
+				for (int col : productIndex.getProductIndices(processId)) {
+					LongPair processProduct = productIndex.getProductAt(col);
+					for (CalcExchange exchange : exchanges)
+						putExchangeValue(col, processProduct, exchange);
+				}
+			}
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(getClass());
+			log.error("failed to load exchanges from cache", e);
+			return null;
+		}
+		if (!interventionMatrix.hasEntriesInAllRows())
+			return null; // a flow is not used anymore
 		return createInventory();
 	}
 
@@ -47,7 +97,6 @@ class InventoryBuilder {
 		inventory.setInterventionMatrix(interventionMatrix);
 		inventory.setProductIndex(productIndex);
 		inventory.setTechnologyMatrix(technologyMatrix);
-		fillMatrices();
 		return inventory;
 	}
 
@@ -57,11 +106,10 @@ class InventoryBuilder {
 					.getAll(productIndex.getProcessIds());
 			for (Long processId : productIndex.getProcessIds()) {
 				List<CalcExchange> exchanges = map.get(processId);
-				List<LongPair> processProducts = productIndex
-						.getProducts(processId);
-				for (LongPair processProduct : processProducts) {
+				for (int col : productIndex.getProductIndices(processId)) {
+					LongPair processProduct = productIndex.getProductAt(col);
 					for (CalcExchange exchange : exchanges) {
-						putExchangeValue(processProduct, exchange);
+						putExchangeValue(col, processProduct, exchange);
 					}
 				}
 			}
@@ -71,73 +119,67 @@ class InventoryBuilder {
 		}
 	}
 
-	private void putExchangeValue(LongPair processProduct, CalcExchange e) {
+	private void putExchangeValue(int col, LongPair processProduct,
+			CalcExchange e) {
 		if (!e.isInput()
 				&& processProduct.equals(e.getProcessId(), e.getFlowId())) {
 			// the reference product
-			int idx = productIndex.getIndex(processProduct);
-			add(idx, processProduct, technologyMatrix, e);
+			add(col, col, processProduct, technologyMatrix, e);
 
 		} else if (e.getFlowType() == FlowType.ELEMENTARY_FLOW) {
 			// elementary exchanges
-			addIntervention(processProduct, e);
+			addIntervention(col, processProduct, e);
 
 		} else if (e.isInput()) {
 
-			LongPair inputProduct = new LongPair(e.getProcessId(),
-					e.getFlowId());
+			int linkedOutput = productIndex.getLinkedOutputIndex(
+					e.getProcessId(), e.getFlowId());
 
-			if (productIndex.isLinkedInput(inputProduct)) {
+			if (linkedOutput >= 0) {
 				// linked product inputs
-				addProcessLink(processProduct, e, inputProduct);
+				add(linkedOutput, col, processProduct, technologyMatrix, e);
 			} else {
 				// an unlinked product input
-				addIntervention(processProduct, e);
+				addIntervention(col, processProduct, e);
 			}
 
 		} else if (allocationMethod == null
 				|| allocationMethod == AllocationMethod.NONE) {
 			// non allocated output products
-			addIntervention(processProduct, e);
+			addIntervention(col, processProduct, e);
 		}
 	}
 
-	private void addProcessLink(LongPair processProduct, CalcExchange e,
-			LongPair inputProduct) {
-		LongPair linkedOutput = productIndex.getLinkedOutput(inputProduct);
-		int row = productIndex.getIndex(linkedOutput);
-		add(row, processProduct, technologyMatrix, e);
-	}
-
-	private void addIntervention(LongPair processProduct, CalcExchange e) {
+	private void addIntervention(int col, LongPair processProduct,
+			CalcExchange e) {
 		int row = flowIndex.getIndex(e.getFlowId());
-		add(row, processProduct, interventionMatrix, e);
+		add(row, col, processProduct, interventionMatrix, e);
 	}
 
-	private void add(int row, LongPair processProduct, ExchangeMatrix matrix,
-			CalcExchange exchange) {
-		int col = productIndex.getIndex(processProduct);
+	private void add(int row, int col, LongPair processProduct,
+			ExchangeMatrix matrix, CalcExchange exchange) {
 		if (row < 0 || col < 0)
 			return;
-		ExchangeCell existingCell = matrix.getEntry(row, col);
-		if (existingCell != null) {
+		if (matrix.hasEntry(row, col)) {
 			// self loops or double entries
-			exchange = mergeExchanges(existingCell, exchange);
+			exchange = mergeExchanges(matrix.getValue(row, col), exchange);
 		}
-		ExchangeCell cell = new ExchangeCell(exchange);
+		double allocationFactor = 1;
 		if (allocationTable != null) {
 			// note that the allocation table assures that the factor is 1.0 for
 			// reference products
-			double factor = allocationTable.getFactor(processProduct, exchange);
-			cell.setAllocationFactor(factor);
+			allocationFactor = allocationTable.getFactor(processProduct,
+					exchange);
 		}
-		matrix.setEntry(row, col, cell);
+		matrix.setEntry(row, col, exchange, allocationFactor);
 	}
 
-	private CalcExchange mergeExchanges(ExchangeCell existingCell,
+	private CalcExchange mergeExchanges(double existingValue,
 			CalcExchange exchange) {
-		ExchangeCell cell = new ExchangeCell(exchange);
-		double val = existingCell.getMatrixValue() + cell.getMatrixValue();
+		double value = exchange.getAmount() * exchange.getConversionFactor();
+		if (exchange.isInput() && !exchange.isAvoidedProduct())
+			value = -value;
+		double val = existingValue + value;
 		CalcExchange newExchange = new CalcExchange();
 		newExchange.setInput(val < 0);
 		newExchange.setConversionFactor(1);
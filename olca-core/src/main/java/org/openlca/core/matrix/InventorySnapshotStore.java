@@ -0,0 +1,565 @@
+package org.openlca.core.matrix;
+
+import gnu.trove.map.hash.TLongLongHashMap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.openlca.core.database.BaseDao;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.matrix.MatrixCells.CellFormulas;
+import org.openlca.core.model.AllocationMethod;
+import org.openlca.core.model.UncertaintyType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores built inventories as binary snapshots in files so that the inventory
+ * of a product system does not need to be loaded from the database again when
+ * nothing changed. A snapshot contains the flow index and the cell arrays of
+ * the exchange matrices (see {@link MatrixCells}) in coordinate format: an
+ * array for the rows, columns, values, and uncertainty parameters of the
+ * cells each, and the formulas only for the cells that have formulas. The
+ * cells are not stored in compressed rows because they are read back in the
+ * order in which they were built; thus, a loaded inventory is evaluated and
+ * sampled in exactly the same way as a built one. Snapshots are read via
+ * memory-mapped I/O.
+ *
+ * A snapshot is identified by a fingerprint of the product index (the
+ * products and links of the product system), the allocation method, and a
+ * data version of the store. The data version is increased when the store is
+ * invalidated (see {@link #invalidate()}), which is done by the
+ * {@link org.openlca.core.matrix.cache.MatrixCache} when flows, units, or
+ * other data that are used in all inventories are evicted. When a process is
+ * evicted, only the snapshots that contain this process are deleted (see
+ * {@link #invalidate(long)}); for this, the IDs of the processes are stored
+ * in the header of a snapshot.
+ *
+ * As snapshots outlive the session, each snapshot is also stamped with data
+ * that are read from the database when the snapshot is loaded or saved: the
+ * versions and last-change values of the processes of the product index and
+ * the number, versions, and latest changes of the flows, flow properties, and
+ * unit groups. Thus, changes of other sessions (or before a restart) are
+ * detected as long as they update these values, which the editors do when an
+ * entity is saved. Reading the stamp costs a query for the processes of the
+ * product index (in chunks of {@link BaseDao#MAX_LIST_SIZE} IDs) and an
+ * aggregate query over each of the flow, flow property, and unit group
+ * tables; these run on each build of an inventory with a store.
+ */
+public class InventorySnapshotStore {
+
+	private static final int MAGIC = 0x6f6c6973;
+	private static final int FORMAT = 4;
+	private static final String SUFFIX = ".snapshot";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final IDatabase database;
+	private final File dir;
+	private long dataVersion;
+
+	/**
+	 * The number of invalidations in this session. For the invalidations of
+	 * single processes, the number of the last invalidation of the process is
+	 * stored so that snapshots of inventories that were built before are not
+	 * saved.
+	 */
+	private long invalidations;
+	private long lastFullInvalidation;
+	private final TLongLongHashMap processInvalidations = new TLongLongHashMap();
+
+	/**
+	 * Creates a store for snapshots of inventories of the given database in
+	 * the given directory.
+	 */
+	public InventorySnapshotStore(IDatabase database, File dir) {
+		this.database = database;
+		this.dir = dir;
+		if (!dir.exists())
+			dir.mkdirs();
+		dataVersion = readVersion();
+	}
+
+	/**
+	 * Creates a snapshot store in the file storage location of the given
+	 * database.
+	 */
+	public static InventorySnapshotStore create(IDatabase database) {
+		File dir = new File(database.getFileStorageLocation(),
+				"inventory_snapshots");
+		return new InventorySnapshotStore(database, dir);
+	}
+
+	/**
+	 * Loads the inventory for the given product index and allocation method
+	 * from its snapshot. Returns null if there is no valid snapshot.
+	 */
+	public Inventory load(ProductIndex index, AllocationMethod method) {
+		return load(index, method, readStamp(index));
+	}
+
+	/**
+	 * Loads the inventory from its snapshot if the snapshot has the given
+	 * stamp (see {@link #readStamp(ProductIndex)}).
+	 */
+	Inventory load(ProductIndex index, AllocationMethod method, long stamp) {
+		if (stamp == -1)
+			return null;
+		File file = getFile(index, method);
+		if (!file.exists())
+			return null;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+			MappedByteBuffer buffer = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return read(buffer, index, method, stamp);
+		} catch (Exception e) {
+			log.warn("failed to read inventory snapshot " + file, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the given inventory. An existing snapshot of the
+	 * inventory is replaced.
+	 */
+	public void save(Inventory inventory) {
+		if (inventory == null || inventory.getProductIndex() == null)
+			return;
+		save(inventory, getInvalidations(),
+				readStamp(inventory.getProductIndex()));
+	}
+
+	/**
+	 * Writes a snapshot of the given inventory that was built with the data of
+	 * the given stamp after the given number of invalidations (see
+	 * {@link #getInvalidations()}). If data of the inventory were invalidated
+	 * in the meantime, no snapshot is written.
+	 */
+	void save(Inventory inventory, long invalidations, long stamp) {
+		if (inventory == null || inventory.getProductIndex() == null
+				|| stamp == -1)
+			return;
+		long dataVersion;
+		synchronized (this) {
+			if (!isValid(inventory.getProductIndex(), invalidations))
+				return;
+			dataVersion = this.dataVersion;
+		}
+		File file = getFile(inventory.getProductIndex(),
+				inventory.getAllocationMethod());
+		File tmp = new File(dir, file.getName() + "." + Thread.currentThread()
+				.getId() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmp), 65536))) {
+			write(out, inventory, dataVersion, stamp);
+		} catch (Exception e) {
+			log.warn("failed to write inventory snapshot " + file, e);
+			tmp.delete();
+			return;
+		}
+		file.delete();
+		if (!tmp.renameTo(file)) {
+			log.warn("failed to write inventory snapshot " + file);
+			tmp.delete();
+		}
+	}
+
+	private boolean isValid(ProductIndex index, long invalidations) {
+		if (lastFullInvalidation > invalidations)
+			return false;
+		if (this.invalidations == invalidations)
+			return true;
+		for (long processId : index.getProcessIds()) {
+			if (processInvalidations.get(processId) > invalidations)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Invalidates all snapshots of this store.
+	 */
+	public synchronized void invalidate() {
+		invalidations++;
+		lastFullInvalidation = invalidations;
+		processInvalidations.clear();
+		dataVersion++;
+		writeVersion();
+		File[] files = dir.listFiles();
+		if (files == null)
+			return;
+		for (File file : files) {
+			if (file.getName().endsWith(SUFFIX))
+				file.delete();
+		}
+	}
+
+	/**
+	 * Invalidates the snapshots that contain the process with the given ID.
+	 * For this, the headers of all snapshots are read.
+	 */
+	public synchronized void invalidate(long processId) {
+		invalidations++;
+		processInvalidations.put(processId, invalidations);
+		File[] files = dir.listFiles();
+		if (files == null)
+			return;
+		for (File file : files) {
+			if (file.getName().endsWith(SUFFIX) && contains(file, processId))
+				file.delete();
+		}
+	}
+
+	/**
+	 * Returns true if the snapshot in the given file contains the process with
+	 * the given ID or if this cannot be checked.
+	 */
+	private boolean contains(File file, long processId) {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+			MappedByteBuffer buffer = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT)
+				return true;
+			skip(buffer, 3 * 8 + 4); // versions, fingerprint, index size
+			long[] processIds = longs(buffer, buffer.getInt());
+			return Arrays.binarySearch(processIds, processId) >= 0;
+		} catch (Exception e) {
+			log.warn("failed to read inventory snapshot " + file, e);
+			return true;
+		}
+	}
+
+	public synchronized long getDataVersion() {
+		return dataVersion;
+	}
+
+	/**
+	 * Returns the number of invalidations of this store in this session. This
+	 * is passed into {@link #save(Inventory, long, long)} for an inventory
+	 * that is built after this call.
+	 */
+	synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	/**
+	 * Reads the stamp of the data in the database that are used in the
+	 * inventory of the given product index. Returns -1 if this failed.
+	 */
+	long readStamp(ProductIndex index) {
+		long[] processIds = sortedProcessIds(index);
+		final long[] stamp = { 17 };
+		try {
+			for (int start = 0; start < processIds.length;
+					start += BaseDao.MAX_LIST_SIZE) {
+				int end = Math.min(start + BaseDao.MAX_LIST_SIZE,
+						processIds.length);
+				StringBuilder sql = new StringBuilder(
+						"select id, version, last_change from tbl_processes "
+								+ "where id in (");
+				for (int i = start; i < end; i++) {
+					if (i > start)
+						sql.append(',');
+					sql.append(processIds[i]);
+				}
+				sql.append(')');
+				NativeSql.on(database).query(sql.toString(),
+						new NativeSql.QueryResultHandler() {
+							@Override
+							public boolean nextResult(ResultSet result)
+									throws SQLException {
+								long h = mix(result.getLong(1)) * 31
+										+ mix(result.getLong(2));
+								stamp[0] += mix(h * 31
+										+ mix(result.getLong(3)));
+								return true;
+							}
+						});
+			}
+			String sql;
+			String[] tables = { "tbl_flows", "tbl_flow_properties",
+					"tbl_unit_groups" };
+			for (String table : tables) {
+				sql = "select count(*), sum(version), max(last_change) from "
+						+ table;
+				NativeSql.on(database).query(sql,
+						new NativeSql.QueryResultHandler() {
+							@Override
+							public boolean nextResult(ResultSet result)
+									throws SQLException {
+								for (int i = 1; i <= 3; i++)
+									stamp[0] = stamp[0] * 31
+											+ mix(result.getLong(i));
+								return false;
+							}
+						});
+			}
+			return stamp[0] == -1 ? 0 : stamp[0];
+		} catch (Exception e) {
+			log.warn("failed to read the data stamp of an inventory", e);
+			return -1;
+		}
+	}
+
+	private static long[] sortedProcessIds(ProductIndex index) {
+		Set<Long> ids = index.getProcessIds();
+		long[] processIds = new long[ids.size()];
+		int i = 0;
+		for (Long id : ids)
+			processIds[i++] = id;
+		Arrays.sort(processIds);
+		return processIds;
+	}
+
+	private File getFile(ProductIndex index, AllocationMethod method) {
+		String name = Long.toHexString(fingerprint(index)) + "_"
+				+ (method == null ? "null" : method.name()) + SUFFIX;
+		return new File(dir, name);
+	}
+
+	/**
+	 * Calculates a fingerprint of the products and links of the given index.
+	 * The order of the products is relevant as it defines the matrix indices
+	 * but the order of the links is not.
+	 */
+	static long fingerprint(ProductIndex index) {
+		long hash = 17;
+		for (int i = 0; i < index.size(); i++) {
+			hash = hash * 31 + mix(index.getProcessAt(i));
+			hash = hash * 31 + mix(index.getFlowAt(i));
+		}
+		long links = 0;
+		for (int i = 0; i < index.getLinkCount(); i++) {
+			int provider = index.getLinkProviderAt(i);
+			long h = mix(index.getLinkProcessAt(i));
+			h = h * 31 + mix(index.getLinkFlowAt(i));
+			h = h * 31 + mix(index.getProcessAt(provider));
+			h = h * 31 + mix(index.getFlowAt(provider));
+			links += mix(h);
+		}
+		return hash * 31 + links;
+	}
+
+	private static long mix(long value) {
+		long h = value * 0x9E3779B97F4A7C15L;
+		return h ^ (h >>> 32);
+	}
+
+	private void write(DataOutputStream out, Inventory inventory,
+			long dataVersion, long stamp) throws IOException {
+		ProductIndex index = inventory.getProductIndex();
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT);
+		out.writeLong(dataVersion);
+		out.writeLong(stamp);
+		out.writeLong(fingerprint(index));
+		out.writeInt(index.size());
+		long[] processIds = sortedProcessIds(index);
+		out.writeInt(processIds.length);
+		for (long processId : processIds)
+			out.writeLong(processId);
+		FlowIndex flowIndex = inventory.getFlowIndex();
+		long[] flowIds = flowIndex.getFlowIds();
+		out.writeInt(flowIds.length);
+		for (long flowId : flowIds) {
+			out.writeLong(flowId);
+			out.writeBoolean(flowIndex.isInput(flowId));
+		}
+		writeMatrix(out, inventory.getTechnologyMatrix());
+		writeMatrix(out, inventory.getInterventionMatrix());
+	}
+
+	private void writeMatrix(DataOutputStream out, ExchangeMatrix matrix)
+			throws IOException {
+		MatrixCells cells = matrix.getCells();
+		int n = cells.size();
+		out.writeInt(matrix.getRows());
+		out.writeInt(matrix.getColumns());
+		out.writeInt(n);
+		for (int i = 0; i < n; i++)
+			out.writeInt(cells.getRow(i));
+		for (int i = 0; i < n; i++)
+			out.writeInt(cells.getColumn(i));
+		for (int i = 0; i < n; i++)
+			out.writeDouble(cells.getAmount(i));
+		for (int i = 0; i < n; i++)
+			out.writeDouble(cells.getFactor(i));
+		for (int i = 0; i < n; i++)
+			out.writeByte(ordinal(cells.getUncertaintyType(i)));
+		for (int i = 0; i < n; i++)
+			out.writeDouble(cells.getParameter1(i));
+		for (int i = 0; i < n; i++)
+			out.writeDouble(cells.getParameter2(i));
+		for (int i = 0; i < n; i++)
+			out.writeDouble(cells.getParameter3(i));
+		// the formulas are only stored for the cells that have formulas
+		List<Integer> formulaCells = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			if (cells.getFormulas(i) != null)
+				formulaCells.add(i);
+		}
+		out.writeInt(formulaCells.size());
+		for (int i : formulaCells) {
+			CellFormulas f = cells.getFormulas(i);
+			out.writeInt(i);
+			out.writeLong(f.owner);
+			out.writeLong(f.id);
+			writeString(out, f.amount);
+			writeString(out, f.parameter1);
+			writeString(out, f.parameter2);
+			writeString(out, f.parameter3);
+		}
+	}
+
+	private int ordinal(Enum<?> value) {
+		return value == null ? -1 : value.ordinal();
+	}
+
+	private void writeString(DataOutputStream out, String s)
+			throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private Inventory read(MappedByteBuffer buffer, ProductIndex index,
+			AllocationMethod method, long stamp) {
+		if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT)
+			return null;
+		if (buffer.getLong() != getDataVersion() || buffer.getLong() != stamp)
+			return null;
+		if (buffer.getLong() != fingerprint(index)
+				|| buffer.getInt() != index.size())
+			return null;
+		skip(buffer, buffer.getInt() * 8); // the process IDs
+		FlowIndex flowIndex = new FlowIndex();
+		int flows = buffer.getInt();
+		for (int i = 0; i < flows; i++) {
+			long flowId = buffer.getLong();
+			if (buffer.get() != 0)
+				flowIndex.putInputFlow(flowId);
+			else
+				flowIndex.putOutputFlow(flowId);
+		}
+		Inventory inventory = new Inventory();
+		inventory.setAllocationMethod(method);
+		inventory.setProductIndex(index);
+		inventory.setFlowIndex(flowIndex);
+		inventory.setTechnologyMatrix(readMatrix(buffer));
+		inventory.setInterventionMatrix(readMatrix(buffer));
+		return inventory;
+	}
+
+	private ExchangeMatrix readMatrix(MappedByteBuffer buffer) {
+		int rows = buffer.getInt();
+		int columns = buffer.getInt();
+		int n = buffer.getInt();
+		int[] cellRows = ints(buffer, n);
+		int[] cellColumns = ints(buffer, n);
+		double[] amounts = doubles(buffer, n);
+		double[] factors = doubles(buffer, n);
+		byte[] uncertaintyTypes = new byte[n];
+		buffer.get(uncertaintyTypes);
+		double[] parameters1 = doubles(buffer, n);
+		double[] parameters2 = doubles(buffer, n);
+		double[] parameters3 = doubles(buffer, n);
+		MatrixCells cells = new MatrixCells("exchange");
+		UncertaintyType[] types = UncertaintyType.values();
+		for (int i = 0; i < n; i++) {
+			cells.put(cellRows[i], cellColumns[i], amounts[i], factors[i]);
+			byte type = uncertaintyTypes[i];
+			if (type >= 0)
+				cells.setUncertainty(i, types[type], parameters1[i],
+						parameters2[i], parameters3[i]);
+		}
+		int formulas = buffer.getInt();
+		for (int k = 0; k < formulas; k++) {
+			int i = buffer.getInt();
+			long owner = buffer.getLong();
+			long id = buffer.getLong();
+			cells.setFormulas(i, new CellFormulas(owner, id,
+					readString(buffer), readString(buffer),
+					readString(buffer), readString(buffer)));
+		}
+		return ExchangeMatrix.of(rows, columns, cells);
+	}
+
+	private int[] ints(MappedByteBuffer buffer, int n) {
+		int[] values = new int[n];
+		buffer.asIntBuffer().get(values);
+		skip(buffer, n * 4);
+		return values;
+	}
+
+	private double[] doubles(MappedByteBuffer buffer, int n) {
+		double[] values = new double[n];
+		buffer.asDoubleBuffer().get(values);
+		skip(buffer, n * 8);
+		return values;
+	}
+
+	private long[] longs(MappedByteBuffer buffer, int n) {
+		long[] values = new long[n];
+		buffer.asLongBuffer().get(values);
+		skip(buffer, n * 8);
+		return values;
+	}
+
+	private void skip(MappedByteBuffer buffer, int bytes) {
+		buffer.position(buffer.position() + bytes);
+	}
+
+	private String readString(MappedByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private long readVersion() {
+		File file = new File(dir, "data.version");
+		if (!file.exists())
+			return 0;
+		try (DataInputStream in = new DataInputStream(new FileInputStream(
+				file))) {
+			return in.readLong();
+		} catch (Exception e) {
+			log.warn("failed to read data version of snapshots", e);
+			return 0;
+		}
+	}
+
+	private void writeVersion() {
+		File file = new File(dir, "data.version");
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(
+				file))) {
+			out.writeLong(dataVersion);
+		} catch (Exception e) {
+			log.warn("failed to write data version of snapshots", e);
+		}
+	}
+}
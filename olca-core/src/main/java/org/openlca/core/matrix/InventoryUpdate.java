@@ -0,0 +1,112 @@
+package org.openlca.core.matrix;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.openlca.core.math.IMatrix;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.expressions.FormulaInterpreter;
+
+/**
+ * An incremental update of an inventory after some processes were modified.
+ * Only the columns of the products of the modified processes are rebuilt from
+ * the current data in the matrix cache; the product index and flow index of
+ * the inventory are kept. Thus, an update is only possible if the flows of the
+ * modified processes still match the flow index of the inventory; otherwise
+ * the inventory has to be rebuilt completely.
+ */
+public class InventoryUpdate {
+
+	private final Inventory base;
+	private final Inventory inventory;
+	private final boolean[] columnFlags;
+	private final int[] columns;
+
+	private InventoryUpdate(Inventory base, Inventory inventory,
+			boolean[] columnFlags, int[] columns) {
+		this.base = base;
+		this.inventory = inventory;
+		this.columnFlags = columnFlags;
+		this.columns = columns;
+	}
+
+	/**
+	 * Creates an update of the given inventory for the processes with the
+	 * given IDs. Processes that are not part of the inventory are ignored.
+	 * Returns null if the inventory cannot be updated incrementally.
+	 */
+	public static InventoryUpdate create(MatrixCache cache, Inventory base,
+			long[] processIds) {
+		if (base == null || processIds == null)
+			return null;
+		ProductIndex productIndex = base.getProductIndex();
+		boolean[] columnFlags = new boolean[productIndex.size()];
+		TIntArrayList columns = new TIntArrayList();
+		Set<Long> processes = new HashSet<>();
+		for (long processId : processIds) {
+			int[] indices = productIndex.getProductIndices(processId);
+			if (indices.length == 0)
+				continue;
+			processes.add(processId);
+			for (int col : indices) {
+				columnFlags[col] = true;
+				columns.add(col);
+			}
+		}
+		if (processes.isEmpty())
+			return new InventoryUpdate(base, base, columnFlags, new int[0]);
+		Inventory inventory = new InventoryBuilder(cache, productIndex,
+				base.getAllocationMethod()).update(base, columnFlags,
+				processes);
+		if (inventory == null)
+			return null;
+		columns.sort();
+		return new InventoryUpdate(base, inventory, columnFlags,
+				columns.toArray());
+	}
+
+	/**
+	 * Returns the updated inventory. This is the original inventory if none of
+	 * the processes of the update is part of it.
+	 */
+	public Inventory getInventory() {
+		return inventory;
+	}
+
+	/**
+	 * Returns the (sorted) indices of the columns that are changed by this
+	 * update.
+	 */
+	public int[] getColumns() {
+		return columns;
+	}
+
+	public boolean isEmpty() {
+		return columns.length == 0;
+	}
+
+	/**
+	 * Applies this update to the given matrix which was created from the
+	 * original inventory of this update: the entries of the changed columns
+	 * of the original inventory are removed and the formulas of the updated
+	 * columns are evaluated with the given interpreter (which can be null) and
+	 * set to the matrix.
+	 */
+	public void apply(InventoryMatrix matrix, FormulaInterpreter interpreter) {
+		if (isEmpty())
+			return;
+		ExchangeMatrix techMatrix = inventory.getTechnologyMatrix();
+		ExchangeMatrix enviMatrix = inventory.getInterventionMatrix();
+		techMatrix.eval(interpreter, columnFlags);
+		enviMatrix.eval(interpreter, columnFlags);
+		IMatrix tech = matrix.getTechnologyMatrix();
+		IMatrix envi = matrix.getInterventionMatrix();
+		base.getTechnologyMatrix().clear(tech, columnFlags);
+		base.getInterventionMatrix().clear(envi, columnFlags);
+		techMatrix.apply(tech, columnFlags);
+		enviMatrix.apply(envi, columnFlags);
+	}
+
+}
@@ -0,0 +1,109 @@
+package org.openlca.core.matrix;
+
+/**
+ * A hash map with pairs of long values as keys and int values as values. The
+ * map uses open addressing with linear probing and stores the keys in
+ * primitive arrays; thus, no objects are created when entries are added or
+ * looked up. The value for a key that is not contained in the map is -1.
+ */
+class LongPairMap {
+
+	private long[] firsts;
+	private long[] seconds;
+	private int[] values;
+	private boolean[] used;
+	private int size;
+	private int mask;
+
+	LongPairMap() {
+		this(16);
+	}
+
+	LongPairMap(int expectedSize) {
+		int capacity = 16;
+		while (capacity < expectedSize * 2)
+			capacity <<= 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		firsts = new long[capacity];
+		seconds = new long[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the value of the given key or -1 if the key is not contained in
+	 * the map.
+	 */
+	int get(long first, long second) {
+		int slot = hash(first, second) & mask;
+		while (used[slot]) {
+			if (firsts[slot] == first && seconds[slot] == second)
+				return values[slot];
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	boolean contains(long first, long second) {
+		return get(first, second) >= 0;
+	}
+
+	/**
+	 * Sets the value of the given key. Returns the previous value of the key
+	 * or -1 if the key was not contained in the map.
+	 */
+	int put(long first, long second, int value) {
+		int slot = hash(first, second) & mask;
+		while (used[slot]) {
+			if (firsts[slot] == first && seconds[slot] == second) {
+				int old = values[slot];
+				values[slot] = value;
+				return old;
+			}
+			slot = (slot + 1) & mask;
+		}
+		used[slot] = true;
+		firsts[slot] = first;
+		seconds[slot] = second;
+		values[slot] = value;
+		size++;
+		if (size * 2 > firsts.length)
+			rehash(firsts.length * 2);
+		return -1;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldFirsts = firsts;
+		long[] oldSeconds = seconds;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		for (int i = 0; i < oldUsed.length; i++) {
+			if (!oldUsed[i])
+				continue;
+			int slot = hash(oldFirsts[i], oldSeconds[i]) & mask;
+			while (used[slot])
+				slot = (slot + 1) & mask;
+			used[slot] = true;
+			firsts[slot] = oldFirsts[i];
+			seconds[slot] = oldSeconds[i];
+			values[slot] = oldValues[i];
+		}
+	}
+
+	private static int hash(long first, long second) {
+		long h = first * 0x9E3779B97F4A7C15L + second;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+}
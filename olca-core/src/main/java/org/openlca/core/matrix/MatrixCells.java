@@ -0,0 +1,474 @@
+package org.openlca.core.matrix;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.openlca.core.math.IMatrix;
+import org.openlca.core.math.NumberGenerator;
+import org.openlca.core.model.UncertaintyType;
+import org.openlca.expressions.FormulaInterpreter;
+import org.openlca.expressions.InterpreterException;
+import org.openlca.expressions.Scope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The cells of an exchange or impact factor matrix stored in parallel
+ * primitive arrays. The value of a cell in the matrix is
+ * <code>amount * factor</code> where the factor contains the conversion
+ * factor, the allocation factor, and the sign of the cell. Formulas, number
+ * generators, and the values of simulation blocks are stored in side tables
+ * for the cells that have them. Thus, the creation, evaluation, and simulation
+ * of a matrix are linear scans over the arrays.
+ */
+class MatrixCells {
+
+	private static final UncertaintyType[] UNCERTAINTY_TYPES = UncertaintyType
+			.values();
+
+	/** The name of the cell type that is used in log messages. */
+	private final String label;
+
+	private int size;
+	private int[] rows;
+	private int[] columns;
+	private double[] amounts;
+	private double[] factors;
+	private byte[] uncertaintyTypes;
+	private double[] parameters1;
+	private double[] parameters2;
+	private double[] parameters3;
+
+	/** Maps the packed row and column of a cell to its position. */
+	private TLongIntHashMap positions;
+
+	private TIntObjectHashMap<CellFormulas> formulas;
+	private TIntObjectHashMap<NumberGenerator> generators;
+	private TIntObjectHashMap<double[]> blocks;
+
+	MatrixCells(String label) {
+		this(label, 16);
+	}
+
+	private MatrixCells(String label, int capacity) {
+		this.label = label;
+		rows = new int[capacity];
+		columns = new int[capacity];
+		amounts = new double[capacity];
+		factors = new double[capacity];
+		uncertaintyTypes = new byte[capacity];
+		parameters1 = new double[capacity];
+		parameters2 = new double[capacity];
+		parameters3 = new double[capacity];
+		positions = new TLongIntHashMap(Constants.DEFAULT_CAPACITY,
+				Constants.DEFAULT_LOAD_FACTOR, Long.MIN_VALUE, -1);
+		formulas = new TIntObjectHashMap<>();
+		generators = new TIntObjectHashMap<>();
+		blocks = new TIntObjectHashMap<>();
+	}
+
+	int size() {
+		return size;
+	}
+
+	private static long key(int row, int col) {
+		return ((long) row << 32) | (col & 0xffffffffL);
+	}
+
+	/**
+	 * Returns the position of the cell with the given row and column or -1 if
+	 * there is no such cell.
+	 */
+	int indexOf(int row, int col) {
+		return positions.get(key(row, col));
+	}
+
+	/**
+	 * Sets the values of the cell with the given row and column. Formulas,
+	 * uncertainty values, and number generators of an existing cell are
+	 * removed. Returns the position of the cell.
+	 */
+	int put(int row, int col, double amount, double factor) {
+		long key = key(row, col);
+		int i = positions.get(key);
+		if (i < 0) {
+			ensureCapacity(size + 1);
+			i = size++;
+			positions.put(key, i);
+		}
+		rows[i] = row;
+		columns[i] = col;
+		amounts[i] = amount;
+		factors[i] = factor;
+		uncertaintyTypes[i] = -1;
+		parameters1[i] = 0;
+		parameters2[i] = 0;
+		parameters3[i] = 0;
+		formulas.remove(i);
+		generators.remove(i);
+		blocks.remove(i);
+		return i;
+	}
+
+	void setUncertainty(int i, UncertaintyType type, double parameter1,
+			double parameter2, double parameter3) {
+		if (type == null || type == UncertaintyType.NONE)
+			uncertaintyTypes[i] = -1;
+		else
+			uncertaintyTypes[i] = (byte) type.ordinal();
+		parameters1[i] = parameter1;
+		parameters2[i] = parameter2;
+		parameters3[i] = parameter3;
+	}
+
+	/**
+	 * Sets the formulas of the cell at the given position. Nothing is stored
+	 * when all formulas are null.
+	 */
+	void setFormulas(int i, CellFormulas cellFormulas) {
+		if (cellFormulas == null || cellFormulas.isEmpty())
+			formulas.remove(i);
+		else
+			formulas.put(i, cellFormulas);
+	}
+
+	int getRow(int i) {
+		return rows[i];
+	}
+
+	int getColumn(int i) {
+		return columns[i];
+	}
+
+	double getAmount(int i) {
+		return amounts[i];
+	}
+
+	double getFactor(int i) {
+		return factors[i];
+	}
+
+	UncertaintyType getUncertaintyType(int i) {
+		byte type = uncertaintyTypes[i];
+		return type < 0 ? null : UNCERTAINTY_TYPES[type];
+	}
+
+	double getParameter1(int i) {
+		return parameters1[i];
+	}
+
+	double getParameter2(int i) {
+		return parameters2[i];
+	}
+
+	double getParameter3(int i) {
+		return parameters3[i];
+	}
+
+	CellFormulas getFormulas(int i) {
+		return formulas.get(i);
+	}
+
+	double getMatrixValue(int i) {
+		return amounts[i] * factors[i];
+	}
+
+	void fill(IMatrix matrix) {
+		for (int i = 0; i < size; i++)
+			matrix.setEntry(rows[i], columns[i], amounts[i] * factors[i]);
+	}
+
+	/**
+	 * Sets the values of the cells in the given columns (where
+	 * <code>columns[col]</code> is true) to the given matrix.
+	 */
+	void fill(IMatrix matrix, boolean[] columns) {
+		for (int i = 0; i < size; i++) {
+			if (columns[this.columns[i]])
+				matrix.setEntry(rows[i], this.columns[i], amounts[i]
+						* factors[i]);
+		}
+	}
+
+	/**
+	 * Sets the entries of the cells in the given columns to 0 in the given
+	 * matrix.
+	 */
+	void clear(IMatrix matrix, boolean[] columns) {
+		for (int i = 0; i < size; i++) {
+			if (columns[this.columns[i]])
+				matrix.setEntry(rows[i], this.columns[i], 0);
+		}
+	}
+
+	/**
+	 * Returns true if there is at least one cell in each of the given number
+	 * of rows.
+	 */
+	boolean coversRows(int rowCount) {
+		boolean[] covered = new boolean[rowCount];
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			int row = rows[i];
+			if (row < rowCount && !covered[row]) {
+				covered[row] = true;
+				count++;
+			}
+		}
+		return count == rowCount;
+	}
+
+	/**
+	 * Evaluates the formulas of the cells with the given interpreter.
+	 */
+	void eval(FormulaInterpreter interpreter) {
+		if (interpreter == null)
+			return;
+		TIntObjectIterator<CellFormulas> it = formulas.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			evalFormulas(it.key(), it.value(), interpreter);
+		}
+	}
+
+	/**
+	 * Evaluates the formulas of the cells in the given columns with the given
+	 * interpreter.
+	 */
+	void eval(FormulaInterpreter interpreter, boolean[] columns) {
+		if (interpreter == null)
+			return;
+		TIntObjectIterator<CellFormulas> it = formulas.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			if (columns[this.columns[it.key()]])
+				evalFormulas(it.key(), it.value(), interpreter);
+		}
+	}
+
+	/**
+	 * Sets new simulation values of the cells to the given matrix. The given
+	 * random source is used when the number generators of the cells are
+	 * created; it can be null.
+	 */
+	void simulate(IMatrix matrix, Random random) {
+		for (int i = 0; i < size; i++) {
+			double value;
+			if (uncertaintyTypes[i] < 0)
+				value = amounts[i] * factors[i];
+			else
+				value = getGenerator(i, random).next() * factors[i];
+			matrix.setEntry(rows[i], columns[i], value);
+		}
+	}
+
+	/**
+	 * Generates the simulation values of the cells for the next block of runs
+	 * in one pass: the values of an uncertainty distribution are taken from
+	 * the number generator and an amount formula is evaluated for the sampled
+	 * parameter values of all runs in the given interpreter (see
+	 * {@link ParameterTable#simulate(int, Random)}). Only the cells with an
+	 * uncertainty distribution or a formula have block values.
+	 */
+	void simulateBlock(FormulaInterpreter interpreter, int runs, Random random) {
+		for (int i = 0; i < size; i++) {
+			if (uncertaintyTypes[i] < 0)
+				continue;
+			if (!generators.containsKey(i) && interpreter != null
+					&& formulas.containsKey(i))
+				evalFormulas(i, formulas.get(i), interpreter);
+			NumberGenerator generator = getGenerator(i, random);
+			double[] block = blocks.get(i);
+			if (block == null || block.length != runs) {
+				block = new double[runs];
+				blocks.put(i, block);
+			}
+			for (int run = 0; run < runs; run++)
+				block[run] = generator.next() * factors[i];
+		}
+		if (interpreter == null)
+			return;
+		TIntObjectIterator<CellFormulas> it = formulas.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			int i = it.key();
+			CellFormulas f = it.value();
+			if (uncertaintyTypes[i] >= 0)
+				continue;
+			blocks.remove(i);
+			if (f.amount == null)
+				continue;
+			try {
+				double[] values = f.findScope(interpreter).evalBatch(f.amount,
+						runs);
+				for (int run = 0; run < runs; run++)
+					values[run] *= factors[i];
+				blocks.put(i, values);
+			} catch (InterpreterException e) {
+				Logger log = LoggerFactory.getLogger(getClass());
+				log.error("Formula evaluation failed, " + label + " " + f.id,
+						e);
+			}
+		}
+	}
+
+	/**
+	 * Sets the simulation values of the given run in the current block of runs
+	 * to the given matrix.
+	 */
+	void applyBlock(IMatrix matrix, int run) {
+		for (int i = 0; i < size; i++) {
+			double value = amounts[i] * factors[i];
+			if (!blocks.isEmpty()) {
+				double[] block = blocks.get(i);
+				if (block != null && run < block.length)
+					value = block[run];
+			}
+			matrix.setEntry(rows[i], columns[i], value);
+		}
+	}
+
+	private void evalFormulas(int i, CellFormulas f,
+			FormulaInterpreter interpreter) {
+		try {
+			Scope scope = f.findScope(interpreter);
+			if (f.amount != null)
+				amounts[i] = scope.eval(f.amount);
+			if (f.parameter1 != null)
+				parameters1[i] = scope.eval(f.parameter1);
+			if (f.parameter2 != null)
+				parameters2[i] = scope.eval(f.parameter2);
+			if (f.parameter3 != null)
+				parameters3[i] = scope.eval(f.parameter3);
+		} catch (InterpreterException e) {
+			Logger log = LoggerFactory.getLogger(getClass());
+			log.error("Formula evaluation failed, " + label + " " + f.id, e);
+		}
+	}
+
+	private NumberGenerator getGenerator(int i, Random random) {
+		NumberGenerator generator = generators.get(i);
+		if (generator != null)
+			return generator;
+		double p1 = parameters1[i];
+		double p2 = parameters2[i];
+		switch (UNCERTAINTY_TYPES[uncertaintyTypes[i]]) {
+		case LOG_NORMAL:
+			generator = NumberGenerator.logNormal(p1, p2, random);
+			break;
+		case NORMAL:
+			generator = NumberGenerator.normal(p1, p2, random);
+			break;
+		case TRIANGLE:
+			generator = NumberGenerator.triangular(p1, p2, parameters3[i],
+					random);
+			break;
+		case UNIFORM:
+			generator = NumberGenerator.uniform(p1, p2, random);
+			break;
+		default:
+			generator = NumberGenerator.discrete(amounts[i]);
+		}
+		generators.put(i, generator);
+		return generator;
+	}
+
+	/**
+	 * Creates a copy of the cells. The number generators and simulation blocks
+	 * are not copied.
+	 */
+	MatrixCells copy() {
+		MatrixCells copy = new MatrixCells(label, 0);
+		copy.size = size;
+		copy.rows = Arrays.copyOf(rows, size);
+		copy.columns = Arrays.copyOf(columns, size);
+		copy.amounts = Arrays.copyOf(amounts, size);
+		copy.factors = Arrays.copyOf(factors, size);
+		copy.uncertaintyTypes = Arrays.copyOf(uncertaintyTypes, size);
+		copy.parameters1 = Arrays.copyOf(parameters1, size);
+		copy.parameters2 = Arrays.copyOf(parameters2, size);
+		copy.parameters3 = Arrays.copyOf(parameters3, size);
+		copy.positions = new TLongIntHashMap(positions);
+		copy.formulas = new TIntObjectHashMap<>(formulas);
+		return copy;
+	}
+
+	/**
+	 * Creates a copy of the cells without the cells in the given columns
+	 * (where <code>columns[col]</code> is true). The number generators and
+	 * simulation blocks are not copied.
+	 */
+	MatrixCells copyWithout(boolean[] columns) {
+		MatrixCells copy = new MatrixCells(label, Math.max(size, 16));
+		for (int i = 0; i < size; i++) {
+			if (columns[this.columns[i]])
+				continue;
+			int j = copy.put(rows[i], this.columns[i], amounts[i],
+					factors[i]);
+			copy.uncertaintyTypes[j] = uncertaintyTypes[i];
+			copy.parameters1[j] = parameters1[i];
+			copy.parameters2[j] = parameters2[i];
+			copy.parameters3[j] = parameters3[i];
+			CellFormulas f = formulas.get(i);
+			if (f != null)
+				copy.formulas.put(j, f);
+		}
+		return copy;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= rows.length)
+			return;
+		int n = Math.max(capacity, rows.length + (rows.length >> 1) + 1);
+		rows = Arrays.copyOf(rows, n);
+		columns = Arrays.copyOf(columns, n);
+		amounts = Arrays.copyOf(amounts, n);
+		factors = Arrays.copyOf(factors, n);
+		uncertaintyTypes = Arrays.copyOf(uncertaintyTypes, n);
+		parameters1 = Arrays.copyOf(parameters1, n);
+		parameters2 = Arrays.copyOf(parameters2, n);
+		parameters3 = Arrays.copyOf(parameters3, n);
+	}
+
+	/**
+	 * The formulas of a cell. The owner is the ID of the process or LCIA
+	 * method in which scope the formulas are evaluated; the ID is the ID of
+	 * the exchange or flow of the cell (for log messages).
+	 */
+	static class CellFormulas {
+
+		final long owner;
+		final long id;
+		final String amount;
+		final String parameter1;
+		final String parameter2;
+		final String parameter3;
+
+		CellFormulas(long owner, long id, String amount, String parameter1,
+				String parameter2, String parameter3) {
+			this.owner = owner;
+			this.id = id;
+			this.amount = amount;
+			this.parameter1 = parameter1;
+			this.parameter2 = parameter2;
+			this.parameter3 = parameter3;
+		}
+
+		boolean isEmpty() {
+			return amount == null && parameter1 == null && parameter2 == null
+					&& parameter3 == null;
+		}
+
+		private Scope findScope(FormulaInterpreter interpreter) {
+			Scope scope = interpreter.getScope(owner);
+			if (scope == null)
+				scope = interpreter.getGlobalScope();
+			return scope;
+		}
+	}
+}
@@ -2,10 +2,14 @@ package org.openlca.core.matrix;
 
 import gnu.trove.iterator.TLongObjectIterator;
 import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
 import java.util.Set;
 
 import org.openlca.core.database.IDatabase;
@@ -33,6 +37,9 @@ public class ParameterTable {
 	 */
 	private TLongObjectHashMap<Map<String, ParameterCell>> entries;
 
+	/** The interpreter that is reused in the simulation runs. */
+	private FormulaInterpreter simulationInterpreter;
+
 	/**
 	 * Builds a new parameter table. The table contains all global parameters
 	 * from the given database and the parameters of the processes and LCIA
@@ -50,7 +57,17 @@ public class ParameterTable {
 	 * Creates a new formula interpreter for the parameter values in this table.
 	 */
 	public FormulaInterpreter createInterpreter() {
+		return createInterpreter(false);
+	}
+
+	/**
+	 * The interpreter of the simulation runs is created in the dependency graph mode
+	 * so that each parameter is evaluated only once per run, independent from
+	 * the number of formulas in which it is used.
+	 */
+	private FormulaInterpreter createInterpreter(boolean dependencyGraph) {
 		FormulaInterpreter interpreter = new FormulaInterpreter();
+		interpreter.setDependencyGraphMode(dependencyGraph);
 		TLongObjectIterator<Map<String, ParameterCell>> it = entries.iterator();
 		while (it.hasNext()) {
 			it.advance();
@@ -66,28 +83,76 @@ public class ParameterTable {
 	 * an uncertainty distribution assigned. The method creates a formula
 	 * interpreter that is used for the evaluation of the uncertainty parameters
 	 * and returned with the new values bound. Thus, the returned interpreter
-	 * can be used in calculations.
+	 * can be used in calculations. Note that the same interpreter is returned
+	 * for each simulation run of this table: only the values of the simulated
+	 * parameters (and of the parameters that depend on them) are updated in
+	 * this interpreter.
 	 */
 	public FormulaInterpreter simulate() {
-		FormulaInterpreter interpreter = createInterpreter();
+		return simulate(null);
+	}
+
+	/**
+	 * Same as {@link #simulate()} but the number generators of the
+	 * uncertainty distributions take their random numbers from the given
+	 * source (which can be null).
+	 */
+	public FormulaInterpreter simulate(Random random) {
+		if (simulationInterpreter == null)
+			simulationInterpreter = createInterpreter(true);
+		FormulaInterpreter interpreter = simulationInterpreter;
 		TLongObjectIterator<Map<String, ParameterCell>> it = entries.iterator();
 		while (it.hasNext()) {
 			it.advance();
 			Map<String, ParameterCell> map = it.value();
 			for (ParameterCell cell : map.values()) {
-				cell.eval(interpreter);
-				cell.simulate();
+				if (!cell.hasUncertainty())
+					continue;
+				if (cell.generator == null)
+					cell.eval(interpreter);
+				cell.simulate(random);
 				cell.bindTo(interpreter);
 			}
 		}
 		return interpreter;
 	}
 
+	/**
+	 * Calculates random values for the given number of simulation runs in one
+	 * pass. The parameters with an uncertainty distribution are bound to the
+	 * arrays of their sampled values in the returned interpreter so that
+	 * formulas can be evaluated for all runs at once via
+	 * {@link Scope#evalBatch(String, int)}. As for {@link #simulate(Random)},
+	 * the same interpreter is returned for each call.
+	 */
+	public FormulaInterpreter simulate(int runs, Random random) {
+		if (simulationInterpreter == null)
+			simulationInterpreter = createInterpreter(true);
+		FormulaInterpreter interpreter = simulationInterpreter;
+		TLongObjectIterator<Map<String, ParameterCell>> it = entries.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			Map<String, ParameterCell> map = it.value();
+			for (ParameterCell cell : map.values()) {
+				if (!cell.hasUncertainty())
+					continue;
+				if (cell.generator == null)
+					cell.eval(interpreter);
+				double[] values = cell.simulate(runs, random);
+				if (cell.hasFormula())
+					continue;
+				cell.findScope(interpreter).bind(cell.param.getName(), values);
+			}
+		}
+		return interpreter;
+	}
+
 	/**
 	 * Applies the given parameter redefinitions to this table. The respective
 	 * parameter values in this table are overwritten by these redefinitions.
 	 */
 	public void apply(Collection<ParameterRedef> redefs) {
+		simulationInterpreter = null;
 		for (ParameterRedef redef : redefs) {
 			Long owner = redef.getContextId();
 			long scope = owner == null ? 0 : owner;
@@ -130,6 +195,64 @@ public class ParameterTable {
 		return d == null ? 0 : d;
 	}
 
+	/**
+	 * Creates a copy of this table with copies of the parameters so that the
+	 * copy can be evaluated and simulated independently from this table (e.g.
+	 * in another thread).
+	 */
+	public ParameterTable copy() {
+		ParameterTable copy = new ParameterTable();
+		TLongObjectIterator<Map<String, ParameterCell>> it = entries.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			for (ParameterCell cell : it.value().values())
+				copy.put(cell.param.copy());
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns the scopes (the owner IDs where 0 is the global scope) in which
+	 * the parameters of this table differ from the parameters of the given
+	 * table in their names, values, or formulas. The uncertainty distributions
+	 * are not compared.
+	 */
+	public TLongHashSet getChangedScopes(ParameterTable other) {
+		TLongHashSet owners = new TLongHashSet(entries.keys());
+		if (other != null)
+			owners.addAll(other.entries.keys());
+		TLongHashSet changed = new TLongHashSet();
+		for (long owner : owners.toArray()) {
+			Map<String, ParameterCell> map = other == null ? null
+					: other.entries.get(owner);
+			if (!sameValues(entries.get(owner), map))
+				changed.add(owner);
+		}
+		return changed;
+	}
+
+	private boolean sameValues(Map<String, ParameterCell> map,
+			Map<String, ParameterCell> other) {
+		if (map == null)
+			map = Collections.emptyMap();
+		if (other == null)
+			other = Collections.emptyMap();
+		if (map.size() != other.size())
+			return false;
+		for (ParameterCell cell : map.values()) {
+			ParameterCell otherCell = other.get(cell.param.getName());
+			if (otherCell == null)
+				return false;
+			CalcParameter p = cell.param;
+			CalcParameter o = otherCell.param;
+			if (p.isInputParameter() != o.isInputParameter()
+					|| p.getValue() != o.getValue()
+					|| !Objects.equals(p.getFormula(), o.getFormula()))
+				return false;
+		}
+		return true;
+	}
+
 	void put(CalcParameter param) {
 		Map<String, ParameterCell> map = entries.get(param.getOwner());
 		if (map == null) {
@@ -149,39 +272,51 @@ public class ParameterTable {
 			this.param = param;
 		}
 
-		private String getInterpreterValue() {
+		private boolean hasFormula() {
 			if (param.isInputParameter())
-				return Double.toString(param.getValue());
-			if (param.getFormula() != null && !param.getFormula().isEmpty())
-				return param.getFormula();
-			else
-				return Double.toString(param.getValue());
+				return false;
+			return param.getFormula() != null && !param.getFormula().isEmpty();
 		}
 
-		private void simulate() {
+		private boolean hasUncertainty() {
+			UncertaintyType type = param.getUncertaintyType();
+			return type != null && type != UncertaintyType.NONE;
+		}
+
+		private void simulate(Random random) {
 			UncertaintyType type = param.getUncertaintyType();
 			if (type == null || type == UncertaintyType.NONE)
 				return;
 			if (generator == null)
-				generator = createGenerator(type);
+				generator = createGenerator(type, random);
 			param.setValue(generator.next());
 		}
 
-		private NumberGenerator createGenerator(UncertaintyType type) {
+		private double[] simulate(int runs, Random random) {
+			double[] values = new double[runs];
+			for (int i = 0; i < runs; i++) {
+				simulate(random);
+				values[i] = param.getValue();
+			}
+			return values;
+		}
+
+		private NumberGenerator createGenerator(UncertaintyType type,
+				Random random) {
 			final CalcParameter p = param;
 			switch (type) {
 			case LOG_NORMAL:
 				return NumberGenerator.logNormal(p.getParameter1(),
-						p.getParameter2());
+						p.getParameter2(), random);
 			case NORMAL:
 				return NumberGenerator.normal(p.getParameter1(),
-						p.getParameter2());
+						p.getParameter2(), random);
 			case TRIANGLE:
 				return NumberGenerator.triangular(p.getParameter1(),
-						p.getParameter2(), p.getParameter3());
+						p.getParameter2(), p.getParameter3(), random);
 			case UNIFORM:
 				return NumberGenerator.uniform(p.getParameter1(),
-						p.getParameter2());
+						p.getParameter2(), random);
 			default:
 				return NumberGenerator.discrete(p.getValue());
 			}
@@ -189,7 +324,10 @@ public class ParameterTable {
 
 		private void bindTo(FormulaInterpreter interpreter) {
 			Scope scope = findScope(interpreter);
-			scope.bind(param.getName(), getInterpreterValue());
+			if (hasFormula())
+				scope.bind(param.getName(), param.getFormula());
+			else
+				scope.bind(param.getName(), param.getValue());
 		}
 
 		private Scope findScope(FormulaInterpreter interpreter) {
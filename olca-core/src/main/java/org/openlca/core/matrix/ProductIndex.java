@@ -1,8 +1,11 @@
 package org.openlca.core.matrix;
 
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -12,29 +15,45 @@ import java.util.Set;
  * matrices. A process product is represented by a {@link LongPair}, where the
  * first entry is the ID of the process and the second ID the ID of the
  * respective product flow.
+ *
+ * Internally, the products and links are stored in primitive arrays and
+ * indexed by the pairs of process and flow IDs without creating
+ * {@link LongPair} objects. The methods that take or return {@link LongPair}
+ * objects are only a facade for the methods with primitive parameters.
  */
 public class ProductIndex {
 
     /**
      * Maps the process-products to an ordinal index.
      */
-    private final HashMap<LongPair, Integer> productIndex = new HashMap<>();
+    private final LongPairMap productIndex = new LongPairMap();
+
+    /**
+     * The process and flow IDs of the products in this index. The position
+     * in these lists is the respective index value of a product.
+     */
+    private final TLongArrayList processIds = new TLongArrayList();
+    private final TLongArrayList flowIds = new TLongArrayList();
 
     /**
-     * The products in this index. The position in this list must match the
-     * respective index value of a product.
+     * Maps an input product (process ID and flow ID) to the position of the
+     * link in the link lists.
      */
-    private final ArrayList<LongPair> products = new ArrayList<>();
+    private final LongPairMap linkIndex = new LongPairMap();
 
     /**
-     * Maps an input product (=key) to an output product (=value, =provider).
+     * The links: the process and flow ID of the input product and the index
+     * of the linked output product (=provider).
      */
-    private final HashMap<LongPair, LongPair> productLinks = new HashMap<>();
+    private final TLongArrayList linkProcesses = new TLongArrayList();
+    private final TLongArrayList linkFlows = new TLongArrayList();
+    private final TIntArrayList linkProviders = new TIntArrayList();
 
     /**
-     * Maps a process ID to the output products of this process.
+     * Maps a process ID to the indices of the output products of this
+     * process.
      */
-    private final HashMap<Long, List<LongPair>> processProducts = new HashMap<>();
+    private final TLongObjectHashMap<TIntArrayList> processProducts = new TLongObjectHashMap<>();
 
     private LongPair refProduct;
     private double demand = 1d;
@@ -48,6 +67,23 @@ public class ProductIndex {
         put(refProduct);
     }
 
+    /**
+     * Creates a copy of this index with the same products, links, and demand.
+     * The positions of the products and links are the same as in this index.
+     */
+    public ProductIndex copy() {
+        ProductIndex copy = new ProductIndex(refProduct);
+        for (int i = 0; i < processIds.size(); i++)
+            copy.put(processIds.get(i), flowIds.get(i));
+        for (int i = 0; i < linkProcesses.size(); i++) {
+            int provider = linkProviders.get(i);
+            copy.putLink(linkProcesses.get(i), linkFlows.get(i),
+                    processIds.get(provider), flowIds.get(provider));
+        }
+        copy.demand = demand;
+        return copy;
+    }
+
     public LongPair getRefProduct() {
         return refProduct;
     }
@@ -75,24 +111,33 @@ public class ProductIndex {
      * of rows and columns in a technology matrix with this index.
      */
     public int size() {
-        return productIndex.size();
+        return processIds.size();
     }
 
     /**
      * Returns the ordinal index of the given process product.
      */
     public int getIndex(LongPair product) {
-        Integer idx = productIndex.get(product);
-        if (idx == null)
-            return -1;
-        return idx;
+        return getIndex(product.getFirst(), product.getSecond());
+    }
+
+    /**
+     * Returns the ordinal index of the product with the given process and flow
+     * ID or -1 if the product is not contained in this index.
+     */
+    public int getIndex(long processId, long flowId) {
+        return productIndex.get(processId, flowId);
     }
 
     /**
      * Returns true if the given product is contained in this index.
      */
     public boolean contains(LongPair product) {
-        return productIndex.containsKey(product);
+        return contains(product.getFirst(), product.getSecond());
+    }
+
+    public boolean contains(long processId, long flowId) {
+        return productIndex.contains(processId, flowId);
     }
 
     /**
@@ -100,34 +145,72 @@ public class ProductIndex {
      * is already contained in this index.
      */
     public void put(LongPair product) {
-        if (contains(product))
-            return;
-        int idx = productIndex.size();
-        productIndex.put(product, idx);
-        List<LongPair> list = processProducts.get(product.getFirst());
+        put(product.getFirst(), product.getSecond());
+    }
+
+    /**
+     * Adds the product with the given process and flow ID to this index if it
+     * is not yet contained and returns its index.
+     */
+    public int put(long processId, long flowId) {
+        int idx = productIndex.get(processId, flowId);
+        if (idx >= 0)
+            return idx;
+        idx = processIds.size();
+        productIndex.put(processId, flowId, idx);
+        processIds.add(processId);
+        flowIds.add(flowId);
+        TIntArrayList list = processProducts.get(processId);
         if (list == null) {
-            list = new ArrayList<>();
-            processProducts.put(product.getFirst(), list);
+            list = new TIntArrayList(2);
+            processProducts.put(processId, list);
         }
-        list.add(product);
-        products.add(product);
+        list.add(idx);
+        return idx;
     }
 
     /**
      * Returns the process product at the given index.
      */
     public LongPair getProductAt(int index) {
-        return products.get(index);
+        return new LongPair(processIds.get(index), flowIds.get(index));
+    }
+
+    /**
+     * Returns the process ID of the product at the given index.
+     */
+    public long getProcessAt(int index) {
+        return processIds.get(index);
+    }
+
+    /**
+     * Returns the flow ID of the product at the given index.
+     */
+    public long getFlowAt(int index) {
+        return flowIds.get(index);
     }
 
     /**
      * Returns the products for the process with the given ID.
      */
     public List<LongPair> getProducts(long processId) {
-        List<LongPair> products = processProducts.get(processId);
-        if (products == null)
+        TIntArrayList list = processProducts.get(processId);
+        if (list == null)
             return Collections.emptyList();
-        return new ArrayList<>(products);
+        List<LongPair> products = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++)
+            products.add(getProductAt(list.get(i)));
+        return products;
+    }
+
+    /**
+     * Returns the indices of the products of the process with the given ID.
+     */
+    public int[] getProductIndices(long processId) {
+        TIntArrayList list = processProducts.get(processId);
+        if (list == null)
+            return new int[0];
+        return list.toArray();
     }
 
     /**
@@ -136,8 +219,27 @@ public class ProductIndex {
      * not part of the index!
      */
     public void putLink(LongPair input, LongPair output) {
-        put(output);
-        productLinks.put(input, output);
+        putLink(input.getFirst(), input.getSecond(), output.getFirst(),
+                output.getSecond());
+    }
+
+    /**
+     * Adds a link between the input product with the given process and flow
+     * ID and the given output product (see {@link #putLink(LongPair,
+     * LongPair)}).
+     */
+    public void putLink(long inputProcess, long inputFlow, long outputProcess,
+            long outputFlow) {
+        int provider = put(outputProcess, outputFlow);
+        int pos = linkIndex.get(inputProcess, inputFlow);
+        if (pos >= 0) {
+            linkProviders.set(pos, provider);
+            return;
+        }
+        linkIndex.put(inputProcess, inputFlow, linkProcesses.size());
+        linkProcesses.add(inputProcess);
+        linkFlows.add(inputFlow);
+        linkProviders.add(provider);
     }
 
     /**
@@ -145,7 +247,11 @@ public class ProductIndex {
      * product (which is an output) in this index.
      */
     public boolean isLinkedInput(LongPair product) {
-        return productLinks.containsKey(product);
+        return isLinkedInput(product.getFirst(), product.getSecond());
+    }
+
+    public boolean isLinkedInput(long processId, long flowId) {
+        return linkIndex.contains(processId, flowId);
     }
 
     /**
@@ -153,20 +259,73 @@ public class ProductIndex {
      * linked, or null if there is no such product.
      */
     public LongPair getLinkedOutput(LongPair productInput) {
-        return productLinks.get(productInput);
+        int idx = getLinkedOutputIndex(productInput.getFirst(),
+                productInput.getSecond());
+        if (idx < 0)
+            return null;
+        return getProductAt(idx);
+    }
+
+    /**
+     * Returns the index of the output product (provider) to which the input
+     * with the given process and flow ID is linked, or -1 if there is no such
+     * product.
+     */
+    public int getLinkedOutputIndex(long processId, long flowId) {
+        int pos = linkIndex.get(processId, flowId);
+        if (pos < 0)
+            return -1;
+        return linkProviders.get(pos);
     }
 
     /**
-     * Returns all input products that are linked to an output.
+     * Returns all input products that are linked to an output. The returned
+     * set is a new set that is created when this method is called.
      */
     public Set<LongPair> getLinkedInputs() {
-        return productLinks.keySet();
+        Set<LongPair> inputs = new HashSet<>();
+        for (int i = 0; i < linkProcesses.size(); i++)
+            inputs.add(new LongPair(linkProcesses.get(i), linkFlows.get(i)));
+        return inputs;
+    }
+
+    /**
+     * Returns the number of links in this index. The links can be iterated
+     * via the methods {@link #getLinkProcessAt(int)},
+     * {@link #getLinkFlowAt(int)}, and {@link #getLinkProviderAt(int)}.
+     */
+    public int getLinkCount() {
+        return linkProcesses.size();
+    }
+
+    /**
+     * Returns the process ID of the input product of the link at the given
+     * position.
+     */
+    public long getLinkProcessAt(int link) {
+        return linkProcesses.get(link);
+    }
+
+    /**
+     * Returns the flow ID of the input product of the link at the given
+     * position.
+     */
+    public long getLinkFlowAt(int link) {
+        return linkFlows.get(link);
+    }
+
+    /**
+     * Returns the index of the output product (provider) of the link at the
+     * given position.
+     */
+    public int getLinkProviderAt(int link) {
+        return linkProviders.get(link);
     }
 
     public Set<Long> getProcessIds() {
         HashSet<Long> set = new HashSet<>();
-        for (LongPair product : products)
-            set.add(product.getFirst());
+        for (long processId : processProducts.keys())
+            set.add(processId);
         return set;
     }
 
@@ -2,10 +2,18 @@ package org.openlca.core.matrix;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 import org.openlca.core.matrix.cache.MatrixCache;
 import org.openlca.core.matrix.cache.ProcessTable;
@@ -21,6 +29,26 @@ public class ProductIndexBuilder {
 	private ProcessType preferredType = ProcessType.LCI_RESULT;
 	private MatrixCache cache;
 	private ProcessTable processTable;
+	private ExecutorService executor = SHARED_POOL;
+
+	/** The number of processes for which the providers are resolved in a task. */
+	private static final int CHUNK_SIZE = 64;
+
+	/**
+	 * The pool that is shared by the builders for which no other executor is
+	 * set. It has a (daemon) thread per processor.
+	 */
+	private static final ExecutorService SHARED_POOL = Executors
+			.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable,
+									"product-index-builder");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
 
 	public ProductIndexBuilder(MatrixCache cache) {
 		this.cache = cache;
@@ -31,43 +59,162 @@ public class ProductIndexBuilder {
 		this.preferredType = preferredType;
 	}
 
+	/**
+	 * Sets the executor that is used to resolve the providers of the product
+	 * inputs in parallel. If null, the index is built in the current thread.
+	 * By default, a pool is used that is shared by all builders.
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
 	public ProductIndex build(LongPair refProduct) {
 		return build(refProduct, 1.0);
 	}
 
+	/**
+	 * Builds the product index by expanding the supply chain of the given
+	 * reference product breadth-first. The providers of the product inputs of
+	 * a block of processes are resolved in parallel (in chunks of processes)
+	 * and the exchanges of new providers are already loaded while the
+	 * providers of the remaining chunks are resolved; these loaded exchanges
+	 * are then used for the next block. The links are
+	 * added to the index in the same order as in a sequential expansion so
+	 * that the resulting index is always the same. A failure in the
+	 * resolution of the providers is rethrown as runtime exception.
+	 */
 	public ProductIndex build(LongPair refProduct, double demand) {
 		log.trace("build product index for {}", refProduct);
 		ProductIndex index = new ProductIndex(refProduct);
-        index.setDemand(demand);
+		index.setDemand(demand);
+		LongPairMap queued = new LongPairMap();
+		queued.put(refProduct.getFirst(), refProduct.getSecond(), 1);
 		List<LongPair> block = new ArrayList<>();
 		block.add(refProduct);
-		HashSet<LongPair> handled = new HashSet<>();
-		while (!block.isEmpty()) {
-			List<LongPair> nextBlock = new ArrayList<>();
-			log.trace("fetch next block with {} entries", block.size());
-			Map<Long, List<CalcExchange>> exchanges = fetchExchanges(block);
-			for (LongPair recipient : block) {
-				handled.add(recipient);
-				List<CalcExchange> processExchanges = exchanges.get(recipient
-						.getFirst());
-				List<CalcExchange> productInputs = getProductInputs(processExchanges);
-				for (CalcExchange productInput : productInputs) {
-					LongPair provider = findProvider(productInput);
-					if (provider == null)
-						continue;
-					LongPair recipientInput = new LongPair(
-							recipient.getFirst(), productInput.getFlowId());
-					index.putLink(recipientInput, provider);
-					if (!handled.contains(provider)
-							&& !nextBlock.contains(provider))
-						nextBlock.add(provider);
+		ExecutorService pool = executor;
+		List<Future<Map<Long, List<CalcExchange>>>> fetches = new ArrayList<>();
+		try {
+			while (!block.isEmpty()) {
+				log.trace("fetch next block with {} entries", block.size());
+				Map<Long, List<CalcExchange>> exchanges = fetches.isEmpty()
+						? fetchExchanges(block) : join(fetches);
+				fetches = new ArrayList<>();
+				List<Future<List<Link>>> chunks = resolve(pool, block,
+						exchanges);
+				List<LongPair> nextBlock = new ArrayList<>();
+				for (Future<List<Link>> chunk : chunks) {
+					List<LongPair> newProviders = new ArrayList<>();
+					for (Link link : chunk.get()) {
+						index.putLink(link.recipient, link.flow,
+								link.provider, link.flow);
+						if (queued.put(link.provider, link.flow, 1) < 0)
+							newProviders.add(LongPair.of(link.provider,
+									link.flow));
+					}
+					prefetch(pool, newProviders, fetches);
+					nextBlock.addAll(newProviders);
 				}
+				block = nextBlock;
 			}
-			block = nextBlock;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(
+					"interrupted while building the product index", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("failed to build product index",
+					e.getCause());
 		}
 		return index;
 	}
 
+	/**
+	 * Resolves the providers of the product inputs of the given block in
+	 * chunks. If there is no thread pool or the block is small, the chunks
+	 * are resolved in the current thread.
+	 */
+	private List<Future<List<Link>>> resolve(ExecutorService pool,
+			List<LongPair> block, Map<Long, List<CalcExchange>> exchanges) {
+		List<Future<List<Link>>> futures = new ArrayList<>();
+		for (int start = 0; start < block.size(); start += CHUNK_SIZE) {
+			int end = Math.min(start + CHUNK_SIZE, block.size());
+			Resolver resolver = new Resolver(block.subList(start, end),
+					exchanges);
+			if (pool == null || block.size() <= CHUNK_SIZE) {
+				FutureTask<List<Link>> task = new FutureTask<>(resolver);
+				task.run();
+				futures.add(task);
+			} else
+				futures.add(pool.submit(resolver));
+		}
+		return futures;
+	}
+
+	/**
+	 * Loads the exchanges of the given providers in a background task and
+	 * adds the task to the given list. The results of these tasks are then
+	 * used as the exchanges of the next block so that they are not loaded
+	 * again.
+	 */
+	private void prefetch(ExecutorService pool, final List<LongPair> providers,
+			List<Future<Map<Long, List<CalcExchange>>>> fetches) {
+		if (pool == null || providers.isEmpty())
+			return;
+		fetches.add(pool.submit(new Callable<Map<Long, List<CalcExchange>>>() {
+			@Override
+			public Map<Long, List<CalcExchange>> call() throws Exception {
+				return fetchExchanges(providers);
+			}
+		}));
+	}
+
+	private Map<Long, List<CalcExchange>> join(
+			List<Future<Map<Long, List<CalcExchange>>>> fetches)
+			throws InterruptedException, ExecutionException {
+		Map<Long, List<CalcExchange>> exchanges = new HashMap<>();
+		for (Future<Map<Long, List<CalcExchange>>> fetch : fetches)
+			exchanges.putAll(fetch.get());
+		return exchanges;
+	}
+
+	/** Resolves the providers of the product inputs of a chunk of processes. */
+	private class Resolver implements Callable<List<Link>> {
+
+		private final List<LongPair> recipients;
+		private final Map<Long, List<CalcExchange>> exchanges;
+
+		Resolver(List<LongPair> recipients,
+				Map<Long, List<CalcExchange>> exchanges) {
+			this.recipients = recipients;
+			this.exchanges = exchanges;
+		}
+
+		@Override
+		public List<Link> call() {
+			List<Link> links = new ArrayList<>();
+			for (LongPair recipient : recipients) {
+				List<CalcExchange> processExchanges = exchanges.get(recipient
+						.getFirst());
+				for (CalcExchange input : getProductInputs(processExchanges))
+					addLink(links, recipient.getFirst(), input);
+			}
+			return links;
+		}
+	}
+
+	/** A link between a recipient and a provider of a product flow. */
+	private static class Link {
+
+		final long recipient;
+		final long flow;
+		final long provider;
+
+		Link(long recipient, long flow, long provider) {
+			this.recipient = recipient;
+			this.flow = flow;
+			this.provider = provider;
+		}
+	}
+
 	private List<CalcExchange> getProductInputs(
 			List<CalcExchange> processExchanges) {
 		if (processExchanges == null || processExchanges.isEmpty())
@@ -83,51 +230,44 @@ public class ProductIndexBuilder {
 		return productInputs;
 	}
 
-	private Map<Long, List<CalcExchange>> fetchExchanges(List<LongPair> block) {
+	private Map<Long, List<CalcExchange>> fetchExchanges(List<LongPair> block)
+			throws ExecutionException {
 		if (block.isEmpty())
 			return Collections.emptyMap();
 		Set<Long> processIds = new HashSet<>();
 		for (LongPair pair : block)
 			processIds.add(pair.getFirst());
-		try {
-			return cache.getExchangeCache().getAll(processIds);
-		} catch (Exception e) {
-			Logger log = LoggerFactory.getLogger(getClass());
-			log.error("failed to load exchanges from cache", e);
-			return Collections.emptyMap();
-		}
+		return cache.getExchangeCache().getAll(processIds);
 	}
 
-	private LongPair findProvider(CalcExchange productInput) {
-		if (productInput == null)
-			return null;
+	/**
+	 * Adds a link between the given recipient and the best provider process of
+	 * the given product input to the given list if there is a provider.
+	 */
+	private void addLink(List<Link> links, long recipient,
+			CalcExchange productInput) {
 		long productId = productInput.getFlowId();
 		long[] processIds = processTable.getProductProviders(productId);
-		if (processIds == null)
-			return null;
-		LongPair candidate = null;
-		for (long processId : processIds) {
-			LongPair newOption = LongPair.of(processId, productId);
-			if (isBetter(productInput, candidate, newOption))
-				candidate = newOption;
+		if (processIds == null || processIds.length == 0)
+			return;
+		long provider = processIds[0];
+		for (int i = 1; i < processIds.length; i++) {
+			if (isBetter(productInput, provider, processIds[i]))
+				provider = processIds[i];
 		}
-		return candidate;
+		links.add(new Link(recipient, productId, provider));
 	}
 
-	private boolean isBetter(CalcExchange inputLink, LongPair candidate,
-			LongPair newOption) {
-		if (candidate == null)
-			return true;
-		if (newOption == null)
+	private boolean isBetter(CalcExchange inputLink, long candidate,
+			long newOption) {
+		if (candidate == inputLink.getDefaultProviderId())
 			return false;
-		if (candidate.getFirst() == inputLink.getDefaultProviderId())
-			return false;
-		if (newOption.getFirst() == inputLink.getDefaultProviderId())
+		if (newOption == inputLink.getDefaultProviderId())
 			return true;
-		ProcessType candidateType = processTable.getType(candidate.getFirst());
-		ProcessType newOptionType = processTable.getType(newOption.getFirst());
+		ProcessType candidateType = processTable.getType(candidate);
+		ProcessType newOptionType = processTable.getType(newOption);
 		if (candidateType == preferredType && newOptionType != preferredType)
 			return false;
-        return candidateType != preferredType && newOptionType == preferredType;
-    }
+		return candidateType != preferredType && newOptionType == preferredType;
+	}
 }
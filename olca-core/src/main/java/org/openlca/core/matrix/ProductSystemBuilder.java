@@ -12,6 +12,7 @@ import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.IProductSystemBuilder;
 import org.openlca.core.database.NativeSql;
 import org.openlca.core.database.NativeSql.BatchInsertHandler;
+import org.openlca.core.database.usage.UsageIndex;
 import org.openlca.core.matrix.cache.MatrixCache;
 import org.openlca.core.model.Flow;
 import org.openlca.core.model.Process;
@@ -116,6 +117,7 @@ public class ProductSystemBuilder implements IProductSystemBuilder {
 			cleanTables(system.getId());
 			insertLinks(system.getId(), links.createLinks());
 			insertProcesses(system.getId(), processes);
+			UsageIndex.invalidate(database);
 		} catch (Exception e) {
 			log.error("faile to update database in process builder", e);
 		}
@@ -1,11 +1,6 @@
 package org.openlca.core.matrix.cache;
 
-import java.sql.Connection;
 import java.sql.ResultSet;
-import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -15,7 +10,6 @@ import org.openlca.core.model.AllocationMethod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 
@@ -26,68 +20,48 @@ import com.google.common.cache.LoadingCache;
 class AllocationCache {
 
 	public static LoadingCache<Long, List<CalcAllocationFactor>> create(
-			IDatabase database) {
-		return CacheBuilder.newBuilder().build(new FactorLoader(database));
+			IDatabase database, MatrixCacheConfig config) {
+		return config.build(config.getMaxAllocationFactors(),
+				new FactorLoader(database));
 	}
 
 	/**
 	 * Loads all allocation factors for a process from the database.
 	 */
 	private static class FactorLoader extends
-			CacheLoader<Long, List<CalcAllocationFactor>> {
+			CacheLoader<Long, List<CalcAllocationFactor>> implements
+			BulkLoader.Reader<CalcAllocationFactor> {
 
 		private Logger log = LoggerFactory.getLogger(getClass());
-		private IDatabase database;
+		private BulkLoader<CalcAllocationFactor> loader;
 
 		public FactorLoader(IDatabase database) {
-			this.database = database;
+			this.loader = new BulkLoader<>(database, this,
+					"tbl_allocation_factors", "f_process", "allocation_type",
+					"f_product", "value", "f_exchange");
 		}
 
 		@Override
 		public List<CalcAllocationFactor> load(Long processId) throws Exception {
 			log.trace("load allocation factors for process {}", processId);
-			try (Connection con = database.createConnection()) {
-				String sql = "select * from tbl_allocation_factors where f_process = "
-						+ processId;
-				Statement stmt = con.createStatement();
-				ResultSet rs = stmt.executeQuery(sql);
-				ArrayList<CalcAllocationFactor> factors = new ArrayList<>();
-				while (rs.next()) {
-					CalcAllocationFactor factor = fetchFactor(rs);
-					factors.add(factor);
-				}
-				stmt.close();
-				rs.close();
-				return factors;
-			} catch (Exception e) {
-				log.error("failed to load allocation factors for " + processId,
-						e);
-				return Collections.emptyList();
-			}
+			return loader.load(processId);
 		}
 
 		@Override
 		public Map<Long, List<CalcAllocationFactor>> loadAll(
 				Iterable<? extends Long> processIds) throws Exception {
 			log.trace("load allocation factors");
-			try (Connection con = database.createConnection()) {
-				String sql = "select * from tbl_allocation_factors where f_process in "
-						+ CacheUtil.asSql(processIds);
-				Statement stmt = con.createStatement();
-				ResultSet rs = stmt.executeQuery(sql);
-				Map<Long, List<CalcAllocationFactor>> map = new HashMap<>();
-				while (rs.next()) {
-					CalcAllocationFactor factor = fetchFactor(rs);
-					CacheUtil.addListEntry(map, factor, factor.getProcessId());
-				}
-				stmt.close();
-				rs.close();
-				CacheUtil.fillEmptyEntries(processIds, map);
-				return map;
-			} catch (Exception e) {
-				log.error("failed to load allocation factors", e);
-				return Collections.emptyMap();
-			}
+			return loader.loadAll(processIds);
+		}
+
+		@Override
+		public CalcAllocationFactor read(ResultSet result) throws Exception {
+			return fetchFactor(result);
+		}
+
+		@Override
+		public long getKey(CalcAllocationFactor factor) {
+			return factor.getProcessId();
 		}
 
 		private CalcAllocationFactor fetchFactor(ResultSet rs) throws Exception {
@@ -0,0 +1,259 @@
+package org.openlca.core.matrix.cache;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.openlca.core.database.BaseDao;
+import org.openlca.core.database.BlockFetch;
+import org.openlca.core.database.IDatabase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the rows of a table that belong to a set of owners (e.g. the exchanges
+ * of a set of processes) for the matrix caches. Only the given columns are
+ * selected and the owner IDs are passed in chunks of at most
+ * {@link BaseDao#MAX_LIST_SIZE} IDs as parameters of prepared statements. The
+ * number of parameters of a statement is rounded up to the next power of two
+ * (filled with the last ID of the chunk) so that only a few different SQL
+ * statements are sent to the database, which can then be reused. If the
+ * database takes its connections from a pool, the chunks are loaded in
+ * parallel: the first slice of chunks in the calling thread and the others in
+ * a pool that is shared by all loaders.
+ *
+ * The statements are prepared on the connection of a slice and are closed
+ * together with it, so they are prepared again with each call. As the SQL of
+ * the statements is always the same, the database can take the compiled
+ * statements from its statement cache then (and a connection pool with a
+ * statement cache may return the same statement objects).
+ */
+class BulkLoader<T> {
+
+	/** The maximum number of connections that are used in parallel. */
+	private static final int MAX_THREADS = 4;
+
+	/**
+	 * The pool that is shared by all loaders. It has at most
+	 * {@link #MAX_THREADS} - 1 (daemon) threads as the calling thread loads a
+	 * slice itself.
+	 */
+	private static final ExecutorService SHARED_POOL = Executors
+			.newFixedThreadPool(MAX_THREADS - 1, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "bulk-loader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final IDatabase database;
+	private final Reader<T> reader;
+	private final String keyColumn;
+	private final String select;
+
+	/**
+	 * Creates a new loader.
+	 *
+	 * @param database
+	 *            the database from which the rows are loaded
+	 * @param reader
+	 *            creates the values from the rows of the result set
+	 * @param table
+	 *            the table from which the rows are loaded
+	 * @param keyColumn
+	 *            the column with the owner IDs
+	 * @param columns
+	 *            the columns that are selected; the key column is always
+	 *            selected
+	 */
+	BulkLoader(IDatabase database, Reader<T> reader, String table,
+			String keyColumn, String... columns) {
+		this.database = database;
+		this.reader = reader;
+		this.keyColumn = keyColumn;
+		StringBuilder b = new StringBuilder("select ").append(keyColumn);
+		for (String column : columns) {
+			if (!column.equals(keyColumn))
+				b.append(", ").append(column);
+		}
+		b.append(" from ").append(table).append(" where ").append(keyColumn);
+		this.select = b.toString();
+	}
+
+	/**
+	 * Loads the values of the given owner. Returns an empty list if the values
+	 * could not be loaded.
+	 */
+	List<T> load(long key) {
+		try (Connection con = database.createConnection();
+				PreparedStatement stmt = con.prepareStatement(select + " = ?")) {
+			stmt.setLong(1, key);
+			List<T> values = new ArrayList<>();
+			try (ResultSet result = stmt.executeQuery()) {
+				while (result.next())
+					values.add(reader.read(result));
+			}
+			return values;
+		} catch (Exception e) {
+			log.error("failed to load values for " + key, e);
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * Loads the values of the given owners. The returned map contains a list
+	 * for each key (which is empty if the owner has no values). Returns an
+	 * empty map if the values could not be loaded.
+	 */
+	Map<Long, List<T>> loadAll(Iterable<? extends Long> keys) {
+		List<Long> ids = new ArrayList<>();
+		for (Long key : keys) {
+			if (key != null)
+				ids.add(key);
+		}
+		try {
+			Map<Long, List<T>> map = new HashMap<>();
+			for (List<T> values : fetch(ids)) {
+				for (T value : values)
+					CacheUtil.addListEntry(map, value, reader.getKey(value));
+			}
+			CacheUtil.fillEmptyEntries(ids, map);
+			return map;
+		} catch (Exception e) {
+			log.error("failed to load values", e);
+			return Collections.emptyMap();
+		}
+	}
+
+	private List<List<T>> fetch(List<Long> ids) throws Exception {
+		int chunks = (ids.size() + BaseDao.MAX_LIST_SIZE - 1)
+				/ BaseDao.MAX_LIST_SIZE;
+		int threads = Math.min(chunks, Math.min(MAX_THREADS, Runtime
+				.getRuntime().availableProcessors()));
+		if (threads < 2 || !database.isConnectionPooled())
+			return Collections.singletonList(new Fetch(ids).call());
+		log.trace("load {} chunks in {} threads", chunks, threads);
+		int chunksPerThread = (chunks + threads - 1) / threads;
+		int sliceSize = chunksPerThread * BaseDao.MAX_LIST_SIZE;
+		List<Future<List<T>>> futures = new ArrayList<>();
+		for (int start = sliceSize; start < ids.size(); start += sliceSize) {
+			int end = Math.min(start + sliceSize, ids.size());
+			futures.add(SHARED_POOL.submit(new Fetch(ids.subList(start, end))));
+		}
+		List<List<T>> results = new ArrayList<>();
+		try {
+			results.add(new Fetch(ids.subList(0,
+					Math.min(sliceSize, ids.size()))).call());
+			for (Future<List<T>> future : futures)
+				results.add(future.get());
+			return results;
+		} finally {
+			for (Future<List<T>> future : futures)
+				future.cancel(false);
+		}
+	}
+
+	/**
+	 * Loads the values for a slice of IDs in chunks on a single connection.
+	 */
+	private class Fetch implements Callable<List<T>>,
+			BlockFetch.QueryFunction<T> {
+
+		private final List<Long> ids;
+		private final Map<Integer, PreparedStatement> statements = new HashMap<>();
+		private Connection con;
+
+		Fetch(List<Long> ids) {
+			this.ids = ids;
+		}
+
+		@Override
+		public List<T> call() throws Exception {
+			if (ids.isEmpty())
+				return Collections.emptyList();
+			try (Connection con = database.createConnection()) {
+				this.con = con;
+				try {
+					return BlockFetch.doFetch(ids, this);
+				} finally {
+					for (PreparedStatement stmt : statements.values())
+						stmt.close();
+					statements.clear();
+				}
+			}
+		}
+
+		@Override
+		public List<T> fetchChunk(List<Long> chunk) {
+			try {
+				int size = parameterCount(chunk.size());
+				PreparedStatement stmt = getStatement(size);
+				for (int i = 0; i < size; i++) {
+					long id = i < chunk.size() ? chunk.get(i) : chunk.get(chunk
+							.size() - 1);
+					stmt.setLong(i + 1, id);
+				}
+				List<T> values = new ArrayList<>();
+				try (ResultSet result = stmt.executeQuery()) {
+					while (result.next())
+						values.add(reader.read(result));
+				}
+				return values;
+			} catch (Exception e) {
+				throw new RuntimeException("failed to load values for "
+						+ keyColumn + " in chunk", e);
+			}
+		}
+
+		private PreparedStatement getStatement(int size) throws Exception {
+			PreparedStatement stmt = statements.get(size);
+			if (stmt != null)
+				return stmt;
+			StringBuilder sql = new StringBuilder(select).append(" in (?");
+			for (int i = 1; i < size; i++)
+				sql.append(",?");
+			sql.append(')');
+			stmt = con.prepareStatement(sql.toString());
+			statements.put(size, stmt);
+			return stmt;
+		}
+	}
+
+	/**
+	 * Returns the number of parameters for a chunk with the given size: the
+	 * next power of two but at most {@link BaseDao#MAX_LIST_SIZE}.
+	 */
+	static int parameterCount(int chunkSize) {
+		int count = 1;
+		while (count < chunkSize)
+			count <<= 1;
+		return Math.min(count, BaseDao.MAX_LIST_SIZE);
+	}
+
+	/**
+	 * Creates the values of a loader from the rows of a result set.
+	 */
+	interface Reader<T> {
+
+		/** Creates a value from the current row of the result set. */
+		T read(ResultSet result) throws Exception;
+
+		/** Returns the ID of the owner of the given value. */
+		long getKey(T value);
+
+	}
+
+}
@@ -1,11 +1,7 @@
 package org.openlca.core.matrix.cache;
 
-import java.sql.Connection;
 import java.sql.ResultSet;
-import java.sql.Statement;
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -15,7 +11,6 @@ import org.openlca.core.model.UncertaintyType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 
@@ -23,24 +18,32 @@ class ExchangeCache {
 
 	public static LoadingCache<Long, List<CalcExchange>> create(
 			IDatabase database, ConversionTable conversionTable,
-			FlowTypeTable flowTypes) {
-		return CacheBuilder.newBuilder().build(
-				new ExchangeLoader(database, conversionTable, flowTypes));
+			FlowTypeTable flowTypes, MatrixCacheConfig config) {
+		return config.build(config.getMaxExchanges(), new ExchangeLoader(
+				database, conversionTable, flowTypes));
 	}
 
 	private static class ExchangeLoader extends
-			CacheLoader<Long, List<CalcExchange>> {
+			CacheLoader<Long, List<CalcExchange>> implements
+			BulkLoader.Reader<CalcExchange> {
 
 		private Logger log = LoggerFactory.getLogger(getClass());
-		private IDatabase database;
 		private ConversionTable conversionTable;
 		private FlowTypeTable flowTypes;
+		private BulkLoader<CalcExchange> loader;
 
 		public ExchangeLoader(IDatabase database,
 				ConversionTable conversionTable, FlowTypeTable flowTypes) {
-			this.database = database;
 			this.conversionTable = conversionTable;
 			this.flowTypes = flowTypes;
+			this.loader = new BulkLoader<>(database, this, "tbl_exchanges",
+					"f_owner", "id", "f_flow", "f_unit", "is_input",
+					"f_flow_property_factor", "resulting_amount_value",
+					"resulting_amount_formula", "avoided_product",
+					"f_default_provider", "distribution_type",
+					"parameter1_value", "parameter1_formula",
+					"parameter2_value", "parameter2_formula",
+					"parameter3_value", "parameter3_formula");
 		}
 
 		@Override
@@ -48,48 +51,28 @@ class ExchangeCache {
 			if (key == null)
 				return Collections.emptyList();
 			log.trace("fetch exchanges for key {}", key);
-			String query = "select * from tbl_exchanges where f_owner = " + key;
-			try (Connection con = database.createConnection()) {
-				Statement statement = con.createStatement();
-				ResultSet result = statement.executeQuery(query);
-				ArrayList<CalcExchange> exchanges = new ArrayList<>();
-				while (result.next()) {
-					CalcExchange exchange = nextExchange(result);
-					exchanges.add(exchange);
-				}
-				result.close();
-				statement.close();
-				log.trace("fetched {} exchanges", exchanges.size());
-				return exchanges;
-			} catch (Exception e) {
-				log.error("failed to fetch exchange vector", e);
-				return Collections.emptyList();
-			}
+			List<CalcExchange> exchanges = loader.load(key);
+			log.trace("fetched {} exchanges", exchanges.size());
+			return exchanges;
 		}
 
 		@Override
 		public Map<Long, List<CalcExchange>> loadAll(
 				Iterable<? extends Long> keys) throws Exception {
 			log.trace("fetch exchanges for multiple keys");
-			try (Connection con = database.createConnection()) {
-				String query = "select * from tbl_exchanges where f_owner in "
-						+ CacheUtil.asSql(keys);
-				Statement statement = con.createStatement();
-				HashMap<Long, List<CalcExchange>> map = new HashMap<>();
-				ResultSet result = statement.executeQuery(query);
-				while (result.next()) {
-					CalcExchange exchange = nextExchange(result);
-					CacheUtil.addListEntry(map, exchange,
-							exchange.getProcessId());
-				}
-				result.close();
-				statement.close();
-				log.trace("{} lists loaded", map.size());
-				return map;
-			} catch (Exception e) {
-				log.error("failed to fetch exchange vectors", e);
-				return Collections.emptyMap();
-			}
+			Map<Long, List<CalcExchange>> map = loader.loadAll(keys);
+			log.trace("{} lists loaded", map.size());
+			return map;
+		}
+
+		@Override
+		public CalcExchange read(ResultSet result) throws Exception {
+			return nextExchange(result);
+		}
+
+		@Override
+		public long getKey(CalcExchange exchange) {
+			return exchange.getProcessId();
 		}
 
 		private CalcExchange nextExchange(ResultSet r) throws Exception {
@@ -1,11 +1,6 @@
 package org.openlca.core.matrix.cache;
 
-import java.sql.Connection;
 import java.sql.ResultSet;
-import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -15,75 +10,58 @@ import org.openlca.core.model.UncertaintyType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 
 public class ImpactFactorCache {
 
 	static LoadingCache<Long, List<CalcImpactFactor>> create(
-			IDatabase database, ConversionTable conversionTable) {
-		return CacheBuilder.newBuilder().build(
-				new FactorLoader(database, conversionTable));
+			IDatabase database, ConversionTable conversionTable,
+			MatrixCacheConfig config) {
+		return config.build(config.getMaxImpactFactors(), new FactorLoader(
+				database, conversionTable));
 	}
 
 	private static class FactorLoader extends
-			CacheLoader<Long, List<CalcImpactFactor>> {
+			CacheLoader<Long, List<CalcImpactFactor>> implements
+			BulkLoader.Reader<CalcImpactFactor> {
 
 		private Logger log = LoggerFactory.getLogger(getClass());
-		private IDatabase database;
 		private ConversionTable conversionTable;
+		private BulkLoader<CalcImpactFactor> loader;
 
 		public FactorLoader(IDatabase database, ConversionTable conversionTable) {
-			this.database = database;
 			this.conversionTable = conversionTable;
+			this.loader = new BulkLoader<>(database, this,
+					"tbl_impact_factors", "f_impact_category", "f_flow",
+					"f_flow_property_factor", "f_unit", "value", "formula",
+					"distribution_type", "parameter1_value",
+					"parameter1_formula", "parameter2_value",
+					"parameter2_formula", "parameter3_value",
+					"parameter3_formula");
 		}
 
 		@Override
 		public List<CalcImpactFactor> load(Long impactId) throws Exception {
 			log.trace("load impact factors for category {}", impactId);
-			try (Connection con = database.createConnection()) {
-				String query = "select * from tbl_impact_factors where f_impact_category = "
-						+ impactId;
-				Statement statement = con.createStatement();
-				ResultSet result = statement.executeQuery(query);
-				List<CalcImpactFactor> factors = new ArrayList<>();
-				while (result.next()) {
-					CalcImpactFactor factor = nextFactor(result);
-					factors.add(factor);
-				}
-				result.close();
-				statement.close();
-				return factors;
-			} catch (Exception e) {
-				log.error("failed to load impact factors for " + impactId, e);
-				return Collections.emptyList();
-			}
+			return loader.load(impactId);
 		}
 
 		@Override
 		public Map<Long, List<CalcImpactFactor>> loadAll(
 				Iterable<? extends Long> impactCategoryIds) throws Exception {
 			log.trace("load impact factors for multiple categories");
-			try (Connection con = database.createConnection()) {
-				String query = "select * from tbl_impact_factors where f_impact_category in "
-						+ CacheUtil.asSql(impactCategoryIds);
-				Statement statement = con.createStatement();
-				ResultSet result = statement.executeQuery(query);
-				Map<Long, List<CalcImpactFactor>> map = new HashMap<>();
-				while (result.next()) {
-					CalcImpactFactor factor = nextFactor(result);
-					CacheUtil.addListEntry(map, factor,
-							factor.getImactCategoryId());
-				}
-				result.close();
-				statement.close();
-				CacheUtil.fillEmptyEntries(impactCategoryIds, map);
-				return map;
-			} catch (Exception e) {
-				log.error("failed to load impact factors", e);
-				return Collections.emptyMap();
-			}
+			return loader.loadAll(impactCategoryIds);
+		}
+
+		@Override
+		public CalcImpactFactor read(ResultSet result) throws Exception {
+			return nextFactor(result);
+		}
+
+		@Override
+		public long getKey(CalcImpactFactor factor) {
+			return factor.getImactCategoryId();
 		}
 
 		private CalcImpactFactor nextFactor(ResultSet r) throws Exception {
@@ -1,20 +1,43 @@
 package org.openlca.core.matrix.cache;
 
+import gnu.trove.iterator.TLongLongIterator;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongLongHashMap;
+
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.matrix.CalcAllocationFactor;
 import org.openlca.core.matrix.CalcCostEntry;
 import org.openlca.core.matrix.CalcExchange;
 import org.openlca.core.matrix.CalcImpactFactor;
+import org.openlca.core.matrix.InventorySnapshotStore;
 import org.openlca.core.model.ModelType;
 
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 
 public final class MatrixCache {
 
+	/**
+	 * The types of the loading caches in a matrix cache.
+	 */
+	public enum CacheType {
+		EXCHANGES, ALLOCATION_FACTORS, IMPACT_FACTORS, COST_ENTRIES
+	}
+
 	private final boolean lazy;
 	private final IDatabase database;
+	private final MatrixCacheConfig config;
+
+	/**
+	 * Contains the statistics of the loading caches that were dropped from
+	 * this cache (in a lazy cache, the caches are recreated on evictions).
+	 */
+	private final Map<CacheType, CacheStats> droppedStats = new EnumMap<>(
+			CacheType.class);
 
 	private FlowTypeTable flowTypeTable;
 	private ConversionTable conversionTable;
@@ -25,26 +48,68 @@ public final class MatrixCache {
 	private LoadingCache<Long, List<CalcExchange>> exchangeCache;
 	private LoadingCache<Long, List<CalcCostEntry>> costCache;
 
+	private InventorySnapshotStore snapshotStore;
+
+	/**
+	 * The version of the cache is incremented on each eviction. For evicted
+	 * processes, the version of the eviction is stored so that clients can
+	 * update data structures that were built from this cache incrementally.
+	 * Any other eviction that could change such data structures sets the
+	 * structure version.
+	 */
+	private long version;
+	private long structureVersion;
+	private final TLongLongHashMap processVersions = new TLongLongHashMap();
+
+	/**
+	 * The maximum number of process evictions that are logged. When this
+	 * number is reached, the log is cleared and the structure version is set.
+	 */
+	private static final int MAX_LOGGED_PROCESSES = 10_000;
+
 	public static MatrixCache createEager(IDatabase database) {
-		return new MatrixCache(database, false);
+		return createEager(database, new MatrixCacheConfig());
+	}
+
+	/**
+	 * Creates a cache where all tables and loading caches are created
+	 * immediately. The loading caches are configured with the given
+	 * configuration.
+	 */
+	public static MatrixCache createEager(IDatabase database,
+			MatrixCacheConfig config) {
+		return new MatrixCache(database, false, config);
 	}
 
 	public static MatrixCache createLazy(IDatabase database) {
-		return new MatrixCache(database, true);
+		return createLazy(database, new MatrixCacheConfig());
+	}
+
+	/**
+	 * Creates a cache where the tables and loading caches are created when
+	 * they are first requested. The loading caches are configured with the
+	 * given configuration.
+	 */
+	public static MatrixCache createLazy(IDatabase database,
+			MatrixCacheConfig config) {
+		return new MatrixCache(database, true, config);
 	}
 
-	private MatrixCache(IDatabase database, boolean lazy) {
+	private MatrixCache(IDatabase database, boolean lazy,
+			MatrixCacheConfig config) {
 		this.database = database;
 		this.lazy = lazy;
+		this.config = config == null ? new MatrixCacheConfig() : config;
 		if (!lazy) {
 			flowTypeTable = FlowTypeTable.create(database);
 			conversionTable = ConversionTable.create(database);
 			processTable = ProcessTable.create(database);
 			exchangeCache = ExchangeCache.create(database, conversionTable,
-					flowTypeTable);
-			allocationCache = AllocationCache.create(database);
-			impactCache = ImpactFactorCache.create(database, conversionTable);
-			costCache = CostEntryCache.create(database);
+					flowTypeTable, this.config);
+			allocationCache = AllocationCache.create(database, this.config);
+			impactCache = ImpactFactorCache.create(database, conversionTable,
+					this.config);
+			costCache = CostEntryCache.create(database, this.config);
 		}
 	}
 
@@ -70,33 +135,52 @@ public final class MatrixCache {
 		return processTable;
 	}
 
+	/**
+	 * Returns the store for snapshots of built inventories or null if
+	 * snapshots are not used (which is the default).
+	 */
+	public InventorySnapshotStore getSnapshotStore() {
+		return snapshotStore;
+	}
+
+	/**
+	 * Sets the store for snapshots of built inventories (can be null). The
+	 * snapshots are invalidated when data that are used in inventories are
+	 * evicted from this cache.
+	 */
+	public void setSnapshotStore(InventorySnapshotStore snapshotStore) {
+		this.snapshotStore = snapshotStore;
+	}
+
 	public LoadingCache<Long, List<CalcAllocationFactor>> getAllocationCache() {
 		if (allocationCache == null)
-			allocationCache = AllocationCache.create(database);
+			allocationCache = AllocationCache.create(database, config);
 		return allocationCache;
 	}
 
 	public LoadingCache<Long, List<CalcImpactFactor>> getImpactCache() {
 		if (impactCache == null)
 			impactCache = ImpactFactorCache.create(database,
-					getConversionTable());
+					getConversionTable(), config);
 		return impactCache;
 	}
 
 	public LoadingCache<Long, List<CalcExchange>> getExchangeCache() {
 		if (exchangeCache == null)
 			exchangeCache = ExchangeCache.create(database,
-					getConversionTable(), getFlowTypeTable());
+					getConversionTable(), getFlowTypeTable(), config);
 		return exchangeCache;
 	}
 
 	public LoadingCache<Long, List<CalcCostEntry>> getCostCache() {
 		if (costCache == null)
-			costCache = CostEntryCache.create(database);
+			costCache = CostEntryCache.create(database, config);
 		return costCache;
 	}
 
 	public synchronized void evictAll() {
+		structureChanged();
+		invalidateSnapshots();
 		if (flowTypeTable != null)
 			flowTypeTable.reload();
 		if (conversionTable != null)
@@ -124,10 +208,12 @@ public final class MatrixCache {
 			baseEviction();
 			break;
 		case IMPACT_CATEGORY:
+			structureChanged();
 			if (impactCache != null)
 				impactCache.invalidate(id);
 			break;
 		case IMPACT_METHOD:
+			structureChanged();
 			if (impactCache != null)
 				impactCache.invalidateAll();
 			break;
@@ -140,17 +226,39 @@ public final class MatrixCache {
 		case UNIT_GROUP:
 			baseEviction();
 			break;
+		case ACTOR:
+		case CATEGORY:
+		case LOCATION:
+		case PROJECT:
+		case SOURCE:
+			break; // not used in the matrices
 		default:
+			// e.g. product systems: the matrices built from this cache could
+			// be out of date
+			structureChanged();
 			break;
 		}
 	}
 
+	/**
+	 * Called when parameters were changed. The parameters are not cached but
+	 * data structures that were built from this cache with the old parameter
+	 * values need to be rebuilt.
+	 */
+	public synchronized void evictParameters() {
+		structureChanged();
+	}
+
 	private void baseEviction() {
+		structureChanged();
+		invalidateSnapshots();
 		if (conversionTable == null && flowTypeTable == null)
 			return; // there cannot be an exchange or impact cache
 		if (lazy) {
 			conversionTable = null;
 			flowTypeTable = null;
+			dropStats(CacheType.EXCHANGES, exchangeCache);
+			dropStats(CacheType.IMPACT_FACTORS, impactCache);
 			exchangeCache = null;
 			impactCache = null;
 		} else {
@@ -162,6 +270,12 @@ public final class MatrixCache {
 	}
 
 	private void evictProcess(long id) {
+		if (processVersions.size() >= MAX_LOGGED_PROCESSES)
+			structureChanged();
+		version++;
+		processVersions.put(id, version);
+		if (snapshotStore != null)
+			snapshotStore.invalidate(id);
 		reloadProcessTable();
 		if (exchangeCache != null)
 			exchangeCache.invalidate(id);
@@ -171,6 +285,51 @@ public final class MatrixCache {
 			costCache.invalidate(id);
 	}
 
+	private void structureChanged() {
+		version++;
+		structureVersion = version;
+		// the process evictions before a structure change are not relevant
+		// anymore (see getEvictedProcesses)
+		processVersions.clear();
+	}
+
+	/**
+	 * Returns the current version of this cache. The version is incremented
+	 * when data are evicted from this cache and can be passed into
+	 * {@link #getEvictedProcesses(long)} later.
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the IDs of the processes that were evicted from this cache after
+	 * the given version (see {@link #getVersion()}). Returns null if other
+	 * data were evicted after this version that could change the structure or
+	 * values of inventories (like flows, units, parameters, product systems,
+	 * or LCIA methods) so that data structures that were built from this
+	 * cache should be rebuilt completely.
+	 */
+	public synchronized long[] getEvictedProcesses(long sinceVersion) {
+		if (structureVersion > sinceVersion)
+			return null;
+		if (version == sinceVersion)
+			return new long[0];
+		TLongArrayList ids = new TLongArrayList();
+		TLongLongIterator it = processVersions.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			if (it.value() > sinceVersion)
+				ids.add(it.key());
+		}
+		return ids.toArray();
+	}
+
+	private void invalidateSnapshots() {
+		if (snapshotStore != null)
+			snapshotStore.invalidate();
+	}
+
 	private void reloadProcessTable() {
 		if (lazy)
 			processTable = null;
@@ -178,6 +337,57 @@ public final class MatrixCache {
 			processTable.reload();
 	}
 
+	private void dropStats(CacheType type, LoadingCache<?, ?> cache) {
+		if (cache == null)
+			return;
+		droppedStats.put(type, getDroppedStats(type).plus(cache.stats()));
+	}
+
+	private CacheStats getDroppedStats(CacheType type) {
+		CacheStats stats = droppedStats.get(type);
+		return stats != null ? stats : new CacheStats(0, 0, 0, 0, 0, 0);
+	}
+
+	private LoadingCache<?, ?> getCache(CacheType type) {
+		switch (type) {
+		case EXCHANGES:
+			return exchangeCache;
+		case ALLOCATION_FACTORS:
+			return allocationCache;
+		case IMPACT_FACTORS:
+			return impactCache;
+		case COST_ENTRIES:
+			return costCache;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the statistics (hits, misses, load times, and evictions) of the
+	 * loading cache of the given type since this matrix cache was created.
+	 * Note that statistics are only recorded if this is enabled in the
+	 * configuration of this cache; otherwise all values are 0.
+	 */
+	public synchronized CacheStats getStats(CacheType type) {
+		CacheStats stats = getDroppedStats(type);
+		LoadingCache<?, ?> cache = getCache(type);
+		return cache == null ? stats : stats.plus(cache.stats());
+	}
+
+	/**
+	 * Returns the number of entries (e.g. the number of processes with
+	 * exchanges) that are currently in the loading cache of the given type.
+	 */
+	public synchronized long getSize(CacheType type) {
+		LoadingCache<?, ?> cache = getCache(type);
+		return cache == null ? 0 : cache.size();
+	}
+
+	public MatrixCacheConfig getConfig() {
+		return config;
+	}
+
 	public synchronized void registerNew(ModelType type, long id) {
 		if (type == null)
 			return;
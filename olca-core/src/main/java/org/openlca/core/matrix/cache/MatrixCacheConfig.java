@@ -0,0 +1,145 @@
+package org.openlca.core.matrix.cache;
+
+import java.util.List;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+
+/**
+ * The configuration of the loading caches in a {@link MatrixCache}. The size
+ * of the caches is limited by the number of rows (e.g. the number of
+ * exchanges) they can hold: each cache entry is weighted by the number of rows
+ * in the entry and entries are evicted when the total weight of a cache
+ * exceeds its limit. A limit of 0 means that the respective cache is not
+ * bounded (which is the default).
+ */
+public class MatrixCacheConfig {
+
+	/*
+	 * Estimated heap sizes of the rows in the caches in bytes (object, fields,
+	 * and list entry). These are only used to derive row limits from a memory
+	 * budget.
+	 */
+	static final int EXCHANGE_BYTES = 160;
+	static final int ALLOCATION_FACTOR_BYTES = 64;
+	static final int IMPACT_FACTOR_BYTES = 120;
+	static final int COST_ENTRY_BYTES = 56;
+
+	private long maxExchanges;
+	private long maxAllocationFactors;
+	private long maxImpactFactors;
+	private long maxCostEntries;
+	private boolean softValues;
+	private boolean recordStats = true;
+
+	/**
+	 * Creates a configuration where the row limits of the caches are derived
+	 * from the given memory budget in bytes: 80% of the budget is reserved for
+	 * exchanges, 10% for impact assessment factors, and 5% each for allocation
+	 * factors and cost entries.
+	 */
+	public static MatrixCacheConfig withMemoryBudget(long bytes) {
+		MatrixCacheConfig config = new MatrixCacheConfig();
+		if (bytes <= 0)
+			return config;
+		config.maxExchanges = rows(bytes * 8 / 10, EXCHANGE_BYTES);
+		config.maxImpactFactors = rows(bytes / 10, IMPACT_FACTOR_BYTES);
+		config.maxAllocationFactors = rows(bytes / 20,
+				ALLOCATION_FACTOR_BYTES);
+		config.maxCostEntries = rows(bytes / 20, COST_ENTRY_BYTES);
+		return config;
+	}
+
+	private static long rows(long bytes, int rowBytes) {
+		long rows = bytes / rowBytes;
+		return rows < 1 ? 1 : rows;
+	}
+
+	/** The maximum number of exchanges in the cache; 0 if not bounded. */
+	public long getMaxExchanges() {
+		return maxExchanges;
+	}
+
+	public void setMaxExchanges(long maxExchanges) {
+		this.maxExchanges = maxExchanges;
+	}
+
+	/** The maximum number of allocation factors in the cache; 0 if not bounded. */
+	public long getMaxAllocationFactors() {
+		return maxAllocationFactors;
+	}
+
+	public void setMaxAllocationFactors(long maxAllocationFactors) {
+		this.maxAllocationFactors = maxAllocationFactors;
+	}
+
+	/** The maximum number of impact factors in the cache; 0 if not bounded. */
+	public long getMaxImpactFactors() {
+		return maxImpactFactors;
+	}
+
+	public void setMaxImpactFactors(long maxImpactFactors) {
+		this.maxImpactFactors = maxImpactFactors;
+	}
+
+	/** The maximum number of cost entries in the cache; 0 if not bounded. */
+	public long getMaxCostEntries() {
+		return maxCostEntries;
+	}
+
+	public void setMaxCostEntries(long maxCostEntries) {
+		this.maxCostEntries = maxCostEntries;
+	}
+
+	/**
+	 * If true, the cache entries are held by soft references so that they can
+	 * be collected by the garbage collector when the heap runs out of memory.
+	 */
+	public boolean isSoftValues() {
+		return softValues;
+	}
+
+	public void setSoftValues(boolean softValues) {
+		this.softValues = softValues;
+	}
+
+	/**
+	 * If true (the default), the caches record statistics about hits, misses,
+	 * load times, and evictions (see {@link MatrixCache#getStats}).
+	 */
+	public boolean isRecordStats() {
+		return recordStats;
+	}
+
+	public void setRecordStats(boolean recordStats) {
+		this.recordStats = recordStats;
+	}
+
+	/**
+	 * Creates a loading cache with the given loader and row limit according to
+	 * this configuration.
+	 */
+	<V> LoadingCache<Long, List<V>> build(long maxRows,
+			CacheLoader<Long, List<V>> loader) {
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+		if (recordStats)
+			builder.recordStats();
+		if (softValues)
+			builder.softValues();
+		if (maxRows <= 0)
+			return builder.build(loader);
+		return builder.maximumWeight(maxRows).weigher(new RowWeigher<V>())
+				.build(loader);
+	}
+
+	/** Weights a cache entry by the number of rows in the entry. */
+	private static class RowWeigher<V> implements Weigher<Long, List<V>> {
+		@Override
+		public int weigh(Long key, List<V> rows) {
+			return rows == null || rows.isEmpty() ? 1 : rows.size();
+		}
+	}
+
+}
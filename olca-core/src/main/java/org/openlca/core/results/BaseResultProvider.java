@@ -1,9 +1,7 @@
 package org.openlca.core.results;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -56,11 +54,8 @@ public class BaseResultProvider<T extends BaseResult> implements
 		FlowIndex index = result.getFlowIndex();
 		if (index == null)
 			return Collections.emptySet();
-		List<Long> ids = new ArrayList<>(index.size());
-		for (long id : index.getFlowIds())
-			ids.add(id);
 		Map<Long, FlowDescriptor> values = cache.getAll(FlowDescriptor.class,
-				ids);
+				index.getFlowIds());
 		HashSet<FlowDescriptor> descriptors = new HashSet<>();
 		descriptors.addAll(values.values());
 		return descriptors;
@@ -71,11 +66,8 @@ public class BaseResultProvider<T extends BaseResult> implements
 		LongIndex index = result.getImpactIndex();
 		if (index == null)
 			return Collections.emptySet();
-		List<Long> ids = new ArrayList<>(index.size());
-		for (long id : index.getKeys())
-			ids.add(id);
 		Map<Long, ImpactCategoryDescriptor> values = cache.getAll(
-				ImpactCategoryDescriptor.class, ids);
+				ImpactCategoryDescriptor.class, index.getKeys());
 		HashSet<ImpactCategoryDescriptor> descriptors = new HashSet<>();
 		descriptors.addAll(values.values());
 		return descriptors;
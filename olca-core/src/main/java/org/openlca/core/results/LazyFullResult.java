@@ -0,0 +1,225 @@
+package org.openlca.core.results;
+
+import org.openlca.core.math.IFactorization;
+import org.openlca.core.math.IMatrix;
+import org.openlca.core.math.JavaMatrixFactory;
+import org.openlca.core.matrix.LongPair;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * A full result that calculates the upstream results on demand. Instead of the
+ * upstream result matrices, this result keeps the factorization of the
+ * technology matrix A. A row of the upstream flow (or LCIA category) results
+ * is calculated via the transposed system of A when it is requested the first
+ * time. The calculated rows are cached where the size of the cache is bounded
+ * by {@link #setMaxCachedRows(int)}; the least recently used rows are removed
+ * first.
+ */
+public class LazyFullResult extends FullResult {
+
+	private IFactorization factorization;
+	private IMatrix interventionMatrix;
+	private IMatrix impactFlowMatrix;
+	private double[] demands;
+
+	private int maxCachedRows = 100;
+	private LoadingCache<Integer, double[]> flowRows;
+	private LoadingCache<Integer, double[]> impactRows;
+
+	/**
+	 * Set the factorization of the technology matrix A that is used to
+	 * calculate the upstream results.
+	 */
+	public void setFactorization(IFactorization factorization) {
+		this.factorization = factorization;
+	}
+
+	/**
+	 * Set the intervention matrix B from which the upstream flow results are
+	 * calculated.
+	 */
+	public void setInterventionMatrix(IMatrix interventionMatrix) {
+		this.interventionMatrix = interventionMatrix;
+	}
+
+	/**
+	 * Set the matrix M * B with the characterization factors M and the
+	 * intervention matrix B from which the upstream LCIA results are
+	 * calculated.
+	 */
+	public void setImpactFlowMatrix(IMatrix impactFlowMatrix) {
+		this.impactFlowMatrix = impactFlowMatrix;
+	}
+
+	/**
+	 * Set the demands of the process-products with which the columns of the
+	 * upstream results are scaled (the scaling factor times the diagonal entry
+	 * of the technology matrix).
+	 */
+	public void setDemands(double[] demands) {
+		this.demands = demands;
+	}
+
+	/**
+	 * Set the maximum number of upstream result rows that are cached for the
+	 * flows and LCIA categories (each). The default value is 100. This clears
+	 * the currently cached rows.
+	 */
+	public synchronized void setMaxCachedRows(int maxCachedRows) {
+		this.maxCachedRows = maxCachedRows;
+		flowRows = null;
+		impactRows = null;
+	}
+
+	/**
+	 * Calculates the complete upstream flow result matrix. Note that this can
+	 * take a long time and needs a lot of memory for large product systems; if
+	 * possible, single results should be requested instead.
+	 */
+	@Override
+	public IMatrix getUpstreamFlowResults() {
+		return createMatrix(getFlowRows(), interventionMatrix);
+	}
+
+	@Override
+	public double getUpstreamFlowResult(LongPair processProduct, long flowId) {
+		int row = flowIndex.getIndex(flowId);
+		int col = productIndex.getIndex(processProduct);
+		return getValue(getFlowRows(), row, col);
+	}
+
+	@Override
+	public double getUpstreamFlowResult(long processId, long flowId) {
+		int row = flowIndex.getIndex(flowId);
+		return getProcessValue(getFlowRows(), row, processId);
+	}
+
+	/**
+	 * Calculates the complete upstream LCIA result matrix. Note that this can
+	 * take a long time for large product systems; if possible, single results
+	 * should be requested instead.
+	 */
+	@Override
+	public IMatrix getUpstreamImpactResults() {
+		if (!hasImpactResults())
+			return null;
+		return createMatrix(getImpactRows(), impactFlowMatrix);
+	}
+
+	@Override
+	public double getUpstreamImpactResult(LongPair processProduct,
+			long impactId) {
+		if (!hasImpactResults())
+			return 0;
+		int row = impactIndex.getIndex(impactId);
+		int col = productIndex.getIndex(processProduct);
+		return getValue(getImpactRows(), row, col);
+	}
+
+	@Override
+	public double getUpstreamImpactResult(long processId, long impactId) {
+		if (!hasImpactResults())
+			return 0;
+		int row = impactIndex.getIndex(impactId);
+		return getProcessValue(getImpactRows(), row, processId);
+	}
+
+	private double getValue(LoadingCache<Integer, double[]> rows, int row,
+			int col) {
+		if (row < 0 || col < 0 || col >= demands.length)
+			return 0;
+		double[] values = getRow(rows, row);
+		return values == null ? 0 : values[col];
+	}
+
+	private double getProcessValue(LoadingCache<Integer, double[]> rows,
+			int row, long processId) {
+		if (row < 0)
+			return 0;
+		double[] values = getRow(rows, row);
+		if (values == null)
+			return 0;
+		double sum = 0;
+		for (LongPair product : productIndex.getProducts(processId)) {
+			int col = productIndex.getIndex(product);
+			if (col >= 0 && col < values.length)
+				sum += values[col];
+		}
+		return sum;
+	}
+
+	private double[] getRow(LoadingCache<Integer, double[]> rows, int row) {
+		double[] values = rows.getUnchecked(row);
+		return values.length == 0 ? null : values;
+	}
+
+	private IMatrix createMatrix(LoadingCache<Integer, double[]> rows,
+			IMatrix source) {
+		int n = demands.length;
+		IMatrix matrix = new JavaMatrixFactory().create(
+				source.getRowDimension(), n);
+		for (int row = 0; row < source.getRowDimension(); row++) {
+			double[] values = getRow(rows, row);
+			if (values == null)
+				continue;
+			for (int col = 0; col < n; col++)
+				matrix.setEntry(row, col, values[col]);
+		}
+		return matrix;
+	}
+
+	private synchronized LoadingCache<Integer, double[]> getFlowRows() {
+		if (flowRows == null)
+			flowRows = createCache(interventionMatrix);
+		return flowRows;
+	}
+
+	private synchronized LoadingCache<Integer, double[]> getImpactRows() {
+		if (impactRows == null)
+			impactRows = createCache(impactFlowMatrix);
+		return impactRows;
+	}
+
+	private LoadingCache<Integer, double[]> createCache(IMatrix source) {
+		return CacheBuilder.newBuilder().maximumSize(maxCachedRows)
+				.build(new RowLoader(source));
+	}
+
+	/**
+	 * Calculates a row of the upstream results: x = b * A<sup>-1</sup> *
+	 * diag(demands) where b is the respective row of the source matrix. An
+	 * empty array is returned for rows that are zero or out of range.
+	 */
+	private class RowLoader extends CacheLoader<Integer, double[]> {
+
+		private final IMatrix source;
+
+		RowLoader(IMatrix source) {
+			this.source = source;
+		}
+
+		@Override
+		public double[] load(Integer row) {
+			if (source == null || row >= source.getRowDimension())
+				return new double[0];
+			double[] b = source.getRow(row);
+			boolean zero = true;
+			for (double val : b) {
+				if (val != 0) {
+					zero = false;
+					break;
+				}
+			}
+			if (zero)
+				return new double[0];
+			double[] x = factorization.solveTranspose(b);
+			for (int col = 0; col < x.length; col++)
+				x[col] *= demands[col];
+			return x;
+		}
+	}
+
+}
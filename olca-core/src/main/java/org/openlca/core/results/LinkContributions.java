@@ -1,8 +1,9 @@
 package org.openlca.core.results;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 import org.openlca.core.math.IMatrix;
+import org.openlca.core.math.MatrixIterator;
 import org.openlca.core.matrix.LongPair;
 import org.openlca.core.matrix.ProductIndex;
 import org.openlca.core.model.ProcessLink;
@@ -15,22 +16,35 @@ import org.openlca.core.model.ProcessLink;
  * example, if we have a process product p that goes with 5 kg into process x
  * and with 3 kg into process y the contribution share of product p to process x
  * is 5/8 = 62.5% and to process y 3/8 = 37.5%.
+ *
+ * The shares are calculated from the non-zero entries of the technology matrix
+ * and stored in a compressed row format where the rows are the indices of the
+ * provider products and the columns the indices of the recipient products.
  */
 public class LinkContributions {
 
+	private final ProductIndex index;
+
 	/**
-	 * Maps product links to shares: output-process-product -> input-process ->
-	 * share.
+	 * The positions in the column and share arrays where the rows start; the
+	 * entries of row i are stored at the positions rowPointers[i] until
+	 * rowPointers[i + 1] (exclusive).
 	 */
-	private HashMap<LongPair, HashMap<Long, Double>> shares = new HashMap<>();
+	private int[] rowPointers;
+
+	/** The (sorted) column indices of the entries in each row. */
+	private int[] columns;
 
-	private LinkContributions() {
+	private double[] shares;
+
+	private LinkContributions(ProductIndex index) {
+		this.index = index;
 	}
 
 	public static LinkContributions calculate(IMatrix technologyMatrix,
 			ProductIndex index, double[] scalingFactors) {
-		LinkContributions contributions = new LinkContributions();
-		contributions.calculateShares(technologyMatrix, index, scalingFactors);
+		LinkContributions contributions = new LinkContributions(index);
+		contributions.calculateShares(technologyMatrix, scalingFactors);
 		return contributions;
 	}
 
@@ -42,60 +56,94 @@ public class LinkContributions {
 	public double getShare(ProcessLink link) {
 		if (link == null)
 			return 0;
-		LongPair output = new LongPair(link.getProviderId(), link.getFlowId());
-		HashMap<Long, Double> map = shares.get(output);
-		if (map == null)
-			return 0;
-		Double share = map.get(link.getRecipientId());
-		return share == null ? 0 : share;
+		int provider = index.getIndex(link.getProviderId(), link.getFlowId());
+		return getShare(provider, link.getRecipientId());
 	}
 
 	double getShare(LongPair provider, LongPair recipient) {
-		if (provider == null || provider == null)
+		if (provider == null || recipient == null)
 			return 0;
-		HashMap<Long, Double> map = shares.get(provider);
-		if (map == null)
-			return 0;
-		Double share = map.get(recipient.getFirst());
-		return share == null ? 0 : share;
+		return getShare(index.getIndex(provider), recipient.getFirst());
 	}
 
-	private void calculateShares(IMatrix matrix, ProductIndex index,
-			double[] scalingFactors) {
-		for (int i = 0; i < index.size(); i++) {
-			LongPair outProduct = index.getProductAt(i);
-			double outVal = scalingFactors[i] * matrix.getEntry(i, i);
-			if (outVal == 0)
+	/**
+	 * Returns the share of the provider product with the given index to the
+	 * recipient process with the given ID. If the recipient process has
+	 * multiple products in the index, the shares of these products are summed
+	 * up.
+	 */
+	private double getShare(int provider, long recipientProcess) {
+		if (provider < 0)
+			return 0;
+		int start = rowPointers[provider];
+		int end = rowPointers[provider + 1];
+		if (start == end)
+			return 0;
+		double share = 0;
+		int count = 0;
+		for (int col : index.getProductIndices(recipientProcess)) {
+			int pos = Arrays.binarySearch(columns, start, end, col);
+			if (pos < 0)
 				continue;
-			for (int k = 0; k < index.size(); k++) {
-				if (k == i)
-					continue;
-				double rawInVal = matrix.getEntry(i, k);
-				if (rawInVal == 0)
-					continue;
-				double contr = -(scalingFactors[k] * rawInVal) / outVal;
-				LongPair inProduct = index.getProductAt(k);
-				putShare(outProduct, inProduct, contr);
-			}
+			share += shares[pos];
+			count++;
 		}
+		if (count > 1 && share >= 1)
+			return 1;
+		return share;
 	}
 
-	private void putShare(LongPair output, LongPair input, double share) {
-		HashMap<Long, Double> map = shares.get(output);
-		if (map == null) {
-			map = new HashMap<>();
-			shares.put(output, map);
+	private void calculateShares(IMatrix matrix, final double[] scalingFactors) {
+		final int n = index.size();
+		final double[] outVals = new double[n];
+		for (int i = 0; i < n; i++)
+			outVals[i] = scalingFactors[i] * matrix.getEntry(i, i);
+
+		// count the entries in the rows and columns
+		final int[] rowCounts = new int[n + 1];
+		final int[] colCounts = new int[n + 1];
+		matrix.iterate(new MatrixIterator() {
+			@Override
+			public void next(int i, int k, double val) {
+				if (i == k || outVals[i] == 0)
+					return;
+				rowCounts[i + 1]++;
+				colCounts[k + 1]++;
+			}
+		});
+		for (int i = 0; i < n; i++) {
+			rowCounts[i + 1] += rowCounts[i];
+			colCounts[i + 1] += colCounts[i];
 		}
-		Long inputProcess = input.getFirst();
-		Double oldShare = map.get(inputProcess);
-		if (oldShare == null)
-			map.put(inputProcess, share);
-		else {
-			double newShare = oldShare + share;
-			if (newShare < 1)
-				map.put(inputProcess, newShare);
-			else
-				map.put(inputProcess, 1d); // assert v <= 1
+		int entries = rowCounts[n];
+
+		// collect the shares column wise
+		final int[] colRows = new int[entries];
+		final double[] colShares = new double[entries];
+		final int[] colNext = Arrays.copyOf(colCounts, n);
+		matrix.iterate(new MatrixIterator() {
+			@Override
+			public void next(int i, int k, double rawInVal) {
+				double outVal = outVals[i];
+				if (i == k || outVal == 0)
+					return;
+				int pos = colNext[k]++;
+				colRows[pos] = i;
+				colShares[pos] = -(scalingFactors[k] * rawInVal) / outVal;
+			}
+		});
+
+		// transpose into the row format; the columns are then sorted
+		rowPointers = rowCounts;
+		columns = new int[entries];
+		shares = new double[entries];
+		int[] rowNext = Arrays.copyOf(rowCounts, n);
+		for (int k = 0; k < n; k++) {
+			for (int p = colCounts[k]; p < colCounts[k + 1]; p++) {
+				int pos = rowNext[colRows[p]]++;
+				columns[pos] = k;
+				shares[pos] = colShares[p];
+			}
 		}
 	}
 
@@ -0,0 +1,272 @@
+package org.openlca.core.results;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable sketch for the estimation of quantiles of a stream of values (a
+ * merging t-digest). The values are collected in a buffer which is merged
+ * into a sorted list of centroids when it is full. The size of a centroid is
+ * limited by a scale function so that the centroids at the tails of the
+ * distribution are small (i.e. the estimations of extreme percentiles are
+ * accurate) and the number of centroids is bounded by the compression factor.
+ * Note that the methods of this class are not synchronized and that also the
+ * getters of the quantiles modify the sketch as they merge the buffered
+ * values into the centroids. A sketch that is updated in another thread
+ * should be read via a {@link #copy()}.
+ */
+public class QuantileSketch {
+
+	private final double compression;
+
+	private double[] means;
+	private double[] weights;
+	private int centroids;
+
+	private double[] buffer;
+	private int buffered;
+
+	private long count;
+	private double min = Double.NaN;
+	private double max = Double.NaN;
+
+	public QuantileSketch() {
+		this(100);
+	}
+
+	/**
+	 * Creates a new sketch with the given compression factor. Higher values
+	 * give more accurate estimations but need more memory. The number of
+	 * centroids is approximately bounded by this factor.
+	 */
+	public QuantileSketch(double compression) {
+		this.compression = compression < 10 ? 10 : compression;
+		int size = (int) Math.ceil(this.compression) * 2 + 10;
+		means = new double[size];
+		weights = new double[size];
+		buffer = new double[size * 4];
+	}
+
+	public void add(double value) {
+		if (Double.isNaN(value))
+			return;
+		if (buffered == buffer.length)
+			compress();
+		buffer[buffered++] = value;
+		if (count == 0 || value < min)
+			min = value;
+		if (count == 0 || value > max)
+			max = value;
+		count++;
+	}
+
+	/**
+	 * Adds the values of the given sketch to this sketch. The given sketch is
+	 * not modified.
+	 */
+	public void merge(QuantileSketch other) {
+		if (other == null || other.count == 0)
+			return;
+		compress();
+		QuantileSketch o = other.copy();
+		o.compress();
+		merge(o.means, o.weights, o.centroids);
+		if (count == 0 || o.min < min)
+			min = o.min;
+		if (count == 0 || o.max > max)
+			max = o.max;
+		count += o.count;
+	}
+
+	/**
+	 * Returns a new sketch that contains the negated values of this sketch.
+	 */
+	public QuantileSketch negate() {
+		compress();
+		QuantileSketch n = new QuantileSketch(compression);
+		if (centroids > n.means.length) {
+			n.means = new double[centroids];
+			n.weights = new double[centroids];
+		}
+		for (int i = 0; i < centroids; i++) {
+			int j = centroids - 1 - i;
+			n.means[i] = -means[j];
+			n.weights[i] = weights[j];
+		}
+		n.centroids = centroids;
+		n.count = count;
+		n.min = -max;
+		n.max = -min;
+		return n;
+	}
+
+	/**
+	 * Returns a copy of this sketch. The buffered values are merged into the
+	 * centroids of the copy so that reading the quantiles of the copy does not
+	 * modify it.
+	 */
+	public QuantileSketch copy() {
+		QuantileSketch copy = new QuantileSketch(compression);
+		copy.means = Arrays.copyOf(means, means.length);
+		copy.weights = Arrays.copyOf(weights, weights.length);
+		copy.centroids = centroids;
+		copy.buffer = Arrays.copyOf(buffer, buffer.length);
+		copy.buffered = buffered;
+		copy.count = count;
+		copy.min = min;
+		copy.max = max;
+		copy.compress();
+		return copy;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMinimum() {
+		return count == 0 ? 0 : min;
+	}
+
+	public double getMaximum() {
+		return count == 0 ? 0 : max;
+	}
+
+	/**
+	 * Returns the estimated value at the given quantile.
+	 *
+	 * @param q
+	 *            the quantile (0..1)
+	 */
+	public double getQuantile(double q) {
+		if (count == 0)
+			return 0;
+		compress();
+		if (q <= 0)
+			return min;
+		if (q >= 1)
+			return max;
+		if (centroids == 1)
+			return means[0];
+		double index = q * count;
+		double center = weights[0] / 2;
+		if (index <= center)
+			return interpolate(index, 0, center, min, means[0]);
+		for (int i = 1; i < centroids; i++) {
+			double next = center + (weights[i - 1] + weights[i]) / 2;
+			if (index <= next)
+				return interpolate(index, center, next, means[i - 1], means[i]);
+			center = next;
+		}
+		return interpolate(index, center, count, means[centroids - 1], max);
+	}
+
+	/**
+	 * Returns the estimated fraction of values that are smaller than or equal
+	 * to the given value.
+	 */
+	public double getCumulativeProbability(double value) {
+		if (count == 0 || value < min)
+			return 0;
+		if (value >= max)
+			return 1;
+		compress();
+		double center = weights[0] / 2;
+		if (value <= means[0])
+			return interpolate(value, min, means[0], 0, center) / count;
+		for (int i = 1; i < centroids; i++) {
+			double next = center + (weights[i - 1] + weights[i]) / 2;
+			if (value <= means[i])
+				return interpolate(value, means[i - 1], means[i], center, next)
+						/ count;
+			center = next;
+		}
+		return interpolate(value, means[centroids - 1], max, center, count)
+				/ count;
+	}
+
+	private double interpolate(double x, double x0, double x1, double y0,
+			double y1) {
+		if (x1 <= x0)
+			return y1;
+		return y0 + (x - x0) / (x1 - x0) * (y1 - y0);
+	}
+
+	/**
+	 * Merges the buffered values into the centroids.
+	 */
+	private void compress() {
+		if (buffered == 0)
+			return;
+		Arrays.sort(buffer, 0, buffered);
+		double[] ones = new double[buffered];
+		Arrays.fill(ones, 1);
+		double[] values = Arrays.copyOf(buffer, buffered);
+		buffered = 0;
+		merge(values, ones, values.length);
+	}
+
+	/**
+	 * Merges the given centroids which must be sorted by their means into the
+	 * centroids of this sketch.
+	 */
+	private void merge(double[] otherMeans, double[] otherWeights, int n) {
+		int size = centroids + n;
+		double[] m = new double[size];
+		double[] w = new double[size];
+		int i = 0, j = 0, k = 0;
+		double total = 0;
+		while (i < centroids || j < n) {
+			if (j >= n || (i < centroids && means[i] <= otherMeans[j])) {
+				m[k] = means[i];
+				w[k] = weights[i++];
+			} else {
+				m[k] = otherMeans[j];
+				w[k] = otherWeights[j++];
+			}
+			total += w[k++];
+		}
+		centroids = 0;
+		double weightSoFar = 0;
+		double weightLimit = total * getLimit(0);
+		double mean = m[0];
+		double weight = w[0];
+		for (k = 1; k < size; k++) {
+			if (weightSoFar + weight + w[k] <= weightLimit) {
+				weight += w[k];
+				mean += (m[k] - mean) * w[k] / weight;
+				continue;
+			}
+			add(mean, weight);
+			weightSoFar += weight;
+			weightLimit = total * getLimit(weightSoFar / total);
+			mean = m[k];
+			weight = w[k];
+		}
+		add(mean, weight);
+	}
+
+	private void add(double mean, double weight) {
+		if (centroids == means.length) {
+			means = Arrays.copyOf(means, centroids * 2);
+			weights = Arrays.copyOf(weights, centroids * 2);
+		}
+		means[centroids] = mean;
+		weights[centroids] = weight;
+		centroids++;
+	}
+
+	/**
+	 * Returns the maximum quantile up to which a centroid that starts at the
+	 * given quantile can grow: k(q) = c / (2 * pi) * asin(2 * q - 1) is the
+	 * scale function and the limit is the inverse of k(q) + 1.
+	 */
+	private double getLimit(double q) {
+		if (q >= 1)
+			return 1;
+		double k = compression / (2 * Math.PI) * Math.asin(2 * q - 1) + 1;
+		double x = k * 2 * Math.PI / compression;
+		if (x >= Math.PI / 2)
+			return 1;
+		return (Math.sin(x) + 1) / 2;
+	}
+
+}
@@ -1,85 +1,233 @@
 package org.openlca.core.results;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 /**
  * The results of a Monte-Carlo-Simulation. The single result values of the
- * simulation runs are stored in an array of lists where the flow- and LCIA
- * category indices are mapped to the respective array rows and the result
- * values to the respective list entries.
+ * simulation runs are stored in primitive columns where each flow- and LCIA
+ * category index has its own column with the values of the runs. For very
+ * large simulations, a maximum number of values that are kept in memory can
+ * be set (see {@link #setMaxValuesInMemory(long)}); the values are then moved
+ * to a temporary file which is deleted when {@link #dispose()} is called.
+ *
+ * Additionally, {@link StreamingStatistics} are updated for each flow and LCIA
+ * category when the results of a run are appended. Thus, the statistics are
+ * available while the simulation is running without sorting the values of all
+ * runs. The statistics are updated under the lock of the result and the
+ * getters return snapshots, so they can be read from other threads (e.g. to
+ * show the progress of a simulation).
  */
 public class SimulationResult extends BaseResult {
 
-	private List<Double>[] flowResults;
-	private List<Double>[] impactResults;
-
-	public List<Double>[] getFlowResults() {
-		return flowResults;
-	}
+	private SimulationValueStore flowResults;
+	private SimulationValueStore impactResults;
+	private StreamingStatistics[] flowStatistics;
+	private StreamingStatistics[] impactStatistics;
+	private long maxValuesInMemory = -1;
 
-	public void setFlowResults(List<Double>[] flowResults) {
-		this.flowResults = flowResults;
+	/**
+	 * Set the maximum number of result values (of the flow and LCIA results
+	 * each) that are kept in memory. If this number is exceeded, the values
+	 * are moved to a temporary file. A value smaller than 0 means that there is
+	 * no limit (which is the default). This must be set before the first
+	 * results are appended.
+	 */
+	public void setMaxValuesInMemory(long maxValuesInMemory) {
+		this.maxValuesInMemory = maxValuesInMemory;
 	}
 
-	public List<Double>[] getImpactResults() {
-		return impactResults;
+	/**
+	 * Appends the flow results of a run and updates the statistics of the
+	 * flows.
+	 */
+	public void appendFlowResults(double[] vector) {
+		appendFlowValues(vector);
+		synchronized (this) {
+			flowStatistics = update(flowStatistics, flowIndex.size(), vector);
+		}
 	}
 
-	public void setImpactResults(List<Double>[] impactResults) {
-		this.impactResults = impactResults;
+	/**
+	 * Appends the LCIA category results of a run and updates the statistics of
+	 * the LCIA categories.
+	 */
+	public void appendImpactResults(double[] vector) {
+		appendImpactValues(vector);
+		synchronized (this) {
+			impactStatistics = update(impactStatistics, impactIndex.size(),
+					vector);
+		}
 	}
 
-	@SuppressWarnings("unchecked")
-	public void appendFlowResults(double[] vector) {
+	/**
+	 * Appends the flow results of a run without updating the statistics. This
+	 * is used when the statistics are calculated separately (e.g. in parallel
+	 * simulations) and then added via {@link #mergeFlowStatistics}.
+	 */
+	public void appendFlowValues(double[] vector) {
 		if (flowResults == null)
-			flowResults = new List[flowIndex.size()];
-		appendResults(vector, flowResults);
+			flowResults = createStore(flowIndex.size());
+		flowResults.append(vector);
 	}
 
-	@SuppressWarnings("unchecked")
-	public void appendImpactResults(double[] vector) {
+	/**
+	 * Appends the LCIA category results of a run without updating the
+	 * statistics (see {@link #appendFlowValues(double[])}).
+	 */
+	public void appendImpactValues(double[] vector) {
 		if (impactResults == null)
-			impactResults = new List[impactIndex.size()];
-		appendResults(vector, impactResults);
-	}
-
-	private void appendResults(double[] vector, List<Double>[] results) {
-		for (int i = 0; i < vector.length; i++) {
-			List<Double> list = results[i];
-			if (list == null) {
-				list = new ArrayList<>();
-				results[i] = list;
-			}
-			list.add(vector[i]);
-		}
+			impactResults = createStore(impactIndex.size());
+		impactResults.append(vector);
+	}
+
+	/**
+	 * Merges the given statistics into the statistics of the flows. The
+	 * statistics must be in the order of the flow index.
+	 */
+	public synchronized void mergeFlowStatistics(StreamingStatistics[] statistics) {
+		flowStatistics = merge(flowStatistics, flowIndex.size(), statistics);
+	}
+
+	/**
+	 * Merges the given statistics into the statistics of the LCIA categories.
+	 * The statistics must be in the order of the LCIA category index.
+	 */
+	public synchronized void mergeImpactStatistics(StreamingStatistics[] statistics) {
+		impactStatistics = merge(impactStatistics, impactIndex.size(),
+				statistics);
+	}
+
+	/**
+	 * Creates a new array with empty statistics of the given size.
+	 */
+	public static StreamingStatistics[] createStatistics(int size) {
+		StreamingStatistics[] statistics = new StreamingStatistics[size];
+		for (int i = 0; i < size; i++)
+			statistics[i] = new StreamingStatistics();
+		return statistics;
+	}
+
+	/**
+	 * Adds the values of the given result vector to the given statistics.
+	 */
+	public static void addValues(StreamingStatistics[] statistics,
+			double[] vector) {
+		for (int i = 0; i < statistics.length; i++)
+			statistics[i].add(i < vector.length ? vector[i] : 0);
+	}
+
+	private StreamingStatistics[] update(StreamingStatistics[] statistics,
+			int size, double[] vector) {
+		if (statistics == null)
+			statistics = createStatistics(size);
+		addValues(statistics, vector);
+		return statistics;
+	}
+
+	private StreamingStatistics[] merge(StreamingStatistics[] statistics,
+			int size, StreamingStatistics[] other) {
+		if (statistics == null)
+			statistics = createStatistics(size);
+		if (other == null)
+			return statistics;
+		for (int i = 0; i < statistics.length && i < other.length; i++)
+			statistics[i].merge(other[i]);
+		return statistics;
+	}
+
+	private SimulationValueStore createStore(int size) {
+		SimulationValueStore store = new SimulationValueStore(size);
+		store.setMaxValuesInMemory(maxValuesInMemory);
+		return store;
 	}
 
-	public List<Double> getFlowResults(long flowId) {
+	/**
+	 * Returns the results of the flow with the given ID for all runs in a new
+	 * array. An empty array is returned if there is no such flow in the
+	 * result.
+	 */
+	public double[] getFlowResults(long flowId) {
+		if (flowResults == null)
+			return new double[0];
 		int idx = flowIndex.getIndex(flowId);
 		if (idx < 0)
-			return Collections.emptyList();
-		return flowResults[idx];
+			return new double[0];
+		return flowResults.get(idx);
 	}
 
-	public List<Double> getImpactResults(long impactCategoryId) {
-		if (impactIndex == null)
-			return Collections.emptyList();
+	/**
+	 * Returns the result of the flow with the given ID in the given run.
+	 */
+	public double getFlowResult(long flowId, int run) {
+		if (flowResults == null)
+			return 0;
+		return flowResults.get(flowIndex.getIndex(flowId), run);
+	}
+
+	/**
+	 * Returns the results of the LCIA category with the given ID for all runs
+	 * in a new array. An empty array is returned if there is no such LCIA
+	 * category in the result.
+	 */
+	public double[] getImpactResults(long impactCategoryId) {
+		if (impactIndex == null || impactResults == null)
+			return new double[0];
 		int idx = impactIndex.getIndex(impactCategoryId);
 		if (idx < 0)
-			return Collections.emptyList();
-		return impactResults[idx];
+			return new double[0];
+		return impactResults.get(idx);
 	}
 
-	public int getNumberOfRuns() {
-		if (flowResults == null || flowResults.length == 0)
+	/**
+	 * Returns the result of the LCIA category with the given ID in the given
+	 * run.
+	 */
+	public double getImpactResult(long impactCategoryId, int run) {
+		if (impactIndex == null || impactResults == null)
 			return 0;
-		List<Double> first = flowResults[0];
-		if (first == null)
+		return impactResults.get(impactIndex.getIndex(impactCategoryId), run);
+	}
+
+	/**
+	 * Returns a snapshot of the statistics of the flow with the given ID.
+	 * Empty statistics are returned if there is no such flow in the result.
+	 */
+	public synchronized StreamingStatistics getFlowStatistics(long flowId) {
+		int idx = flowIndex.getIndex(flowId);
+		if (flowStatistics == null || idx < 0 || idx >= flowStatistics.length)
+			return new StreamingStatistics();
+		return flowStatistics[idx].copy();
+	}
+
+	/**
+	 * Returns a snapshot of the statistics of the LCIA category with the given
+	 * ID. Empty statistics are returned if there is no such LCIA category in
+	 * the result.
+	 */
+	public synchronized StreamingStatistics getImpactStatistics(
+			long impactCategoryId) {
+		if (impactIndex == null || impactStatistics == null)
+			return new StreamingStatistics();
+		int idx = impactIndex.getIndex(impactCategoryId);
+		if (idx < 0 || idx >= impactStatistics.length)
+			return new StreamingStatistics();
+		return impactStatistics[idx].copy();
+	}
+
+	public int getNumberOfRuns() {
+		if (flowResults == null)
 			return 0;
-		else
-			return first.size();
+		return flowResults.getRuns();
+	}
+
+	/**
+	 * Deletes the temporary files of this result if the result values were
+	 * moved to files. The result cannot be used anymore after this method was
+	 * called.
+	 */
+	public void dispose() {
+		if (flowResults != null)
+			flowResults.dispose();
+		if (impactResults != null)
+			impactResults.dispose();
 	}
 
 }
@@ -4,9 +4,6 @@ import org.openlca.core.database.EntityCache;
 import org.openlca.core.model.descriptors.FlowDescriptor;
 import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class SimulationResultProvider<T extends SimulationResult> extends
 		BaseResultProvider<T> {
 
@@ -14,11 +11,10 @@ public class SimulationResultProvider<T extends SimulationResult> extends
 		super(result, cache);
 	}
 
-	public List<Double> getFlowResults(FlowDescriptor flow) {
-		List<Double> rawResults = result.getFlowResults(flow.getId());
-		List<Double> results = new ArrayList<>(rawResults.size());
-		for (Double rawResult : rawResults)
-			results.add(adoptFlowResult(rawResult, flow.getId()));
+	public double[] getFlowResults(FlowDescriptor flow) {
+		double[] results = result.getFlowResults(flow.getId());
+		for (int i = 0; i < results.length; i++)
+			results[i] = adoptFlowResult(results[i], flow.getId());
 		return results;
 	}
 
@@ -32,10 +28,26 @@ public class SimulationResultProvider<T extends SimulationResult> extends
 		return inputFlow ? -value : value;
 	}
 
-	public List<Double> getImpactResults(ImpactCategoryDescriptor impact) {
+	public double[] getImpactResults(ImpactCategoryDescriptor impact) {
 		return result.getImpactResults(impact.getId());
 	}
 
+	/**
+	 * Returns the statistics of the given flow where the sign is switched for
+	 * input flows (see {@link #getFlowResults(FlowDescriptor)}).
+	 */
+	public StreamingStatistics getFlowStatistics(FlowDescriptor flow) {
+		StreamingStatistics statistics = result.getFlowStatistics(flow.getId());
+		if (result.getFlowIndex().isInput(flow.getId()))
+			return statistics.negate();
+		return statistics;
+	}
+
+	public StreamingStatistics getImpactStatistics(
+			ImpactCategoryDescriptor impact) {
+		return result.getImpactStatistics(impact.getId());
+	}
+
 	public int getNumberOfRuns() {
 		return result.getNumberOfRuns();
 	}
@@ -0,0 +1,208 @@
+package org.openlca.core.results;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the result vectors of simulation runs in a columnar format: the
+ * values of each index (e.g. a flow or LCIA category) are stored in a
+ * primitive array that grows with the number of runs. If a maximum number of
+ * values in memory is set and exceeded, the values are moved to a temporary
+ * file. In this case, the values of the runs are collected in blocks in memory
+ * and each full block is appended to the file where the values of an index are
+ * stored contiguously within the block. Thus, the values of an index can be
+ * read with one read per block.
+ */
+class SimulationValueStore {
+
+	static final int BLOCK_SIZE = 512;
+
+	private Logger log = LoggerFactory.getLogger(getClass());
+
+	private final int size;
+	private int runs;
+	private long maxValuesInMemory = -1;
+
+	/** The values in memory: columns[index][run]. */
+	private double[][] columns;
+	private int capacity;
+
+	/** Not null if the values were moved to a file. */
+	private File file;
+	private RandomAccessFile fileAccess;
+	private FileChannel channel;
+
+	/** The number of runs that are stored in the file. */
+	private int fileRuns;
+
+	SimulationValueStore(int size) {
+		this.size = size;
+		capacity = 16;
+		columns = new double[size][capacity];
+	}
+
+	/**
+	 * Set the maximum number of values that are kept in memory. If this
+	 * number is exceeded, the values are moved to a temporary file. A value
+	 * smaller than 0 means that there is no limit.
+	 */
+	void setMaxValuesInMemory(long maxValuesInMemory) {
+		this.maxValuesInMemory = maxValuesInMemory;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int getRuns() {
+		return runs;
+	}
+
+	boolean isSpilled() {
+		return file != null;
+	}
+
+	void append(double[] vector) {
+		if (file == null && maxValuesInMemory >= 0
+				&& (long) size * (runs + 1) > maxValuesInMemory)
+			spill();
+		int pos = runs - fileRuns;
+		if (pos >= capacity)
+			grow();
+		for (int i = 0; i < size; i++)
+			columns[i][pos] = i < vector.length ? vector[i] : 0;
+		runs++;
+		if (file != null && runs - fileRuns == BLOCK_SIZE)
+			writeBlock();
+	}
+
+	/**
+	 * Returns the values of the given index for all runs in a new array.
+	 */
+	double[] get(int index) {
+		double[] values = new double[runs];
+		if (index < 0 || index >= size)
+			return values;
+		if (file != null)
+			readFile(index, values);
+		System.arraycopy(columns[index], 0, values, fileRuns, runs - fileRuns);
+		return values;
+	}
+
+	/**
+	 * Returns the value of the given index and run.
+	 */
+	double get(int index, int run) {
+		if (index < 0 || index >= size || run < 0 || run >= runs)
+			return 0;
+		if (run >= fileRuns)
+			return columns[index][run - fileRuns];
+		double[] value = new double[1];
+		read(index, run / BLOCK_SIZE, run % BLOCK_SIZE, value, 0, 1);
+		return value[0];
+	}
+
+	/**
+	 * Deletes the temporary file if the values were moved to a file. The store
+	 * cannot be used anymore after this method was called.
+	 */
+	void dispose() {
+		if (file == null)
+			return;
+		try {
+			fileAccess.close();
+		} catch (IOException e) {
+			log.error("failed to close file " + file, e);
+		}
+		if (!file.delete())
+			file.deleteOnExit();
+		file = null;
+		capacity = 0;
+		columns = new double[size][0];
+		runs = 0;
+		fileRuns = 0;
+	}
+
+	private void grow() {
+		capacity = capacity == 0 ? 16 : capacity * 2;
+		for (int i = 0; i < size; i++)
+			columns[i] = Arrays.copyOf(columns[i], capacity);
+	}
+
+	private void spill() {
+		try {
+			file = File.createTempFile("olca_simulation_", ".bin");
+			file.deleteOnExit();
+			log.trace("move simulation values to file {}", file);
+			fileAccess = new RandomAccessFile(file, "rw");
+			channel = fileAccess.getChannel();
+			double[][] memory = columns;
+			int memoryRuns = runs;
+			capacity = BLOCK_SIZE;
+			columns = new double[size][capacity];
+			int offset = 0;
+			while (memoryRuns - offset >= BLOCK_SIZE) {
+				for (int i = 0; i < size; i++)
+					System.arraycopy(memory[i], offset, columns[i], 0,
+							BLOCK_SIZE);
+				offset += BLOCK_SIZE;
+				writeBlock();
+			}
+			for (int i = 0; i < size; i++)
+				System.arraycopy(memory[i], offset, columns[i], 0, memoryRuns
+						- offset);
+		} catch (IOException e) {
+			throw new RuntimeException("failed to create simulation file", e);
+		}
+	}
+
+	private void writeBlock() {
+		ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE * 8);
+		long position = (long) (fileRuns / BLOCK_SIZE) * size * BLOCK_SIZE * 8;
+		try {
+			for (int i = 0; i < size; i++) {
+				buffer.clear();
+				buffer.asDoubleBuffer().put(columns[i], 0, BLOCK_SIZE);
+				while (buffer.hasRemaining())
+					position += channel.write(buffer, position);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("failed to write simulation values", e);
+		}
+		fileRuns += BLOCK_SIZE;
+	}
+
+	private void readFile(int index, double[] values) {
+		int blocks = fileRuns / BLOCK_SIZE;
+		for (int block = 0; block < blocks; block++)
+			read(index, block, 0, values, block * BLOCK_SIZE, BLOCK_SIZE);
+	}
+
+	private void read(int index, int block, int offset, double[] values,
+			int pos, int length) {
+		long position = ((long) block * size + index) * BLOCK_SIZE * 8
+				+ offset * 8;
+		ByteBuffer buffer = ByteBuffer.allocate(length * 8);
+		try {
+			while (buffer.hasRemaining()) {
+				int n = channel.read(buffer, position + buffer.position());
+				if (n < 0)
+					throw new IOException("unexpected end of file " + file);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("failed to read simulation values", e);
+		}
+		buffer.flip();
+		DoubleBuffer doubles = buffer.asDoubleBuffer();
+		doubles.get(values, pos, length);
+	}
+
+}
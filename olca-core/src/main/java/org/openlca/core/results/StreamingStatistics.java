@@ -0,0 +1,148 @@
+package org.openlca.core.results;
+
+/**
+ * Calculates statistic parameters for a stream of numbers without keeping the
+ * numbers in memory. The mean and variance are updated with Welford's
+ * algorithm, the percentiles and histograms are estimated from a
+ * {@link QuantileSketch}. Statistics of different streams (e.g. of the worker
+ * threads of a simulation) can be merged. In contrast to
+ * {@link SimulationStatistics}, the values can be requested at any time while
+ * new numbers are added. The methods of this class are not synchronized; a
+ * {@link #copy()} can be safely read while the original statistics are
+ * updated in another thread.
+ */
+public class StreamingStatistics {
+
+	private long count;
+	private double mean;
+	private double m2;
+	private QuantileSketch sketch = new QuantileSketch();
+
+	public void add(double value) {
+		if (Double.isNaN(value))
+			return;
+		count++;
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+		sketch.add(value);
+	}
+
+	/**
+	 * Adds the numbers of the given statistics to this statistics. The given
+	 * statistics are not modified.
+	 */
+	public void merge(StreamingStatistics other) {
+		if (other == null || other.count == 0)
+			return;
+		long n = count + other.count;
+		double delta = other.mean - mean;
+		mean += delta * other.count / n;
+		m2 += other.m2 + delta * delta * count * other.count / n;
+		count = n;
+		sketch.merge(other.sketch);
+	}
+
+	/**
+	 * Returns new statistics for the negated numbers of this statistics (e.g.
+	 * to switch the sign of input flows).
+	 */
+	public StreamingStatistics negate() {
+		StreamingStatistics n = new StreamingStatistics();
+		n.count = count;
+		n.mean = count == 0 ? 0 : -mean;
+		n.m2 = m2;
+		n.sketch = sketch.negate();
+		return n;
+	}
+
+	/**
+	 * Returns a snapshot of this statistics that is not changed when new
+	 * numbers are added to this statistics.
+	 */
+	public StreamingStatistics copy() {
+		StreamingStatistics copy = new StreamingStatistics();
+		copy.count = count;
+		copy.mean = mean;
+		copy.m2 = m2;
+		copy.sketch = sketch.copy();
+		return copy;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * Returns the sample variance of the numbers.
+	 */
+	public double getVariance() {
+		if (count < 2)
+			return 0;
+		return m2 / (count - 1);
+	}
+
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	public double getMinimum() {
+		return sketch.getMinimum();
+	}
+
+	public double getMaximum() {
+		return sketch.getMaximum();
+	}
+
+	public double getRange() {
+		return getMaximum() - getMinimum();
+	}
+
+	/**
+	 * Returns the estimated value at the given percentile.
+	 *
+	 * @param percentile
+	 *            the percentage value (0..100)
+	 */
+	public double getPercentileValue(int percentile) {
+		return sketch.getQuantile(percentile / 100d);
+	}
+
+	public double getMedian() {
+		return sketch.getQuantile(0.5);
+	}
+
+	/**
+	 * Returns the estimated absolute frequencies of the numbers in the given
+	 * number of intervals of equal size between the minimum and maximum.
+	 */
+	public int[] getHistogram(int intervalCount) {
+		int intervals = intervalCount < 1 ? 1 : intervalCount;
+		int[] frequencies = new int[intervals];
+		if (count == 0)
+			return frequencies;
+		double min = getMinimum();
+		double width = getRange() / intervals;
+		if (width <= 0) {
+			frequencies[0] = (int) count;
+			return frequencies;
+		}
+		long previous = 0;
+		for (int i = 0; i < intervals; i++) {
+			long cumulative = count;
+			if (i < intervals - 1) {
+				double upper = min + (i + 1) * width;
+				cumulative = Math.round(sketch
+						.getCumulativeProbability(upper) * count);
+			}
+			frequencies[i] = (int) (cumulative - previous);
+			previous = cumulative;
+		}
+		return frequencies;
+	}
+
+}
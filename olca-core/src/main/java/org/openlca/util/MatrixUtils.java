@@ -2,6 +2,7 @@ package org.openlca.util;
 
 import org.openlca.core.math.IMatrix;
 import org.openlca.core.math.IMatrixFactory;
+import org.openlca.core.math.MatrixIterator;
 
 public class MatrixUtils {
 
@@ -20,4 +21,36 @@ public class MatrixUtils {
 		return m;
 	}
 
+	/**
+	 * A generic implementation of {@link IMatrix#addScaled(double, IMatrix)}
+	 * that adds the non-zero entries of the given matrix m multiplied with the
+	 * given factor to the entries of the target matrix.
+	 */
+	public static void addScaled(final IMatrix target, final double factor,
+			IMatrix m) {
+		checkSameSize(target, m);
+		if (factor == 0)
+			return;
+		m.iterate(new MatrixIterator() {
+			@Override
+			public void next(int row, int col, double val) {
+				target.setEntry(row, col, target.getEntry(row, col) + factor
+						* val);
+			}
+		});
+	}
+
+	/**
+	 * Throws an IllegalArgumentException if the given matrices do not have
+	 * the same dimensions.
+	 */
+	public static void checkSameSize(IMatrix a, IMatrix b) {
+		if (a.getRowDimension() != b.getRowDimension()
+				|| a.getColumnDimension() != b.getColumnDimension())
+			throw new IllegalArgumentException("matrix dimensions differ: "
+					+ a.getRowDimension() + "x" + a.getColumnDimension()
+					+ " != " + b.getRowDimension() + "x"
+					+ b.getColumnDimension());
+	}
+
 }
@@ -0,0 +1,169 @@
+package org.openlca.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.math.CalculationSetup;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowProperty;
+import org.openlca.core.model.FlowPropertyFactor;
+import org.openlca.core.model.FlowPropertyType;
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.Parameter;
+import org.openlca.core.model.ParameterScope;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.ProcessLink;
+import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.Uncertainty;
+import org.openlca.core.model.Unit;
+import org.openlca.core.model.UnitGroup;
+
+/**
+ * A small product system for calculation tests: process 1 produces the
+ * reference product and uses 0.5 kg of the product of process 2. Both
+ * processes emit an elementary flow with an uncertainty distribution where the
+ * emission of process 1 is calculated from a global parameter (with a unique
+ * name) which is uncertain too.
+ */
+public class TestSystem {
+
+	public final IDatabase database;
+
+	public UnitGroup unitGroup;
+	public FlowProperty property;
+	public Flow product1;
+	public Flow product2;
+	public Flow emission;
+	public Parameter parameter;
+	public Process process1;
+	public Process process2;
+	public ProductSystem system;
+
+	private final List<Flow> flows = new ArrayList<>();
+
+	private TestSystem(IDatabase database) {
+		this.database = database;
+	}
+
+	public static TestSystem create(IDatabase database) {
+		TestSystem s = new TestSystem(database);
+		s.createFlows();
+		s.parameter = new Parameter();
+		s.parameter.setName("p" + UUID.randomUUID().toString()
+				.replace("-", ""));
+		s.parameter.setScope(ParameterScope.GLOBAL);
+		s.parameter.setInputParameter(true);
+		s.parameter.setValue(2);
+		s.parameter.setUncertainty(Uncertainty.uniform(1, 3));
+		s.parameter = database.createDao(Parameter.class).insert(s.parameter);
+		s.process2 = s.createProcess(s.product2);
+		Exchange e2 = s.exchange(s.emission, 2, false);
+		e2.setUncertainty(Uncertainty.logNormal(2, 1.2));
+		s.process2.getExchanges().add(e2);
+		s.process2 = database.createDao(Process.class).insert(s.process2);
+		s.process1 = s.createProcess(s.product1);
+		Exchange input = s.exchange(s.product2, 0.5, true);
+		input.setDefaultProviderId(s.process2.getId());
+		s.process1.getExchanges().add(input);
+		Exchange e1 = s.exchange(s.emission, 3, false);
+		e1.setAmountFormula("1.5 * " + s.parameter.getName());
+		s.process1.getExchanges().add(e1);
+		s.process1 = database.createDao(Process.class).insert(s.process1);
+		s.createSystem();
+		return s;
+	}
+
+	private void createFlows() {
+		Unit unit = new Unit();
+		unit.setName("kg");
+		unit.setConversionFactor(1);
+		unit.setRefId(UUID.randomUUID().toString());
+		unitGroup = new UnitGroup();
+		unitGroup.setRefId(UUID.randomUUID().toString());
+		unitGroup.getUnits().add(unit);
+		unitGroup.setReferenceUnit(unit);
+		unitGroup = database.createDao(UnitGroup.class).insert(unitGroup);
+		property = new FlowProperty();
+		property.setRefId(UUID.randomUUID().toString());
+		property.setFlowPropertyType(FlowPropertyType.PHYSICAL);
+		property.setUnitGroup(unitGroup);
+		property = database.createDao(FlowProperty.class).insert(property);
+		product1 = createFlow(FlowType.PRODUCT_FLOW);
+		product2 = createFlow(FlowType.PRODUCT_FLOW);
+		emission = createFlow(FlowType.ELEMENTARY_FLOW);
+	}
+
+	/** Creates a new flow with the flow property of this system. */
+	public Flow createFlow(FlowType type) {
+		Flow flow = new Flow();
+		flow.setRefId(UUID.randomUUID().toString());
+		flow.setFlowType(type);
+		flow.setReferenceFlowProperty(property);
+		FlowPropertyFactor factor = new FlowPropertyFactor();
+		factor.setFlowProperty(property);
+		factor.setConversionFactor(1);
+		flow.getFlowPropertyFactors().add(factor);
+		flow = database.createDao(Flow.class).insert(flow);
+		flows.add(flow);
+		return flow;
+	}
+
+	/** Creates a new exchange of the given flow in the reference unit. */
+	public Exchange exchange(Flow flow, double amount, boolean input) {
+		Exchange exchange = new Exchange();
+		exchange.setFlow(flow);
+		exchange.setFlowPropertyFactor(flow.getReferenceFactor());
+		exchange.setUnit(unitGroup.getReferenceUnit());
+		exchange.setAmountValue(amount);
+		exchange.setInput(input);
+		return exchange;
+	}
+
+	private Process createProcess(Flow product) {
+		Process process = new Process();
+		process.setRefId(UUID.randomUUID().toString());
+		Exchange output = exchange(product, 1, false);
+		process.getExchanges().add(output);
+		process.setQuantitativeReference(output);
+		return process;
+	}
+
+	private void createSystem() {
+		system = new ProductSystem();
+		system.setRefId(UUID.randomUUID().toString());
+		Exchange refExchange = process1.getQuantitativeReference();
+		system.setReferenceProcess(process1);
+		system.setReferenceExchange(refExchange);
+		system.setTargetAmount(1);
+		system.setTargetFlowPropertyFactor(refExchange.getFlowPropertyFactor());
+		system.setTargetUnit(refExchange.getUnit());
+		system.getProcesses().add(process1.getId());
+		system.getProcesses().add(process2.getId());
+		ProcessLink link = new ProcessLink();
+		link.setProviderId(process2.getId());
+		link.setRecipientId(process1.getId());
+		link.setFlowId(product2.getId());
+		system.getProcessLinks().add(link);
+		system = database.createDao(ProductSystem.class).insert(system);
+	}
+
+	public CalculationSetup createSetup() {
+		return new CalculationSetup(system);
+	}
+
+	/** Deletes the data of this system from the database. */
+	public void delete() {
+		database.createDao(ProductSystem.class).delete(system);
+		database.createDao(Process.class).delete(process1);
+		database.createDao(Process.class).delete(process2);
+		database.createDao(Parameter.class).delete(parameter);
+		for (Flow flow : flows)
+			database.createDao(Flow.class).delete(flow);
+		database.createDao(FlowProperty.class).delete(property);
+		database.createDao(UnitGroup.class).delete(unitGroup);
+	}
+
+}
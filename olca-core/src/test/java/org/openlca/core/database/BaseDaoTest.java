@@ -1,5 +1,6 @@
 package org.openlca.core.database;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.Assert;
@@ -99,6 +100,38 @@ public class BaseDaoTest {
 		Assert.assertNull(dao.getForId(instance.getId()));
 	}
 
+	@Test
+	public void testBulkOperations() {
+		BaseDao<Process> dao = new BaseDao<>(Process.class,
+				TestSession.getDefaultDatabase());
+		// more entities than written in one transaction
+		int count = 2 * BaseDao.WRITE_CHUNK_SIZE + 7;
+		List<Process> processes = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Process process = new Process();
+			process.setName("bulk-" + i);
+			process.getExchanges().add(new Exchange());
+			processes.add(process);
+		}
+		List<Process> inserted = dao.insertAll(processes);
+		Assert.assertEquals(count, inserted.size());
+		for (Process process : inserted) {
+			Assert.assertTrue(process.getId() > 0);
+			process.setDescription("updated");
+		}
+		List<Process> updated = dao.updateAll(inserted);
+		Assert.assertEquals(count, updated.size());
+		TestSession.emptyCache();
+		for (int i = 0; i < count; i++) {
+			Process process = dao.getForId(inserted.get(i).getId());
+			Assert.assertEquals("bulk-" + i, process.getName());
+			Assert.assertEquals("updated", process.getDescription());
+			Assert.assertEquals(1, process.getExchanges().size());
+		}
+		dao.deleteAll(updated);
+		Assert.assertNull(dao.getForId(inserted.get(0).getId()));
+	}
+
 	private <T extends AbstractEntity> void testUsage(T instance) {
 		log.info("test simple usage tests with {}", instance);
 		Class<?> clazz = instance.getClass();
@@ -0,0 +1,173 @@
+package org.openlca.core.database;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.TestSession;
+import org.openlca.core.model.Category;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.descriptors.BaseDescriptor;
+import org.openlca.core.model.descriptors.Descriptors;
+import org.openlca.core.model.descriptors.FlowDescriptor;
+
+import com.google.common.base.Optional;
+
+public class DescriptorIndexTest {
+
+	private IDatabase database = TestSession.getDefaultDatabase();
+	private DescriptorIndex index = DescriptorIndex.on(database);
+	private String prefix = UUID.randomUUID().toString();
+	private Category root;
+	private Category child;
+	private Flow flow;
+
+	@Before
+	public void setUp() {
+		root = new Category();
+		root.setName(prefix);
+		root.setModelType(ModelType.FLOW);
+		root = database.createDao(Category.class).insert(root);
+		child = new Category();
+		child.setName("emissions");
+		child.setModelType(ModelType.FLOW);
+		child.setParentCategory(root);
+		child = database.createDao(Category.class).insert(child);
+		// load the flows into the index before the test flow is inserted
+		index.getAll(ModelType.FLOW);
+		flow = new Flow();
+		flow.setName(prefix + " Carbon Dioxide");
+		flow.setCategory(child);
+		flow = database.createDao(Flow.class).insert(flow);
+	}
+
+	@After
+	public void tearDown() {
+		if (flow != null)
+			database.createDao(Flow.class).delete(flow);
+		database.createDao(Category.class).delete(child);
+		database.createDao(Category.class).delete(root);
+	}
+
+	@Test
+	public void testSearch() {
+		FlowDescriptor descriptor = Descriptors.toDescriptor(flow);
+		Assert.assertEquals(descriptor, index.get(ModelType.FLOW, flow.getId()));
+		assertSingle(index.getForName(ModelType.FLOW, flow.getName()));
+		Assert.assertTrue(index.getForName(ModelType.FLOW,
+				flow.getName().toUpperCase()).isEmpty());
+		assertSingle(index.search(ModelType.FLOW, prefix.substring(20)
+				+ " carbon DIOXIDE"));
+		assertSingle(index.searchPrefix(ModelType.FLOW, prefix.toUpperCase()));
+		Assert.assertTrue(index.searchPrefix(ModelType.FLOW, "carbon dioxide")
+				.isEmpty());
+	}
+
+	@Test
+	public void testCategories() {
+		String path = prefix + "/emissions";
+		Assert.assertEquals(path, index.getCategoryPath(child.getId()));
+		Assert.assertEquals(path,
+				index.getCategoryPath(ModelType.FLOW, flow.getId()));
+		assertSingle(index.getForCategory(ModelType.FLOW, child.getId()));
+		assertSingle(index.getForCategoryPath(ModelType.FLOW, path));
+		new FlowDao(database).updateCategory(Descriptors.toDescriptor(flow),
+				Optional.of(root));
+		Assert.assertTrue(index.getForCategoryPath(ModelType.FLOW, path)
+				.isEmpty());
+		assertSingle(index.getForCategoryPath(ModelType.FLOW, prefix));
+		flow = database.createDao(Flow.class).getForId(flow.getId());
+	}
+
+	@Test
+	public void testUpdateAndDelete() {
+		flow.setName(prefix + " Methane");
+		flow = database.createDao(Flow.class).update(flow);
+		Assert.assertTrue(index.search(ModelType.FLOW, prefix + " carbon")
+				.isEmpty());
+		assertSingle(index.search(ModelType.FLOW, prefix + " methane"));
+		database.createDao(Flow.class).delete(flow);
+		Assert.assertNull(index.get(ModelType.FLOW, flow.getId()));
+		Assert.assertTrue(index.searchPrefix(ModelType.FLOW, prefix).isEmpty());
+		flow = null;
+	}
+
+	@Test
+	public void testCompactSegment() {
+		DescriptorSegment segment = new DescriptorSegment(ModelType.FLOW);
+		for (int i = 1; i <= 1000; i++) {
+			FlowDescriptor d = new FlowDescriptor();
+			d.setId(i);
+			d.setName("flow " + i);
+			segment.put(d, i % 2);
+		}
+		for (int i = 1; i <= 900; i++)
+			segment.remove(i);
+		Assert.assertEquals(100, segment.getCount());
+		Assert.assertEquals(50, segment.getForCategory(1).size());
+		Assert.assertEquals(10, segment.search("flow 99", false).size());
+		Assert.assertEquals(1, segment.getForName("flow 1000").size());
+		Assert.assertNull(segment.get(42));
+	}
+
+	@Test
+	public void testDescriptorCopies() {
+		FlowDescriptor descriptor = (FlowDescriptor) index.get(ModelType.FLOW,
+				flow.getId());
+		Assert.assertEquals(child.getId(), descriptor.getCategory().longValue());
+		descriptor.setName("changed");
+		descriptor.setCategory(null);
+		FlowDescriptor copy = (FlowDescriptor) index.get(ModelType.FLOW,
+				flow.getId());
+		Assert.assertNotSame(descriptor, copy);
+		Assert.assertEquals(flow.getName(), copy.getName());
+		Assert.assertEquals(child.getId(), copy.getCategory().longValue());
+	}
+
+	@Test
+	public void testColumns() {
+		DescriptorSegment segment = new DescriptorSegment(ModelType.FLOW);
+		FlowDescriptor d = new FlowDescriptor();
+		d.setId(1);
+		d.setRefId("ref");
+		d.setName("flow");
+		d.setDescription("description");
+		d.setFlowType(FlowType.PRODUCT_FLOW);
+		d.setLocation(42L);
+		d.setRefFlowPropertyId(7);
+		segment.put(d, 3);
+		FlowDescriptor copy = (FlowDescriptor) segment.get(1);
+		Assert.assertEquals("ref", copy.getRefId());
+		Assert.assertEquals("flow", copy.getName());
+		Assert.assertEquals("description", copy.getDescription());
+		Assert.assertEquals(FlowType.PRODUCT_FLOW, copy.getFlowType());
+		Assert.assertEquals(42L, copy.getLocation().longValue());
+		Assert.assertEquals(7, copy.getRefFlowPropertyId());
+		Assert.assertEquals(3L, copy.getCategory().longValue());
+		Assert.assertEquals(ModelType.FLOW, copy.getModelType());
+	}
+
+	@Test
+	public void testDatabaseReleased() throws Exception {
+		IDatabase other = new EmptyDatabase();
+		Assert.assertNotNull(DescriptorIndex.on(other));
+		WeakReference<IDatabase> ref = new WeakReference<>(other);
+		other = null;
+		for (int i = 0; i < 20 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		Assert.assertNull(ref.get());
+	}
+
+	private void assertSingle(List<BaseDescriptor> descriptors) {
+		Assert.assertEquals(1, descriptors.size());
+		Assert.assertEquals(flow.getId(), descriptors.get(0).getId());
+	}
+}
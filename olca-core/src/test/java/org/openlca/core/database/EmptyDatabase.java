@@ -0,0 +1,53 @@
+package org.openlca.core.database;
+
+import java.io.File;
+import java.sql.Connection;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * A database without a connection for tests that only need a database object,
+ * e.g. as the key of a per-database index.
+ */
+public class EmptyDatabase implements IDatabase {
+
+	@Override
+	public void close() {
+	}
+
+	@Override
+	public Connection createConnection() {
+		return null;
+	}
+
+	@Override
+	public boolean isConnectionPooled() {
+		return false;
+	}
+
+	@Override
+	public EntityManagerFactory getEntityFactory() {
+		return null;
+	}
+
+	@Override
+	public <T> BaseDao<T> createDao(Class<T> clazz) {
+		return new BaseDao<>(clazz, this);
+	}
+
+	@Override
+	public String getName() {
+		return "empty";
+	}
+
+	@Override
+	public int getVersion() {
+		return CURRENT_VERSION;
+	}
+
+	@Override
+	public File getFileStorageLocation() {
+		return null;
+	}
+
+}
@@ -12,6 +12,8 @@ import org.openlca.core.TestSession;
 import org.openlca.core.model.Actor;
 import org.openlca.core.model.descriptors.ActorDescriptor;
 
+import com.google.common.cache.CacheStats;
+
 public class EntityCacheTest {
 
 	private EntityCache cache;
@@ -119,6 +121,45 @@ public class EntityCacheTest {
 		checkEntity(actor);
 	}
 
+	@Test
+	public void testMaxSize() throws Exception {
+		EntityCache cache = EntityCache.create(database, 2);
+		ActorDao dao = new ActorDao(database);
+		long[] ids = new long[3];
+		for (int i = 0; i < 3; i++) {
+			Actor actor = new Actor();
+			actor.setName("test#actor " + i);
+			ids[i] = dao.insert(actor).getId();
+		}
+		Assert.assertEquals(3, cache.getAll(ActorDescriptor.class, ids).size());
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(1, cache.getStats().evictionCount());
+		// the first descriptor was evicted; the last one is still cached
+		Assert.assertNotNull(cache.get(ActorDescriptor.class, ids[2]));
+		Assert.assertNotNull(cache.get(ActorDescriptor.class, ids[0]));
+		CacheStats stats = cache.getStats();
+		Assert.assertEquals(1, stats.hitCount());
+		Assert.assertEquals(4, stats.missCount());
+		Assert.assertEquals(2, stats.evictionCount());
+		for (long id : ids)
+			dao.delete(dao.getForId(id));
+	}
+
+	@Test
+	public void testPrefetch() throws Exception {
+		Actor actor = new Actor();
+		actor.setName("test#actor");
+		database.createDao(Actor.class).insert(actor);
+		cache.prefetch(ActorDescriptor.class, new long[] { actor.getId(),
+				99999999999L });
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(1, cache.getStats().loadCount());
+		Assert.assertNotNull(cache.get(ActorDescriptor.class, actor.getId()));
+		Assert.assertNull(cache.get(ActorDescriptor.class, 99999999999L));
+		Assert.assertEquals(2, cache.getStats().hitCount());
+		database.createDao(Actor.class).delete(actor);
+	}
+
 	private void checkEntity(Actor actor) throws Exception {
 		Actor alias = cache.get(Actor.class, actor.getId());
 		Assert.assertEquals(actor, alias);
@@ -0,0 +1,126 @@
+package org.openlca.core.database.usage;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.TestSession;
+import org.openlca.core.database.EmptyDatabase;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.ProcessDocumentation;
+import org.openlca.core.model.Source;
+import org.openlca.core.model.descriptors.BaseDescriptor;
+import org.openlca.core.model.descriptors.Descriptors;
+import org.openlca.core.model.descriptors.FlowDescriptor;
+import org.openlca.core.model.descriptors.SourceDescriptor;
+
+public class UsageIndexTest {
+
+	private IDatabase database = TestSession.getDefaultDatabase();
+	private UsageIndex index = UsageIndex.on(database);
+	private Flow flow;
+	private Source source;
+	private Process process;
+
+	@Before
+	public void setUp() {
+		flow = database.createDao(Flow.class).insert(new Flow());
+		source = database.createDao(Source.class).insert(new Source());
+		process = new Process();
+		process.setDocumentation(new ProcessDocumentation());
+		process.getDocumentation().setPublication(source);
+		process = database.createDao(Process.class).insert(process);
+	}
+
+	@After
+	public void tearDown() {
+		database.createDao(Process.class).delete(process);
+		database.createDao(Source.class).delete(source);
+		database.createDao(Flow.class).delete(flow);
+	}
+
+	@Test
+	public void testBulkSearch() {
+		FlowDescriptor flowDescriptor = Descriptors.toDescriptor(flow);
+		SourceDescriptor sourceDescriptor = Descriptors.toDescriptor(source);
+		Map<BaseDescriptor, List<BaseDescriptor>> uses = index.findUses(Arrays
+				.asList(flowDescriptor, sourceDescriptor));
+		Assert.assertEquals(2, uses.size());
+		Assert.assertTrue(uses.get(flowDescriptor).isEmpty());
+		Assert.assertEquals(Arrays.asList(Descriptors.toDescriptor(process)),
+				uses.get(sourceDescriptor));
+	}
+
+	@Test
+	public void testUpdatedByDao() {
+		FlowDescriptor descriptor = Descriptors.toDescriptor(flow);
+		Assert.assertTrue(index.findUses(descriptor).isEmpty());
+		Exchange exchange = new Exchange();
+		exchange.setFlow(flow);
+		process.getExchanges().add(exchange);
+		process = database.createDao(Process.class).update(process);
+		List<BaseDescriptor> uses = index.findUses(descriptor);
+		Assert.assertEquals(1, uses.size());
+		Assert.assertEquals(Descriptors.toDescriptor(process), uses.get(0));
+		Assert.assertEquals(new FlowUseSearch(database).findUses(descriptor),
+				uses);
+		process.getExchanges().clear();
+		process = database.createDao(Process.class).update(process);
+		Assert.assertTrue(index.findUses(descriptor).isEmpty());
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		SourceDescriptor descriptor = Descriptors.toDescriptor(source);
+		Assert.assertEquals(1, index.findUses(descriptor).size());
+		NativeSql.on(database).runUpdate(
+				"update tbl_process_docs set f_publication = null where id = "
+						+ process.getDocumentation().getId());
+		UsageIndex.invalidate(database);
+		Assert.assertTrue(index.findUses(descriptor).isEmpty());
+		database.getEntityFactory().getCache().evictAll();
+		process = database.createDao(Process.class).getForId(process.getId());
+	}
+
+	@Test
+	public void testUseSearch() throws Exception {
+		IUseSearch<SourceDescriptor> search = IUseSearch.FACTORY.createFor(
+				ModelType.SOURCE, database);
+		SourceDescriptor descriptor = Descriptors.toDescriptor(source);
+		Assert.assertEquals(Arrays.asList(Descriptors.toDescriptor(process)),
+				search.findUses(descriptor));
+		// the search is answered by the index: a change via native SQL is
+		// only visible after the index was invalidated
+		NativeSql.on(database).runUpdate(
+				"update tbl_process_docs set f_publication = null where id = "
+						+ process.getDocumentation().getId());
+		Assert.assertEquals(1, search.findUses(descriptor).size());
+		UsageIndex.invalidate(database);
+		Assert.assertTrue(search.findUses(descriptor).isEmpty());
+		database.getEntityFactory().getCache().evictAll();
+		process = database.createDao(Process.class).getForId(process.getId());
+	}
+
+	@Test
+	public void testDatabaseReleased() throws Exception {
+		IDatabase other = new EmptyDatabase();
+		Assert.assertNotNull(UsageIndex.on(other));
+		WeakReference<IDatabase> ref = new WeakReference<>(other);
+		other = null;
+		for (int i = 0; i < 20 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		Assert.assertNull(ref.get());
+	}
+}
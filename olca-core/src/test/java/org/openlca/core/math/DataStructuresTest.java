@@ -0,0 +1,102 @@
+package org.openlca.core.math;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.TestSession;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.matrix.LongPair;
+import org.openlca.core.matrix.ProductIndex;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.ProcessLink;
+import org.openlca.core.model.ProductSystem;
+
+public class DataStructuresTest {
+
+	private IDatabase database = TestSession.getDefaultDatabase();
+	private Flow flow;
+	private Process process;
+	private ProductSystem system;
+
+	@Before
+	public void setUp() {
+		flow = database.createDao(Flow.class).insert(new Flow());
+		process = new Process();
+		Exchange refExchange = new Exchange();
+		refExchange.setFlow(flow);
+		refExchange.setAmountValue(1);
+		process.getExchanges().add(refExchange);
+		process.setQuantitativeReference(refExchange);
+		process = database.createDao(Process.class).insert(process);
+		system = new ProductSystem();
+		system.setReferenceProcess(process);
+		system.setReferenceExchange(process.getQuantitativeReference());
+		system.setTargetAmount(42);
+		system.getProcesses().add(process.getId());
+		// the linked processes do not need to exist for the product index
+		system.getProcessLinks().add(link(-2, -20, process.getId()));
+		system.getProcessLinks().add(link(-3, -30, process.getId()));
+		system.getProcessLinks().add(link(-3, -30, -2));
+		system = database.createDao(ProductSystem.class).insert(system);
+	}
+
+	@After
+	public void tearDown() {
+		database.createDao(ProductSystem.class).delete(system);
+		database.createDao(Process.class).delete(process);
+		database.createDao(Flow.class).delete(flow);
+	}
+
+	@Test
+	public void testProductIndexFromDatabase() {
+		LongPair refProduct = LongPair.of(process.getId(), flow.getId());
+		ProductIndex expected = DataStructures.createProductIndex(system);
+		ProductIndex index = DataStructures.createProductIndex(database,
+				system.getId(), refProduct);
+		Assert.assertEquals(refProduct, index.getRefProduct());
+		Assert.assertEquals(3, index.size());
+		Assert.assertEquals(expected.size(), index.size());
+		Assert.assertEquals(expected.getLinkedInputs(),
+				index.getLinkedInputs());
+		for (LongPair input : expected.getLinkedInputs())
+			Assert.assertEquals(expected.getLinkedOutput(input),
+					index.getLinkedOutput(input));
+	}
+
+	@Test
+	public void testSortedLinks() {
+		ProductIndex index = DataStructures.createProductIndex(database,
+				system.getId(), LongPair.of(process.getId(), flow.getId()));
+		// sorted by recipient, provider, and flow
+		Assert.assertEquals(-2, index.getLinkProcessAt(0));
+		Assert.assertEquals(process.getId(), index.getLinkProcessAt(1));
+		Assert.assertEquals(process.getId(), index.getLinkProcessAt(2));
+		Assert.assertEquals(-30, index.getLinkFlowAt(1));
+		Assert.assertEquals(LongPair.of(-3, -30), index.getProductAt(1));
+		Assert.assertEquals(LongPair.of(-2, -20), index.getProductAt(2));
+	}
+
+	@Test
+	public void testSetupFromDatabase() {
+		CalculationSetup setup = DataStructures.createSetup(database,
+				system.getId());
+		Assert.assertNull(setup.getProductSystem());
+		Assert.assertEquals(system.getId(), setup.getProductSystemId());
+		Assert.assertEquals(LongPair.of(process.getId(), flow.getId()),
+				setup.getReferenceProduct());
+		Assert.assertEquals(42, setup.getAmount(), 1e-16);
+		Assert.assertNull(DataStructures.createSetup(database, -42));
+	}
+
+	private ProcessLink link(long provider, long flow, long recipient) {
+		ProcessLink link = new ProcessLink();
+		link.setProviderId(provider);
+		link.setFlowId(flow);
+		link.setRecipientId(recipient);
+		return link;
+	}
+
+}
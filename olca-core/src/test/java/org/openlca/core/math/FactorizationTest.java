@@ -0,0 +1,45 @@
+package org.openlca.core.math;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.openlca.util.MatrixUtils;
+
+public class FactorizationTest {
+
+	private final double[][] data = { { 1, -0.5, 0 }, { -0.2, 1, -0.1 },
+			{ 0, -0.4, 2 } };
+
+	@Test
+	public void testJavaSolver() {
+		check(new JavaSolver());
+	}
+
+	@Test
+	public void testSparseSolver() {
+		check(new SparseSolver());
+	}
+
+	private void check(IMatrixSolver solver) {
+		IMatrix a = MatrixUtils.create(data, solver.getMatrixFactory());
+		IFactorization factorization = solver.factorize(a);
+		assertEquals(3, factorization.size());
+		for (int i = 0; i < 3; i++) {
+			double[] b = new double[3];
+			b[i] = 2;
+			assertArrayEquals(solver.solve(a, i, 2), factorization.solve(b),
+					1e-12);
+			assertEquals(2, b[i], 0);
+		}
+		double[] b = { 1, 2, 3 };
+		double[] x = factorization.solveTranspose(b);
+		for (int col = 0; col < 3; col++) {
+			double sum = 0;
+			for (int row = 0; row < 3; row++)
+				sum += data[row][col] * x[row];
+			assertEquals(b[col], sum, 1e-12);
+		}
+	}
+
+}
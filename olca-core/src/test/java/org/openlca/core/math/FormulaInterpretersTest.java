@@ -78,6 +78,12 @@ public class FormulaInterpretersTest {
 		Assert.assertEquals(42, interpreter.eval("fi_tests_local"), 1e-16);
 	}
 
+	@Test
+	public void testDependencyGraphOnlyInSimulation() {
+		Assert.assertFalse(interpreter.isDependencyGraphMode());
+		Assert.assertTrue(parameterTable.simulate().isDependencyGraphMode());
+	}
+
 	@Test
 	public void testRedefine() throws Exception {
 		List<ParameterRedef> redefs = new ArrayList<>();
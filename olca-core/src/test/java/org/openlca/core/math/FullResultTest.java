@@ -0,0 +1,114 @@
+package org.openlca.core.math;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.openlca.core.matrix.FlowIndex;
+import org.openlca.core.matrix.ImpactMatrix;
+import org.openlca.core.matrix.InventoryMatrix;
+import org.openlca.core.matrix.LongIndex;
+import org.openlca.core.matrix.LongPair;
+import org.openlca.core.matrix.ProductIndex;
+import org.openlca.core.results.FullResult;
+import org.openlca.core.results.LazyFullResult;
+import org.openlca.util.MatrixUtils;
+
+/**
+ * Compares the upstream results of the full calculation with the results that
+ * are calculated via the explicit inverse of the technology matrix.
+ */
+public class FullResultTest {
+
+	private final double[][] techData = { { 1, -0.5, 0 }, { -0.2, 1, 0 },
+			{ -1, -0.4, 2 } };
+	private final double[][] enviData = { { 1, 2, 0.5 }, { 0, -1, 3 } };
+	private final double[][] factorData = { { 2, 1 }, { 0, 0.5 } };
+
+	@Test
+	public void testJavaSolver() {
+		check(new JavaSolver());
+	}
+
+	@Test
+	public void testSparseSolver() {
+		check(new SparseSolver());
+	}
+
+	private void check(IMatrixSolver solver) {
+		IMatrixFactory<?> factory = solver.getMatrixFactory();
+		InventoryMatrix matrix = new InventoryMatrix();
+		ProductIndex productIndex = new ProductIndex(LongPair.of(1, 1));
+		productIndex.put(LongPair.of(2, 2));
+		productIndex.put(LongPair.of(3, 3));
+		productIndex.setDemand(2);
+		matrix.setProductIndex(productIndex);
+		FlowIndex flowIndex = new FlowIndex();
+		flowIndex.putOutputFlow(4);
+		flowIndex.putOutputFlow(5);
+		matrix.setFlowIndex(flowIndex);
+		matrix.setTechnologyMatrix(MatrixUtils.create(techData, factory));
+		matrix.setInterventionMatrix(MatrixUtils.create(enviData, factory));
+		ImpactMatrix impactMatrix = new ImpactMatrix();
+		LongIndex impactIndex = new LongIndex();
+		impactIndex.put(6);
+		impactIndex.put(7);
+		impactMatrix.setCategoryIndex(impactIndex);
+		impactMatrix.setFlowIndex(flowIndex);
+		impactMatrix.setFactorMatrix(MatrixUtils.create(factorData, factory));
+
+		LcaCalculator calculator = new LcaCalculator(solver);
+		FullResult full = calculator.calculateFull(matrix, impactMatrix);
+		checkResult(full);
+		// the upstream results are dense, also for sparse solvers
+		assertTrue(full.getUpstreamFlowResults() instanceof JavaMatrix);
+		assertTrue(full.getUpstreamImpactResults() instanceof JavaMatrix);
+		LazyFullResult lazy = calculator.calculateLazy(matrix, impactMatrix);
+		lazy.setMaxCachedRows(1);
+		checkResult(lazy);
+		assertEquals(lazy.getUpstreamFlowResult(LongPair.of(3, 3), 5),
+				lazy.getUpstreamFlowResult(3, 5), 1e-16);
+		assertEquals(0, lazy.getUpstreamFlowResult(LongPair.of(3, 3), 42), 0);
+	}
+
+	private void checkResult(FullResult result) {
+		JavaSolver dense = new JavaSolver();
+		JavaMatrixFactory denseFactory = new JavaMatrixFactory();
+		IMatrix inverse = dense.invert(MatrixUtils.create(techData,
+				denseFactory));
+		double[] s = inverse.getColumn(0);
+		for (int i = 0; i < 3; i++)
+			s[i] *= 2;
+		IMatrix upstream = dense.multiply(
+				MatrixUtils.create(enviData, denseFactory), inverse);
+		double[] demands = new double[3];
+		for (int i = 0; i < 3; i++)
+			demands[i] = s[i] * techData[i][i];
+		dense.scaleColumns(upstream, demands);
+		IMatrix upstreamImpacts = dense.multiply(
+				MatrixUtils.create(factorData, denseFactory), upstream);
+		for (int row = 0; row < 2; row++) {
+			assertEquals(upstream.getEntry(row, 0),
+					result.getTotalFlowResults()[row], 1e-12);
+			assertEquals(upstreamImpacts.getEntry(row, 0),
+					result.getTotalImpactResults()[row], 1e-12);
+		}
+		for (int col = 0; col < 3; col++) {
+			assertEquals(s[col], result.getScalingFactors()[col], 1e-12);
+			LongPair product = result.getProductIndex().getProductAt(col);
+			for (int row = 0; row < 2; row++) {
+				long flowId = result.getFlowIndex().getFlowAt(row);
+				long impactId = result.getImpactIndex().getKeyAt(row);
+				assertEquals(upstream.getEntry(row, col),
+						result.getUpstreamFlowResult(product, flowId), 1e-12);
+				assertEquals(upstream.getEntry(row, col), result
+						.getUpstreamFlowResults().getEntry(row, col), 1e-12);
+				assertEquals(upstreamImpacts.getEntry(row, col),
+						result.getUpstreamImpactResult(product, impactId),
+						1e-12);
+				assertEquals(upstreamImpacts.getEntry(row, col), result
+						.getUpstreamImpactResults().getEntry(row, col), 1e-12);
+			}
+		}
+	}
+}
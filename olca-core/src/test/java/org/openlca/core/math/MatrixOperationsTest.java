@@ -0,0 +1,80 @@
+package org.openlca.core.math;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.openlca.util.MatrixUtils;
+
+public class MatrixOperationsTest {
+
+	private final double[][] data = { { 1, 0, 2 }, { 0, 0, -3 },
+			{ 4, 5, 0 } };
+
+	@Test
+	public void testJavaMatrix() {
+		check(MatrixUtils.create(data, new JavaSolver().getMatrixFactory()));
+	}
+
+	@Test
+	public void testSparseMatrix() {
+		SparseMatrix m = new SparseMatrix(3, 3);
+		fill(m);
+		check(m);
+	}
+
+	@Test
+	public void testCompressedColumnMatrix() {
+		SparseMatrix m = new SparseMatrix(3, 3);
+		fill(m);
+		check(m.compress());
+	}
+
+	@Test
+	public void testMixedAddScaled() {
+		IMatrix a = MatrixUtils.create(data,
+				new JavaSolver().getMatrixFactory());
+		SparseMatrix b = new SparseMatrix(3, 3);
+		fill(b);
+		a.addScaled(-1, b);
+		assertArrayEquals(new double[3], a.getColumnSums(), 1e-16);
+		b.addScaled(2, MatrixUtils.create(data,
+				new JavaSolver().getMatrixFactory()));
+		assertEquals(12, b.getEntry(2, 0), 1e-16);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddScaledSize() {
+		new SparseMatrix(3, 3).addScaled(1, new SparseMatrix(2, 3));
+	}
+
+	private void fill(IMatrix m) {
+		for (int row = 0; row < data.length; row++) {
+			for (int col = 0; col < data[row].length; col++)
+				m.setEntry(row, col, data[row][col]);
+		}
+	}
+
+	private void check(IMatrix m) {
+		final int[] count = new int[1];
+		final double[] sum = new double[1];
+		m.iterate(new MatrixIterator() {
+			@Override
+			public void next(int row, int col, double val) {
+				assertEquals(data[row][col], val, 1e-16);
+				count[0]++;
+				sum[0] += val;
+			}
+		});
+		assertEquals(5, count[0]);
+		assertEquals(9, sum[0], 1e-16);
+		assertArrayEquals(new double[] { 3, -3, 9 }, m.getRowSums(), 1e-16);
+		assertArrayEquals(new double[] { 5, 5, -1 }, m.getColumnSums(), 1e-16);
+		m.scaleColumns(new double[] { 2, 0, -1 });
+		assertArrayEquals(new double[] { 0, 3, 8 }, m.getRowSums(), 1e-16);
+		assertEquals(0, m.getEntry(2, 1), 1e-16);
+		m.addScaled(0.5, m.copy());
+		assertArrayEquals(new double[] { 0, 4.5, 12 }, m.getRowSums(), 1e-16);
+	}
+
+}
@@ -3,6 +3,8 @@ package org.openlca.core.math;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Random;
+
 import org.junit.Test;
 
 public class NumberGeneratorTest {
@@ -31,6 +33,18 @@ public class NumberGeneratorTest {
 			assertEquals(5.0, gen.next(), 1e-5);
 	}
 
+	@Test
+	public void testSeededSource() {
+		Random random = new Random(42);
+		NumberGenerator gen = NumberGenerator.triangular(1, 2, 5, random);
+		double[] first = new double[10];
+		for (int i = 0; i < 10; i++)
+			first[i] = gen.next();
+		random.setSeed(42);
+		for (int i = 0; i < 10; i++)
+			assertEquals(first[i], gen.next(), 0);
+	}
+
 	@Test
 	public void testUniform() {
 		NumberGenerator gen = NumberGenerator.uniform(1, 5);
@@ -0,0 +1,85 @@
+package org.openlca.core.math;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.TestSession;
+import org.openlca.core.TestSystem;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.results.SimulationResult;
+
+public class ParallelSimulatorTest {
+
+	private TestSystem system;
+	private MatrixCache cache;
+
+	@Before
+	public void setUp() {
+		system = TestSystem.create(TestSession.getDefaultDatabase());
+		cache = MatrixCache.createLazy(system.database);
+	}
+
+	@After
+	public void tearDown() {
+		system.delete();
+	}
+
+	@Test
+	public void testSeedIndependentFromThreads() {
+		SimulationResult expected = run(1, 200);
+		Assert.assertEquals(200, expected.getNumberOfRuns());
+		double[] values = expected.getFlowResults(system.emission.getId());
+		Assert.assertTrue(values[0] != values[1]);
+		for (int threads : new int[] { 2, 4, 8, 4 }) {
+			SimulationResult result = run(threads, 200);
+			Assert.assertArrayEquals(values,
+					result.getFlowResults(system.emission.getId()), 0);
+			Assert.assertEquals(expected.getFlowStatistics(
+					system.emission.getId()).getMean(), result
+					.getFlowStatistics(system.emission.getId()).getMean(),
+					1e-10);
+		}
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		final ParallelSimulator simulator = createSimulator(4);
+		final SimulationResult[] result = new SimulationResult[1];
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				result[0] = simulator.run(Integer.MAX_VALUE);
+			}
+		});
+		thread.start();
+		while (simulator.getFinishedIterations() < 100)
+			Thread.sleep(1);
+		simulator.cancel();
+		thread.join(10000);
+		Assert.assertFalse(thread.isAlive());
+		Assert.assertTrue(simulator.isCanceled());
+		int runs = result[0].getNumberOfRuns();
+		Assert.assertTrue(runs >= 100);
+		Assert.assertTrue(runs <= simulator.getFinishedIterations());
+		// the runs of a canceled simulation are the first runs of a complete
+		// simulation with the same seed
+		SimulationResult complete = run(2, runs);
+		Assert.assertArrayEquals(
+				complete.getFlowResults(system.emission.getId()),
+				result[0].getFlowResults(system.emission.getId()), 0);
+	}
+
+	private SimulationResult run(int threads, int iterations) {
+		return createSimulator(threads).run(iterations);
+	}
+
+	private ParallelSimulator createSimulator(int threads) {
+		ParallelSimulator simulator = new ParallelSimulator(
+				system.createSetup(), cache, TestSession.getDefaultSolver());
+		simulator.setThreadCount(threads);
+		simulator.setSeed(42);
+		return simulator;
+	}
+
+}
@@ -0,0 +1,122 @@
+package org.openlca.core.math;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.apache.commons.math3.linear.SingularMatrixException;
+import org.junit.Test;
+import org.openlca.util.MatrixUtils;
+
+public class SparseSolverTest {
+
+	private final SparseSolver solver = new SparseSolver();
+	private final JavaSolver denseSolver = new JavaSolver();
+
+	@Test
+	public void testSimpleSolve() {
+		IMatrix a = MatrixUtils.create(new double[][] { { 1, 0 }, { -5, 4 } },
+				solver.getMatrixFactory());
+		double[] x = solver.solve(a, 0, 1);
+		assertArrayEquals(new double[] { 1, 1.25 }, x, 1e-14);
+	}
+
+	@Test
+	public void testPivoting() {
+		// the diagonal entries of this matrix are zero
+		double[][] data = { { 0, 2, 1 }, { 1, 0, 3 }, { 4, 1, 0 } };
+		IMatrix a = MatrixUtils.create(data, solver.getMatrixFactory());
+		IMatrix dense = MatrixUtils.create(data, denseSolver.getMatrixFactory());
+		for (int i = 0; i < 3; i++) {
+			assertArrayEquals(denseSolver.solve(dense, i, 2),
+					solver.solve(a, i, 2), 1e-12);
+		}
+	}
+
+	@Test(expected = SingularMatrixException.class)
+	public void testSingular() {
+		double[][] data = { { 1, 2 }, { 2, 4 } };
+		IMatrix a = MatrixUtils.create(data, solver.getMatrixFactory());
+		solver.solve(a, 0, 1);
+	}
+
+	@Test
+	public void testRandomSystems() {
+		Random random = new Random(42);
+		for (int n : new int[] { 1, 5, 50, 200 }) {
+			double[][] data = randomTechMatrix(n, random);
+			IMatrix a = MatrixUtils.create(data, solver.getMatrixFactory());
+			IMatrix dense = MatrixUtils.create(data,
+					denseSolver.getMatrixFactory());
+			int idx = random.nextInt(n);
+			assertArrayEquals(denseSolver.solve(dense, idx, 3),
+					solver.solve(a, idx, 3), 1e-10);
+		}
+	}
+
+	@Test
+	public void testTransposedSolve() {
+		Random random = new Random(7);
+		int n = 100;
+		double[][] data = randomTechMatrix(n, random);
+		CompressedColumnMatrix a = CompressedColumnMatrix.of(MatrixUtils
+				.create(data, solver.getMatrixFactory()));
+		SparseLu lu = SparseLu.factorize(a);
+		double[] b = new double[n];
+		for (int i = 0; i < n; i++)
+			b[i] = random.nextDouble();
+		double[] x = lu.solveTranspose(b);
+		for (int col = 0; col < n; col++) {
+			double sum = 0;
+			for (int row = 0; row < n; row++)
+				sum += data[row][col] * x[row];
+			assertEquals(b[col], sum, 1e-10);
+		}
+	}
+
+	@Test
+	public void testInvert() {
+		double[][] data = randomTechMatrix(30, new Random(3));
+		IMatrix a = MatrixUtils.create(data, solver.getMatrixFactory());
+		IMatrix inverse = solver.invert(a);
+		IMatrix identity = solver.multiply(a, inverse);
+		for (int row = 0; row < 30; row++) {
+			for (int col = 0; col < 30; col++) {
+				double expected = row == col ? 1 : 0;
+				assertEquals(expected, identity.getEntry(row, col), 1e-10);
+			}
+		}
+	}
+
+	@Test
+	public void testSparseMultiply() {
+		double[][] aData = { { 1, 2, 0 }, { 0, 5, 6 } };
+		double[][] bData = { { 7, 0 }, { 8, 11 }, { 0, 12 } };
+		IMatrix a = MatrixUtils.create(aData, solver.getMatrixFactory());
+		IMatrix b = MatrixUtils.create(bData, solver.getMatrixFactory());
+		IMatrix c = solver.multiply(a, b);
+		assertArrayEquals(new double[] { 23, 40 }, c.getColumn(0), 1e-14);
+		assertArrayEquals(new double[] { 22, 127 }, c.getColumn(1), 1e-14);
+		assertArrayEquals(new double[] { 5, 10 },
+				solver.multiply(a, new double[] { 1, 2, 0 }), 1e-14);
+	}
+
+	/**
+	 * Creates a random technology matrix with a positive diagonal and a few
+	 * negative off-diagonal entries.
+	 */
+	private double[][] randomTechMatrix(int n, Random random) {
+		double[][] data = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			data[i][i] = 1 + random.nextDouble();
+			for (int k = 0; k < 3; k++) {
+				int col = random.nextInt(n);
+				if (col != i)
+					data[i][col] = -random.nextDouble() * 0.3;
+			}
+		}
+		return data;
+	}
+
+}
@@ -0,0 +1,139 @@
+package org.openlca.core.math;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.TestSession;
+import org.openlca.core.TestSystem;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.Parameter;
+import org.openlca.core.model.Process;
+import org.openlca.core.results.SimpleResult;
+
+public class SystemCalculatorTest {
+
+	private TestSystem system;
+	private MatrixCache cache;
+	private SystemCalculator calculator;
+
+	@Before
+	public void setUp() {
+		system = TestSystem.create(TestSession.getDefaultDatabase());
+		cache = MatrixCache.createLazy(system.database);
+		calculator = new SystemCalculator(cache,
+				TestSession.getDefaultSolver());
+		// 1.5 * 2 + 0.5 * 2
+		Assert.assertEquals(4, emission(calculate()), 1e-10);
+	}
+
+	@After
+	public void tearDown() {
+		system.delete();
+	}
+
+	@Test
+	public void testUpdateInterventions() {
+		setAmount(system.process2, system.emission, 4);
+		Assert.assertEquals(5, emission(calculate()), 1e-10);
+		assertSameAsNew();
+	}
+
+	@Test
+	public void testUpdateTechnologyMatrix() {
+		setAmount(system.process1, system.product2, 0.25);
+		Assert.assertEquals(3.5, emission(calculate()), 1e-10);
+		assertSameAsNew();
+	}
+
+	@Test
+	public void testRebuildForNewFlow() {
+		Flow flow = system.createFlow(FlowType.ELEMENTARY_FLOW);
+		system.process2.getExchanges().add(system.exchange(flow, 42, false));
+		system.process2 = update(system.process2);
+		SimpleResult result = calculate();
+		Assert.assertEquals(21, result.getTotalFlowResult(flow.getId()), 1e-10);
+		Assert.assertEquals(4, emission(result), 1e-10);
+		assertSameAsNew();
+	}
+
+	@Test
+	public void testRebuildForParameters() {
+		// global parameters are not evicted from the cache
+		system.parameter.setValue(4);
+		system.parameter = system.database.createDao(Parameter.class).update(
+				system.parameter);
+		Assert.assertEquals(7, emission(calculate()), 1e-10);
+		assertSameAsNew();
+	}
+
+	@Test
+	public void testRebuildForOtherEvictions() {
+		setAmount(system.process2, system.emission, 4);
+		cache.evict(ModelType.PRODUCT_SYSTEM, system.system.getId());
+		Assert.assertNull(cache.getEvictedProcesses(0));
+		Assert.assertEquals(5, emission(calculate()), 1e-10);
+		assertSameAsNew();
+	}
+
+	@Test
+	public void testVariantDemands() {
+		// like the variants of a project, the setups differ only in the demand
+		// so that the matrices of the first setup are reused
+		CalculationSetup first = system.createSetup();
+		first.setAmount(2);
+		SimpleResult firstResult = calculator.calculateSimple(first);
+		CalculationSetup second = system.createSetup();
+		second.setAmount(3);
+		SimpleResult secondResult = calculator.calculateSimple(second);
+		Assert.assertEquals(8, emission(firstResult), 1e-10);
+		Assert.assertEquals(12, emission(secondResult), 1e-10);
+		Assert.assertEquals(2, firstResult.getProductIndex().getDemand(),
+				1e-10);
+		Assert.assertEquals(3, secondResult.getProductIndex().getDemand(),
+				1e-10);
+	}
+
+	private void setAmount(Process process, Flow flow, double amount) {
+		for (Exchange exchange : process.getExchanges()) {
+			if (exchange.getFlow().equals(flow))
+				exchange.setAmountValue(amount);
+		}
+		Process updated = update(process);
+		if (process == system.process1)
+			system.process1 = updated;
+		else
+			system.process2 = updated;
+	}
+
+	private Process update(Process process) {
+		Process updated = system.database.createDao(Process.class).update(
+				process);
+		cache.evict(ModelType.PROCESS, process.getId());
+		return updated;
+	}
+
+	private SimpleResult calculate() {
+		return calculator.calculateSimple(system.createSetup());
+	}
+
+	private double emission(SimpleResult result) {
+		return result.getTotalFlowResult(system.emission.getId());
+	}
+
+	private void assertSameAsNew() {
+		SimpleResult expected = new SystemCalculator(
+				MatrixCache.createLazy(system.database),
+				TestSession.getDefaultSolver()).calculateSimple(system
+				.createSetup());
+		SimpleResult result = calculate();
+		for (long flowId : expected.getFlowIndex().getFlowIds())
+			Assert.assertEquals(expected.getTotalFlowResult(flowId),
+					result.getTotalFlowResult(flowId), 1e-10);
+	}
+
+}
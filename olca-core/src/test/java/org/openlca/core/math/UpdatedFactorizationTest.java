@@ -0,0 +1,69 @@
+package org.openlca.core.math;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.openlca.util.MatrixUtils;
+
+public class UpdatedFactorizationTest {
+
+	private final double[][] data = { { 1, -0.5, 0, 0 }, { -0.2, 1, -0.1, 0 },
+			{ 0, -0.4, 2, -0.3 }, { -0.1, 0, 0, 1 } };
+
+	@Test
+	public void testUpdate() {
+		JavaSolver solver = new JavaSolver();
+		IMatrix a = MatrixUtils.create(data, solver.getMatrixFactory());
+		IFactorization base = solver.factorize(a);
+		IMatrix updated = a.copy();
+		updated.setEntry(1, 0, -0.7);
+		updated.setEntry(3, 0, 0);
+		updated.setEntry(0, 2, -0.25);
+		updated.setEntry(2, 2, 1.5);
+		int[] columns = { 0, 2 };
+		double[][] deltas = new double[2][];
+		for (int j = 0; j < 2; j++) {
+			double[] newColumn = updated.getColumn(columns[j]);
+			double[] oldColumn = a.getColumn(columns[j]);
+			deltas[j] = new double[4];
+			for (int i = 0; i < 4; i++)
+				deltas[j][i] = newColumn[i] - oldColumn[i];
+		}
+		IFactorization update = UpdatedFactorization.create(base, columns,
+				deltas);
+		check(solver.factorize(updated), update);
+
+		// an update of an update
+		IMatrix next = updated.copy();
+		next.setEntry(2, 1, -0.8);
+		double[] delta = { 0, 0, -0.8 + 0.4, 0 };
+		IFactorization nextUpdate = UpdatedFactorization.create(update,
+				new int[] { 1 }, new double[][] { delta });
+		check(solver.factorize(next), nextUpdate);
+	}
+
+	@Test
+	public void testSingularUpdate() {
+		JavaSolver solver = new JavaSolver();
+		IMatrix a = MatrixUtils.create(data, solver.getMatrixFactory());
+		// removes the first column
+		double[] delta = a.getColumn(0);
+		for (int i = 0; i < delta.length; i++)
+			delta[i] = -delta[i];
+		assertNull(UpdatedFactorization.create(solver.factorize(a),
+				new int[] { 0 }, new double[][] { delta }));
+	}
+
+	private void check(IFactorization expected, IFactorization actual) {
+		for (int i = 0; i < 4; i++) {
+			double[] b = new double[4];
+			b[i] = 1;
+			b[(i + 1) % 4] = -2;
+			assertArrayEquals(expected.solve(b), actual.solve(b), 1e-12);
+			assertArrayEquals(expected.solveTranspose(b),
+					actual.solveTranspose(b), 1e-12);
+		}
+	}
+
+}
@@ -0,0 +1,188 @@
+package org.openlca.core.matrix;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.TestSession;
+import org.openlca.core.TestSystem;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.AllocationMethod;
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.UncertaintyType;
+import org.openlca.expressions.FormulaInterpreter;
+
+public class InventorySnapshotStoreTest {
+
+	private IDatabase database = TestSession.getDefaultDatabase();
+	private File dir;
+	private InventorySnapshotStore store;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("olca_snapshot_test").toFile();
+		store = new InventorySnapshotStore(database, dir);
+	}
+
+	@After
+	public void tearDown() {
+		for (File file : dir.listFiles())
+			file.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void testRoundTrip() {
+		Inventory inventory = createInventory();
+		store.save(inventory);
+		Inventory copy = store.load(createIndex(), AllocationMethod.PHYSICAL);
+		Assert.assertNotNull(copy);
+		Assert.assertEquals(AllocationMethod.PHYSICAL,
+				copy.getAllocationMethod());
+		Assert.assertEquals(1, copy.getFlowIndex().size());
+		Assert.assertTrue(copy.getFlowIndex().isInput(42));
+		ExchangeMatrix tech = copy.getTechnologyMatrix();
+		Assert.assertEquals(1, tech.getValue(0, 0), 1e-16);
+		Assert.assertEquals(-0.5, tech.getValue(1, 0), 1e-16);
+		Assert.assertEquals(2, tech.getValue(1, 1), 1e-16);
+		ExchangeMatrix interventions = copy.getInterventionMatrix();
+		Assert.assertEquals(-3 * 0.25, interventions.getValue(0, 1), 1e-16);
+		FormulaInterpreter interpreter = new FormulaInterpreter();
+		interpreter.getGlobalScope().bind("p", 4);
+		interventions.eval(interpreter);
+		Assert.assertEquals(-8 * 0.25, interventions.getValue(0, 1), 1e-16);
+	}
+
+	@Test
+	public void testMissingSnapshots() {
+		store.save(createInventory());
+		Assert.assertNull(store.load(createIndex(), AllocationMethod.CAUSAL));
+		ProductIndex other = createIndex();
+		other.put(LongPair.of(3, 3));
+		Assert.assertNull(store.load(other, AllocationMethod.PHYSICAL));
+	}
+
+	@Test
+	public void testInvalidate() {
+		store.save(createInventory());
+		store.invalidate();
+		Assert.assertNull(store.load(createIndex(), AllocationMethod.PHYSICAL));
+		// the data version is stored
+		Assert.assertEquals(store.getDataVersion(),
+				new InventorySnapshotStore(database, dir).getDataVersion());
+	}
+
+	@Test
+	public void testInvalidateProcess() {
+		store.save(createInventory());
+		Inventory other = createInventory();
+		ProductIndex otherIndex = new ProductIndex(LongPair.of(3, 3));
+		otherIndex.put(LongPair.of(4, 4));
+		other.setProductIndex(otherIndex);
+		store.save(other);
+		store.invalidate(2);
+		Assert.assertNull(store.load(createIndex(), AllocationMethod.PHYSICAL));
+		Assert.assertNotNull(store.load(otherIndex, AllocationMethod.PHYSICAL));
+		// an inventory that was built before the invalidation is not saved
+		long invalidations = store.getInvalidations();
+		store.invalidate(1);
+		store.save(createInventory(), invalidations,
+				store.readStamp(createIndex()));
+		Assert.assertNull(store.load(createIndex(), AllocationMethod.PHYSICAL));
+		store.save(createInventory());
+		Assert.assertNotNull(store.load(createIndex(),
+				AllocationMethod.PHYSICAL));
+	}
+
+	@Test
+	public void testBuildWithStore() throws Exception {
+		TestSystem system = TestSystem.create(database);
+		try {
+			long processId = system.process2.getId();
+			ProductIndex index = new ProductIndex(LongPair.of(processId,
+					system.product2.getId()));
+			Assert.assertEquals(2, build(index), 1e-16);
+			Assert.assertEquals(1, dir.listFiles(new FileFilter() {
+				@Override
+				public boolean accept(File file) {
+					return file.getName().endsWith(".snapshot");
+				}
+			}).length);
+			// an edit of another session: as the process version is not
+			// changed, the snapshot is used
+			NativeSql.on(database).runUpdate(
+					"update tbl_exchanges set resulting_amount_value = 4 "
+							+ "where f_owner = " + processId + " and f_flow = "
+							+ system.emission.getId());
+			Assert.assertEquals(2, build(index), 1e-16);
+			// with a new process version, the snapshot is rebuilt
+			NativeSql.on(database).runUpdate(
+					"update tbl_processes set version = version + 1 "
+							+ "where id = " + processId);
+			Assert.assertEquals(4, build(index), 1e-16);
+		} finally {
+			database.getEntityFactory().getCache().evictAll();
+			system.delete();
+		}
+	}
+
+	/**
+	 * Builds the inventory of the given index with a new matrix cache and
+	 * returns the value of the first intervention cell.
+	 */
+	private double build(ProductIndex index) {
+		MatrixCache cache = MatrixCache.createLazy(database);
+		cache.setSnapshotStore(store);
+		Inventory inventory = Inventory.build(cache, index,
+				AllocationMethod.NONE);
+		return inventory.getInterventionMatrix().getValue(0, 0);
+	}
+
+	private ProductIndex createIndex() {
+		ProductIndex index = new ProductIndex(LongPair.of(1, 1));
+		index.putLink(LongPair.of(1, 2), LongPair.of(2, 2));
+		return index;
+	}
+
+	private Inventory createInventory() {
+		Inventory inventory = new Inventory();
+		inventory.setAllocationMethod(AllocationMethod.PHYSICAL);
+		inventory.setProductIndex(createIndex());
+		FlowIndex flowIndex = new FlowIndex();
+		flowIndex.putInputFlow(42);
+		inventory.setFlowIndex(flowIndex);
+		ExchangeMatrix tech = new ExchangeMatrix(2, 2);
+		tech.setEntry(0, 0, exchange(1, 1, 1, false), 1);
+		tech.setEntry(1, 0, exchange(1, 2, 0.5, true), 1);
+		tech.setEntry(1, 1, exchange(2, 2, 2, false), 1);
+		inventory.setTechnologyMatrix(tech);
+		ExchangeMatrix interventions = new ExchangeMatrix(1, 2);
+		CalcExchange e = exchange(2, 42, 3, true);
+		e.setFlowType(FlowType.ELEMENTARY_FLOW);
+		e.setAmountFormula("p * 2");
+		e.setUncertaintyType(UncertaintyType.NORMAL);
+		e.setParameter1(3);
+		e.setParameter2(0.1);
+		interventions.setEntry(0, 1, e, 0.25);
+		inventory.setInterventionMatrix(interventions);
+		return inventory;
+	}
+
+	private CalcExchange exchange(long process, long flow, double amount,
+			boolean input) {
+		CalcExchange e = new CalcExchange();
+		e.setProcessId(process);
+		e.setFlowId(flow);
+		e.setAmount(amount);
+		e.setConversionFactor(1);
+		e.setInput(input);
+		e.setFlowType(FlowType.PRODUCT_FLOW);
+		return e;
+	}
+}
@@ -0,0 +1,108 @@
+package org.openlca.core.matrix;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.TestSession;
+import org.openlca.core.TestSystem;
+import org.openlca.core.math.DataStructures;
+import org.openlca.core.math.IMatrix;
+import org.openlca.core.math.JavaMatrixFactory;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.Process;
+import org.openlca.expressions.FormulaInterpreter;
+
+public class InventoryUpdateTest {
+
+	private TestSystem system;
+	private MatrixCache cache;
+	private Inventory base;
+
+	@Before
+	public void setUp() {
+		system = TestSystem.create(TestSession.getDefaultDatabase());
+		cache = MatrixCache.createLazy(system.database);
+		base = DataStructures.createInventory(system.createSetup(), cache);
+	}
+
+	@After
+	public void tearDown() {
+		system.delete();
+	}
+
+	@Test
+	public void testUpdateColumns() {
+		for (Exchange exchange : system.process2.getExchanges()) {
+			if (exchange.getFlow().equals(system.emission))
+				exchange.setAmountValue(4);
+		}
+		update(system.process2);
+		InventoryUpdate update = InventoryUpdate.create(cache, base,
+				new long[] { system.process2.getId() });
+		Assert.assertNotNull(update);
+		int column = base.getProductIndex().getIndex(
+				LongPair.of(system.process2.getId(), system.product2.getId()));
+		Assert.assertArrayEquals(new int[] { column }, update.getColumns());
+		FormulaInterpreter interpreter = createInterpreter(base);
+		InventoryMatrix matrix = base.createMatrix(new JavaMatrixFactory(),
+				interpreter);
+		update.apply(matrix, interpreter);
+		Inventory expected = DataStructures.createInventory(
+				system.createSetup(), cache);
+		InventoryMatrix expectedMatrix = expected.createMatrix(
+				new JavaMatrixFactory(), createInterpreter(expected));
+		assertEquals(expectedMatrix.getTechnologyMatrix(),
+				matrix.getTechnologyMatrix());
+		assertEquals(expectedMatrix.getInterventionMatrix(),
+				matrix.getInterventionMatrix());
+		int row = base.getFlowIndex().getIndex(system.emission.getId());
+		Assert.assertEquals(4, matrix.getInterventionMatrix().getEntry(row,
+				column), 1e-16);
+	}
+
+	@Test
+	public void testNewFlow() {
+		Flow flow = system.createFlow(FlowType.ELEMENTARY_FLOW);
+		system.process2.getExchanges().add(system.exchange(flow, 42, false));
+		update(system.process2);
+		Assert.assertNull(InventoryUpdate.create(cache, base,
+				new long[] { system.process2.getId() }));
+	}
+
+	@Test
+	public void testOtherProcesses() {
+		InventoryUpdate update = InventoryUpdate.create(cache, base,
+				new long[] { -42 });
+		Assert.assertTrue(update.isEmpty());
+		Assert.assertSame(base, update.getInventory());
+	}
+
+	private void update(Process process) {
+		system.process2 = system.database.createDao(Process.class).update(
+				process);
+		cache.evict(ModelType.PROCESS, process.getId());
+	}
+
+	private FormulaInterpreter createInterpreter(Inventory inventory) {
+		return DataStructures.createParameterTable(system.database,
+				system.createSetup(), inventory).createInterpreter();
+	}
+
+	private void assertEquals(IMatrix expected, IMatrix actual) {
+		Assert.assertEquals(expected.getRowDimension(),
+				actual.getRowDimension());
+		Assert.assertEquals(expected.getColumnDimension(),
+				actual.getColumnDimension());
+		for (int row = 0; row < expected.getRowDimension(); row++) {
+			for (int col = 0; col < expected.getColumnDimension(); col++)
+				Assert.assertEquals(expected.getEntry(row, col),
+						actual.getEntry(row, col), 1e-16);
+		}
+	}
+
+}
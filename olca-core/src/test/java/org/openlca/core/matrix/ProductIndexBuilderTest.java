@@ -0,0 +1,137 @@
+package org.openlca.core.matrix;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.TestSession;
+import org.openlca.core.TestSystem;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.matrix.cache.MatrixCache.CacheType;
+import org.openlca.core.matrix.cache.MatrixCacheConfig;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.ProcessType;
+
+/**
+ * Builds the product index of a supply chain that is large enough so that the
+ * providers are resolved in parallel: the processes form a binary tree where
+ * every 10th product has an additional provider of the preferred type.
+ */
+public class ProductIndexBuilderTest {
+
+	private static final int SIZE = 400;
+
+	private TestSystem system;
+	private List<Process> processes = new ArrayList<>();
+	private Map<Long, ProcessType> types = new HashMap<>();
+	private LongPair refProduct;
+
+	@Before
+	public void setUp() {
+		system = TestSystem.create(TestSession.getDefaultDatabase());
+		List<Flow> products = new ArrayList<>();
+		for (int i = 0; i < SIZE; i++)
+			products.add(system.createFlow(FlowType.PRODUCT_FLOW));
+		for (int i = 0; i < SIZE; i++) {
+			processes.add(createProcess(products, i, ProcessType.UNIT_PROCESS));
+			if (i % 10 == 0)
+				processes.add(createProcess(products, i,
+						ProcessType.LCI_RESULT));
+		}
+		processes = system.database.createDao(Process.class).insertAll(
+				processes);
+		for (Process process : processes)
+			types.put(process.getId(), process.getProcessType());
+		refProduct = LongPair.of(processes.get(0).getId(), products.get(0)
+				.getId());
+	}
+
+	private Process createProcess(List<Flow> products, int i,
+			ProcessType type) {
+		Process process = new Process();
+		process.setProcessType(type);
+		Exchange output = system.exchange(products.get(i), 1, false);
+		process.getExchanges().add(output);
+		process.setQuantitativeReference(output);
+		for (int child = 2 * i + 1; child <= 2 * i + 2 && child < SIZE; child++)
+			process.getExchanges().add(
+					system.exchange(products.get(child), 0.5, true));
+		return process;
+	}
+
+	@After
+	public void tearDown() {
+		system.database.createDao(Process.class).deleteAll(processes);
+		system.delete();
+	}
+
+	@Test
+	public void testParallelEqualsSequential() {
+		ProductIndex expected = build(null);
+		Assert.assertEquals(SIZE, expected.size());
+		// the providers of every 10th product are LCI results
+		int preferred = 0;
+		for (int i = 1; i < expected.size(); i++) {
+			if (types.get(expected.getProcessAt(i)) == ProcessType.LCI_RESULT)
+				preferred++;
+		}
+		Assert.assertEquals((SIZE - 1) / 10, preferred);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			for (int run = 0; run < 5; run++) {
+				assertSame(expected, build(pool));
+				ProductIndexBuilder builder = new ProductIndexBuilder(
+						MatrixCache.createLazy(system.database));
+				assertSame(expected, builder.build(refProduct));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testExchangesLoadedOnce() {
+		MatrixCacheConfig config = new MatrixCacheConfig();
+		config.setRecordStats(true);
+		MatrixCache cache = MatrixCache.createLazy(system.database, config);
+		ProductIndexBuilder builder = new ProductIndexBuilder(cache);
+		ProductIndex index = builder.build(refProduct);
+		// the prefetched exchanges of a block are used for the next block
+		Assert.assertEquals(index.size(),
+				cache.getStats(CacheType.EXCHANGES).missCount());
+	}
+
+	private ProductIndex build(ExecutorService executor) {
+		ProductIndexBuilder builder = new ProductIndexBuilder(
+				MatrixCache.createLazy(system.database));
+		builder.setExecutor(executor);
+		return builder.build(refProduct);
+	}
+
+	private void assertSame(ProductIndex expected, ProductIndex index) {
+		Assert.assertEquals(expected.size(), index.size());
+		for (int i = 0; i < expected.size(); i++)
+			Assert.assertEquals(expected.getProductAt(i),
+					index.getProductAt(i));
+		Assert.assertEquals(expected.getLinkCount(), index.getLinkCount());
+		for (int i = 0; i < expected.getLinkCount(); i++) {
+			Assert.assertEquals(expected.getLinkProcessAt(i),
+					index.getLinkProcessAt(i));
+			Assert.assertEquals(expected.getLinkFlowAt(i),
+					index.getLinkFlowAt(i));
+			Assert.assertEquals(expected.getLinkProviderAt(i),
+					index.getLinkProviderAt(i));
+		}
+	}
+
+}
@@ -0,0 +1,47 @@
+package org.openlca.core.matrix;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProductIndexTest {
+
+	@Test
+	public void testProducts() {
+		ProductIndex idx = new ProductIndex(LongPair.of(1, 1));
+		for (long i = 2; i <= 1000; i++) {
+			Assert.assertFalse(idx.contains(i, i * 7));
+			idx.put(LongPair.of(i, i * 7));
+			Assert.assertTrue(idx.contains(i, i * 7));
+		}
+		Assert.assertEquals(1000, idx.size());
+		Assert.assertEquals(0, idx.getIndex(1, 1));
+		for (int i = 1; i < 1000; i++) {
+			long process = i + 1;
+			Assert.assertEquals(i, idx.getIndex(process, process * 7));
+			Assert.assertEquals(LongPair.of(process, process * 7),
+					idx.getProductAt(i));
+		}
+		Assert.assertEquals(-1, idx.getIndex(2, 2));
+	}
+
+	@Test
+	public void testLinks() {
+		ProductIndex idx = new ProductIndex(LongPair.of(1, 1));
+		idx.putLink(LongPair.of(1, 2), LongPair.of(2, 2));
+		idx.putLink(LongPair.of(1, 3), LongPair.of(2, 3));
+		idx.putLink(LongPair.of(2, 4), LongPair.of(3, 4));
+		Assert.assertEquals(4, idx.size());
+		Assert.assertTrue(idx.isLinkedInput(1, 2));
+		Assert.assertFalse(idx.isLinkedInput(2, 2));
+		Assert.assertEquals(idx.getIndex(2, 3), idx.getLinkedOutputIndex(1, 3));
+		Assert.assertEquals(LongPair.of(3, 4),
+				idx.getLinkedOutput(LongPair.of(2, 4)));
+		Assert.assertEquals(3, idx.getLinkedInputs().size());
+		Assert.assertArrayEquals(new int[] { 1, 2 }, idx.getProductIndices(2));
+		// replace a link
+		idx.putLink(LongPair.of(1, 2), LongPair.of(3, 4));
+		Assert.assertEquals(3, idx.getLinkCount());
+		Assert.assertEquals(LongPair.of(3, 4),
+				idx.getLinkedOutput(LongPair.of(1, 2)));
+	}
+}
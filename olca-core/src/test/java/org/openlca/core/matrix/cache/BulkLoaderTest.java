@@ -0,0 +1,64 @@
+package org.openlca.core.matrix.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openlca.core.TestSession;
+import org.openlca.core.database.BaseDao;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.matrix.CalcExchange;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.Process;
+
+import com.google.common.cache.LoadingCache;
+
+public class BulkLoaderTest {
+
+	private IDatabase database = TestSession.getDefaultDatabase();
+
+	@Test
+	public void testParameterCount() {
+		Assert.assertEquals(1, BulkLoader.parameterCount(1));
+		Assert.assertEquals(4, BulkLoader.parameterCount(3));
+		Assert.assertEquals(64, BulkLoader.parameterCount(64));
+		Assert.assertEquals(BaseDao.MAX_LIST_SIZE,
+				BulkLoader.parameterCount(BaseDao.MAX_LIST_SIZE));
+	}
+
+	@Test
+	public void testLoadChunks() throws Exception {
+		BaseDao<Process> dao = database.createDao(Process.class);
+		Process process = new Process();
+		process.setName("bulk-loader-test");
+		for (int i = 1; i <= 3; i++) {
+			Exchange exchange = new Exchange();
+			exchange.setAmountValue(i);
+			exchange.setInput(i > 1);
+			process.getExchanges().add(exchange);
+		}
+		dao.insert(process);
+		LoadingCache<Long, List<CalcExchange>> cache = ExchangeCache.create(
+				database, ConversionTable.create(database),
+				FlowTypeTable.create(database), new MatrixCacheConfig());
+		// more keys than allowed in a single query
+		List<Long> keys = new ArrayList<>();
+		for (long id = -2500; id < 0; id++)
+			keys.add(id);
+		keys.add(process.getId());
+		Map<Long, List<CalcExchange>> map = cache.getAll(keys);
+		Assert.assertEquals(keys.size(), map.size());
+		Assert.assertTrue(map.get(-1L).isEmpty());
+		List<CalcExchange> exchanges = map.get(process.getId());
+		Assert.assertEquals(3, exchanges.size());
+		double sum = 0;
+		for (CalcExchange exchange : exchanges) {
+			Assert.assertEquals(process.getId(), exchange.getProcessId());
+			sum += exchange.getAmount();
+		}
+		Assert.assertEquals(6, sum, 1e-16);
+		dao.delete(process);
+	}
+}
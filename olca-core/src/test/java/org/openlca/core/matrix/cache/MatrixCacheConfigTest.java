@@ -0,0 +1,62 @@
+package org.openlca.core.matrix.cache;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openlca.core.TestSession;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+
+public class MatrixCacheConfigTest {
+
+	@Test
+	public void testWeightedEviction() throws Exception {
+		MatrixCacheConfig config = new MatrixCacheConfig();
+		LoadingCache<Long, List<String>> cache = config.build(4,
+				new CacheLoader<Long, List<String>>() {
+					@Override
+					public List<String> load(Long key) {
+						return Arrays.asList("a", "b");
+					}
+				});
+		cache.get(1L);
+		cache.get(1L);
+		cache.get(2L);
+		cache.get(3L);
+		CacheStats stats = cache.stats();
+		Assert.assertEquals(1, stats.hitCount());
+		Assert.assertEquals(3, stats.missCount());
+		Assert.assertTrue(stats.evictionCount() >= 1);
+		Assert.assertTrue(cache.size() <= 2);
+	}
+
+	@Test
+	public void testMemoryBudget() {
+		long bytes = 100 * 1024 * 1024;
+		MatrixCacheConfig config = MatrixCacheConfig.withMemoryBudget(bytes);
+		Assert.assertEquals(bytes * 8 / 10 / MatrixCacheConfig.EXCHANGE_BYTES,
+				config.getMaxExchanges());
+		Assert.assertTrue(config.getMaxImpactFactors() > 0);
+		Assert.assertEquals(0, MatrixCacheConfig.withMemoryBudget(0)
+				.getMaxExchanges());
+	}
+
+	@Test
+	public void testMatrixCacheStats() throws Exception {
+		MatrixCache cache = MatrixCache.createLazy(
+				TestSession.getDefaultDatabase(), new MatrixCacheConfig());
+		Assert.assertEquals(0,
+				cache.getStats(MatrixCache.CacheType.COST_ENTRIES)
+						.requestCount());
+		cache.getCostCache().get(-42L);
+		cache.getCostCache().get(-42L);
+		CacheStats stats = cache.getStats(MatrixCache.CacheType.COST_ENTRIES);
+		Assert.assertEquals(1, stats.hitCount());
+		Assert.assertEquals(1, stats.missCount());
+		Assert.assertEquals(1, cache.getSize(MatrixCache.CacheType.COST_ENTRIES));
+	}
+}
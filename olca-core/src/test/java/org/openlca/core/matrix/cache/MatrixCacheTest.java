@@ -0,0 +1,56 @@
+package org.openlca.core.matrix.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openlca.core.TestSession;
+import org.openlca.core.model.ModelType;
+
+public class MatrixCacheTest {
+
+	@Test
+	public void testEvictedProcesses() {
+		MatrixCache cache = MatrixCache.createLazy(TestSession
+				.getDefaultDatabase());
+		long version = cache.getVersion();
+		Assert.assertEquals(0, cache.getEvictedProcesses(version).length);
+		cache.evict(ModelType.PROCESS, 42);
+		cache.evict(ModelType.ACTOR, 1);
+		long[] ids = cache.getEvictedProcesses(version);
+		Assert.assertArrayEquals(new long[] { 42 }, ids);
+		long next = cache.getVersion();
+		Assert.assertEquals(0, cache.getEvictedProcesses(next).length);
+		cache.evict(ModelType.FLOW, 1);
+		Assert.assertNull(cache.getEvictedProcesses(next));
+		Assert.assertNull(cache.getEvictedProcesses(version));
+	}
+
+	@Test
+	public void testStructureChanges() {
+		MatrixCache cache = MatrixCache.createLazy(TestSession
+				.getDefaultDatabase());
+		long version = cache.getVersion();
+		cache.evictParameters();
+		Assert.assertNull(cache.getEvictedProcesses(version));
+		version = cache.getVersion();
+		cache.evict(ModelType.PRODUCT_SYSTEM, 1);
+		Assert.assertNull(cache.getEvictedProcesses(version));
+		version = cache.getVersion();
+		cache.evict(ModelType.SOURCE, 1);
+		Assert.assertEquals(0, cache.getEvictedProcesses(version).length);
+	}
+
+	@Test
+	public void testProcessLogIsBounded() {
+		MatrixCache cache = MatrixCache.createLazy(TestSession
+				.getDefaultDatabase());
+		long version = cache.getVersion();
+		for (int i = 1; i <= 10_000; i++)
+			cache.evict(ModelType.PROCESS, i);
+		Assert.assertEquals(10_000, cache.getEvictedProcesses(version).length);
+		cache.evict(ModelType.PROCESS, 10_001);
+		Assert.assertNull(cache.getEvictedProcesses(version));
+		Assert.assertArrayEquals(new long[] { 10_001 },
+				cache.getEvictedProcesses(cache.getVersion() - 1));
+	}
+
+}
@@ -5,6 +5,7 @@ import org.junit.Test;
 import org.openlca.core.TestSession;
 import org.openlca.core.math.IMatrix;
 import org.openlca.core.math.IMatrixFactory;
+import org.openlca.core.math.SparseMatrix;
 import org.openlca.core.matrix.LongPair;
 import org.openlca.core.matrix.ProductIndex;
 import org.openlca.core.model.ProcessLink;
@@ -86,6 +87,31 @@ public class LinkContributionsTest {
 		}
 	}
 
+	/**
+	 * Process 2 has two products which both use the product of process 1; the
+	 * shares of these products are summed up.
+	 */
+	@Test
+	public void testMultiOutputRecipient() {
+		SparseMatrix techMatrix = new SparseMatrix(3, 3);
+		techMatrix.setEntry(0, 0, 4);
+		techMatrix.setEntry(1, 1, 1);
+		techMatrix.setEntry(2, 2, 1);
+		techMatrix.setEntry(0, 1, -1);
+		techMatrix.setEntry(0, 2, -2);
+		ProductIndex index = new ProductIndex(LongPair.of(1, 1));
+		index.put(LongPair.of(2, 2));
+		index.put(LongPair.of(2, 3));
+		double[] s = { 1, 1, 1 };
+		LinkContributions cons = LinkContributions.calculate(techMatrix,
+				index, s);
+		Assert.assertEquals(0.75, cons.getShare(link(1, 1, 2)), 1e-16);
+		Assert.assertEquals(0, cons.getShare(link(1, 1, 3)), 1e-16);
+		Assert.assertEquals(0, cons.getShare(link(2, 2, 1)), 1e-16);
+		Assert.assertEquals(0.75, cons.getShare(LongPair.of(1, 1),
+				LongPair.of(2, 3)), 1e-16);
+	}
+
 	private ProcessLink link(long provider, long flow, long recipient) {
 		ProcessLink link = new ProcessLink();
 		link.setFlowId(flow);
@@ -0,0 +1,50 @@
+package org.openlca.core.results;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SimulationValueStoreTest {
+
+	@Test
+	public void testInMemory() {
+		SimulationValueStore store = new SimulationValueStore(3);
+		fill(store, 100);
+		assertFalse(store.isSpilled());
+		check(store, 100);
+	}
+
+	@Test
+	public void testSpill() {
+		SimulationValueStore store = new SimulationValueStore(3);
+		store.setMaxValuesInMemory(3 * 600);
+		int runs = 3 * SimulationValueStore.BLOCK_SIZE + 17;
+		fill(store, runs);
+		assertTrue(store.isSpilled());
+		check(store, runs);
+		store.dispose();
+		assertEquals(0, store.getRuns());
+	}
+
+	private void fill(SimulationValueStore store, int runs) {
+		for (int run = 0; run < runs; run++)
+			store.append(new double[] { run, -run, 0.5 * run });
+	}
+
+	private void check(SimulationValueStore store, int runs) {
+		assertEquals(runs, store.getRuns());
+		double[] expected = new double[runs];
+		for (int run = 0; run < runs; run++)
+			expected[run] = -run;
+		assertArrayEquals(expected, store.get(1), 0);
+		for (int run = 0; run < runs; run += 7) {
+			assertEquals(run, store.get(0, run), 0);
+			assertEquals(0.5 * run, store.get(2, run), 0);
+		}
+		assertEquals(runs, store.get(3).length);
+	}
+
+}
@@ -0,0 +1,130 @@
+package org.openlca.core.results;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.openlca.core.matrix.FlowIndex;
+
+public class StreamingStatisticsTest {
+
+	@Test
+	public void testEmptyStatistics() {
+		StreamingStatistics statistics = new StreamingStatistics();
+		assertEquals(0, statistics.getCount());
+		assertEquals(0, statistics.getMean(), 1e-16);
+		assertEquals(0, statistics.getStandardDeviation(), 1e-16);
+		assertEquals(0, statistics.getMinimum(), 1e-16);
+		assertEquals(0, statistics.getMaximum(), 1e-16);
+		assertEquals(0, statistics.getMedian(), 1e-16);
+		assertEquals(0, statistics.getHistogram(10)[0]);
+	}
+
+	@Test
+	public void testCompareWithSimulationStatistics() {
+		Random random = new Random(42);
+		double[] values = new double[10000];
+		StreamingStatistics streaming = new StreamingStatistics();
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextGaussian() * 2 + 5;
+			streaming.add(values[i]);
+		}
+		SimulationStatistics exact = new SimulationStatistics(values, 10);
+		assertEquals(values.length, streaming.getCount());
+		assertEquals(exact.getMean(), streaming.getMean(), 1e-10);
+		assertEquals(exact.getStandardDeviation(),
+				streaming.getStandardDeviation(), 1e-10);
+		assertEquals(exact.getMinimum(), streaming.getMinimum(), 1e-16);
+		assertEquals(exact.getMaximum(), streaming.getMaximum(), 1e-16);
+		assertEquals(exact.getMedian(), streaming.getMedian(), 0.02);
+		assertEquals(exact.getPercentileValue(5),
+				streaming.getPercentileValue(5), 0.02);
+		assertEquals(exact.getPercentileValue(95),
+				streaming.getPercentileValue(95), 0.02);
+		int[] histogram = streaming.getHistogram(10);
+		int sum = 0;
+		for (int i = 0; i < 10; i++) {
+			assertEquals(exact.getAbsoluteFrequency(i), histogram[i], 50);
+			sum += histogram[i];
+		}
+		assertEquals(values.length, sum);
+	}
+
+	@Test
+	public void testMerge() {
+		Random random = new Random(42);
+		StreamingStatistics all = new StreamingStatistics();
+		StreamingStatistics[] parts = new StreamingStatistics[4];
+		for (int i = 0; i < parts.length; i++)
+			parts[i] = new StreamingStatistics();
+		for (int i = 0; i < 10000; i++) {
+			double value = random.nextDouble() * 10;
+			all.add(value);
+			parts[i % parts.length].add(value);
+		}
+		StreamingStatistics merged = new StreamingStatistics();
+		for (StreamingStatistics part : parts)
+			merged.merge(part);
+		assertEquals(all.getCount(), merged.getCount());
+		assertEquals(all.getMean(), merged.getMean(), 1e-10);
+		assertEquals(all.getStandardDeviation(),
+				merged.getStandardDeviation(), 1e-10);
+		assertEquals(all.getMinimum(), merged.getMinimum(), 1e-16);
+		assertEquals(all.getMaximum(), merged.getMaximum(), 1e-16);
+		for (int p = 5; p < 100; p += 10)
+			assertEquals(all.getPercentileValue(p),
+					merged.getPercentileValue(p), 0.05);
+	}
+
+	@Test
+	public void testNegate() {
+		StreamingStatistics statistics = new StreamingStatistics();
+		for (int i = 1; i <= 99; i++)
+			statistics.add(i);
+		StreamingStatistics negated = statistics.negate();
+		assertEquals(-50, negated.getMean(), 1e-10);
+		assertEquals(-99, negated.getMinimum(), 1e-16);
+		assertEquals(-1, negated.getMaximum(), 1e-16);
+		assertEquals(-50, negated.getMedian(), 1e-10);
+		assertEquals(statistics.getStandardDeviation(),
+				negated.getStandardDeviation(), 1e-16);
+	}
+
+	@Test
+	public void testSnapshots() throws Exception {
+		FlowIndex flowIndex = new FlowIndex();
+		flowIndex.putOutputFlow(1);
+		final SimulationResult result = new SimulationResult();
+		result.setFlowIndex(flowIndex);
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+		Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < 500; i++) {
+						StreamingStatistics s = result.getFlowStatistics(1);
+						if (s.getCount() > 0 && (s.getMedian() < s.getMinimum()
+								|| s.getMedian() > s.getMaximum()))
+							throw new AssertionError("invalid median");
+					}
+				} catch (Throwable e) {
+					error.set(e);
+				}
+			}
+		});
+		reader.start();
+		for (int i = 1; i <= 20000; i++)
+			result.appendFlowResults(new double[] { i });
+		reader.join();
+		if (error.get() != null)
+			throw new AssertionError(error.get());
+		StreamingStatistics snapshot = result.getFlowStatistics(1);
+		result.appendFlowResults(new double[] { 1e6 });
+		assertEquals(20000, snapshot.getCount());
+		assertEquals(20000, snapshot.getMaximum(), 1e-16);
+		assertEquals(20001, result.getFlowStatistics(1).getCount());
+	}
+
+}
@@ -1,6 +1,8 @@
 package org.openlca.eigen;
 
 import org.openlca.core.math.IMatrix;
+import org.openlca.core.math.MatrixIterator;
+import org.openlca.util.MatrixUtils;
 
 public class CompressedRowMatrix implements IMatrix {
 
@@ -102,6 +104,51 @@ public class CompressedRowMatrix implements IMatrix {
 
 	}
 
+	@Override
+	public void iterate(MatrixIterator it) {
+		for (int row = 0; row < rows; row++) {
+			int idxEnd = row == (rows - 1) ? columnIndices.length
+					: rowPointers[row + 1];
+			for (int idx = rowPointers[row]; idx < idxEnd; idx++) {
+				if (values[idx] != 0)
+					it.next(row, columnIndices[idx], values[idx]);
+			}
+		}
+	}
+
+	@Override
+	public void scaleColumns(double[] v) {
+		for (int idx = 0; idx < values.length; idx++)
+			values[idx] *= v[columnIndices[idx]];
+	}
+
+	@Override
+	public double[] getRowSums() {
+		double[] sums = new double[rows];
+		for (int row = 0; row < rows; row++) {
+			int idxEnd = row == (rows - 1) ? columnIndices.length
+					: rowPointers[row + 1];
+			double sum = 0;
+			for (int idx = rowPointers[row]; idx < idxEnd; idx++)
+				sum += values[idx];
+			sums[row] = sum;
+		}
+		return sums;
+	}
+
+	@Override
+	public double[] getColumnSums() {
+		double[] sums = new double[columns];
+		for (int idx = 0; idx < values.length; idx++)
+			sums[columnIndices[idx]] += values[idx];
+		return sums;
+	}
+
+	@Override
+	public void addScaled(double factor, IMatrix m) {
+		MatrixUtils.addScaled(this, factor, m);
+	}
+
 	private double[] deletePos(int pos, double[] vals) {
 		double[] newVals = new double[vals.length - 1];
 		System.arraycopy(vals, 0, newVals, 0, pos);
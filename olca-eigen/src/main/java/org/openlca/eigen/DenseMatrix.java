@@ -1,6 +1,8 @@
 package org.openlca.eigen;
 
 import org.openlca.core.math.IMatrix;
+import org.openlca.core.math.MatrixIterator;
+import org.openlca.util.MatrixUtils;
 
 /**
  * An implementation that uses a double precision array to store the data. Data
@@ -59,6 +61,64 @@ public class DenseMatrix implements IMatrix {
 		return row;
 	}
 
+	@Override
+	public void iterate(MatrixIterator it) {
+		int i = 0;
+		for (int col = 0; col < columns; col++) {
+			for (int row = 0; row < rows; row++) {
+				double val = data[i++];
+				if (val != 0)
+					it.next(row, col, val);
+			}
+		}
+	}
+
+	@Override
+	public void scaleColumns(double[] v) {
+		int i = 0;
+		for (int col = 0; col < columns; col++) {
+			double factor = v[col];
+			for (int row = 0; row < rows; row++)
+				data[i++] *= factor;
+		}
+	}
+
+	@Override
+	public double[] getRowSums() {
+		double[] sums = new double[rows];
+		int i = 0;
+		for (int col = 0; col < columns; col++) {
+			for (int row = 0; row < rows; row++)
+				sums[row] += data[i++];
+		}
+		return sums;
+	}
+
+	@Override
+	public double[] getColumnSums() {
+		double[] sums = new double[columns];
+		int i = 0;
+		for (int col = 0; col < columns; col++) {
+			double sum = 0;
+			for (int row = 0; row < rows; row++)
+				sum += data[i++];
+			sums[col] = sum;
+		}
+		return sums;
+	}
+
+	@Override
+	public void addScaled(double factor, IMatrix m) {
+		if (!(m instanceof DenseMatrix)) {
+			MatrixUtils.addScaled(this, factor, m);
+			return;
+		}
+		MatrixUtils.checkSameSize(this, m);
+		double[] other = ((DenseMatrix) m).data;
+		for (int i = 0; i < data.length; i++)
+			data[i] += factor * other[i];
+	}
+
 	private int index(int row, int column) {
 		return row + rows * column;
 	}
@@ -2,10 +2,13 @@ package org.openlca.eigen;
 
 import gnu.trove.impl.Constants;
 import gnu.trove.iterator.TIntDoubleIterator;
+import gnu.trove.iterator.TIntObjectIterator;
 import gnu.trove.map.hash.TIntDoubleHashMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
 
 import org.openlca.core.math.IMatrix;
+import org.openlca.core.math.MatrixIterator;
+import org.openlca.util.MatrixUtils;
 
 /**
  * A sparse matrix implementation that uses primitive hash maps from the Trove
@@ -109,9 +112,7 @@ public class HashMatrix implements IMatrix {
 		return copy;
 	}
 
-	/**
-	 * Iterates over the non-zero values in this matrix.
-	 */
+	@Override
 	public void iterate(MatrixIterator it) {
 		for (int row : data.keys()) {
 			TIntDoubleHashMap rowMap = data.get(row);
@@ -126,10 +127,47 @@ public class HashMatrix implements IMatrix {
 		}
 	}
 
-	public interface MatrixIterator {
+	@Override
+	public void scaleColumns(double[] v) {
+		for (TIntDoubleHashMap rowMap : data.valueCollection()) {
+			TIntDoubleIterator it = rowMap.iterator();
+			while (it.hasNext()) {
+				it.advance();
+				it.setValue(it.value() * v[it.key()]);
+			}
+		}
+	}
+
+	@Override
+	public double[] getRowSums() {
+		double[] sums = new double[rows];
+		TIntObjectIterator<TIntDoubleHashMap> it = data.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			double sum = 0;
+			for (double val : it.value().values())
+				sum += val;
+			sums[it.key()] = sum;
+		}
+		return sums;
+	}
 
-		void next(int row, int col, double val);
+	@Override
+	public double[] getColumnSums() {
+		double[] sums = new double[cols];
+		for (TIntDoubleHashMap rowMap : data.valueCollection()) {
+			TIntDoubleIterator it = rowMap.iterator();
+			while (it.hasNext()) {
+				it.advance();
+				sums[it.key()] += it.value();
+			}
+		}
+		return sums;
+	}
 
+	@Override
+	public void addScaled(double factor, IMatrix m) {
+		MatrixUtils.addScaled(this, factor, m);
 	}
 
 	public CompressedRowMatrix compress() {
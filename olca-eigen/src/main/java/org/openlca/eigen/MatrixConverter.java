@@ -1,7 +1,7 @@
 package org.openlca.eigen;
 
 import org.openlca.core.math.IMatrix;
-import org.openlca.eigen.HashMatrix.MatrixIterator;
+import org.openlca.core.math.MatrixIterator;
 
 public final class MatrixConverter {
 
@@ -5,7 +5,7 @@ import gnu.trove.list.array.TIntArrayList;
 
 import java.io.Serializable;
 
-import org.openlca.eigen.HashMatrix.MatrixIterator;
+import org.openlca.core.math.MatrixIterator;
 
 /**
  * A class that holds the data of a sparse matrix. This class is only used for
@@ -1,12 +1,16 @@
 package org.openlca.eigen.solvers;
 
+import org.openlca.core.math.IFactorization;
 import org.openlca.core.math.IMatrix;
 import org.openlca.core.math.IMatrixFactory;
 import org.openlca.core.math.IMatrixSolver;
+import org.openlca.core.math.MatrixIterator;
+import org.openlca.core.math.SparseMatrix;
+import org.openlca.core.math.SparseSolver;
 import org.openlca.eigen.DenseMatrix;
+import org.openlca.eigen.DenseMatrixFactory;
 import org.openlca.eigen.Eigen;
 import org.openlca.eigen.HashMatrix;
-import org.openlca.eigen.HashMatrix.MatrixIterator;
 import org.openlca.eigen.HashMatrixFactory;
 import org.openlca.eigen.MatrixConverter;
 import org.openlca.eigen.SparseMatrixData;
@@ -14,6 +18,7 @@ import org.openlca.eigen.SparseMatrixData;
 public class BalancedSolver implements IMatrixSolver {
 
 	private DenseSolver denseSolver = new DenseSolver();
+	private SparseSolver sparseSolver = new SparseSolver();
 
 	@Override
 	public double[] solve(IMatrix a, int idx, double d) {
@@ -31,6 +36,26 @@ public class BalancedSolver implements IMatrixSolver {
 		return x;
 	}
 
+	/**
+	 * The native sparse LU solver does not return the factorization. Thus, the
+	 * matrix is converted and factorized with the pure Java sparse solver here.
+	 */
+	@Override
+	public IFactorization factorize(IMatrix a) {
+		if (a instanceof DenseMatrix)
+			return denseSolver.factorize(a);
+		HashMatrix A = MatrixConverter.asHashMatrix(a);
+		final SparseMatrix sparse = new SparseMatrix(A.getRowDimension(),
+				A.getColumnDimension());
+		A.iterate(new MatrixIterator() {
+			@Override
+			public void next(int row, int col, double val) {
+				sparse.setEntry(row, col, val);
+			}
+		});
+		return sparseSolver.factorize(sparse);
+	}
+
 	@Override
 	public double[] multiply(IMatrix m, final double[] v) {
 		if (m instanceof DenseMatrix)
@@ -58,11 +83,7 @@ public class BalancedSolver implements IMatrixSolver {
 
 	@Override
 	public void scaleColumns(IMatrix m, double[] v) {
-		for (int row = 0; row < m.getRowDimension(); row++) {
-			for (int col = 0; col < m.getColumnDimension(); col++) {
-				m.setEntry(row, col, v[col] * m.getEntry(row, col));
-			}
-		}
+		m.scaleColumns(v);
 	}
 
 	@Override
@@ -70,4 +91,9 @@ public class BalancedSolver implements IMatrixSolver {
 		return new HashMatrixFactory();
 	}
 
+	@Override
+	public IMatrixFactory<?> getDenseMatrixFactory() {
+		return new DenseMatrixFactory();
+	}
+
 }
@@ -1,5 +1,6 @@
 package org.openlca.eigen.solvers;
 
+import org.openlca.core.math.IFactorization;
 import org.openlca.core.math.IMatrix;
 import org.openlca.core.math.IMatrixFactory;
 import org.openlca.core.math.IMatrixSolver;
@@ -24,6 +25,12 @@ public class DenseSolver implements IMatrixSolver {
 		return b;
 	}
 
+	@Override
+	public IFactorization factorize(IMatrix a) {
+		DenseMatrix A = MatrixConverter.asDenseMatrix(a);
+		return new Factorization(A.getColumnDimension(), A.getData());
+	}
+
 	@Override
 	public double[] multiply(IMatrix m, double[] x) {
 		DenseMatrix a = MatrixConverter.asDenseMatrix(m);
@@ -59,11 +66,7 @@ public class DenseSolver implements IMatrixSolver {
 
 	@Override
 	public void scaleColumns(IMatrix m, double[] v) {
-		for (int row = 0; row < m.getRowDimension(); row++) {
-			for (int col = 0; col < m.getColumnDimension(); col++) {
-				m.setEntry(row, col, v[col] * m.getEntry(row, col));
-			}
-		}
+		m.scaleColumns(v);
 	}
 
 	@Override
@@ -71,4 +74,67 @@ public class DenseSolver implements IMatrixSolver {
 		return new DenseMatrixFactory();
 	}
 
+	@Override
+	public IMatrixFactory<?> getDenseMatrixFactory() {
+		return new DenseMatrixFactory();
+	}
+
+	/**
+	 * The LU factorization of a dense matrix calculated with LAPACK. The
+	 * factorization of the transposed matrix is calculated when it is used the
+	 * first time.
+	 */
+	private static class Factorization implements IFactorization {
+
+		private final int n;
+		private final double[] data;
+		private final double[] lu;
+		private final int[] pivots;
+		private double[] luTransposed;
+		private int[] pivotsTransposed;
+
+		Factorization(int n, double[] data) {
+			this.n = n;
+			this.data = data.clone();
+			this.lu = data.clone();
+			this.pivots = new int[n];
+			Lapack.dLu(n, lu, pivots);
+		}
+
+		@Override
+		public int size() {
+			return n;
+		}
+
+		@Override
+		public double[] solve(double[] b) {
+			double[] x = b.clone();
+			Lapack.dSolveLu(n, 1, lu, pivots, x);
+			return x;
+		}
+
+		@Override
+		public double[] solveTranspose(double[] b) {
+			double[] x = b.clone();
+			synchronized (this) {
+				if (luTransposed == null)
+					factorizeTransposed();
+			}
+			Lapack.dSolveLu(n, 1, luTransposed, pivotsTransposed, x);
+			return x;
+		}
+
+		private void factorizeTransposed() {
+			// the data are stored in column-major order
+			double[] t = new double[n * n];
+			for (int row = 0; row < n; row++) {
+				for (int col = 0; col < n; col++)
+					t[row * n + col] = data[col * n + row];
+			}
+			pivotsTransposed = new int[n];
+			Lapack.dLu(n, t, pivotsTransposed);
+			luTransposed = t;
+		}
+	}
+
 }
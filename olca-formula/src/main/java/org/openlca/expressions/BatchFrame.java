@@ -0,0 +1,66 @@
+package org.openlca.expressions;
+
+/**
+ * The evaluation context of a compiled expression in the batch mode: instead
+ * of a single value, each variable has an array of values (e.g. the sampled
+ * values of a parameter in a block of simulation runs). The arrays are
+ * resolved by their slot index when they are requested for the first time.
+ * The arrays of the variables are never modified by the nodes.
+ */
+class BatchFrame {
+
+	private final Scope scope;
+	private final String[] variables;
+	private final double[][] values;
+	private final int size;
+
+	BatchFrame(Scope scope, String[] variables, int size) {
+		this.scope = scope;
+		this.variables = variables;
+		this.values = new double[variables.length][];
+		this.size = size;
+	}
+
+	/**
+	 * Creates a frame with the given values of the variables (in the order of
+	 * the slots).
+	 */
+	BatchFrame(String[] variables, double[][] values, int size) {
+		this.scope = null;
+		this.variables = variables;
+		this.values = values;
+		this.size = size;
+	}
+
+	int size() {
+		return size;
+	}
+
+	double[] get(int slot) throws ExpressionException {
+		double[] v = values[slot];
+		if (v == null) {
+			v = resolve(slot);
+			values[slot] = v;
+		}
+		if (v.length < size)
+			throw new ExpressionException("The variable " + variables[slot]
+					+ " has only " + v.length + " values but " + size
+					+ " are required");
+		return v;
+	}
+
+	private double[] resolve(int slot) throws ExpressionException {
+		String name = variables[slot];
+		if (scope == null)
+			throw new ExpressionException("No values for variable " + name);
+		double[] value;
+		try {
+			value = scope.resolveBatch(name, size);
+		} catch (Exception e) {
+			throw new ExpressionException(e.getMessage());
+		}
+		if (value == null)
+			throw new ExpressionException("Unknown variable " + name);
+		return value;
+	}
+}
@@ -0,0 +1,196 @@
+package org.openlca.expressions;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A formula that was parsed and compiled into a tree of primitive nodes. A
+ * compiled expression is immutable and can be evaluated in different scopes
+ * (also from different threads) via {@link Scope#eval(CompiledExpression)}.
+ * The variables of the expression are referenced by slot indices; the values
+ * of these variables are resolved only once per evaluation.
+ *
+ * A compiled expression can be also evaluated for arrays of variable values
+ * at once (e.g. for the sampled parameter values of a block of simulation
+ * runs); see {@link #evalBatch(double[][], int)} and
+ * {@link Scope#evalBatch(CompiledExpression, int)}.
+ *
+ * Compiled expressions are cached by their formula text in a bounded cache so
+ * that a formula is parsed only once, also when it is evaluated in many
+ * scopes or simulation runs.
+ */
+public final class CompiledExpression {
+
+	private static final ExpressionCache cache = new ExpressionCache(10000);
+
+	private final String formula;
+	private final Node root;
+	private final String[] variables;
+	private final boolean numeric;
+
+	/**
+	 * The names of all variables that are referenced in the expression,
+	 * including the variables of delegated expressions.
+	 */
+	private String[] dependencies;
+
+	CompiledExpression(String formula, Node root, String[] variables,
+			boolean numeric) {
+		this.formula = formula;
+		this.root = root;
+		this.variables = variables;
+		this.numeric = numeric;
+	}
+
+	/**
+	 * Returns the compiled expression of the given formula. The expression is
+	 * taken from the cache if it was already compiled.
+	 */
+	public static CompiledExpression compile(String formula)
+			throws InterpreterException {
+		if (formula == null)
+			throw new InterpreterException("The formula is null");
+		CompiledExpression expression = cache.get(formula);
+		if (expression != null)
+			return expression;
+		try {
+			FormulaParser parser = new FormulaParser(new StringReader(
+					formula.toLowerCase()));
+			parser.parse();
+			Expression e = parser.getExpression();
+			e.check();
+			expression = ExpressionCompiler.compile(formula, e);
+			Set<String> names = new LinkedHashSet<>();
+			for (VariableFunction v : parser.getVariables())
+				names.add(v.getVariableName());
+			expression.dependencies = names.toArray(new String[names.size()]);
+		} catch (Throwable e) {
+			throw new InterpreterException("Compilation of expression "
+					+ formula + " failed: " + e.getMessage(), e);
+		}
+		cache.put(formula, expression);
+		return expression;
+	}
+
+	/**
+	 * Sets the maximum number of compiled expressions that are kept in the
+	 * cache. A value of 0 disables the cache.
+	 */
+	public static void setCacheSize(int size) {
+		cache.setMaxSize(size);
+	}
+
+	public static void clearCache() {
+		cache.clear();
+	}
+
+	public String getFormula() {
+		return formula;
+	}
+
+	/**
+	 * Returns the names of the variables of the expression in the order of
+	 * their slot indices.
+	 */
+	public String[] getVariables() {
+		return variables.clone();
+	}
+
+	String[] getDependencies() {
+		return dependencies;
+	}
+
+	/**
+	 * Returns true if the result of the expression is a number (and not a
+	 * boolean value).
+	 */
+	public boolean isNumeric() {
+		return numeric;
+	}
+
+	double evaluate(Scope scope) throws ExpressionException,
+			InterpreterException {
+		if (!numeric)
+			throw new InterpreterException(notNumeric());
+		Frame frame = new Frame(scope, variables);
+		if (root instanceof Node.Var) {
+			Object value = frame.resolve(((Node.Var) root).slot);
+			if (!(value instanceof Double))
+				throw new InterpreterException(notNumeric());
+			return (Double) value;
+		}
+		return root.eval(frame);
+	}
+
+	/**
+	 * Evaluates the expression for the given values of its variables. The
+	 * value arrays must be given in the order of {@link #getVariables()} and
+	 * must contain at least <code>size</code> values. The result contains the
+	 * value of the expression for each index 0 .. size-1. Expressions that
+	 * contain functions which cannot be compiled (e.g. custom functions)
+	 * cannot be evaluated with this method.
+	 */
+	public double[] evalBatch(double[][] values, int size)
+			throws InterpreterException {
+		if (!numeric)
+			throw new InterpreterException(notNumeric());
+		if (values == null || values.length < variables.length)
+			throw new InterpreterException("The expression " + formula
+					+ " requires values for the variables "
+					+ Arrays.toString(variables));
+		try {
+			return evaluateBatch(new BatchFrame(variables, values, size));
+		} catch (ExpressionException e) {
+			throw new InterpreterException("Evaluation of expression "
+					+ formula + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	double[] evaluateBatch(Scope scope, int size) throws ExpressionException,
+			InterpreterException {
+		if (!numeric)
+			throw new InterpreterException(notNumeric());
+		return evaluateBatch(new BatchFrame(scope, variables, size));
+	}
+
+	private double[] evaluateBatch(BatchFrame frame)
+			throws ExpressionException {
+		if (root instanceof Node.Var)
+			return Arrays.copyOf(root.evalBatch(frame), frame.size());
+		try {
+			return root.evalBatch(frame);
+		} catch (ExpressionException e) {
+			// the batch evaluation evaluates all branches of conditional
+			// expressions; thus, we try to evaluate the single values
+			return evaluateElements(frame);
+		}
+	}
+
+	private double[] evaluateElements(BatchFrame batch)
+			throws ExpressionException {
+		double[][] columns = new double[variables.length][];
+		for (int slot = 0; slot < variables.length; slot++)
+			columns[slot] = batch.get(slot);
+		double[] values = new double[variables.length];
+		Frame frame = new Frame(variables, values);
+		double[] result = new double[batch.size()];
+		for (int i = 0; i < result.length; i++) {
+			for (int slot = 0; slot < values.length; slot++)
+				values[slot] = columns[slot][i];
+			result[i] = root.eval(frame);
+		}
+		return result;
+	}
+
+	private String notNumeric() {
+		return "The given expression " + formula
+				+ " does not evaluate to a number.";
+	}
+
+	@Override
+	public String toString() {
+		return formula;
+	}
+}
@@ -0,0 +1,199 @@
+package org.openlca.expressions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The dependency graph of the variables of a formula interpreter. When the
+ * graph is enabled, the variables of all scopes are sorted topologically and
+ * each variable is evaluated exactly once. When a variable is bound to a new
+ * value, only this variable and the variables that depend on it are evaluated
+ * again. Cycles are detected before the evaluation: the variables of a cycle
+ * (and the variables that depend on them) cannot be evaluated.
+ */
+class DependencyGraph {
+
+	private final FormulaInterpreter interpreter;
+
+	private boolean enabled;
+
+	/** True if the structure of the graph needs to be rebuilt. */
+	private boolean stale = true;
+
+	/** True if there are variables that need to be evaluated. */
+	private boolean dirty = true;
+
+	/**
+	 * A counter that is incremented when a variable binding changed. It is
+	 * used to check whether the cached batch values of a variable are still
+	 * valid.
+	 */
+	private int version;
+
+	private List<Variable> order = new ArrayList<>();
+	private List<Variable> cyclic = new ArrayList<>();
+
+	DependencyGraph(FormulaInterpreter interpreter) {
+		this.interpreter = interpreter;
+	}
+
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		stale = true;
+		dirty = true;
+	}
+
+	/**
+	 * Called when the structure of the graph changed, e.g. when a new variable
+	 * was bound or a scope was added.
+	 */
+	void invalidate() {
+		stale = true;
+		dirty = true;
+		version++;
+	}
+
+	/**
+	 * Called when the constant value of the given variable changed but not
+	 * its dependencies. As the new value is already set, the direct
+	 * dependents of the variable are marked as dirty here.
+	 */
+	void markDirty(Variable var) {
+		var.dirty = true;
+		for (Variable dependent : var.dependents)
+			dependent.dirty = true;
+		dirty = true;
+		version++;
+	}
+
+	/**
+	 * Called when the batch values of a variable changed.
+	 */
+	void batchChanged() {
+		version++;
+	}
+
+	int getVersion() {
+		return version;
+	}
+
+	List<Variable> getCyclicVariables() {
+		return cyclic;
+	}
+
+	/**
+	 * Evaluates the variables that are dirty or that depend on dirty
+	 * variables.
+	 */
+	void update() {
+		if (!enabled || !dirty)
+			return;
+		if (stale)
+			rebuild();
+		for (Variable var : order) {
+			if (!var.dirty)
+				continue;
+			Double oldValue = var.value;
+			Throwable oldError = var.error;
+			evaluate(var);
+			var.dirty = false;
+			boolean changed = oldError != var.error || oldValue == null
+					|| !oldValue.equals(var.value);
+			if (!changed)
+				continue;
+			for (Variable dependent : var.dependents)
+				dependent.dirty = true;
+		}
+		dirty = false;
+	}
+
+	private void evaluate(Variable var) {
+		var.error = null;
+		var.value = null;
+		if (var.expression == null) {
+			var.value = var.constant;
+			return;
+		}
+		try {
+			var.evaluating = true;
+			var.value = var.getCompiled().evaluate(var.scope);
+		} catch (Throwable e) {
+			var.error = e;
+		} finally {
+			var.evaluating = false;
+		}
+	}
+
+	private void rebuild() {
+		List<Variable> all = new ArrayList<>();
+		interpreter.getGlobalScope().collectVariables(all);
+		for (Scope scope : interpreter.scopes.values())
+			scope.collectVariables(all);
+		for (Variable var : all)
+			var.dependents.clear();
+		Map<Variable, Integer> inDegrees = new HashMap<>();
+		for (Variable var : all) {
+			Variable[] deps = resolveDependencies(var);
+			if (!Arrays.equals(deps, var.dependencies))
+				var.dirty = true;
+			var.dependencies = deps;
+			for (Variable dep : deps)
+				dep.dependents.add(var);
+			inDegrees.put(var, deps.length);
+		}
+		order = new ArrayList<>(all.size());
+		ArrayDeque<Variable> queue = new ArrayDeque<>();
+		for (Variable var : all) {
+			if (inDegrees.get(var) == 0)
+				queue.add(var);
+		}
+		while (!queue.isEmpty()) {
+			Variable var = queue.poll();
+			order.add(var);
+			for (Variable dependent : var.dependents) {
+				int inDegree = inDegrees.get(dependent) - 1;
+				inDegrees.put(dependent, inDegree);
+				if (inDegree == 0)
+					queue.add(dependent);
+			}
+		}
+		cyclic = new ArrayList<>();
+		for (Variable var : all) {
+			if (inDegrees.get(var) > 0)
+				cyclic.add(var);
+		}
+		for (Variable var : cyclic) {
+			var.value = null;
+			var.dirty = false;
+			var.error = new InterpreterException("The variable " + var.name
+					+ " has cyclic dependencies: " + cyclic);
+		}
+		stale = false;
+	}
+
+	private Variable[] resolveDependencies(Variable var) {
+		if (var.expression == null)
+			return new Variable[0];
+		String[] names;
+		try {
+			names = var.getCompiled().getDependencies();
+		} catch (InterpreterException e) {
+			return new Variable[0];
+		}
+		List<Variable> deps = new ArrayList<>(names.length);
+		for (String name : names) {
+			Variable dep = var.scope.findVariable(name);
+			if (dep != null)
+				deps.add(dep);
+		}
+		return deps.toArray(new Variable[deps.size()]);
+	}
+}
@@ -0,0 +1,58 @@
+package org.openlca.expressions;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of compiled expressions with the formula texts as keys. If
+ * the maximum size of the cache is reached, the least recently used
+ * expression is removed from the cache.
+ */
+class ExpressionCache {
+
+	private int maxSize;
+
+	private final LinkedHashMap<String, CompiledExpression> map = new LinkedHashMap<String, CompiledExpression>(
+			256, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<String, CompiledExpression> eldest) {
+			return size() > maxSize;
+		}
+	};
+
+	ExpressionCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	synchronized CompiledExpression get(String formula) {
+		return map.get(formula);
+	}
+
+	synchronized void put(String formula, CompiledExpression expression) {
+		if (maxSize > 0)
+			map.put(formula, expression);
+	}
+
+	synchronized void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		if (maxSize <= 0) {
+			map.clear();
+			return;
+		}
+		while (map.size() > maxSize) {
+			String eldest = map.keySet().iterator().next();
+			map.remove(eldest);
+		}
+	}
+
+	synchronized int size() {
+		return map.size();
+	}
+
+	synchronized void clear() {
+		map.clear();
+	}
+}
@@ -0,0 +1,150 @@
+package org.openlca.expressions;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Lowers the expression tree of the parser into a tree of primitive nodes
+ * where the variables are replaced by slot indices. Expressions that are not
+ * known by the compiler (e.g. custom functions) are delegated to the
+ * interpreter of the parser.
+ */
+class ExpressionCompiler {
+
+	private static final String FUNCTIONS = "org.openlca.expressions.functions.";
+
+	private final LinkedHashMap<String, Integer> slots = new LinkedHashMap<>();
+
+	private ExpressionCompiler() {
+	}
+
+	static CompiledExpression compile(String formula, Expression expression) {
+		ExpressionCompiler compiler = new ExpressionCompiler();
+		Node root = compiler.lower(expression);
+		String[] variables = compiler.slots.keySet().toArray(
+				new String[compiler.slots.size()]);
+		boolean numeric = expression.getResultType() != Boolean.class;
+		return new CompiledExpression(formula, root, variables, numeric);
+	}
+
+	private Node lower(Expression e) {
+		if (e instanceof DecimalConstantFunction)
+			return new Node.Const(((DecimalConstantFunction) e).value);
+		if (e instanceof VariableFunction)
+			return new Node.Var(slot(((VariableFunction) e).getVariableName()));
+		if (!(e instanceof AbstractExpression))
+			return new Node.Delegate(e);
+		List<Expression> args = ((AbstractExpression) e).arguments;
+		Node node = lowerOperator(e, args);
+		if (node != null)
+			return node;
+		if (e.getClass().getName().startsWith(FUNCTIONS))
+			node = lowerFunction(e.getName(), args);
+		return node != null ? node : new Node.Delegate(e);
+	}
+
+	private Node lowerOperator(Expression e, List<Expression> args) {
+		if (e instanceof OpAddition)
+			return new Node.Operator(Node.Operator.ADD, lower(args));
+		if (e instanceof OpSubstraction)
+			return new Node.Operator(Node.Operator.SUB, lower(args));
+		if (e instanceof OpMultiplication)
+			return new Node.Operator(Node.Operator.MUL, lower(args));
+		if (e instanceof OpDivision)
+			return new Node.Operator(Node.Operator.DIV, lower(args));
+		if (e instanceof OpIntegerDivision)
+			return new Node.Operator(Node.Operator.INT_DIV, lower(args));
+		if (e instanceof OpModuloDivision)
+			return new Node.Operator(Node.Operator.MOD, lower(args));
+		if (e instanceof OpUnaryMinus)
+			return new Node.Negation(lower(args.get(0)));
+		if (e instanceof OpExponentiation)
+			return new Node.Power(false, lower(args.get(0)),
+					lower(args.get(1)));
+		if (e instanceof OpEqual)
+			return comparison(Node.Comparison.EQ, args);
+		if (e instanceof OpNotEqual)
+			return comparison(Node.Comparison.NE, args);
+		if (e instanceof OpLessThan)
+			return comparison(Node.Comparison.LT, args);
+		if (e instanceof OpLessThanOrEqual)
+			return comparison(Node.Comparison.LE, args);
+		if (e instanceof OpGreaterThan)
+			return comparison(Node.Comparison.GT, args);
+		if (e instanceof OpGreaterThanOrEqual)
+			return comparison(Node.Comparison.GE, args);
+		if (e instanceof OpAnd)
+			return new Node.Logical(true, lower(args));
+		if (e instanceof OpOr)
+			return new Node.Logical(false, lower(args));
+		if (e instanceof OpXor)
+			return new Node.Xor(lower(args.get(0)), lower(args.get(1)));
+		return null;
+	}
+
+	private Node lowerFunction(String name, List<Expression> args) {
+		int code = Node.Function1.code(name);
+		if (code >= 0)
+			return new Node.Function1(code, lower(args.get(0)));
+		switch (name) {
+		case "pi()":
+			return new Node.Const(Math.PI);
+		case "e()":
+			return new Node.Const(Math.E);
+		case "true()":
+			return new Node.Const(1);
+		case "false()":
+			return new Node.Const(0);
+		case "rand":
+			return new Node.Random();
+		case "sum":
+			return new Node.Aggregate(Node.Aggregate.SUM, lower(args));
+		case "avg":
+			return new Node.Aggregate(Node.Aggregate.AVG, lower(args));
+		case "min":
+			return new Node.Aggregate(Node.Aggregate.MIN, lower(args));
+		case "max":
+			return new Node.Aggregate(Node.Aggregate.MAX, lower(args));
+		case "ipow":
+			return new Node.Power(true, lower(args.get(0)), lower(args.get(1)));
+		case "pow":
+			return new Node.Power(false, lower(args.get(0)),
+					lower(args.get(1)));
+		case "if":
+			return new Node.If(lower(args.get(0)), lower(args.get(1)),
+					lower(args.get(2)));
+		case "and":
+			return new Node.Logical(true, lower(args));
+		case "or":
+			return new Node.Logical(false, lower(args));
+		case "not":
+			if (args.isEmpty())
+				return new Node.Const(0);
+			return new Node.Not(lower(args.get(0)));
+		default:
+			return null;
+		}
+	}
+
+	private Node comparison(int type, List<Expression> args) {
+		return new Node.Comparison(type, lower(args.get(0)), lower(args.get(1)));
+	}
+
+	private Node[] lower(List<Expression> args) {
+		List<Node> nodes = new ArrayList<>(args.size());
+		for (Expression arg : args)
+			nodes.add(lower(arg));
+		return nodes.toArray(new Node[nodes.size()]);
+	}
+
+	private int slot(String variable) {
+		Integer slot = slots.get(variable);
+		if (slot != null)
+			return slot;
+		slot = slots.size();
+		slots.put(variable, slot);
+		return slot;
+	}
+
+}
@@ -1,14 +1,63 @@
 package org.openlca.expressions;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
+/**
+ * An interpreter for formulas with a global scope and local scopes with
+ * variable bindings.
+ *
+ * By default, the variables are evaluated lazily: the variables that are used
+ * in an expression are evaluated when the expression is evaluated and their
+ * values are reset for each evaluation. In the dependency graph mode (see
+ * {@link #setDependencyGraphMode(boolean)}) all variables of the global and
+ * local scopes are sorted topologically and evaluated exactly once. When a
+ * variable is bound to a new value, only the variables that depend on this
+ * variable are evaluated again. This is much faster when many expressions
+ * are evaluated with the same variables, e.g. the formulas of the exchanges
+ * in a product system or the parameters in a Monte-Carlo-Simulation.
+ */
 public class FormulaInterpreter {
 
+	private final DependencyGraph graph;
 	private final Scope globalScope;
-	private final HashMap<Long, Scope> scopes = new HashMap<>();
+	final HashMap<Long, Scope> scopes = new HashMap<>();
 
 	public FormulaInterpreter() {
-		globalScope = new Scope();
+		graph = new DependencyGraph(this);
+		globalScope = new Scope(null, graph);
+	}
+
+	/**
+	 * Enables or disables the dependency graph mode of the interpreter.
+	 */
+	public void setDependencyGraphMode(boolean enabled) {
+		graph.setEnabled(enabled);
+	}
+
+	public boolean isDependencyGraphMode() {
+		return graph.isEnabled();
+	}
+
+	/**
+	 * Evaluates all variables that need to be evaluated in the dependency
+	 * graph mode. An exception is thrown if there are variables with cyclic
+	 * dependencies. Calling this method is optional as the variables are also
+	 * evaluated before an expression is evaluated.
+	 */
+	public void evaluateVariables() throws InterpreterException {
+		if (!graph.isEnabled())
+			return;
+		graph.update();
+		List<Variable> cyclic = graph.getCyclicVariables();
+		if (cyclic.isEmpty())
+			return;
+		List<String> names = new ArrayList<>();
+		for (Variable var : cyclic)
+			names.add(var.name);
+		throw new InterpreterException("Cyclic dependencies between the "
+				+ "variables " + names);
 	}
 
 	/**
@@ -18,6 +67,7 @@ public class FormulaInterpreter {
 	public void clear() {
 		globalScope.clear();
 		scopes.clear();
+		graph.invalidate();
 	}
 
 	/**
@@ -50,8 +100,9 @@ public class FormulaInterpreter {
 
 	/** Creates a new scope with the given ID in the parent scope. */
 	public Scope createScope(long id, Scope parent) {
-		Scope scope = new Scope(parent);
+		Scope scope = new Scope(parent, graph);
 		scopes.put(id, scope);
+		graph.invalidate();
 		return scope;
 	}
 
@@ -0,0 +1,72 @@
+package org.openlca.expressions;
+
+import java.util.Arrays;
+
+/**
+ * The evaluation context of a compiled expression: it provides the values of
+ * the variables of the expression by their slot index. The values are
+ * resolved in the scope of the frame when they are requested for the first
+ * time and then cached in the frame.
+ */
+class Frame {
+
+	private final Scope scope;
+	private final String[] variables;
+	private final double[] values;
+	private final boolean[] resolved;
+
+	Frame(Scope scope, String[] variables) {
+		this.scope = scope;
+		this.variables = variables;
+		this.values = new double[variables.length];
+		this.resolved = new boolean[variables.length];
+	}
+
+	/**
+	 * Creates a frame with the given values of the variables (in the order of
+	 * the slots). The values are not copied so that the frame can be reused
+	 * for different values.
+	 */
+	Frame(String[] variables, double[] values) {
+		this.scope = null;
+		this.variables = variables;
+		this.values = values;
+		this.resolved = new boolean[variables.length];
+		Arrays.fill(resolved, true);
+	}
+
+	Scope getScope() {
+		return scope;
+	}
+
+	double get(int slot) throws ExpressionException {
+		if (resolved[slot])
+			return values[slot];
+		Object value = resolve(slot);
+		double v;
+		if (value instanceof Boolean)
+			v = Node.bool((Boolean) value);
+		else
+			v = (Double) value;
+		values[slot] = v;
+		resolved[slot] = true;
+		return v;
+	}
+
+	/**
+	 * Resolves the value of the variable with the given slot in the scope of
+	 * this frame.
+	 */
+	Object resolve(int slot) throws ExpressionException {
+		String name = variables[slot];
+		Object value;
+		try {
+			value = scope.resolveVariable(name);
+		} catch (Exception e) {
+			throw new ExpressionException(e.getMessage());
+		}
+		if (value == null)
+			throw new ExpressionException("Unknown variable " + name);
+		return value;
+	}
+}
@@ -0,0 +1,596 @@
+package org.openlca.expressions;
+
+import java.util.Arrays;
+
+/**
+ * A node of a compiled expression. In contrast to the {@link Expression} tree
+ * of the parser, compiled nodes work on primitive values: boolean values are
+ * represented as 1 (true) and 0 (false) and variables are referenced by their
+ * slot index in the compiled expression.
+ *
+ * In the batch mode, a node is evaluated for arrays of variable values at once
+ * (see {@link BatchFrame}). The batch evaluation always returns a new array
+ * and does not modify the arrays of the variables. Note that conditional
+ * expressions evaluate all of their branches in the batch mode; thus, the
+ * batch evaluation can fail where the evaluation of the single values would
+ * not (e.g. with a division by zero in a branch that is not selected).
+ */
+abstract class Node {
+
+	abstract double eval(Frame frame) throws ExpressionException;
+
+	abstract double[] evalBatch(BatchFrame frame) throws ExpressionException;
+
+	static boolean isTrue(double value) {
+		return value != 0;
+	}
+
+	static double bool(boolean value) {
+		return value ? 1 : 0;
+	}
+
+	static class Const extends Node {
+
+		private final double value;
+
+		Const(double value) {
+			this.value = value;
+		}
+
+		@Override
+		double eval(Frame frame) {
+			return value;
+		}
+
+		@Override
+		double[] evalBatch(BatchFrame frame) {
+			double[] result = new double[frame.size()];
+			Arrays.fill(result, value);
+			return result;
+		}
+	}
+
+	static class Var extends Node {
+
+		final int slot;
+
+		Var(int slot) {
+			this.slot = slot;
+		}
+
+		@Override
+		double eval(Frame frame) throws ExpressionException {
+			return frame.get(slot);
+		}
+
+		@Override
+		double[] evalBatch(BatchFrame frame) throws ExpressionException {
+			return frame.get(slot);
+		}
+	}
+
+	static class Random extends Node {
+
+		@Override
+		double eval(Frame frame) {
+			return Math.random();
+		}
+
+		@Override
+		double[] evalBatch(BatchFrame frame) {
+			double[] result = new double[frame.size()];
+			for (int i = 0; i < result.length; i++)
+				result[i] = Math.random();
+			return result;
+		}
+	}
+
+	static class Negation extends Node {
+
+		private final Node arg;
+
+		Negation(Node arg) {
+			this.arg = arg;
+		}
+
+		@Override
+		double eval(Frame frame) throws ExpressionException {
+			return -arg.eval(frame);
+		}
+
+		@Override
+		double[] evalBatch(BatchFrame frame) throws ExpressionException {
+			double[] values = arg.evalBatch(frame);
+			double[] result = new double[frame.size()];
+			for (int i = 0; i < result.length; i++)
+				result[i] = -values[i];
+			return result;
+		}
+	}
+
+	/** The left-associative numeric operators (+, -, *, /, div, mod). */
+	static class Operator extends Node {
+
+		static final int ADD = 0;
+		static final int SUB = 1;
+		static final int MUL = 2;
+		static final int DIV = 3;
+		static final int INT_DIV = 4;
+		static final int MOD = 5;
+
+		private final int type;
+		private final Node[] args;
+
+		Operator(int type, Node[] args) {
+			this.type = type;
+			this.args = args;
+		}
+
+		@Override
+		double eval(Frame frame) throws ExpressionException {
+			double result = args[0].eval(frame);
+			for (int i = 1; i < args.length; i++) {
+				double value = args[i].eval(frame);
+				switch (type) {
+				case ADD:
+					result += value;
+					break;
+				case SUB:
+					result -= value;
+					break;
+				case MUL:
+					result *= value;
+					break;
+				case DIV:
+					if (value == 0)
+						throw new ExpressionException("Cannot divide by 0");
+					result /= value;
+					break;
+				case INT_DIV:
+					result = Math.round(result) / Math.round(value);
+					break;
+				case MOD:
+					result %= value;
+					break;
+				}
+			}
+			return result;
+		}
+
+		@Override
+		double[] evalBatch(BatchFrame frame) throws ExpressionException {
+			int n = frame.size();
+			double[] result = Arrays.copyOf(args[0].evalBatch(frame), n);
+			for (int k = 1; k < args.length; k++) {
+				double[] values = args[k].evalBatch(frame);
+				switch (type) {
+				case ADD:
+					for (int i = 0; i < n; i++)
+						result[i] += values[i];
+					break;
+				case SUB:
+					for (int i = 0; i < n; i++)
+						result[i] -= values[i];
+					break;
+				case MUL:
+					for (int i = 0; i < n; i++)
+						result[i] *= values[i];
+					break;
+				case DIV:
+					for (int i = 0; i < n; i++) {
+						if (values[i] == 0)
+							throw new ExpressionException("Cannot divide by 0");
+						result[i] /= values[i];
+					}
+					break;
+				case INT_DIV:
+					for (int i = 0; i < n; i++)
+						result[i] = Math.round(result[i]) / Math.round(values[i]);
+					break;
+				case MOD:
+					for (int i = 0; i < n; i++)
+						result[i] %= values[i];
+					break;
+				}
+			}
+			return result;
+		}
+	}
+
+	static class Comparison extends Node {
+
+		static final int EQ = 0;
+		static final int NE = 1;
+		static final int LT = 2;
+		static final int LE = 3;
+		static final int GT = 4;
+		static final int GE = 5;
+
+		private final int type;
+		private final Node left;
+		private final Node right;
+
+		Comparison(int type, Node left, Node right) {
+			this.type = type;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		double eval(Frame frame) throws ExpressionException {
+			return compare(Double.compare(left.eval(frame), right.eval(frame)));
+		}
+
+		@Override
+		double[] evalBatch(BatchFrame frame) throws ExpressionException {
+			double[] l = left.evalBatch(frame);
+			double[] r = right.evalBatch(frame);
+			double[] result = new double[frame.size()];
+			for (int i = 0; i < result.length; i++)
+				result[i] = compare(Double.compare(l[i], r[i]));
+			return result;
+		}
+
+		private double compare(int c) {
+			switch (type) {
+			case EQ:
+				return bool(c == 0);
+			case NE:
+				return bool(c != 0);
+			case LT:
+				return bool(c < 0);
+			case LE:
+				return bool(c <= 0);
+			case GT:
+				return bool(c > 0);
+			default:
+				return bool(c >= 0);
+			}
+		}
+	}
+
+	/** Short-circuit evaluation of and- and or-expressions. */
+	static class Logical extends Node {
+
+		private final boolean and;
+		private final Node[] args;
+
+		Logical(boolean and, Node[] args) {
+			this.and = and;
+			this.args = args;
+		}
+
+		@Override
+		double eval(Frame frame) throws ExpressionException {
+			for (Node arg : args) {
+				boolean value = isTrue(arg.eval(frame));
+				if (and && !value)
+					return 0;
+				if (!and && value)
+					return 1;
+			}
+			return bool(and);
+		}
+
+		@Override
+		double[] evalBatch(BatchFrame frame) throws ExpressionException {
+			double[] result = new double[frame.size()];
+			Arrays.fill(result, bool(and));
+			for (Node arg : args) {
+				double[] values = arg.evalBatch(frame);
+				for (int i = 0; i < result.length; i++) {
+					boolean value = isTrue(values[i]);
+					if (and && !value)
+						result[i] = 0;
+					if (!and && value)
+						result[i] = 1;
+				}
+			}
+			return result;
+		}
+	}
+
+	static class Xor extends Node {
+
+		private final Node left;
+		private final Node right;
+
+		Xor(Node left, Node right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		double eval(Frame frame) throws ExpressionException {
+			return bool(isTrue(left.eval(frame)) != isTrue(right.eval(frame)));
+		}
+
+		@Override
+		double[] evalBatch(BatchFrame frame) throws ExpressionException {
+			double[] l = left.evalBatch(frame);
+			double[] r = right.evalBatch(frame);
+			double[] result = new double[frame.size()];
+			for (int i = 0; i < result.length; i++)
+				result[i] = bool(isTrue(l[i]) != isTrue(r[i]));
+			return result;
+		}
+	}
+
+	static class Not extends Node {
+
+		private final Node arg;
+
+		Not(Node arg) {
+			this.arg = arg;
+		}
+
+		@Override
+		double eval(Frame frame) throws ExpressionException {
+			return bool(!isTrue(arg.eval(frame)));
+		}
+
+		@Override
+		double[] evalBatch(BatchFrame frame) throws ExpressionException {
+			double[] values = arg.evalBatch(frame);
+			double[] result = new double[frame.size()];
+			for (int i = 0; i < result.length; i++)
+				result[i] = bool(!isTrue(values[i]));
+			return result;
+		}
+	}
+
+	static class If extends Node {
+
+		private final Node condition;
+		private final Node then;
+		private final Node otherwise;
+
+		If(Node condition, Node then, Node otherwise) {
+			this.condition = condition;
+			this.then = then;
+			this.otherwise = otherwise;
+		}
+
+		@Override
+		double eval(Frame frame) throws ExpressionException {
+			if (isTrue(condition.eval(frame)))
+				return then.eval(frame);
+			return otherwise.eval(frame);
+		}
+
+		@Override
+		double[] evalBatch(BatchFrame frame) throws ExpressionException {
+			double[] c = condition.evalBatch(frame);
+			double[] t = then.evalBatch(frame);
+			double[] o = otherwise.evalBatch(frame);
+			double[] result = new double[frame.size()];
+			for (int i = 0; i < result.length; i++)
+				result[i] = isTrue(c[i]) ? t[i] : o[i];
+			return result;
+		}
+	}
+
+	static class Function1 extends Node {
+
+		private static final String[] NAMES = { "abs", "acos", "asin", "atan",
+				"ceil", "cos", "cosh", "cotan", "exp", "floor", "frac", "int",
+				"ln", "log", "round", "sin", "sinh", "sqr", "sqrt", "tan",
+				"tanh" };
+
+		private final int function;
+		private final Node arg;
+
+		Function1(int function, Node arg) {
+			this.function = function;
+			this.arg = arg;
+		}
+
+		/**
+		 * Returns the code of the function with the given name or -1 if there
+		 * is no such function.
+		 */
+		static int code(String name) {
+			for (int i = 0; i < NAMES.length; i++) {
+				if (NAMES[i].equals(name))
+					return i;
+			}
+			return -1;
+		}
+
+		@Override
+		double eval(Frame frame) throws ExpressionException {
+			return apply(function, arg.eval(frame));
+		}
+
+		@Override
+		double[] evalBatch(BatchFrame frame) throws ExpressionException {
+			double[] values = arg.evalBatch(frame);
+			double[] result = new double[frame.size()];
+			for (int i = 0; i < result.length; i++)
+				result[i] = apply(function, values[i]);
+			return result;
+		}
+
+		static double apply(int function, double x) {
+			switch (function) {
+			case 0:
+				return Math.abs(x);
+			case 1:
+				return Math.acos(x);
+			case 2:
+				return Math.asin(x);
+			case 3:
+				return Math.atan(x);
+			case 4:
+				return Math.ceil(x);
+			case 5:
+				return Math.cos(x);
+			case 6:
+				return Math.cosh(x);
+			case 7:
+				return 1 / Math.tan(x);
+			case 8:
+				return Math.exp(x);
+			case 9:
+				return Math.floor(x);
+			case 10:
+				return x - ((int) x);
+			case 11:
+				return (int) x;
+			case 12:
+				return Math.log(x);
+			case 13:
+				return Math.log10(x);
+			case 14:
+				return Math.round(x);
+			case 15:
+				return Math.sin(x);
+			case 16:
+				return Math.sinh(x);
+			case 17:
+				return x * x;
+			case 18:
+				return Math.sqrt(x);
+			case 19:
+				return Math.tan(x);
+			default:
+				return Math.tanh(x);
+			}
+		}
+	}
+
+	static class Power extends Node {
+
+		private final boolean integer;
+		private final Node base;
+		private final Node exponent;
+
+		Power(boolean integer, Node base, Node exponent) {
+			this.integer = integer;
+			this.base = base;
+			this.exponent = exponent;
+		}
+
+		@Override
+		double eval(Frame frame) throws ExpressionException {
+			double b = base.eval(frame);
+			double e = exponent.eval(frame);
+			return integer ? Math.pow(b, (int) e) : Math.pow(b, e);
+		}
+
+		@Override
+		double[] evalBatch(BatchFrame frame) throws ExpressionException {
+			double[] b = base.evalBatch(frame);
+			double[] e = exponent.evalBatch(frame);
+			double[] result = new double[frame.size()];
+			for (int i = 0; i < result.length; i++)
+				result[i] = integer ? Math.pow(b[i], (int) e[i])
+						: Math.pow(b[i], e[i]);
+			return result;
+		}
+	}
+
+	/** The aggregate functions sum, avg, min, and max. */
+	static class Aggregate extends Node {
+
+		static final int SUM = 0;
+		static final int AVG = 1;
+		static final int MIN = 2;
+		static final int MAX = 3;
+
+		private final int type;
+		private final Node[] args;
+
+		Aggregate(int type, Node[] args) {
+			this.type = type;
+			this.args = args;
+		}
+
+		@Override
+		double eval(Frame frame) throws ExpressionException {
+			if (args.length == 0)
+				return 0;
+			double result = 0;
+			if (type == MIN)
+				result = Double.MAX_VALUE;
+			else if (type == MAX)
+				result = -Double.MAX_VALUE;
+			for (Node arg : args) {
+				double value = arg.eval(frame);
+				if (type == MIN) {
+					if (value < result)
+						result = value;
+				} else if (type == MAX) {
+					if (value > result)
+						result = value;
+				} else
+					result += value;
+			}
+			if (type == AVG)
+				result /= args.length;
+			return result;
+		}
+
+		@Override
+		double[] evalBatch(BatchFrame frame) throws ExpressionException {
+			double[] result = new double[frame.size()];
+			if (args.length == 0)
+				return result;
+			if (type == MIN)
+				Arrays.fill(result, Double.MAX_VALUE);
+			else if (type == MAX)
+				Arrays.fill(result, -Double.MAX_VALUE);
+			for (Node arg : args) {
+				double[] values = arg.evalBatch(frame);
+				for (int i = 0; i < result.length; i++) {
+					if (type == MIN) {
+						if (values[i] < result[i])
+							result[i] = values[i];
+					} else if (type == MAX) {
+						if (values[i] > result[i])
+							result[i] = values[i];
+					} else
+						result[i] += values[i];
+				}
+			}
+			if (type == AVG) {
+				for (int i = 0; i < result.length; i++)
+					result[i] /= args.length;
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Evaluates an expression that cannot be compiled (e.g. a custom function)
+	 * with the interpreter of the parser.
+	 */
+	static class Delegate extends Node {
+
+		private final Expression expression;
+
+		Delegate(Expression expression) {
+			this.expression = expression;
+		}
+
+		@Override
+		double eval(Frame frame) throws ExpressionException {
+			Scope scope = frame.getScope();
+			if (scope == null)
+				throw new ExpressionException("The function "
+						+ expression.getName() + " requires a scope");
+			Object value = expression.evaluate(scope);
+			if (value instanceof Boolean)
+				return bool((Boolean) value);
+			return (Double) value;
+		}
+
+		@Override
+		double[] evalBatch(BatchFrame frame) throws ExpressionException {
+			throw new ExpressionException("The function "
+					+ expression.getName()
+					+ " cannot be evaluated in the batch mode");
+		}
+	}
+
+}
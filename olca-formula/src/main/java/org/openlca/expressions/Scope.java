@@ -1,27 +1,24 @@
 package org.openlca.expressions;
 
-import java.io.Reader;
-import java.io.StringReader;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * A scope contains bindings of variable names to expressions. Each scope has a
  * reference to a parent scope except of the global scope. An expression can be
  * evaluated in a scope. If the
- * 
+ *
  */
 public final class Scope {
 
 	private final Scope parent;
-	private final HashMap<String, Integer> evaluationCalls = new HashMap<>();
+	private final DependencyGraph graph;
 	private final HashMap<String, Variable> variables = new HashMap<>();
 
-	Scope() {
-		this(null);
-	}
-
-	Scope(Scope parent) {
+	Scope(Scope parent, DependencyGraph graph) {
 		this.parent = parent;
+		this.graph = graph;
 	}
 
 	/**
@@ -31,10 +28,65 @@ public final class Scope {
 		if (variableName == null || expression == null)
 			return;
 		String symbol = variableName.toLowerCase().trim();
-		Variable var = new Variable();
-		var.name = symbol;
+		Variable var = variables.get(symbol);
+		if (var == null) {
+			var = new Variable(this, symbol);
+			variables.put(symbol, var);
+		} else if (expression.equals(var.expression))
+			return;
 		var.expression = expression;
-		variables.put(symbol, var);
+		var.compiled = null;
+		var.samples = null;
+		var.constant = null;
+		var.value = null;
+		var.dirty = true;
+		graph.invalidate();
+	}
+
+	/**
+	 * Creates a new binding of a variable name to a constant value in this
+	 * scope. If the variable is already bound to a constant value, only the
+	 * value is updated so that in the dependency graph mode of the interpreter
+	 * only the variables that depend on this variable are evaluated again.
+	 */
+	public void bind(String variableName, double value) {
+		if (variableName == null)
+			return;
+		String symbol = variableName.toLowerCase().trim();
+		Variable var = variables.get(symbol);
+		if (var != null && var.expression == null) {
+			var.samples = null;
+			var.constant = value;
+			var.value = value;
+			graph.markDirty(var);
+			return;
+		}
+		if (var == null) {
+			var = new Variable(this, symbol);
+			variables.put(symbol, var);
+		}
+		var.expression = null;
+		var.compiled = null;
+		var.samples = null;
+		var.constant = value;
+		var.value = value;
+		var.dirty = true;
+		graph.invalidate();
+	}
+
+	/**
+	 * Binds a variable to an array of values for the batch evaluation (see
+	 * {@link #evalBatch(CompiledExpression, int)}); e.g. the sampled values of
+	 * a parameter in a block of simulation runs. The array is not copied. In
+	 * the normal evaluation, the variable has the first value of the array.
+	 */
+	public void bind(String variableName, double[] values) {
+		if (variableName == null || values == null || values.length == 0)
+			return;
+		bind(variableName, values[0]);
+		Variable var = variables.get(variableName.toLowerCase().trim());
+		var.samples = values;
+		graph.batchChanged();
 	}
 
 	/**
@@ -42,37 +94,77 @@ public final class Scope {
 	 */
 	public void clear() {
 		variables.clear();
-		evaluationCalls.clear();
+		graph.invalidate();
 	}
 
 	/**
 	 * Evaluates the given expression in this scope.
 	 */
 	public double eval(String expression) throws InterpreterException {
-		// reset the evaluation calls and values for variables
-		for (String var : evaluationCalls.keySet())
-			evaluationCalls.put(var, 0);
-		for (Variable variable : variables.values())
-			variable.value = null;
+		prepare();
+		try {
+			return CompiledExpression.compile(expression).evaluate(this);
+		} catch (Throwable e) {
+			throw new InterpreterException("Evaluation of expression "
+					+ expression + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Evaluates the given compiled expression in this scope. This is the same
+	 * as {@link #eval(String)} but without the lookup of the formula in the
+	 * cache of compiled expressions.
+	 */
+	public double eval(CompiledExpression expression)
+			throws InterpreterException {
+		prepare();
 		try {
-			return tryEval(expression);
+			return expression.evaluate(this);
 		} catch (Throwable e) {
 			throw new InterpreterException("Evaluation of expression "
 					+ expression + " failed: " + e.getMessage(), e);
 		}
 	}
 
-	private double tryEval(String expression) throws Exception {
-		Reader reader = new StringReader(expression.toLowerCase());
-		FormulaParser parser = new FormulaParser(reader);
-		parser.parse();
-		Expression e = parser.getExpression();
-		e.check();
-		Object result = e.evaluate(this);
-		if (!(result instanceof Double))
-			throw new InterpreterException("The given expression " + expression
-					+ " does not evaluate to a number.");
-		return ((Double) result);
+	/**
+	 * Evaluates the given expression for the given number of values of the
+	 * variables in this scope. Variables that are bound to arrays of values
+	 * (see {@link #bind(String, double[])}) have a value for each index; the
+	 * other variables have the same value for each index. The results of the
+	 * variables are cached until a variable binding changes so that they are
+	 * evaluated only once for all expressions that use them.
+	 */
+	public double[] evalBatch(String expression, int size)
+			throws InterpreterException {
+		return evalBatch(CompiledExpression.compile(expression), size);
+	}
+
+	/**
+	 * Evaluates the given compiled expression for the given number of values
+	 * of the variables in this scope (see {@link #evalBatch(String, int)}).
+	 */
+	public double[] evalBatch(CompiledExpression expression, int size)
+			throws InterpreterException {
+		try {
+			return expression.evaluateBatch(this, size);
+		} catch (Throwable e) {
+			throw new InterpreterException("Evaluation of expression "
+					+ expression + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * In the dependency graph mode, the dirty variables are evaluated.
+	 * Otherwise the values of the variables of this scope are reset so that
+	 * they are evaluated when they are used.
+	 */
+	private void prepare() {
+		if (graph.isEnabled()) {
+			graph.update();
+			return;
+		}
+		for (Variable variable : variables.values())
+			variable.value = variable.constant;
 	}
 
 	public Object resolveVariable(String name) throws InterpreterException {
@@ -81,8 +173,11 @@ public final class Scope {
 			// variable is bound in this scope
 			if (var.isEvaluated())
 				return var.value;
-			else
-				return eval(var);
+			if (var.error != null && graph.isEnabled())
+				throw new InterpreterException("Evaluation of variable "
+						+ var.name + " failed: " + var.error.getMessage(),
+						var.error);
+			return eval(var);
 		} else {
 			// search in parent scope or constants
 			if (parent == null)
@@ -94,29 +189,84 @@ public final class Scope {
 	}
 
 	private Object eval(Variable var) throws InterpreterException {
-		Integer call = evaluationCalls.get(var.name);
-		if (call != null && call > 0)
+		if (var.expression == null)
+			return var.constant;
+		if (var.evaluating)
 			throw new InterpreterException(
 					"Second evaluation call on variable "
 							+ var.name + ". Cyclic dependencies?");
-		evaluationCalls.put(var.name, 1);
+		var.evaluating = true;
 		try {
-			var.value = tryEval(var.expression);
+			var.value = var.getCompiled().evaluate(this);
 			return var.value;
 		} catch (Throwable e) {
 			throw new InterpreterException("Evaluation of variable "
 					+ var.name + " failed: " + e.getMessage(), e);
+		} finally {
+			var.evaluating = false;
 		}
 	}
 
-	private class Variable {
-
-		private String name;
-		private String expression;
-		private Double value;
+	double[] resolveBatch(String name, int size) throws InterpreterException {
+		Variable var = variables.get(name);
+		if (var != null)
+			return evalBatch(var, size);
+		if (parent != null)
+			return parent.resolveBatch(name, size);
+		Object constant = Constants.get(name);
+		if (constant == null)
+			return null;
+		double[] values = new double[size];
+		if (constant instanceof Boolean)
+			Arrays.fill(values, Node.bool((Boolean) constant));
+		else
+			Arrays.fill(values, (Double) constant);
+		return values;
+	}
 
-		public boolean isEvaluated() {
-			return value != null;
+	private double[] evalBatch(Variable var, int size)
+			throws InterpreterException {
+		if (var.batchValues != null && var.batchValues.length >= size
+				&& var.batchVersion == graph.getVersion())
+			return var.batchValues;
+		double[] values;
+		if (var.samples != null)
+			values = var.samples;
+		else if (var.expression == null) {
+			values = new double[size];
+			Arrays.fill(values, var.constant);
+		} else {
+			if (var.evaluating)
+				throw new InterpreterException(
+						"Second evaluation call on variable "
+								+ var.name + ". Cyclic dependencies?");
+			var.evaluating = true;
+			try {
+				values = var.getCompiled().evaluateBatch(this, size);
+			} catch (Throwable e) {
+				throw new InterpreterException("Evaluation of variable "
+						+ var.name + " failed: " + e.getMessage(), e);
+			} finally {
+				var.evaluating = false;
+			}
 		}
+		var.batchValues = values;
+		var.batchVersion = graph.getVersion();
+		return values;
+	}
+
+	/**
+	 * Returns the variable with the given name that is bound in this scope or
+	 * a parent scope; null if there is no such variable.
+	 */
+	Variable findVariable(String name) {
+		Variable var = variables.get(name);
+		if (var != null)
+			return var;
+		return parent == null ? null : parent.findVariable(name);
+	}
+
+	void collectVariables(List<Variable> list) {
+		list.addAll(variables.values());
 	}
-}
\ No newline at end of file
+}
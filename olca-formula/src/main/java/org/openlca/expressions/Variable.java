@@ -0,0 +1,54 @@
+package org.openlca.expressions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A variable binding in a scope. A variable is either bound to an expression
+ * or to a constant value.
+ */
+class Variable {
+
+	final Scope scope;
+	final String name;
+
+	/** The expression of the variable or null if it has a constant value. */
+	String expression;
+	CompiledExpression compiled;
+	Double constant;
+
+	/** The current value of the variable; null if it is not evaluated. */
+	Double value;
+
+	/* fields for the evaluation in the dependency graph */
+	Throwable error;
+	boolean dirty = true;
+	boolean evaluating;
+	Variable[] dependencies = new Variable[0];
+	final List<Variable> dependents = new ArrayList<>();
+
+	/* fields for the batch evaluation */
+	double[] samples;
+	double[] batchValues;
+	int batchVersion = -1;
+
+	Variable(Scope scope, String name) {
+		this.scope = scope;
+		this.name = name;
+	}
+
+	boolean isEvaluated() {
+		return value != null;
+	}
+
+	CompiledExpression getCompiled() throws InterpreterException {
+		if (compiled == null)
+			compiled = CompiledExpression.compile(expression);
+		return compiled;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
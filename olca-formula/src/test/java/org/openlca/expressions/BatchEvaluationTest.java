@@ -0,0 +1,71 @@
+package org.openlca.expressions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BatchEvaluationTest {
+
+	private final String[] formulas = { "2 * a + b", "a / b - 1",
+			"if(a > b; a; b)", "sqrt(abs(a)) ^ 2", "max(a; b; 1.5)",
+			"if((a > 1) && (b < 3) || (a = b); 1; 2)", "a mod 2 + b div 2", "-a * 2.5" };
+
+	@Test
+	public void testCompareWithScalarEvaluation() throws Exception {
+		double[] a = { 1, 2.5, -3, 4 };
+		double[] b = { 2, 2.5, 0.5, 1 };
+		for (String formula : formulas) {
+			CompiledExpression e = CompiledExpression.compile(formula);
+			double[][] values = new double[e.getVariables().length][];
+			for (int slot = 0; slot < values.length; slot++)
+				values[slot] = "a".equals(e.getVariables()[slot]) ? a : b;
+			double[] result = e.evalBatch(values, a.length);
+			Assert.assertEquals(a.length, result.length);
+			for (int i = 0; i < a.length; i++) {
+				FormulaInterpreter interpreter = new FormulaInterpreter();
+				interpreter.getGlobalScope().bind("a", a[i]);
+				interpreter.getGlobalScope().bind("b", b[i]);
+				Assert.assertEquals(formula, interpreter.eval(formula),
+						result[i], 1e-12);
+			}
+		}
+	}
+
+	@Test
+	public void testScopeVariables() throws Exception {
+		FormulaInterpreter interpreter = new FormulaInterpreter();
+		interpreter.setDependencyGraphMode(true);
+		Scope global = interpreter.getGlobalScope();
+		global.bind("a", new double[] { 1, 2, 3 });
+		global.bind("b", "a * 2");
+		Scope scope = interpreter.createScope(1);
+		scope.bind("c", "b + 1");
+		double[] result = scope.evalBatch("c * 10 + 0 * pi", 3);
+		Assert.assertArrayEquals(new double[] { 30, 50, 70 }, result, 1e-16);
+		// in the normal evaluation the first value is used
+		Assert.assertEquals(3, scope.eval("c"), 1e-16);
+		// a new binding invalidates the cached values
+		global.bind("a", new double[] { 4, 5, 6 });
+		result = scope.evalBatch("c", 3);
+		Assert.assertArrayEquals(new double[] { 9, 11, 13 }, result, 1e-16);
+		global.bind("a", 1);
+		result = scope.evalBatch("c", 3);
+		Assert.assertArrayEquals(new double[] { 3, 3, 3 }, result, 1e-16);
+	}
+
+	@Test
+	public void testConditionalFallback() throws Exception {
+		FormulaInterpreter interpreter = new FormulaInterpreter();
+		interpreter.getGlobalScope().bind("x", new double[] { 0, 2 });
+		double[] result = interpreter.getGlobalScope().evalBatch(
+				"if(x = 0; 0; 1 / x)", 2);
+		Assert.assertArrayEquals(new double[] { 0, 0.5 }, result, 1e-16);
+	}
+
+	@Test(expected = InterpreterException.class)
+	public void testMissingValues() throws Exception {
+		FormulaInterpreter interpreter = new FormulaInterpreter();
+		interpreter.getGlobalScope().bind("x", new double[] { 1, 2 });
+		interpreter.getGlobalScope().evalBatch("x + 1", 3);
+	}
+
+}
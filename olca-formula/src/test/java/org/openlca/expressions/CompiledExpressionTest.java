@@ -0,0 +1,66 @@
+package org.openlca.expressions;
+
+import java.io.StringReader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompiledExpressionTest {
+
+	private String[] formulas = { "1 + 2 * 3 - 4 / 2", "-x ^ 2 + y", "x div 2",
+			"7 mod 3", "sqrt(abs(-16)) + sqr(y)", "ln(e()) + log(100)", "if(and(x > 1; y > 1); 1; 2)",
+			"if(x > y; x; y)", "iif(x == 3 && y < 5; 1; 0)",
+			"if(not(x <> 3) || false(); sin(pi()); cos(0))",
+			"if(x >= 3 xor y <= 4; ipower(x; 2.7); pow(x; 2.7))",
+			"sum(x; y; 3) + avg(x; y) + min(x; y; -1) + max(x; y; 10)",
+			"sum() + frac(2.75) + int(2.75) + round(2.5) + ceil(1.2)",
+			"floor(-1.5) + exp(1) + tanh(0.5) + cotan(1) + atan(1)" };
+
+	@Test
+	public void testCompareWithInterpreter() throws Exception {
+		FormulaInterpreter interpreter = new FormulaInterpreter();
+		interpreter.bind("x", "3");
+		interpreter.bind("y", "2 * x - 1");
+		Scope scope = interpreter.getGlobalScope();
+		for (String formula : formulas) {
+			double expected = interpret(formula, scope);
+			CompiledExpression e = CompiledExpression.compile(formula);
+			Assert.assertEquals(formula, expected, scope.eval(e), 1e-16);
+			Assert.assertEquals(formula, expected, scope.eval(formula), 1e-16);
+		}
+	}
+
+	private double interpret(String formula, Scope scope) throws Exception {
+		FormulaParser parser = new FormulaParser(new StringReader(
+				formula.toLowerCase()));
+		parser.parse();
+		Expression e = parser.getExpression();
+		e.check();
+		return (Double) e.evaluate(scope);
+	}
+
+	@Test
+	public void testCache() throws Exception {
+		CompiledExpression e = CompiledExpression.compile("a * b + a");
+		Assert.assertSame(e, CompiledExpression.compile("a * b + a"));
+		Assert.assertArrayEquals(new String[] { "a", "b" }, e.getVariables());
+		CompiledExpression.clearCache();
+		Assert.assertNotSame(e, CompiledExpression.compile("a * b + a"));
+	}
+
+	@Test
+	public void testShortCircuit() throws Exception {
+		FormulaInterpreter interpreter = new FormulaInterpreter();
+		interpreter.bind("x", "1");
+		// the unknown variable in the other branch is not resolved
+		Assert.assertEquals(42, interpreter.eval("if(x > 0; 42; unknown)"),
+				1e-16);
+	}
+
+	@Test(expected = InterpreterException.class)
+	public void testBooleanResult() throws Exception {
+		FormulaInterpreter interpreter = new FormulaInterpreter();
+		interpreter.eval("1 < 2");
+	}
+
+}
@@ -0,0 +1,74 @@
+package org.openlca.expressions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DependencyGraphTest {
+
+	@Test
+	public void testScopes() throws Exception {
+		FormulaInterpreter interpreter = new FormulaInterpreter();
+		interpreter.setDependencyGraphMode(true);
+		interpreter.bind("a", "b + 5");
+		interpreter.bind("b", "4");
+		Scope scope = interpreter.createScope(1);
+		scope.bind("c", "a * 2");
+		scope.bind("b", "a");
+		Assert.assertEquals(18.0, scope.eval("c"), 1e-16);
+		Assert.assertEquals(9.0, scope.eval("b"), 1e-16);
+		Assert.assertEquals(4.0, interpreter.eval("b"), 1e-16);
+	}
+
+	@Test
+	public void testEvaluateOnce() throws Exception {
+		FormulaInterpreter interpreter = new FormulaInterpreter();
+		interpreter.setDependencyGraphMode(true);
+		interpreter.bind("r", "rand()");
+		Scope scope = interpreter.createScope(1);
+		scope.bind("s", "r * 2");
+		double r = interpreter.eval("r");
+		Assert.assertEquals(r, interpreter.eval("r"), 1e-16);
+		Assert.assertEquals(2 * r, scope.eval("s"), 1e-16);
+	}
+
+	@Test
+	public void testUpdateDirtyVariables() throws Exception {
+		FormulaInterpreter interpreter = new FormulaInterpreter();
+		interpreter.setDependencyGraphMode(true);
+		interpreter.bind("r", "rand()");
+		interpreter.getGlobalScope().bind("x", 2);
+		interpreter.getGlobalScope().bind("y", "x * 3");
+		double r = interpreter.eval("r");
+		Assert.assertEquals(6, interpreter.eval("y"), 1e-16);
+		interpreter.getGlobalScope().bind("x", 3);
+		Assert.assertEquals(9, interpreter.eval("y"), 1e-16);
+		Assert.assertEquals(r, interpreter.eval("r"), 1e-16);
+		interpreter.bind("x", "4");
+		Assert.assertEquals(12, interpreter.eval("y"), 1e-16);
+	}
+
+	@Test
+	public void testCycles() throws Exception {
+		FormulaInterpreter interpreter = new FormulaInterpreter();
+		interpreter.setDependencyGraphMode(true);
+		interpreter.bind("a", "12 * c");
+		interpreter.bind("b", "sin(546 * a) / 12^2");
+		interpreter.bind("c", "b/189");
+		interpreter.bind("d", "42");
+		try {
+			interpreter.evaluateVariables();
+			Assert.fail("cycle not detected");
+		} catch (InterpreterException e) {
+		}
+		Assert.assertEquals(42, interpreter.eval("d"), 1e-16);
+		try {
+			interpreter.eval("a + d");
+			Assert.fail("cycle not detected");
+		} catch (InterpreterException e) {
+		}
+		interpreter.bind("c", "2");
+		interpreter.evaluateVariables();
+		Assert.assertEquals(24 + 42, interpreter.eval("a + d"), 1e-16);
+	}
+
+}
@@ -225,12 +225,7 @@ public class RegionalizedCalculator {
 
 	private void calcTotalImpactResult(ContributionResult regioResult) {
 		IMatrix singleResults = regioResult.getSingleImpactResults();
-		double[] totalResults = new double[singleResults.getRowDimension()];
-		for (int row = 0; row < singleResults.getRowDimension(); row++) {
-			for (int col = 0; col < singleResults.getColumnDimension(); col++) {
-				totalResults[row] += singleResults.getEntry(row, col);
-			}
-		}
+		double[] totalResults = singleResults.getRowSums();
 		regioResult.setTotalImpactResults(totalResults);
 	}
 }
@@ -7,9 +7,7 @@ import gnu.trove.map.hash.TLongLongHashMap;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.NativeSql;
@@ -41,6 +39,13 @@ class ProcessImport {
 	// updated after the import.
 	private TLongLongHashMap oldProviderMap = new TLongLongHashMap();
 
+	/** The number of processes that are inserted in one bulk operation. */
+	private static final int CHUNK_SIZE = 100;
+
+	// The new processes that are not yet inserted and their source IDs
+	private List<Process> newProcesses = new ArrayList<>();
+	private TLongArrayList newProcessSrcIds = new TLongArrayList();
+
 	ProcessImport(IDatabase source, IDatabase dest, Sequence seq) {
 		this.srcDao = new ProcessDao(source);
 		this.destDao = new ProcessDao(dest);
@@ -58,7 +63,10 @@ class ProcessImport {
 					srcDestIdMap.put(descriptor.getId(), destId);
 				else
 					createProcess(descriptor);
+				if (newProcesses.size() >= CHUNK_SIZE)
+					insertNewProcesses();
 			}
+			insertNewProcesses();
 			switchDefaultProviders();
 		} catch (Exception e) {
 			log.error("failed to import processes", e);
@@ -71,19 +79,35 @@ class ProcessImport {
 		destProcess.setRefId(srcProcess.getRefId());
 		destProcess.setCategory(refs.switchRef(srcProcess.getCategory()));
 		destProcess.setLocation(refs.switchRef(srcProcess.getLocation()));
-		Set<Long> providerUpdates = switchExchangeRefs(destProcess);
+		switchExchangeRefs(destProcess);
 		switchAllocationProducts(srcProcess, destProcess);
 		destProcess.getCostEntries().clear(); // TODO: remove
 		// TODO: switchCostCategories(srcProcess, destProcess);
 		switchDocRefs(destProcess);
-		destProcess = destDao.insert(destProcess);
-		seq.put(seq.PROCESS, srcProcess.getRefId(), destProcess.getId());
-		srcDestIdMap.put(srcProcess.getId(), destProcess.getId());
-		putProviderUpdates(providerUpdates, destProcess);
+		newProcesses.add(destProcess);
+		newProcessSrcIds.add(srcProcess.getId());
 	}
 
-	private void putProviderUpdates(Set<Long> providerUpdates,
-			Process destProcess) {
+	/**
+	 * Inserts the new processes in one bulk operation and registers their IDs.
+	 * The default providers of the processes in the same chunk are updated
+	 * after the import like the providers that are not yet imported.
+	 */
+	private void insertNewProcesses() {
+		if (newProcesses.isEmpty())
+			return;
+		List<Process> inserted = destDao.insertAll(newProcesses);
+		for (int i = 0; i < inserted.size(); i++) {
+			Process destProcess = inserted.get(i);
+			seq.put(seq.PROCESS, destProcess.getRefId(), destProcess.getId());
+			srcDestIdMap.put(newProcessSrcIds.get(i), destProcess.getId());
+			putProviderUpdates(destProcess);
+		}
+		newProcesses.clear();
+		newProcessSrcIds.clear();
+	}
+
+	private void putProviderUpdates(Process destProcess) {
 		for (Exchange exchange : destProcess.getExchanges()) {
 			if (exchange.getDefaultProviderId() >= 0)
 				continue;
@@ -94,18 +118,18 @@ class ProcessImport {
 	}
 
 	/**
-	 * Returns also the list of provider IDs from the source database that need
-	 * to be updated after the import.
+	 * Switches the references of the exchanges to the destination database.
+	 * Default providers that are not yet imported get the negative ID of the
+	 * source database and are updated after the import.
 	 */
-	private Set<Long> switchExchangeRefs(Process destProcess) {
+	private void switchExchangeRefs(Process destProcess) {
 		List<Exchange> removals = new ArrayList<>();
-		Set<Long> oldProviders = new HashSet<>();
 		for (Exchange exchange : destProcess.getExchanges()) {
 			if (!isValid(exchange)) {
 				removals.add(exchange);
 				continue;
 			}
-			checkSetProvider(exchange, oldProviders);
+			checkSetProvider(exchange);
 			Flow destFlow = refs.switchRef(exchange.getFlow());
 			exchange.setFlow(destFlow);
 			exchange.setFlowPropertyFactor(refs.switchRef(
@@ -117,10 +141,9 @@ class ProcessImport {
 					+ "that where removed during the import", destProcess);
 			destProcess.getExchanges().removeAll(removals);
 		}
-		return oldProviders;
 	}
 
-	private void checkSetProvider(Exchange exchange, Set<Long> oldProviders) {
+	private void checkSetProvider(Exchange exchange) {
 		long oldId = exchange.getDefaultProviderId();
 		if (oldId <= 0)
 			return; // no default provider
@@ -131,7 +154,6 @@ class ProcessImport {
 		}
 		// update required after import indicated by a negative sign
 		exchange.setDefaultProviderId(-oldId);
-		oldProviders.add(oldId);
 	}
 
 	private boolean isValid(Exchange exchange) {
@@ -3,7 +3,9 @@ package org.openlca.io.refdata;
 import java.io.File;
 import java.io.FileInputStream;
 
+import org.openlca.core.database.DescriptorIndex;
 import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.usage.UsageIndex;
 import org.openlca.io.maps.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +42,8 @@ public class RefDataImport implements Runnable {
 			importFile("nw_set_factors.csv", new NwSetFactorImport());
 			seq.write();
 			database.getEntityFactory().getCache().evictAll();
+			UsageIndex.invalidate(database);
+			DescriptorIndex.invalidate(database);
 			importMappingFiles();
 			importKmlFile();
 		} catch (Exception e) {
@@ -67,7 +67,7 @@ public class SimulationResultExport {
 				.getResult().getImpactIndex(), cache);
 		for (ImpactCategoryDescriptor impact : impacts) {
 			writer.writeImpactRowInfo(sheet, row, impact);
-			List<Double> values = result.getImpactResults(impact);
+			double[] values = result.getImpactResults(impact);
 			writeValues(sheet, row, CellWriter.IMPACT_INFO_SIZE + 1, values);
 			row++;
 		}
@@ -111,7 +111,7 @@ public class SimulationResultExport {
 			if (idx.isInput(flow.getId()) != forInputs)
 				continue;
 			writer.writeFlowRowInfo(sheet, row, flow);
-			List<Double> values = result.getFlowResults(flow);
+			double[] values = result.getFlowResults(flow);
 			writeValues(sheet, row, CellWriter.FLOW_INFO_SIZE + 1, values);
 			row++;
 		}
@@ -163,7 +163,7 @@ public class SimulationResultExport {
 	}
 
 	private void writeValues(Sheet sheet, int row, int startCol,
-			List<Double> values) {
+			double[] values) {
 		if (values == null)
 			return;
 		int col = startCol;
@@ -175,8 +175,8 @@ public class SimulationResultExport {
 		Excel.cell(sheet, row, col++, stat.getMedian());
 		Excel.cell(sheet, row, col++, stat.getPercentileValue(5));
 		Excel.cell(sheet, row, col++, stat.getPercentileValue(95));
-		for (int i = 0; i < values.size(); i++)
-			Excel.cell(sheet, row, col++, values.get(i).doubleValue());
+		for (double value : values)
+			Excel.cell(sheet, row, col++, value);
 	}
 
 }